@@ -54,6 +54,8 @@ import lombok.*;
  *          the plan string
  * @param queryCost
  *          the query cost
+ * @param rewritePhases
+ *          the rewrite phases
  * @param error
  *          the error
  * @param errorMsg
@@ -114,6 +116,13 @@ public class QueryPlan extends QuerySubmitResult {
   @Getter
   private QueryCostTO queryCost;
 
+  /**
+   * The phases of the rewrite of the query, empty if the rewrite was not profiled.
+   */
+  @XmlElementWrapper
+  @Getter
+  private List<RewritePhase> rewritePhases;
+
   public String getPlanString() throws UnsupportedEncodingException {
     return URLDecoder.decode(planString, "UTF-8");
   }
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.api.query;
+
+import java.io.Serializable;
+
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import lombok.*;
+
+/**
+ * Time taken, and memory allocated, by one phase of the rewrite of a cube query.
+ */
+@XmlRootElement
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@EqualsAndHashCode
+@ToString
+public class RewritePhase implements Serializable {
+
+  /**
+   * Name of the rewriter run in the phase.
+   */
+  @XmlElement
+  @Getter
+  private String name;
+
+  /**
+   * Position of the phase among the phases of the rewrite, from 0. A rewriter can run in several phases.
+   */
+  @XmlElement
+  @Getter
+  private int position;
+
+  /**
+   * Time taken by the phase, in nanoseconds.
+   */
+  @XmlElement
+  @Getter
+  private long durationNanos;
+
+  /**
+   * Bytes allocated by the phase, -1 if the JVM can't measure allocations.
+   */
+  @XmlElement
+  @Getter
+  private long allocatedBytes;
+}
@@ -194,12 +194,11 @@ public abstract class AbstractBaseTable extends AbstractCubeTable {
     }
   }
 
+  /**
+   * @return the lower case names of the expressions
+   */
   public Set<String> getExpressionNames() {
-    Set<String> exprNames = new HashSet<>();
-    for (ExprColumn f : getExpressions()) {
-      exprNames.add(f.getName().toLowerCase());
-    }
-    return exprNames;
+    return new HashSet<>(exprMap.keySet());
   }
 
   /**
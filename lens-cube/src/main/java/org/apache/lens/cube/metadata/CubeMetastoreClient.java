@@ -27,6 +27,9 @@ import static org.apache.lens.cube.metadata.MetastoreUtil.*;
 import java.text.ParseException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.lens.api.metastore.XCube;
 import org.apache.lens.api.metastore.XDerivedCube;
@@ -70,6 +73,7 @@ import org.jvnet.jaxb2_commons.lang.ToString;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -106,6 +110,11 @@ public class CubeMetastoreClient {
   // map from storage name to storage
   private final Map<String, Storage> allStorages = Maps.newConcurrentMap();
   private volatile boolean allStoragesPopulated = false;
+  // indexes of the cached facts and segmentations by cube name, and of the cached dimtables by dimension name.
+  // They cover all the facts, segmentations or dimtables once all of them are populated.
+  private final Map<String, Set<String>> factNamesByCube = Maps.newConcurrentMap();
+  private final Map<String, Set<String>> segmentationNamesByCube = Maps.newConcurrentMap();
+  private final Map<String, Set<String>> dimTableNamesByDim = Maps.newConcurrentMap();
   // Partition cache. Inner class since it logically belongs here
   PartitionTimelineCache partitionTimelineCache = new PartitionTimelineCache();
   // dbname to client mapping
@@ -1821,7 +1830,7 @@ public class CubeMetastoreClient {
           Table tbl = getTableWithType(tableName, CubeTableType.DIM_TABLE, throwException);
           dimTable = tbl == null ? null : getDimensionTable(tbl);
           if (enableCaching && dimTable != null) {
-            allDimTables.put(tableName, dimTable);
+            cacheDimTable(tableName, dimTable);
             // update latest partition cache for all storages
             if (!dimTable.getStorages().isEmpty()) {
               for (String storageName : dimTable.getStorages()) {
@@ -1967,7 +1976,7 @@ public class CubeMetastoreClient {
           Table tbl = getTableWithType(tableName, CubeTableType.FACT, throwException);
           fact = tbl == null ? null : new CubeFactTable(tbl);
           if (enableCaching && fact != null) {
-            allFactTables.put(tableName, fact);
+            cacheFact(tableName, fact);
           }
         } else {
           fact = allFactTables.get(tableName);
@@ -1989,7 +1998,7 @@ public class CubeMetastoreClient {
           Table tbl = getTableWithType(segName, CubeTableType.SEGMENTATION, throwException);
           seg = tbl == null ? null : new Segmentation(tbl);
           if (enableCaching && seg != null) {
-            allSegmentations.put(segName, seg);
+            cacheSegmentation(segName, seg);
           }
         } else {
           seg = allSegmentations.get(segName);
@@ -2160,9 +2169,9 @@ public class CubeMetastoreClient {
           }
         }
       } catch (HiveException e) {
-        throw new LensException("Could not get all fact tables", e);
+        throw new LensException("Could not get all segmentations", e);
       }
-      allFactTablesPopulated = enableCaching;
+      allSegmentationPopulated = enableCaching;
       return segs;
     } else {
       return allSegmentations.values();
@@ -2174,8 +2183,11 @@ public class CubeMetastoreClient {
   private Collection<String> getAllHiveTableNames() throws HiveException, LensException {
     if (!allTablesPopulated) {
       List<String> allTables = getClient().getAllTables();
+      if (enableCaching) {
+        fetchTables(allTables);
+      }
       for (String tblName : allTables) {
-        // getTable call here would add the table to allHiveTables
+        // getTable call here would add the table to allHiveTables, if it was not fetched above
         getTable(tblName);
       }
       allTablesPopulated = enableCaching;
@@ -2185,6 +2197,73 @@ public class CubeMetastoreClient {
     }
   }
 
+  /**
+   * Adds the tables which are not cached yet to the cache of hive tables, fetching them in batches from the metastore
+   * with concurrent calls, instead of one call per table. Tables which could not be fetched are left to be fetched
+   * one by one.
+   *
+   * @param tableNames names of the tables in the current database
+   */
+  private void fetchTables(List<String> tableNames) {
+    List<String> missing = new ArrayList<>();
+    for (String tableName : tableNames) {
+      if (!allHiveTables.containsKey(tableName.trim().toLowerCase())) {
+        missing.add(tableName);
+      }
+    }
+    List<List<String>> batches = Lists.partition(missing, Math.max(1,
+      config.getInt(MetastoreConstants.METASTORE_BULK_FETCH_BATCH_SIZE,
+        MetastoreConstants.DEFAULT_METASTORE_BULK_FETCH_BATCH_SIZE)));
+    if (batches.isEmpty()) {
+      return;
+    }
+    final String dbName = SessionState.get().getCurrentDatabase();
+    int parallelism = Math.min(batches.size(), config.getInt(MetastoreConstants.METASTORE_BULK_FETCH_PARALLELISM,
+      MetastoreConstants.DEFAULT_METASTORE_BULK_FETCH_PARALLELISM));
+    try {
+      if (parallelism <= 1) {
+        for (List<String> batch : batches) {
+          fetchTables(getClient(), dbName, batch);
+        }
+      } else {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism,
+          new ThreadFactoryBuilder().setNameFormat("metastore-fetch-" + dbName + "-%d").setDaemon(true).build());
+        try {
+          List<Future<Void>> fetches = new ArrayList<>();
+          for (final List<String> batch : batches) {
+            fetches.add(pool.submit(() -> {
+              try {
+                // metastore clients are per thread
+                fetchTables(Hive.get(config), dbName, batch);
+              } finally {
+                Hive.closeCurrent();
+              }
+              return null;
+            }));
+          }
+          for (Future<Void> fetch : fetches) {
+            fetch.get();
+          }
+        } finally {
+          pool.shutdownNow();
+        }
+      }
+    } catch (Exception e) {
+      log.warn("Could not fetch all the tables of {} in batches, fetching the rest one by one", dbName, e);
+    }
+  }
+
+  private void fetchTables(Hive client, String dbName, List<String> tableNames) throws HiveException {
+    try {
+      for (org.apache.hadoop.hive.metastore.api.Table table
+        : client.getMSC().getTableObjectsByName(dbName, tableNames)) {
+        allHiveTables.putIfAbsent(table.getTableName().toLowerCase(), new Table(table));
+      }
+    } catch (TException e) {
+      throw new HiveException("Could not fetch tables " + tableNames, e);
+    }
+  }
+
   /**
    * Get all fact tables of the cube.
    *
@@ -2200,8 +2279,12 @@ public class CubeMetastoreClient {
       }
       cubeName = cube.getName();
     }
+    Collection<CubeFactTable> allFacts = getAllFacts();
+    if (cubeName != null && allFactTablesPopulated) {
+      return getIndexed(allFactTables, factNamesByCube, cubeName);
+    }
     List<CubeFactTable> cubeFacts = new ArrayList<>();
-    for (CubeFactTable fact : getAllFacts()) {
+    for (CubeFactTable fact : allFacts) {
       if (cubeName == null || fact.getCubeName().equalsIgnoreCase(cubeName)) {
         cubeFacts.add(fact);
       }
@@ -2217,8 +2300,12 @@ public class CubeMetastoreClient {
       }
       cubeName = cube.getName();
     }
+    Collection<Segmentation> allSegs = getAllSegmentations();
+    if (cubeName != null && allSegmentationPopulated) {
+      return getIndexed(allSegmentations, segmentationNamesByCube, cubeName);
+    }
     List<Segmentation> cubeSegs = new ArrayList<>();
-    for (Segmentation seg : getAllSegmentations()) {
+    for (Segmentation seg : allSegs) {
       if (cubeName == null || seg.getBaseCube().equalsIgnoreCase(cubeName)) {
         cubeSegs.add(seg);
       }
@@ -2253,8 +2340,12 @@ public class CubeMetastoreClient {
    * @throws LensException
    */
   public List<CubeDimensionTable> getAllDimensionTables(Dimension dim) throws LensException {
+    Collection<CubeDimensionTable> allDimTbls = getAllDimensionTables();
+    if (dim != null && allDimTablesPopulated) {
+      return getIndexed(allDimTables, dimTableNamesByDim, dim.getName());
+    }
     List<CubeDimensionTable> dimTables = new ArrayList<>();
-    for (CubeDimensionTable dimTbl : getAllDimensionTables()) {
+    for (CubeDimensionTable dimTbl : allDimTbls) {
       if (dim == null || dimTbl.getDimName().equalsIgnoreCase(dim.getName().toLowerCase())) {
         dimTables.add(dimTbl);
       }
@@ -2438,14 +2529,14 @@ public class CubeMetastoreClient {
       }
     }
     dropHiveTable(factName);
-    allFactTables.remove(factName.trim().toLowerCase());
+    uncacheFact(factName.trim().toLowerCase());
   }
 
 
   public void dropSegmentation(String segName) throws LensException {
     getTableWithTypeFailFast(segName, CubeTableType.SEGMENTATION);
     dropHiveTable(segName);
-    allSegmentations.remove(segName.trim().toLowerCase());
+    uncacheSegmentation(segName.trim().toLowerCase());
   }
 
   /**
@@ -2528,7 +2619,7 @@ public class CubeMetastoreClient {
       }
     }
     dropHiveTable(dimTblName);
-    allDimTables.remove(dimTblName.trim().toLowerCase());
+    uncacheDimTable(dimTblName.trim().toLowerCase());
   }
   public void alterCubeFactTable(XFactTable fact) throws LensException, HiveException {
     alterCubeFactTable(fact.getName(), JAXBUtils.cubeFactFromFactTable(fact),
@@ -2577,20 +2668,80 @@ public class CubeMetastoreClient {
 
   private void updateSegmentationCache(String segmentName) throws HiveException, LensException {
     if (enableCaching) {
-      allSegmentations.put(segmentName.trim().toLowerCase(), new Segmentation(refreshTable(segmentName)));
+      cacheSegmentation(segmentName.trim().toLowerCase(), new Segmentation(refreshTable(segmentName)));
     }
   }
 
   private void updateFactCache(String factTableName) throws LensException {
     if (enableCaching) {
-      allFactTables.put(factTableName.trim().toLowerCase(), new CubeFactTable(refreshTable(factTableName)));
+      cacheFact(factTableName.trim().toLowerCase(), new CubeFactTable(refreshTable(factTableName)));
     }
   }
 
   private void updateDimCache(String dimTblName) throws LensException {
     if (enableCaching) {
-      allDimTables.put(dimTblName.trim().toLowerCase(), getDimensionTable(refreshTable(dimTblName)));
+      cacheDimTable(dimTblName.trim().toLowerCase(), getDimensionTable(refreshTable(dimTblName)));
+    }
+  }
+
+  private void cacheFact(String factName, CubeFactTable fact) {
+    CubeFactTable previous = allFactTables.put(factName, fact);
+    reindex(factNamesByCube, factName, previous == null ? null : previous.getCubeName(), fact.getCubeName());
+  }
+
+  private void uncacheFact(String factName) {
+    CubeFactTable previous = allFactTables.remove(factName);
+    reindex(factNamesByCube, factName, previous == null ? null : previous.getCubeName(), null);
+  }
+
+  private void cacheSegmentation(String segName, Segmentation seg) {
+    Segmentation previous = allSegmentations.put(segName, seg);
+    reindex(segmentationNamesByCube, segName, previous == null ? null : previous.getBaseCube(), seg.getBaseCube());
+  }
+
+  private void uncacheSegmentation(String segName) {
+    Segmentation previous = allSegmentations.remove(segName);
+    reindex(segmentationNamesByCube, segName, previous == null ? null : previous.getBaseCube(), null);
+  }
+
+  private void cacheDimTable(String dimTblName, CubeDimensionTable dimTable) {
+    CubeDimensionTable previous = allDimTables.put(dimTblName, dimTable);
+    reindex(dimTableNamesByDim, dimTblName, previous == null ? null : previous.getDimName(), dimTable.getDimName());
+  }
+
+  private void uncacheDimTable(String dimTblName) {
+    CubeDimensionTable previous = allDimTables.remove(dimTblName);
+    reindex(dimTableNamesByDim, dimTblName, previous == null ? null : previous.getDimName(), null);
+  }
+
+  /** moves a table from the entry of its previous parent in the index to the entry of its new parent */
+  private static void reindex(Map<String, Set<String>> index, String tableName, String previousParent,
+    String newParent) {
+    if (previousParent != null) {
+      Set<String> tableNames = index.get(previousParent.toLowerCase());
+      if (tableNames != null) {
+        tableNames.remove(tableName);
+      }
+    }
+    if (newParent != null) {
+      index.computeIfAbsent(newParent.toLowerCase(),
+        parent -> Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>())).add(tableName);
+    }
+  }
+
+  /** gets the cached tables with the given parent in the index */
+  private static <T> List<T> getIndexed(Map<String, T> cache, Map<String, Set<String>> index, String parent) {
+    List<T> tables = new ArrayList<>();
+    Set<String> tableNames = index.get(parent.toLowerCase());
+    if (tableNames != null) {
+      for (String tableName : tableNames) {
+        T table = cache.get(tableName);
+        if (table != null) {
+          tables.add(table);
+        }
+      }
     }
+    return tables;
   }
   public void alterCubeDimensionTable(XDimensionTable dimensionTable) throws LensException, HiveException {
     alterCubeDimensionTable(dimensionTable.getTableName(),
@@ -211,23 +211,18 @@ public final class DateUtil {
   public static CoveringInfo getMonthlyCoveringInfo(Date from, Date to) {
     // Move 'from' to end of month, unless its the first day of month
     boolean coverable = true;
-    if (!from.equals(DateUtils.truncate(from, MONTH))) {
-      from = DateUtils.addMonths(DateUtils.truncate(from, MONTH), 1);
+    long fromMonth = UpdatePeriod.MONTHLY.toIndex(from.getTime());
+    if (UpdatePeriod.MONTHLY.toMillis(fromMonth) != from.getTime()) {
+      fromMonth++;
       coverable = false;
     }
 
     // Move 'to' to beginning of next month, unless its the first day of the month
-    if (!to.equals(DateUtils.truncate(to, MONTH))) {
-      to = DateUtils.truncate(to, MONTH);
+    long toMonth = UpdatePeriod.MONTHLY.toIndex(to.getTime());
+    if (UpdatePeriod.MONTHLY.toMillis(toMonth) != to.getTime()) {
       coverable = false;
     }
-
-    int months = 0;
-    while (from.before(to)) {
-      from = DateUtils.addMonths(from, 1);
-      months++;
-    }
-    return new CoveringInfo(months, coverable);
+    return new CoveringInfo((int) Math.max(0, toMonth - fromMonth), coverable);
   }
 
   public static CoveringInfo getQuarterlyCoveringInfo(Date from, Date to) {
@@ -276,12 +271,10 @@ public final class DateUtil {
   }
 
   public static CoveringInfo getWeeklyCoveringInfo(Date from, Date to) {
-    int dayDiff = 0;
-    Date tmpFrom = from;
-    while (tmpFrom.before(to)) {
-      tmpFrom = DateUtils.addDays(tmpFrom, 1);
-      dayDiff++;
-    }
+    // Number of days to add to 'from' to reach 'to', in local time
+    long localFrom = PeriodIndexer.getDefault().toLocal(from.getTime());
+    long localTo = PeriodIndexer.getDefault().toLocal(to.getTime());
+    int dayDiff = localFrom < localTo ? (int) -Math.floorDiv(localFrom - localTo, PeriodIndexer.DAY_MILLIS) : 0;
 
     if (dayDiff < 7) {
       return new CoveringInfo(0, false);
@@ -148,7 +148,7 @@ public class ExprColumn extends CubeColumn {
     private synchronized void initASTNode() throws LensException {
       if (astNode == null) {
         if (StringUtils.isNotBlank(expr)) {
-          astNode = MetastoreUtil.parseExpr(getExpr());
+          astNode = ExpressionCache.get(getExpr());
         }
       }
     }
@@ -394,7 +394,7 @@ public class ExprColumn extends CubeColumn {
     }
 
     // Validate if expression can be correctly parsed
-    MetastoreUtil.parseExpr(expression.getExpr());
+    ExpressionCache.get(expression.getExpr());
     synchronized (expressionSet) {
       expressionSet.add(expression);
     }
@@ -0,0 +1,109 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.hive.ql.parse.ASTNode;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Compiled expressions of expression columns, shared by all the cubes and dimensions, and keyed by the expression text.
+ * <p>
+ * An expression is parsed once, however many times its cubes and dimensions are reloaded from the metastore, and
+ * however many queries use it. The cached trees are never modified: they are only read, or copied by the rewrites that
+ * need to modify them.
+ */
+public final class ExpressionCache {
+
+  /** Maximum number of expressions kept */
+  private static final int MAX_SIZE = 10000;
+
+  private static final Cache<String, ASTNode> EXPRESSIONS = CacheBuilder.newBuilder().maximumSize(MAX_SIZE).build();
+
+  private static final AtomicLong HITS = new AtomicLong();
+  private static final AtomicLong MISSES = new AtomicLong();
+  private static final AtomicLong PARSE_NANOS = new AtomicLong();
+
+  private ExpressionCache() {
+  }
+
+  /**
+   * Gets the compiled tree of an expression, parsing it if it is not cached. The tree is shared, and must not be
+   * modified.
+   *
+   * @param expr the expression
+   * @return the tree of the expression
+   * @throws LensException if the expression can't be parsed
+   */
+  static ASTNode get(final String expr) throws LensException {
+    ASTNode compiled = EXPRESSIONS.getIfPresent(expr);
+    if (compiled != null) {
+      HITS.incrementAndGet();
+      return compiled;
+    }
+    try {
+      return EXPRESSIONS.get(expr, new Callable<ASTNode>() {
+        @Override
+        public ASTNode call() throws LensException {
+          long start = System.nanoTime();
+          ASTNode parsed = MetastoreUtil.parseExpr(expr);
+          PARSE_NANOS.addAndGet(System.nanoTime() - start);
+          MISSES.incrementAndGet();
+          return parsed;
+        }
+      });
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof LensException) {
+        throw (LensException) e.getCause();
+      }
+      throw new IllegalStateException("Unable to parse expression " + expr, e.getCause());
+    }
+  }
+
+  /**
+   * @return the number of times an expression was found compiled
+   */
+  public static long getHits() {
+    return HITS.get();
+  }
+
+  /**
+   * @return the number of times an expression was parsed
+   */
+  public static long getMisses() {
+    return MISSES.get();
+  }
+
+  /**
+   * @return the time the expressions found compiled would have taken to parse, at the average parse time
+   */
+  public static long getParseMillisSaved() {
+    long misses = MISSES.get();
+    return misses == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(PARSE_NANOS.get() / misses * HITS.get());
+  }
+}
@@ -110,6 +110,11 @@ public final class MetastoreConstants {
   public static final String HIERARCHY_SFX = ".hierarchy.";
   public static final String CLASS_SFX = ".class";
   public static final String METASTORE_ENABLE_CACHING = "cube.metastore.enable.cache";
+  // number of tables fetched by a metastore call, and number of concurrent calls, when caching all the tables
+  public static final String METASTORE_BULK_FETCH_BATCH_SIZE = "cube.metastore.bulk.fetch.batch.size";
+  public static final int DEFAULT_METASTORE_BULK_FETCH_BATCH_SIZE = 100;
+  public static final String METASTORE_BULK_FETCH_PARALLELISM = "cube.metastore.bulk.fetch.parallelism";
+  public static final int DEFAULT_METASTORE_BULK_FETCH_PARALLELISM = 4;
 
   // join chain constants
   public static final String JOIN_CHAIN_KEY = "joinchain.";
@@ -0,0 +1,363 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Epoch arithmetic on the periods of {@link UpdatePeriod}s in a time zone, without {@link Calendar}s or
+ * {@link java.text.DateFormat}s.
+ * <p>
+ * A period is identified by its index, the number of periods between the epoch and the period:
+ * <ul>
+ *   <li>secondly, minutely and hourly periods are fixed lengths of time, aligned on the local time of the zone</li>
+ *   <li>daily and weekly periods are local days, and local weeks starting on the first day of the week of the
+ *   default locale</li>
+ *   <li>monthly, quarterly and yearly periods are counted in months of the gregorian calendar</li>
+ * </ul>
+ * Local times are converted to instants with {@link Calendar} around the transitions of the zone, where they are
+ * skipped or repeated, so that all the conversions give the same instants as the calendar arithmetic they replace.
+ * Weekly periods are not formatted or parsed, since their week years depend on the locale.
+ */
+final class PeriodIndexer {
+
+  private static final PeriodIndexer DEFAULT = new PeriodIndexer(TimeZone.getDefault(),
+    Calendar.getInstance().getFirstDayOfWeek());
+
+  static final long SECOND_MILLIS = 1000L;
+  static final long MINUTE_MILLIS = 60 * SECOND_MILLIS;
+  static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+  static final long DAY_MILLIS = 24 * HOUR_MILLIS;
+
+  /** Returned by {@link #parse(UpdatePeriod, String)} for strings it can't parse */
+  static final long UNPARSEABLE = Long.MIN_VALUE;
+
+  /** Offsets of the zone are taken as constant within this window around a local time */
+  private static final long TRANSITION_WINDOW_MILLIS = DAY_MILLIS;
+
+  private final TimeZone zone;
+  private final int rawOffset;
+  private final int firstDayOfWeek;
+
+  PeriodIndexer(TimeZone zone, int firstDayOfWeek) {
+    this.zone = (TimeZone) zone.clone();
+    this.rawOffset = zone.getRawOffset();
+    this.firstDayOfWeek = firstDayOfWeek;
+  }
+
+  /**
+   * @return the indexer of the default time zone and locale, as they were when the class was loaded
+   */
+  static PeriodIndexer getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @return index of the period containing the instant
+   */
+  long toIndex(UpdatePeriod period, long millis) {
+    switch (period) {
+    case SECONDLY:
+    case CONTINUOUS:
+    case MINUTELY:
+    case HOURLY:
+      long length = getLength(period);
+      return Math.floorDiv(millis + Math.floorMod(zone.getOffset(millis), length), length);
+    case DAILY:
+      return toLocalDay(millis);
+    case WEEKLY:
+      // The epoch is a thursday, the fifth day of the week starting on sunday
+      return Math.floorDiv(toLocalDay(millis) + Calendar.THURSDAY - firstDayOfWeek, 7);
+    case MONTHLY:
+      return toMonth(toLocalDay(millis));
+    case QUARTERLY:
+      return Math.floorDiv(toMonth(toLocalDay(millis)), 3);
+    case YEARLY:
+      return Math.floorDiv(toMonth(toLocalDay(millis)), 12);
+    default:
+      throw new IllegalArgumentException("Update period illegal: " + period);
+    }
+  }
+
+  /**
+   * @return the instant at which the period with the index begins
+   */
+  long toMillis(UpdatePeriod period, long index) {
+    switch (period) {
+    case SECONDLY:
+    case CONTINUOUS:
+    case MINUTELY:
+    case HOURLY:
+      long length = getLength(period);
+      long begin = index * length;
+      return begin - Math.floorMod(zone.getOffset(begin), length);
+    case DAILY:
+      return toUtc(index * DAY_MILLIS);
+    case WEEKLY:
+      return toUtc((7 * index - Calendar.THURSDAY + firstDayOfWeek) * DAY_MILLIS);
+    case MONTHLY:
+      return toUtc(monthToDay(index) * DAY_MILLIS);
+    case QUARTERLY:
+      return toUtc(monthToDay(3 * index) * DAY_MILLIS);
+    case YEARLY:
+      return toUtc(monthToDay(12 * index) * DAY_MILLIS);
+    default:
+      throw new IllegalArgumentException("Update period illegal: " + period);
+    }
+  }
+
+  /**
+   * @return the instant at which the period containing the instant begins
+   */
+  long truncate(UpdatePeriod period, long millis) {
+    return toMillis(period, toIndex(period, millis));
+  }
+
+  /**
+   * Formats the local time of an instant with the format of the period.
+   *
+   * @return the formatted time, null if the period or the year can't be formatted without a date format
+   */
+  String format(UpdatePeriod period, long millis) {
+    int fields = getFieldCount(period);
+    if (fields == 0) {
+      return null;
+    }
+    long local = toLocal(millis);
+    long civil = toCivil(Math.floorDiv(local, DAY_MILLIS));
+    int year = getYear(civil);
+    if (year < 1 || year > 9999) {
+      return null;
+    }
+    long timeOfDay = Math.floorMod(local, DAY_MILLIS);
+    char[] chars = new char[4 + 3 * (fields - 1)];
+    writeDigits(chars, 0, year, 4);
+    for (int field = 1; field < fields; field++) {
+      int value;
+      switch (field) {
+      case 1:
+        value = getMonth(civil);
+        break;
+      case 2:
+        value = getDayOfMonth(civil);
+        break;
+      case 3:
+        value = (int) (timeOfDay / HOUR_MILLIS);
+        break;
+      case 4:
+        value = (int) (timeOfDay / MINUTE_MILLIS % 60);
+        break;
+      default:
+        value = (int) (timeOfDay / SECOND_MILLIS % 60);
+      }
+      chars[1 + 3 * field] = '-';
+      writeDigits(chars, 2 + 3 * field, value, 2);
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Parses a local time formatted with the format of the period. Fields out of their ranges roll over to the next
+   * fields, as in lenient date formats.
+   *
+   * @return the instant, {@link #UNPARSEABLE} if the string is not made of the digits and separators of the format
+   */
+  long parse(UpdatePeriod period, String dateString) {
+    int fields = getFieldCount(period);
+    if (fields == 0 || dateString.length() != 4 + 3 * (fields - 1)) {
+      return UNPARSEABLE;
+    }
+    int year = readDigits(dateString, 0, 4);
+    if (year < 1) {
+      return UNPARSEABLE;
+    }
+    int month = 1;
+    int day = 1;
+    long timeOfDay = 0;
+    for (int field = 1; field < fields; field++) {
+      if (dateString.charAt(1 + 3 * field) != '-') {
+        return UNPARSEABLE;
+      }
+      int value = readDigits(dateString, 2 + 3 * field, 2);
+      if (value < 0) {
+        return UNPARSEABLE;
+      }
+      switch (field) {
+      case 1:
+        month = value;
+        break;
+      case 2:
+        day = value;
+        break;
+      case 3:
+        timeOfDay += value * HOUR_MILLIS;
+        break;
+      case 4:
+        timeOfDay += value * MINUTE_MILLIS;
+        break;
+      default:
+        timeOfDay += value * SECOND_MILLIS;
+      }
+    }
+    long days = monthToDay(12L * (year - 1970) + month - 1) + day - 1;
+    return toUtc(days * DAY_MILLIS + timeOfDay);
+  }
+
+  long toLocal(long millis) {
+    return millis + zone.getOffset(millis);
+  }
+
+  /**
+   * Converts a local time to an instant, as a lenient calendar set to its fields does.
+   */
+  long toUtc(long local) {
+    long guess = local - rawOffset;
+    int offset = zone.getOffset(guess);
+    if (offset == zone.getOffset(guess - TRANSITION_WINDOW_MILLIS)
+      && offset == zone.getOffset(guess + TRANSITION_WINDOW_MILLIS)) {
+      return local - offset;
+    }
+    // Local times around a transition are skipped or repeated, resolve them as calendars do
+    long civil = toCivil(Math.floorDiv(local, DAY_MILLIS));
+    Calendar calendar = new GregorianCalendar(zone);
+    calendar.clear();
+    calendar.set(getYear(civil), getMonth(civil) - 1, getDayOfMonth(civil));
+    calendar.set(Calendar.MILLISECOND, (int) Math.floorMod(local, DAY_MILLIS));
+    return calendar.getTimeInMillis();
+  }
+
+  private long toLocalDay(long millis) {
+    return Math.floorDiv(toLocal(millis), DAY_MILLIS);
+  }
+
+  private static long getLength(UpdatePeriod period) {
+    switch (period) {
+    case MINUTELY:
+      return MINUTE_MILLIS;
+    case HOURLY:
+      return HOUR_MILLIS;
+    default:
+      return SECOND_MILLIS;
+    }
+  }
+
+  /**
+   * @return number of fields of the format of the period, 0 for the formats not handled
+   */
+  private static int getFieldCount(UpdatePeriod period) {
+    switch (period) {
+    case YEARLY:
+      return 1;
+    case QUARTERLY:
+    case MONTHLY:
+      return 2;
+    case DAILY:
+      return 3;
+    case HOURLY:
+      return 4;
+    case MINUTELY:
+      return 5;
+    case SECONDLY:
+    case CONTINUOUS:
+      return 6;
+    default:
+      return 0;
+    }
+  }
+
+  /**
+   * @return months between january 1970 and the month of the day
+   */
+  static long toMonth(long day) {
+    long civil = toCivil(day);
+    return 12L * (getYear(civil) - 1970) + getMonth(civil) - 1;
+  }
+
+  /**
+   * @return days between the epoch and the first day of the month
+   */
+  static long monthToDay(long month) {
+    return civilToDay(1970 + Math.floorDiv(month, 12), (int) Math.floorMod(month, 12) + 1, 1);
+  }
+
+  /**
+   * @return days between the epoch and the date of the gregorian calendar
+   */
+  static long civilToDay(long year, int month, int dayOfMonth) {
+    long y = month <= 2 ? year - 1 : year;
+    long era = Math.floorDiv(y, 400);
+    long yearOfEra = y - era * 400;
+    long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + dayOfMonth - 1;
+    long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097 + dayOfEra - 719468;
+  }
+
+  /**
+   * @return the date of the gregorian calendar of the day, packed in a long read by {@link #getYear(long)},
+   * {@link #getMonth(long)} and {@link #getDayOfMonth(long)}
+   */
+  static long toCivil(long day) {
+    long shifted = day + 719468;
+    long era = Math.floorDiv(shifted, 146097);
+    long dayOfEra = shifted - era * 146097;
+    long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    long shiftedMonth = (5 * dayOfYear + 2) / 153;
+    long dayOfMonth = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    return (year << 16) | (month << 8) | dayOfMonth;
+  }
+
+  static int getYear(long civil) {
+    return (int) (civil >> 16);
+  }
+
+  static int getMonth(long civil) {
+    return (int) ((civil >> 8) & 0xff);
+  }
+
+  static int getDayOfMonth(long civil) {
+    return (int) (civil & 0xff);
+  }
+
+  private static void writeDigits(char[] chars, int offset, int value, int length) {
+    for (int i = offset + length - 1; i >= offset; i--) {
+      chars[i] = (char) ('0' + value % 10);
+      value /= 10;
+    }
+  }
+
+  /**
+   * @return the number, -1 if the characters are not all digits
+   */
+  private static int readDigits(String string, int offset, int length) {
+    int value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      char c = string.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + c - '0';
+    }
+    return value;
+  }
+}
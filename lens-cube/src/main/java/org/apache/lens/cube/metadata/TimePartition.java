@@ -19,7 +19,6 @@
 package org.apache.lens.cube.metadata;
 
 import java.text.ParseException;
-import java.util.Calendar;
 import java.util.Date;
 
 import org.apache.lens.server.api.error.LensException;
@@ -27,17 +26,27 @@ import org.apache.lens.server.api.error.LensException;
 import lombok.Data;
 import lombok.NonNull;
 
-/** stores a partition's update period, date and string representation. Provides some utility methods around it */
+/**
+ * stores a partition's update period, date and string representation. Provides some utility methods around it.
+ * Partitions also store the index of their period, so that their arithmetic and comparisons are done on longs.
+ */
 @Data
 public class TimePartition implements Comparable<TimePartition>, Named {
   private static final String UPDATE_PERIOD_WRONG_ERROR_MESSAGE = "Update period %s not correct for parsing %s";
   private final UpdatePeriod updatePeriod;
   private final Date date;
   private final String dateString;
+  /** Index of the period of the partition, consecutive partitions have consecutive indexes */
+  private final long index;
 
   private TimePartition(@NonNull UpdatePeriod updatePeriod, @NonNull Date date) {
+    this(updatePeriod, updatePeriod.toIndex(date.getTime()));
+  }
+
+  private TimePartition(UpdatePeriod updatePeriod, long index) {
     this.updatePeriod = updatePeriod;
-    this.date = updatePeriod.truncate(date);
+    this.index = index;
+    this.date = new Date(updatePeriod.toMillis(index));
     this.dateString = updatePeriod.format(this.date);
   }
 
@@ -76,17 +85,14 @@ public class TimePartition implements Comparable<TimePartition>, Named {
     if (o == null) {
       return 1;
     }
+    if (updatePeriod == o.updatePeriod) {
+      return Long.compare(index, o.index);
+    }
     return this.date.compareTo(o.date);
   }
 
   public TimePartition partitionAtDiff(int increment) {
-    Calendar cal = Calendar.getInstance();
-    cal.setTime(date);
-    if (getUpdatePeriod().equals(UpdatePeriod.QUARTERLY)) {
-      increment *= 3;
-    }
-    cal.add(updatePeriod.calendarField(), increment);
-    return new TimePartition(updatePeriod, cal.getTime());
+    return new TimePartition(updatePeriod, index + increment);
   }
 
   public TimePartition previous() {
@@ -98,11 +104,11 @@ public class TimePartition implements Comparable<TimePartition>, Named {
   }
 
   public boolean before(TimePartition when) {
-    return this.date.before(when.date);
+    return compareTo(when) < 0;
   }
 
   public boolean after(TimePartition when) {
-    return this.date.after(when.date);
+    return compareTo(when) > 0;
   }
 
   protected static String getWrongUpdatePeriodMessage(UpdatePeriod up, String dateString) {
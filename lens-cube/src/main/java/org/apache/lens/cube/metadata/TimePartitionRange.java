@@ -65,7 +65,7 @@ public class TimePartitionRange implements Iterable<TimePartition>, Named {
 
       @Override
       public boolean hasNext() {
-        return current.before(end);
+        return current.getIndex() < end.getIndex();
       }
 
       @Override
@@ -87,6 +87,9 @@ public class TimePartitionRange implements Iterable<TimePartition>, Named {
    * @return begin &lt;= partition &lt; end
    */
   public boolean contains(TimePartition partition) {
+    if (partition.getUpdatePeriod() == begin.getUpdatePeriod()) {
+      return partition.getIndex() >= begin.getIndex() && partition.getIndex() < end.getIndex();
+    }
     return !partition.before(begin) && partition.before(end);
   }
 
@@ -129,7 +132,7 @@ public class TimePartitionRange implements Iterable<TimePartition>, Named {
   }
 
   public long size() {
-    return DateUtil.getTimeDiff(begin.getDate(), end.getDate(), begin.getUpdatePeriod());
+    return end.getIndex() - begin.getIndex();
   }
 
   public boolean isValidAndNonEmpty() {
@@ -196,6 +196,9 @@ public class TimeRange {
     }
 
     public class Iterator implements java.util.Iterator<Date> {
+      // Index of the period of the next date, when iterating from the beginning of a period
+      long nextIndex;
+      // Used instead of the index when iterating from within a period
       Calendar calendar;
       // Tracks the index of the item returned after the last next() call.
       // Index here refers to the index if the iterator were iterated and converted into a list.
@@ -203,8 +206,13 @@ public class TimeRange {
       int counter = -1;
 
       public Iterator() {
-        calendar = Calendar.getInstance();
-        calendar.setTime(fromDate);
+        long fromIndex = updatePeriod.toIndex(fromDate.getTime());
+        if (updatePeriod.toMillis(fromIndex) == fromDate.getTime()) {
+          nextIndex = fromIndex;
+        } else {
+          calendar = Calendar.getInstance();
+          calendar.setTime(fromDate);
+        }
       }
 
       @Override
@@ -214,14 +222,18 @@ public class TimeRange {
 
       @Override
       public Date next() {
-        Date cur = calendar.getTime();
-        updatePeriod.increment(calendar, increment);
+        Date cur = peekNext();
+        if (calendar == null) {
+          nextIndex += increment;
+        } else {
+          updatePeriod.increment(calendar, increment);
+        }
         counter++;
         return cur;
       }
 
       public Date peekNext() {
-        return calendar.getTime();
+        return calendar == null ? new Date(updatePeriod.toMillis(nextIndex)) : calendar.getTime();
       }
 
       @Override
@@ -27,17 +27,10 @@ import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.lens.cube.error.LensCubeErrorCode;
 import org.apache.lens.server.api.error.LensException;
 
-import org.apache.commons.lang3.time.DateUtils;
-
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import lombok.Getter;
 
 public enum UpdatePeriod implements Named {
@@ -220,35 +213,36 @@ public enum UpdatePeriod implements Named {
     }
   }
 
-  Cache<Date, String> dateToStringCache = CacheBuilder.newBuilder()
-    .expireAfterWrite(2, TimeUnit.HOURS).maximumSize(100).build();
-  Cache<String, Date> stringToDateCache = CacheBuilder.newBuilder()
-    .expireAfterWrite(2, TimeUnit.HOURS).maximumSize(100).build();
-
+  /**
+   * Formats the date in the format of this update period. Dates are formatted with epoch arithmetic, except for weekly
+   * dates, whose week years depend on the locale.
+   */
   public String format(final Date date) {
-    try {
-      return dateToStringCache.get(date, new Callable<String>() {
-        @Override
-        public String call() {
-          return format().format(date);
-        }
-      });
-    } catch (ExecutionException e) {
-      return format().format(date);
-    }
+    String formatted = PeriodIndexer.getDefault().format(this, date.getTime());
+    return formatted != null ? formatted : format().format(date);
   }
 
+  /**
+   * Parses a date in the format of this update period, leniently as the date format of the update period does.
+   */
   public Date parse(final String dateString) throws ParseException {
-    try {
-      return stringToDateCache.get(dateString, new Callable<Date>() {
-        @Override
-        public Date call() throws Exception {
-          return format().parse(dateString);
-        }
-      });
-    } catch (ExecutionException e) {
-      return format().parse(dateString);
-    }
+    long millis = PeriodIndexer.getDefault().parse(this, dateString);
+    return millis != PeriodIndexer.UNPARSEABLE ? new Date(millis) : format().parse(dateString);
+  }
+
+  /**
+   * @return index of the period of this update period containing the instant. Consecutive periods have consecutive
+   * indexes.
+   */
+  long toIndex(long millis) {
+    return PeriodIndexer.getDefault().toIndex(this, millis);
+  }
+
+  /**
+   * @return the instant at which the period of this update period with the index begins
+   */
+  long toMillis(long index) {
+    return PeriodIndexer.getDefault().toMillis(this, index);
   }
 
   public String formatStr() {
@@ -269,20 +263,7 @@ public enum UpdatePeriod implements Named {
   }
 
   public Date truncate(Date date) {
-    switch (this) {
-    case WEEKLY:
-      Date truncDate = DateUtils.truncate(date, Calendar.DAY_OF_MONTH);
-      Calendar cal = Calendar.getInstance();
-      cal.setTime(truncDate);
-      cal.set(Calendar.DAY_OF_WEEK, cal.getFirstDayOfWeek());
-      return cal.getTime();
-    case QUARTERLY:
-      Date dt = DateUtils.truncate(date, this.calendarField());
-      dt.setMonth(dt.getMonth() - (dt.getMonth() % 3));
-      return dt;
-    default:
-      return DateUtils.truncate(date, this.calendarField());
-    }
+    return new Date(PeriodIndexer.getDefault().truncate(this, date.getTime()));
   }
 
   public Calendar truncate(Calendar calendar) {
@@ -23,7 +23,6 @@ import java.util.*;
 
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.cube.metadata.TimePartition;
-import org.apache.lens.cube.metadata.TimeRange;
 import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.server.api.error.LensException;
 
@@ -139,19 +138,19 @@ public class EndsAndHolesPartitionTimeline extends PartitionTimeline {
   }
 
   private void addHolesBetween(TimePartition begin, TimePartition end, UpdatePeriod updatePeriod) throws LensException {
-    for (Date date : TimeRange.iterable(begin.next().getDate(), end.getDate(), updatePeriod, 1)) {
-      addHole(TimePartition.of(updatePeriod, date));
+    for (TimePartition hole : begin.next().rangeUpto(end)) {
+      addHole(hole);
     }
   }
 
   private TimePartition getNextPartition(TimePartition begin, TimePartition end, int increment) throws LensException {
-    for (Date date : TimeRange.iterable(begin.partitionAtDiff(increment).getDate(),
-      end.partitionAtDiff(increment).getDate(), begin.getUpdatePeriod(), increment)) {
-      TimePartition value = TimePartition.of(begin.getUpdatePeriod(), date);
-      if (!holes.contains(value)) {
+    // partitions from begin(excluding) to end(including), in the direction of increment
+    long count = (end.getIndex() - begin.getIndex()) / increment;
+    TimePartition value = begin;
+    for (long i = 0; i < count; i++) {
+      value = value.partitionAtDiff(increment);
+      if (!holes.remove(value)) {
         return value;
-      } else {
-        holes.remove(value);
       }
     }
     return null;
@@ -240,47 +240,34 @@ public final class CandidateUtil {
     }
   }
 
-  private static final String BASE_QUERY_FORMAT = "SELECT %s FROM %s";
-
+  /**
+   * Builds a query from its clauses, appending the clauses to one builder sized for all of them.
+   */
   public static String buildHQLString(String select, String from, String where,
       String groupby, String orderby, String having, Integer limit) {
-    List<String> qstrs = new ArrayList<String>();
-    qstrs.add(select);
-    qstrs.add(from);
+    StringBuilder query = new StringBuilder(32 + length(select) + length(from) + length(where) + length(groupby)
+      + length(orderby) + length(having));
+    query.append("SELECT ").append(select).append(" FROM ").append(from);
     if (!StringUtils.isBlank(where)) {
-      qstrs.add(where);
+      query.append(" WHERE ").append(where);
     }
     if (!StringUtils.isBlank(groupby)) {
-      qstrs.add(groupby);
+      query.append(" GROUP BY ").append(groupby);
     }
     if (!StringUtils.isBlank(having)) {
-      qstrs.add(having);
+      query.append(" HAVING ").append(having);
     }
     if (!StringUtils.isBlank(orderby)) {
-      qstrs.add(orderby);
+      query.append(" ORDER BY ").append(orderby);
     }
     if (limit != null) {
-      qstrs.add(String.valueOf(limit));
+      query.append(" LIMIT ").append(limit);
     }
+    return query.toString();
+  }
 
-    StringBuilder queryFormat = new StringBuilder();
-    queryFormat.append(BASE_QUERY_FORMAT);
-    if (!StringUtils.isBlank(where)) {
-      queryFormat.append(" WHERE %s");
-    }
-    if (!StringUtils.isBlank(groupby)) {
-      queryFormat.append(" GROUP BY %s");
-    }
-    if (!StringUtils.isBlank(having)) {
-      queryFormat.append(" HAVING %s");
-    }
-    if (!StringUtils.isBlank(orderby)) {
-      queryFormat.append(" ORDER BY %s");
-    }
-    if (limit != null) {
-      queryFormat.append(" LIMIT %s");
-    }
-    return String.format(queryFormat.toString(), qstrs.toArray(new String[qstrs.size()]));
+  private static int length(String clause) {
+    return clause == null ? 0 : clause.length();
   }
 
   /**
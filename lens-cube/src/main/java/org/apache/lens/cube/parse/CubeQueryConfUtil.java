@@ -125,4 +125,6 @@ public final class CubeQueryConfUtil {
   public static final boolean DEFAULT_REWRITE_DIM_FILTER_TO_FACT_FILTER = false;
   public static final String COMPLETENESS_THRESHOLD = "lens.cube.query.completeness.threshold";
   public static final float DEFAULT_COMPLETENESS_THRESHOLD = 100f;
+  public static final String ENABLE_REWRITE_PHASE_PROFILING = "lens.cube.query.rewrite.phase.profiling.enabled";
+  public static final boolean DEFAULT_ENABLE_REWRITE_PHASE_PROFILING = false;
 }
@@ -188,6 +188,9 @@ public class CubeQueryContext extends TracksQueriedColumns implements QueryAST,
   private String fromString;
   @Getter
   private TimeRangeWriter rangeWriter = null;
+  /** Profiler of the phases of the rewrite, null if profiling is not enabled */
+  @Getter
+  private final RewritePhaseProfiler phaseProfiler;
   public CubeQueryContext(ASTNode ast, QB qb, Configuration queryConf, HiveConf metastoreConf)
     throws LensException {
     this.ast = ast;
@@ -219,6 +222,8 @@ public class CubeQueryContext extends TracksQueriedColumns implements QueryAST,
 
     this.rangeWriter = ReflectionUtils.newInstance(conf.getClass(CubeQueryConfUtil.TIME_RANGE_WRITER_CLASS,
       CubeQueryConfUtil.DEFAULT_TIME_RANGE_WRITER, TimeRangeWriter.class), conf);
+    this.phaseProfiler = conf.getBoolean(ENABLE_REWRITE_PHASE_PROFILING, DEFAULT_ENABLE_REWRITE_PHASE_PROFILING)
+      ? new RewritePhaseProfiler() : null;
   }
 
   boolean hasCubeInQuery() {
@@ -244,8 +244,15 @@ public class CubeQueryRewriter {
        */
       MethodMetricsContext mgauge = MethodMetricsFactory.createMethodGauge(ctx.getConf(), true,
         rewriter.getClass().getCanonicalName() + ITER_STR + i);
+      RewritePhaseProfiler profiler = ctx.getPhaseProfiler();
+      if (profiler != null) {
+        profiler.startPhase();
+      }
 
       rewriter.rewriteContext(ctx);
+      if (profiler != null) {
+        profiler.endPhase(rewriter.getClass().getSimpleName());
+      }
       mgauge.markSuccess();
       i++;
     }
@@ -58,6 +58,9 @@ public final class HQLParser {
 
   public static final Pattern P_WSPACE = Pattern.compile("\\s+");
 
+  /** Initial capacity of the builders of infix strings, which fits most expressions without growing */
+  private static final int INFIX_STRING_CAPACITY = 256;
+
   public static boolean isTableColumnAST(ASTNode astNode) {
     return !(astNode == null || astNode.getChildren() == null || astNode.getChildCount() != 2) && astNode.getChild(0)
       .getType() == HiveParser.TOK_TABLE_OR_COL && astNode.getChild(1).getType() == HiveParser.Identifier;
@@ -587,8 +590,39 @@ public final class HQLParser {
 
   // Get string representation of a function node in query AST
   private static void functionString(ASTNode root, StringBuilder buf, AppendMode appendMode) {
+    // find the keywords among the children in one pass, instead of looking for each of them in turn
+    boolean hasCase = false;
+    boolean hasWhen = false;
+    boolean hasIsNull = false;
+    boolean hasIsNotNull = false;
+    boolean hasIn = false;
+    boolean hasCast = false;
+    for (int i = 0; i < root.getChildCount(); i++) {
+      switch (root.getChild(i).getType()) {
+      case KW_CASE:
+        hasCase = true;
+        break;
+      case KW_WHEN:
+        hasWhen = true;
+        break;
+      case TOK_ISNULL:
+        hasIsNull = true;
+        break;
+      case TOK_ISNOTNULL:
+        hasIsNotNull = true;
+        break;
+      case KW_IN:
+        hasIn = true;
+        break;
+      case KW_CAST:
+        hasCast = true;
+        break;
+      default:
+        break;
+      }
+    }
     // special handling for CASE udf
-    if (findNodeByPath(root, KW_CASE) != null) {
+    if (hasCase) {
       buf.append("case ");
       toInfixString((ASTNode) root.getChild(1), buf, appendMode);
       // each of the conditions
@@ -612,7 +646,7 @@ public final class HQLParser {
 
       buf.append(" end");
 
-    } else if (findNodeByPath(root, KW_WHEN) != null) {
+    } else if (hasWhen) {
       // 2nd form of case statement
 
       buf.append("case ");
@@ -637,12 +671,12 @@ public final class HQLParser {
 
       buf.append(" end");
 
-    } else if (findNodeByPath(root, TOK_ISNULL) != null) {
+    } else if (hasIsNull) {
       // IS NULL operator
       toInfixString((ASTNode) root.getChild(1), buf, appendMode);
       buf.append(" is null");
 
-    } else if (findNodeByPath(root, TOK_ISNOTNULL) != null) {
+    } else if (hasIsNotNull) {
       // IS NOT NULL operator
       toInfixString((ASTNode) root.getChild(1), buf, appendMode);
       buf.append(" is not null");
@@ -668,7 +702,7 @@ public final class HQLParser {
         toInfixString((ASTNode) root.getChild(4), buf, appendMode);
       }
 
-    } else if (findNodeByPath(root, KW_IN) != null) {
+    } else if (hasIn) {
       // IN operator
 
       toInfixString((ASTNode) root.getChild(1), buf, appendMode);
@@ -689,7 +723,7 @@ public final class HQLParser {
       }
 
       buf.append(")");
-    } else if (findNodeByPath(root, KW_CAST) != null) {
+    } else if (hasCast) {
       buf.append("cast");
       toInfixString((ASTNode) root.getChild(1), buf, appendMode);
       buf.append(" as ");
@@ -728,17 +762,46 @@ public final class HQLParser {
   }
 
   public static String getString(ASTNode tree, AppendMode appendMode) {
-    StringBuilder buf = new StringBuilder();
+    StringBuilder buf = new StringBuilder(INFIX_STRING_CAPACITY);
     toInfixString(tree, buf, appendMode);
-    return buf.toString().trim().replaceAll("\\s+", " ");
+    return collapseWhitespace(buf);
   }
 
   public static String getString(ASTNode tree) {
-    StringBuilder buf = new StringBuilder();
+    StringBuilder buf = new StringBuilder(INFIX_STRING_CAPACITY);
     toInfixString(tree, buf);
     return buf.toString().trim();
   }
 
+  /**
+   * Trims a string, and replaces each run of white spaces in it by a single space, in one pass.
+   */
+  static String collapseWhitespace(CharSequence chars) {
+    int start = 0;
+    int end = chars.length();
+    while (start < end && chars.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && chars.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    StringBuilder collapsed = new StringBuilder(end - start);
+    boolean inWhitespace = false;
+    for (int i = start; i < end; i++) {
+      char c = chars.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\013' || c == '\f' || c == '\r') {
+        if (!inWhitespace) {
+          collapsed.append(' ');
+          inWhitespace = true;
+        }
+      } else {
+        collapsed.append(c);
+        inWhitespace = false;
+      }
+    }
+    return collapsed.toString();
+  }
+
   public static String getColName(ASTNode node) {
     String colname;
     int nodeType = node.getType();
@@ -907,11 +970,17 @@ public final class HQLParser {
     }
     return node;
   }
+  /**
+   * AST which can be used as a key of hash maps. Two ASTs are equal if their strings are equal ignoring case. The
+   * string and the hash code of the AST are computed once, so the AST must not be modified while it is a key.
+   */
   @Data
   public static class HashableASTNode {
     private ASTNode ast;
     private int hashCode = -1;
     private boolean hashCodeComputed = false;
+    /** String of the AST, computed with the hash code */
+    private String infixString;
 
     public HashableASTNode(ASTNode ast) {
       this.ast = ast;
@@ -926,19 +995,25 @@ public final class HQLParser {
       return ast;
     }
 
-    @Override
-    public int hashCode() {
+    private String getASTString() {
       if (!hashCodeComputed) {
-        hashCode = getString(ast).hashCode();
+        infixString = getString(ast);
+        hashCode = infixString.hashCode();
         hashCodeComputed = true;
       }
+      return infixString;
+    }
+
+    @Override
+    public int hashCode() {
+      getASTString();
       return hashCode;
     }
 
     @Override
     public boolean equals(Object o) {
-      return o instanceof HashableASTNode && this.hashCode() == o.hashCode() && getString(this.getAST())
-        .trim().equalsIgnoreCase(getString(((HashableASTNode) o).getAST()).trim());
+      return o instanceof HashableASTNode && this.hashCode() == o.hashCode()
+        && getASTString().equalsIgnoreCase(((HashableASTNode) o).getASTString());
     }
   }
 
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.parse;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lens.api.query.RewritePhase;
+
+/**
+ * Measures the time taken, and the memory allocated, by each phase of the rewrite of a cube query. A query is
+ * rewritten by one thread, so the profiler is not thread safe.
+ * <p>
+ * Allocations are measured with the allocation counters of threads, when the JVM supports them.
+ */
+public class RewritePhaseProfiler {
+
+  private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = getAllocationBean();
+
+  private final List<RewritePhase> phases = new ArrayList<>();
+  private long phaseStartNanos;
+  private long phaseStartBytes;
+
+  private static com.sun.management.ThreadMXBean getAllocationBean() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+      if (allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled()) {
+        return allocationBean;
+      }
+    }
+    return null;
+  }
+
+  private static long getAllocatedBytes() {
+    return ALLOCATION_BEAN == null ? -1 : ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /**
+   * Starts measuring a phase.
+   */
+  public void startPhase() {
+    phaseStartBytes = getAllocatedBytes();
+    phaseStartNanos = System.nanoTime();
+  }
+
+  /**
+   * Ends measuring the phase last started.
+   *
+   * @param name the name of the phase
+   */
+  public void endPhase(String name) {
+    long durationNanos = System.nanoTime() - phaseStartNanos;
+    long allocatedBytes = phaseStartBytes < 0 ? -1 : getAllocatedBytes() - phaseStartBytes;
+    phases.add(new RewritePhase(name, phases.size(), durationNanos, allocatedBytes));
+  }
+
+  /**
+   * @return the phases measured, in the order they were run
+   */
+  public List<RewritePhase> getPhases() {
+    return Collections.unmodifiableList(phases);
+  }
+}
@@ -26,13 +26,14 @@ import static org.apache.hadoop.hive.ql.parse.HiveParser.*;
 import java.util.*;
 
 import org.apache.lens.cube.metadata.Dimension;
+import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.cube.metadata.MetastoreUtil;
 import org.apache.lens.server.api.error.LensException;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.hive.ql.lib.Node;
 import org.apache.hadoop.hive.ql.parse.ASTNode;
 import org.apache.hadoop.hive.ql.parse.HiveParser;
-import org.apache.hadoop.util.StringUtils;
 
 import org.antlr.runtime.CommonToken;
 
@@ -53,6 +54,7 @@ public class UnionQueryWriter {
   private CubeQueryContext cubeql;
   Collection<StorageCandidate> storageCandidates;
   public static final String DEFAULT_MEASURE = "0.0";
+  private static final String UNION_ALL = " UNION ALL ";
 
   public UnionQueryWriter(Collection<StorageCandidate> storageCandidates, CubeQueryContext cubeql) {
     if (storageCandidates == null || storageCandidates.size()<=1) {
@@ -137,11 +139,12 @@ public class UnionQueryWriter {
   private ASTNode updateOuterHavingAST(ASTNode node) {
     if (node.getToken().getType() == HiveParser.TOK_FUNCTION
         && (HQLParser.isAggregateAST(node))) {
-      if (innerToOuterSelectASTs.containsKey(new HQLParser.HashableASTNode(node))
-          || innerToOuterHavingASTs.containsKey(new HQLParser.HashableASTNode(node))) {
-        ASTNode expr = innerToOuterSelectASTs.containsKey(new HQLParser.HashableASTNode(node))
-            ? innerToOuterSelectASTs.get(new HQLParser.HashableASTNode(node))
-            : innerToOuterHavingASTs.get(new HQLParser.HashableASTNode(node));
+      HQLParser.HashableASTNode key = new HQLParser.HashableASTNode(node);
+      ASTNode expr = innerToOuterSelectASTs.get(key);
+      if (expr == null) {
+        expr = innerToOuterHavingASTs.get(key);
+      }
+      if (expr != null) {
         if (node.getChildCount() > 1) {
           node.replaceChildren(1, 1, expr.getChild(1));
         } else {
@@ -216,7 +219,7 @@ public class UnionQueryWriter {
     throws LensException {
     ASTNode node = getSelectExprAST();
     if (nodeWithoutAlias == null && isDefault) {
-      node.addChild(HQLParser.parseExpr(DEFAULT_MEASURE));
+      node.addChild(getDefaultMeasureAST());
       node.addChild(aliasNode);
     } else {
       node.addChild(nodeWithoutAlias);
@@ -226,15 +229,39 @@ public class UnionQueryWriter {
   }
 
 
+  /**
+   * Builds the default measure as a number node, which prints as {@link #DEFAULT_MEASURE} just like the parsed
+   * expression.
+   *
+   * @return
+   */
+  static ASTNode getDefaultMeasureAST() {
+    return new ASTNode(new CommonToken(HiveParser.Number, DEFAULT_MEASURE));
+  }
+
   private ASTNode getSelectExprAST() {
     return new ASTNode(new CommonToken(HiveParser.TOK_SELEXPR, "TOK_SELEXPR"));
   }
 
+  /**
+   * Checks if an expression is the default measure, without printing it. The default measure is projected either as
+   * is, or wrapped in a select expression without alias.
+   *
+   * @param node
+   * @return
+   */
+  private static boolean isDefaultMeasure(ASTNode node) {
+    if (node.getType() == HiveParser.TOK_SELEXPR && node.getChildCount() == 1) {
+      return isDefaultMeasure((ASTNode) node.getChild(0));
+    }
+    return node.getType() == HiveParser.Number && node.getChildCount() == 0 && DEFAULT_MEASURE.equals(node.getText());
+  }
+
 
   /**
    * Get the aggregate node for the SelectPhrase index. A given measure might not be answerable
    * for a StorageCanddate. In that case get the non default aggregate node wcich ideally not "0.0",
-   * from otherStorage candidate.
+   * from otherStorage candidate. The node is not copied.
    *
    * @param position
    * @return
@@ -244,10 +271,10 @@ public class UnionQueryWriter {
     for (StorageCandidate sc : storageCandidates) {
       node = (ASTNode) sc.getQueryAst().getSelectAST().getChild(position).getChild(0);
       if (HQLParser.isAggregateAST(node) || HQLParser.hasAggregate(node)) {
-        return MetastoreUtil.copyAST(node);
+        return node;
       }
     }
-    return MetastoreUtil.copyAST(node);
+    return node;
   }
 
   /**
@@ -294,7 +321,7 @@ public class UnionQueryWriter {
 
   private boolean isNodeDefault(ASTNode node) {
     if (HQLParser.isAggregateAST((ASTNode) node.getChild(0))) {
-      if (HQLParser.getString((ASTNode) node.getChild(0).getChild(1)).equals(DEFAULT_MEASURE)) {
+      if (isDefaultMeasure((ASTNode) node.getChild(0).getChild(1))) {
         return true;
       }
     }
@@ -401,6 +428,8 @@ public class UnionQueryWriter {
     for (int i = 0; i < cubeql.getSelectPhrases().size(); i++) {
       SelectPhraseContext phrase = cubeql.getSelectPhrases().get(i);
       ASTNode aliasNode = new ASTNode(new CommonToken(Identifier, phrase.getSelectAlias()));
+      // expression projected by the StorageCandidates not answering the phrase, looked up once for all of them
+      ASTNode aggregateNode = null;
 
       // Select phrase is dimension
       if (!phrase.hasMeasures(cubeql)) {
@@ -418,7 +447,10 @@ public class UnionQueryWriter {
             storageCandidateToSelectAstMap.get(sc.toString()).
                 addChild(getSelectExpr(exprWithOutAlias, aliasNode, false));
           } else {
-            ASTNode resolvedExprNode = getAggregateNodesExpression(i);
+            if (aggregateNode == null) {
+              aggregateNode = getAggregateNodesExpression(i);
+            }
+            ASTNode resolvedExprNode = MetastoreUtil.copyAST(aggregateNode);
             if (isAggregateFunctionUsedInAST(resolvedExprNode)) {
               setDefaultValueInExprForAggregateNodes(resolvedExprNode, sc);
             } else {
@@ -438,7 +470,10 @@ public class UnionQueryWriter {
             storageCandidateToSelectAstMap.get(sc.toString()).
                 addChild(getSelectExpr(exprWithOutAlias, aliasNode, false));
           } else {
-            ASTNode resolvedExprNode = getAggregateNodesExpression(i);
+            if (aggregateNode == null) {
+              aggregateNode = getAggregateNodesExpression(i);
+            }
+            ASTNode resolvedExprNode = MetastoreUtil.copyAST(aggregateNode);
             if (isAggregateFunctionUsedInAST(resolvedExprNode)) {
               setDefaultValueInExprForAggregateNodes(resolvedExprNode, sc);
             } else {
@@ -508,7 +543,7 @@ public class UnionQueryWriter {
       if (outerSelectAst.getChildCount() <= selectAST.getChildCount()) {
         if (outerSelectAst.getChild(i) == null) {
           outerSelectAst.addChild(outerSelect);
-        } else if (HQLParser.getString((ASTNode) outerSelectAst.getChild(i).getChild(0)).equals(DEFAULT_MEASURE)) {
+        } else if (isDefaultMeasure((ASTNode) outerSelectAst.getChild(i).getChild(0))) {
           outerSelectAst.replaceChildren(i, i, outerSelect);
         }
       }
@@ -627,8 +662,9 @@ public class UnionQueryWriter {
     // iterate over all children of the ast and get outer ast corresponding to it.
     for (Node child : astNode.getChildren()) {
       // Columns in group by should have been projected as they are dimension columns
-      if (innerToOuterSelectASTs.containsKey(new HQLParser.HashableASTNode((ASTNode) child))) {
-        outerExpression.addChild(innerToOuterSelectASTs.get(new HQLParser.HashableASTNode((ASTNode) child)));
+      ASTNode outerAST = innerToOuterSelectASTs.get(new HQLParser.HashableASTNode((ASTNode) child));
+      if (outerAST != null) {
+        outerExpression.addChild(outerAST);
       }
     }
     return outerExpression;
@@ -696,20 +732,122 @@ public class UnionQueryWriter {
    * Gets from string of the ouer query, this is a union query of all
    * StorageCandidates participated.
    *
+   * StorageCandidates reading the same storage table with the same projections and joins, and disjoint partitions,
+   * are collapsed into one sub query reading the partitions of all of them, unless they have a having clause, an
+   * order by or a limit.
+   *
    * @return
    * @throws LensException
    */
   private String getFromString(Map<StorageCandidate, Set<Dimension>> factDimMap) throws LensException {
-    StringBuilder from = new StringBuilder();
-    List<String> hqlQueries = new ArrayList<>();
+    Map<String, Integer> candidatesPerTable = new HashMap<>();
+    for (StorageCandidate sc : storageCandidates) {
+      Integer count = candidatesPerTable.get(sc.getResolvedName());
+      candidatesPerTable.put(sc.getResolvedName(), count == null ? 1 : count + 1);
+    }
+    List<SubQuery> subQueries = new ArrayList<>();
+    int length = 0;
     for (StorageCandidate sc : storageCandidates) {
       removeAggreagateFromDefaultColumns(sc.getQueryAst().getSelectAST());
       Set<Dimension> queriedDims = factDimMap.get(sc);
-      hqlQueries.add(sc.toHQL(queriedDims));
+      String hql = sc.toHQL(queriedDims);
+      length += hql.length();
+      if (candidatesPerTable.get(sc.getResolvedName()) == 1 || !collapse(subQueries, sc)) {
+        subQueries.add(new SubQuery(sc, hql));
+      }
+    }
+    StringBuilder from = new StringBuilder(length + UNION_ALL.length() * subQueries.size() + 32);
+    from.append(" ( ");
+    for (int i = 0; i < subQueries.size(); i++) {
+      if (i > 0) {
+        from.append(UNION_ALL);
+      }
+      from.append(subQueries.get(i).toHQL());
+    }
+    return from.append(" ) as ").append(cubeql.getBaseCube()).toString();
+  }
+
+  /**
+   * Collapses a StorageCandidate into an earlier sub query reading the same storage table, if possible.
+   *
+   * @param subQueries
+   * @param sc
+   * @return whether the StorageCandidate was collapsed
+   */
+  private boolean collapse(List<SubQuery> subQueries, StorageCandidate sc) {
+    if (StringUtils.isBlank(sc.getWhereString())) {
+      return false;
+    }
+    for (SubQuery subQuery : subQueries) {
+      if (subQuery.canCollapse(sc)) {
+        subQuery.collapse(sc);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Sub query of the union, reading one storage table for one or more StorageCandidates.
+   */
+  static class SubQuery {
+    private final StorageCandidate first;
+    private final String hql;
+    private String selectString;
+    private String groupByString;
+    private final Set<FactPartition> partitions = new HashSet<>();
+    private final List<String> whereStrings = new ArrayList<>();
+
+    SubQuery(StorageCandidate first, String hql) {
+      this.first = first;
+      this.hql = hql;
+    }
+
+    boolean canCollapse(StorageCandidate sc) {
+      if (!first.getResolvedName().equals(sc.getResolvedName()) || StringUtils.isBlank(first.getWhereString())
+        || !first.getFromString().equals(sc.getFromString())) {
+        return false;
+      }
+      // The merged sub query has no having clause, order by or limit, which apply to each candidate on its own
+      if (hasClausesAfterGroupBy(first) || hasClausesAfterGroupBy(sc)) {
+        return false;
+      }
+      if (whereStrings.isEmpty()) {
+        selectString = first.getQueryAst().getSelectString();
+        groupByString = first.getQueryAst().getGroupByString();
+        partitions.addAll(first.getParticipatingPartitions());
+        whereStrings.add(first.getWhereString());
+      }
+      return selectString.equals(sc.getQueryAst().getSelectString())
+        && Objects.equals(groupByString, sc.getQueryAst().getGroupByString())
+        && Collections.disjoint(partitions, sc.getParticipatingPartitions());
+    }
+
+    private static boolean hasClausesAfterGroupBy(StorageCandidate sc) {
+      QueryAST queryAst = sc.getQueryAst();
+      return StringUtils.isNotBlank(queryAst.getHavingString()) || StringUtils.isNotBlank(queryAst.getOrderByString())
+        || queryAst.getLimitValue() != null;
+    }
+
+    void collapse(StorageCandidate sc) {
+      partitions.addAll(sc.getParticipatingPartitions());
+      whereStrings.add(sc.getWhereString());
+    }
+
+    String toHQL() {
+      if (whereStrings.size() <= 1) {
+        return hql;
+      }
+      StringBuilder where = new StringBuilder();
+      for (String whereString : whereStrings) {
+        if (where.length() > 0) {
+          where.append(" OR ");
+        }
+        where.append("(").append(whereString).append(")");
+      }
+      return CandidateUtil.buildHQLString(selectString, first.getFromString(), where.toString(), groupByString,
+        null, null, null);
     }
-    return from.append(" ( ")
-        .append(StringUtils.join(" UNION ALL ", hqlQueries))
-        .append(" ) as " + cubeql.getBaseCube()).toString();
   }
 
   private void removeAggreagateFromDefaultColumns(ASTNode node) throws LensException {
@@ -719,7 +857,7 @@ public class UnionQueryWriter {
         ASTNode column = (ASTNode) selectExpr.getChild(0);
         if (HQLParser.isAggregateAST(column)
             && column.getChildCount() == 2) {
-          if (HQLParser.getString((ASTNode) column.getChild(1)).equals("0.0")) {
+          if (isDefaultMeasure((ASTNode) column.getChild(1))) {
             selectExpr.getParent().setChild(i, getSelectExpr(null, (ASTNode) selectExpr.getChild(1), true));
           }
         }
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.query.cost;
+
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.cost.QueryFeatures;
+
+/**
+ * Calculates the cost of a query through fact partitions, like {@link FactPartitionBasedQueryCostCalculator}, and
+ * adds the execution time predicted by the {@link ExecutionTimeModel} trained on the finished queries of the server.
+ * The cost has no estimated execution time while the model has not been trained for the driver.
+ */
+public class ExecutionTimeQueryCostCalculator extends FactPartitionBasedQueryCostCalculator {
+
+  private final ExecutionTimeModel model;
+
+  public ExecutionTimeQueryCostCalculator() {
+    this(ExecutionTimeModel.getStaticModel());
+  }
+
+  ExecutionTimeQueryCostCalculator(ExecutionTimeModel model) {
+    this.model = model;
+  }
+
+  @Override
+  public QueryCost calculateCost(final AbstractQueryContext queryContext, LensDriver driver) throws LensException {
+    QueryCost cost = super.calculateCost(queryContext, driver);
+    if (cost == null) {
+      return null;
+    }
+    Long execTime = model.predict(QueryFeatures.fromDriverQuery(driver.getFullyQualifiedName(),
+      queryContext.getDriverQuery(driver), QueryFeatures.countPartitions(queryContext.getDriverRewriterPlan(driver))));
+    return execTime == null ? cost : new FactPartitionBasedQueryCost(cost.getEstimatedResourceUsage(), execTime);
+  }
+}
@@ -47,6 +47,9 @@ public final class RewriterPlan extends DriverQueryPlan {
   void extractPlan(Collection<CubeQueryContext> cubeQueries) {
 
     for (CubeQueryContext ctx : cubeQueries) {
+      if (ctx.getPhaseProfiler() != null) {
+        rewritePhases.addAll(ctx.getPhaseProfiler().getPhases());
+      }
       if (ctx.getPickedDimTables() != null && !ctx.getPickedDimTables().isEmpty()) {
         for (CandidateDim dim : ctx.getPickedDimTables()) {
           addTablesQueried(dim.getStorageTable());
@@ -2891,4 +2891,71 @@ public class TestCubeMetastoreClient {
     conf.setBoolean(MetastoreConstants.METASTORE_ENABLE_CACHING, true);
     client = CubeMetastoreClient.getInstance(conf);
   }
+
+  @Test(priority = 4)
+  public void testBulkFetchAndIndexes() throws Exception {
+    String dbName = TestCubeMetastoreClient.class.getSimpleName() + "Bulk";
+    Database database = new Database();
+    database.setName(dbName);
+    Hive.get(conf).createDatabase(database);
+    String currentDb = SessionState.get().getCurrentDatabase();
+    SessionState.get().setCurrentDatabase(dbName);
+    try {
+      HiveConf bulkConf = new HiveConf(conf);
+      bulkConf.setInt(MetastoreConstants.METASTORE_BULK_FETCH_BATCH_SIZE, 2);
+      bulkConf.setInt(MetastoreConstants.METASTORE_BULK_FETCH_PARALLELISM, 3);
+      CubeMetastoreClient bulkClient = CubeMetastoreClient.getInstance(bulkConf);
+      bulkClient.createCube("bulkcube1", cubeMeasures, cubeDimensions);
+      bulkClient.createCube("bulkcube2", cubeMeasures, cubeDimensions);
+      bulkClient.createDimension(zipDim);
+      List<FieldSchema> columns = Lists.newArrayList(new FieldSchema("zipcode", "int", "code"));
+      for (int i = 1; i <= 3; i++) {
+        bulkClient.createCubeFactTable("bulkcube1", "bulkfact1" + i, columns,
+          new HashMap<String, Set<UpdatePeriod>>(), 0L, new HashMap<String, String>(), null);
+        bulkClient.createCubeDimensionTable(zipDim.getName(), "bulkziptable" + i, columns, 0L,
+          new HashSet<String>(), new HashMap<String, String>(), null);
+      }
+      bulkClient.createCubeFactTable("bulkcube2", "bulkfact21", columns,
+        new HashMap<String, Set<UpdatePeriod>>(), 0L, new HashMap<String, String>(), null);
+      bulkClient.createSegmentation("bulkcube2", "bulkseg", Sets.newHashSet(new Segment("bulkfact21",
+        new HashMap<String, String>())), 0L, new HashMap<String, String>());
+
+      // all the tables are fetched in batches, and looked up by cube and dimension in the indexes
+      bulkClient.clearHiveTableCache();
+      assertEquals(bulkClient.getAllFacts().size(), 4);
+      assertEquals(getNames(bulkClient.getAllFacts(bulkClient.getCube("bulkcube1"))),
+        Sets.newHashSet("bulkfact11", "bulkfact12", "bulkfact13"));
+      assertEquals(getNames(bulkClient.getAllFacts(bulkClient.getCube("bulkcube2"))),
+        Sets.newHashSet("bulkfact21"));
+      assertEquals(getNames(bulkClient.getAllSegmentations(bulkClient.getCube("bulkcube2"))),
+        Sets.newHashSet("bulkseg"));
+      assertTrue(bulkClient.getAllSegmentations(bulkClient.getCube("bulkcube1")).isEmpty());
+      assertEquals(getNames(bulkClient.getAllDimensionTables(bulkClient.getDimension(zipDim.getName()))),
+        Sets.newHashSet("bulkziptable1", "bulkziptable2", "bulkziptable3"));
+      assertEquals(bulkClient.getAllFacts(null).size(), 4);
+
+      // the indexes follow drops and creations
+      bulkClient.dropFact("bulkfact12", false);
+      bulkClient.dropDimensionTable("bulkziptable3", false);
+      bulkClient.dropSegmentation("bulkseg");
+      bulkClient.createCubeFactTable("bulkcube1", "bulkfact14", columns,
+        new HashMap<String, Set<UpdatePeriod>>(), 0L, new HashMap<String, String>(), null);
+      assertEquals(getNames(bulkClient.getAllFacts(bulkClient.getCube("bulkcube1"))),
+        Sets.newHashSet("bulkfact11", "bulkfact13", "bulkfact14"));
+      assertEquals(getNames(bulkClient.getAllDimensionTables(bulkClient.getDimension(zipDim.getName()))),
+        Sets.newHashSet("bulkziptable1", "bulkziptable2"));
+      assertTrue(bulkClient.getAllSegmentations(bulkClient.getCube("bulkcube2")).isEmpty());
+    } finally {
+      SessionState.get().setCurrentDatabase(currentDb);
+      Hive.get(conf).dropDatabase(dbName, true, true, true);
+    }
+  }
+
+  private static Set<String> getNames(Collection<? extends AbstractCubeTable> tables) {
+    Set<String> names = new HashSet<>();
+    for (AbstractCubeTable table : tables) {
+      names.add(table.getName());
+    }
+    return names;
+  }
 }
@@ -30,9 +30,11 @@ import java.util.TimeZone;
 
 import org.apache.lens.cube.error.LensCubeErrorCode;
 import org.apache.lens.cube.metadata.ExprColumn.ExprSpec;
+import org.apache.lens.cube.parse.HQLParser;
 import org.apache.lens.server.api.error.LensException;
 
 import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.ql.parse.ASTNode;
 
 import org.testng.annotations.Test;
 
@@ -57,6 +59,23 @@ public class TestExprColumn {
     nowUptoHours = cal.getTime();
   }
 
+  @Test
+  public void testCompiledExpressionsShared() throws Exception {
+    String expr = "sum(msr1) / count(distinct dim1) + " + System.nanoTime();
+    ExprSpec spec = new ExprSpec(expr, null, null);
+    long hits = ExpressionCache.getHits();
+    ExprSpec sameSpec = new ExprSpec(expr, null, null);
+    assertTrue(ExpressionCache.getHits() > hits);
+    assertSame(ExpressionCache.get(expr), ExpressionCache.get(expr));
+
+    // Copies can be modified without affecting the compiled expression
+    ASTNode copy = spec.copyASTNode();
+    copy.deleteChild(0);
+    assertNotEquals(HQLParser.getString(copy), HQLParser.getString(sameSpec.copyASTNode()));
+    assertEquals(HQLParser.getString(spec.copyASTNode()), HQLParser.getString(sameSpec.copyASTNode()));
+    assertEquals(spec.hashCode(), sameSpec.hashCode());
+  }
+
   @Test
   public void testExprColumnEquality() throws Exception {
     FieldSchema colSchema = new FieldSchema("someExprCol", "double", "some exprcol");
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.cube.metadata;
+
+import static org.apache.lens.cube.metadata.PeriodIndexer.DAY_MILLIS;
+import static org.apache.lens.cube.metadata.PeriodIndexer.HOUR_MILLIS;
+
+import static org.testng.Assert.*;
+
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.commons.lang3.time.DateUtils;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class TestPeriodIndexer {
+
+  private static final String[] ZONES = {"UTC", "Asia/Kolkata", "America/Los_Angeles", "Europe/Berlin",
+    "Australia/Sydney"};
+
+  @DataProvider(name = "zones")
+  public Object[][] provideZones() {
+    Object[][] ret = new Object[ZONES.length][1];
+    for (int i = 0; i < ZONES.length; i++) {
+      ret[i][0] = TimeZone.getTimeZone(ZONES[i]);
+    }
+    return ret;
+  }
+
+  /**
+   * Truncates the date the way calendars do.
+   */
+  private static Calendar truncate(Calendar calendar, UpdatePeriod period) {
+    switch (period) {
+    case WEEKLY:
+      Calendar weekly = DateUtils.truncate(calendar, Calendar.DAY_OF_MONTH);
+      weekly.set(Calendar.DAY_OF_WEEK, weekly.getFirstDayOfWeek());
+      return weekly;
+    case QUARTERLY:
+      Calendar quarterly = DateUtils.truncate(calendar, Calendar.MONTH);
+      quarterly.set(Calendar.MONTH, quarterly.get(Calendar.MONTH) - quarterly.get(Calendar.MONTH) % 3);
+      return quarterly;
+    default:
+      return DateUtils.truncate(calendar, period.calendarField());
+    }
+  }
+
+  private static boolean isNearTransition(TimeZone zone, long millis) {
+    return zone.getOffset(millis - DAY_MILLIS) != zone.getOffset(millis + DAY_MILLIS);
+  }
+
+  @Test
+  public void testCivilDays() {
+    Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+    calendar.clear();
+    calendar.set(1900, Calendar.JANUARY, 1);
+    for (long day = PeriodIndexer.civilToDay(1900, 1, 1); day < PeriodIndexer.civilToDay(2200, 1, 1); day++) {
+      long civil = PeriodIndexer.toCivil(day);
+      assertEquals(calendar.getTimeInMillis(), day * DAY_MILLIS);
+      assertEquals(PeriodIndexer.getYear(civil), calendar.get(Calendar.YEAR));
+      assertEquals(PeriodIndexer.getMonth(civil), calendar.get(Calendar.MONTH) + 1);
+      assertEquals(PeriodIndexer.getDayOfMonth(civil), calendar.get(Calendar.DAY_OF_MONTH));
+      assertEquals(PeriodIndexer.civilToDay(PeriodIndexer.getYear(civil), PeriodIndexer.getMonth(civil),
+        PeriodIndexer.getDayOfMonth(civil)), day);
+      calendar.add(Calendar.DAY_OF_MONTH, 1);
+    }
+  }
+
+  @Test(dataProvider = "zones")
+  public void testSameAsCalendar(TimeZone zone) throws Exception {
+    UpdatePeriodTest.RandomDateGenerator randomDateGenerator = new UpdatePeriodTest.RandomDateGenerator();
+    for (UpdatePeriod period : UpdatePeriod.values()) {
+      Calendar calendar = Calendar.getInstance(zone);
+      PeriodIndexer indexer = new PeriodIndexer(zone, calendar.getFirstDayOfWeek());
+      SimpleDateFormat format = new SimpleDateFormat(period.formatStr());
+      format.setTimeZone(zone);
+      for (int i = 0; i < 2000; i++) {
+        long millis = randomDateGenerator.nextDate().getTime();
+        if (isNearTransition(zone, millis)) {
+          continue;
+        }
+        calendar.setTimeInMillis(millis);
+        Calendar truncated = truncate(calendar, period);
+        long index = indexer.toIndex(period, millis);
+        assertEquals(indexer.toMillis(period, index), truncated.getTimeInMillis(), period + " " + millis);
+        assertEquals(indexer.truncate(period, truncated.getTimeInMillis()), truncated.getTimeInMillis());
+        // Consecutive indexes are consecutive periods
+        period.increment(truncated, 1);
+        assertEquals(indexer.toMillis(period, index + 1), truncated.getTimeInMillis(), period + " " + millis);
+        assertEquals(indexer.toIndex(period, truncated.getTimeInMillis()), index + 1);
+        if (period != UpdatePeriod.WEEKLY) {
+          String formatted = indexer.format(period, millis);
+          assertEquals(formatted, format.format(new Date(millis)));
+          assertEquals(indexer.parse(period, formatted), format.parse(formatted).getTime());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTransitions() {
+    TimeZone zone = TimeZone.getTimeZone("America/Los_Angeles");
+    PeriodIndexer indexer = new PeriodIndexer(zone, Calendar.SUNDAY);
+    SimpleDateFormat format = new SimpleDateFormat(UpdatePeriod.HOURLY.formatStr());
+    format.setTimeZone(zone);
+    for (String day : new String[]{"2016-03-13", "2016-11-06"}) {
+      long begin = indexer.parse(UpdatePeriod.DAILY, day);
+      long end = indexer.toMillis(UpdatePeriod.DAILY, indexer.toIndex(UpdatePeriod.DAILY, begin) + 1);
+      // Days are local days, and hours are elapsed hours
+      assertEquals(indexer.format(UpdatePeriod.DAILY, end), day.equals("2016-03-13") ? "2016-03-14" : "2016-11-07");
+      assertEquals(indexer.toLocal(end) % DAY_MILLIS, 0);
+      long hours = indexer.toIndex(UpdatePeriod.HOURLY, end) - indexer.toIndex(UpdatePeriod.HOURLY, begin);
+      assertEquals(hours, (end - begin) / HOUR_MILLIS);
+      for (long hour = indexer.toIndex(UpdatePeriod.HOURLY, begin); hour < indexer.toIndex(UpdatePeriod.HOURLY, end);
+           hour++) {
+        long millis = indexer.toMillis(UpdatePeriod.HOURLY, hour);
+        assertEquals(indexer.format(UpdatePeriod.HOURLY, millis), format.format(new Date(millis)));
+      }
+    }
+    // Local times skipped by a transition are resolved as calendars do
+    for (String hour : new String[]{"2016-03-13-02", "2016-11-06-01"}) {
+      Calendar calendar = new GregorianCalendar(zone);
+      calendar.setLenient(true);
+      calendar.clear();
+      calendar.set(2016, hour.startsWith("2016-03") ? Calendar.MARCH : Calendar.NOVEMBER,
+        Integer.parseInt(hour.substring(8, 10)), Integer.parseInt(hour.substring(11)), 0);
+      assertEquals(indexer.parse(UpdatePeriod.HOURLY, hour), calendar.getTimeInMillis());
+    }
+  }
+
+  @Test
+  public void testUnparseable() {
+    PeriodIndexer indexer = PeriodIndexer.getDefault();
+    assertEquals(indexer.parse(UpdatePeriod.DAILY, "2016-1-011"), PeriodIndexer.UNPARSEABLE);
+    assertEquals(indexer.parse(UpdatePeriod.DAILY, "2016/01/01"), PeriodIndexer.UNPARSEABLE);
+    assertEquals(indexer.parse(UpdatePeriod.DAILY, "2016-01"), PeriodIndexer.UNPARSEABLE);
+    assertEquals(indexer.parse(UpdatePeriod.WEEKLY, "2016-W01"), PeriodIndexer.UNPARSEABLE);
+    assertNull(indexer.format(UpdatePeriod.WEEKLY, System.currentTimeMillis()));
+    // Fields roll over as in lenient date formats
+    assertEquals(indexer.parse(UpdatePeriod.MONTHLY, "2015-13"), indexer.parse(UpdatePeriod.MONTHLY, "2016-01"));
+    assertEquals(indexer.parse(UpdatePeriod.DAILY, "2016-03-00"), indexer.parse(UpdatePeriod.DAILY, "2016-02-29"));
+  }
+
+  /**
+   * Enumerates the minutely partitions of three months with partitions, and with the calendars and date formats they
+   * were enumerated with before, and logs the time taken by both.
+   */
+  @Test
+  public void testRangeEnumeration() throws LensException {
+    Date from = DateUtil.getCeilDate(new Date(1420070400000L), UpdatePeriod.DAILY);
+    Date to = DateUtils.addMonths(from, 3);
+    UpdatePeriod period = UpdatePeriod.MINUTELY;
+    TimePartitionRange range = TimePartitionRange.between(from, to, period);
+
+    long begin = System.nanoTime();
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(from);
+    SimpleDateFormat format = new SimpleDateFormat(period.formatStr());
+    List<String> calendarPartitions = new ArrayList<>();
+    while (calendar.getTime().before(to)) {
+      calendarPartitions.add(format.format(DateUtils.truncate(calendar.getTime(), period.calendarField())));
+      calendar.add(period.calendarField(), 1);
+    }
+    long calendarNanos = System.nanoTime() - begin;
+
+    begin = System.nanoTime();
+    List<String> partitions = new ArrayList<>();
+    for (TimePartition partition : range) {
+      partitions.add(partition.getDateString());
+    }
+    long indexNanos = System.nanoTime() - begin;
+
+    assertEquals(partitions, calendarPartitions);
+    assertEquals(range.size(), partitions.size());
+    log.info("Enumerated {} {} partitions in {} ms, and with calendars in {} ms", partitions.size(), period,
+      indexNanos / 1000000, calendarNanos / 1000000);
+  }
+}
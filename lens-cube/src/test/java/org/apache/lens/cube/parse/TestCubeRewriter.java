@@ -31,6 +31,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
+import org.apache.lens.api.query.RewritePhase;
 import org.apache.lens.cube.error.LensCubeErrorCode;
 import org.apache.lens.cube.error.NoCandidateDimAvailableException;
 import org.apache.lens.cube.error.NoCandidateFactAvailableException;
@@ -144,6 +145,28 @@ public class TestCubeRewriter extends TestQueryRewrite {
 //    assertNotNull(rewrittenQuery.getNonExistingParts());
   }
 
+  @Test
+  public void testRewritePhaseProfiling() throws Exception {
+    String query = "select SUM(msr2) from testCube where " + TWO_DAYS_RANGE;
+    CubeQueryContext notProfiled = rewriteCtx(query, getConfWithStorages("C2"));
+    assertNull(notProfiled.getPhaseProfiler());
+
+    Configuration profilingConf = getConfWithStorages("C2");
+    profilingConf.setBoolean(ENABLE_REWRITE_PHASE_PROFILING, true);
+    CubeQueryContext profiled = rewriteCtx(query, profilingConf);
+    List<RewritePhase> phases = profiled.getPhaseProfiler().getPhases();
+    assertFalse(phases.isEmpty());
+    Set<String> names = new HashSet<>();
+    for (int i = 0; i < phases.size(); i++) {
+      assertEquals(phases.get(i).getPosition(), i);
+      assertTrue(phases.get(i).getDurationNanos() >= 0);
+      names.add(phases.get(i).getName());
+    }
+    assertTrue(names.contains(CandidateCoveringSetsResolver.class.getSimpleName()), names.toString());
+    assertTrue(names.contains(StorageTableResolver.class.getSimpleName()), names.toString());
+    compareQueries(profiled.toHQL(), notProfiled.toHQL());
+  }
+
   @Test
   public void testMaxCoveringFact() throws Exception {
     Configuration conf = getConf();
@@ -22,7 +22,9 @@ package org.apache.lens.cube.parse;
 import static org.apache.hadoop.hive.ql.parse.HiveParser.*;
 
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.lens.cube.error.LensCubeErrorCode;
@@ -511,4 +513,74 @@ public class TestHQLParser {
       Assert.assertTrue(e.getMessage().contains(LensCubeErrorCode.COULD_NOT_PARSE_EXPRESSION.name()));
     }
   }
+
+  @DataProvider
+  public Object[][] rewrittenQueries() {
+    return new Object[][] {
+      {"select testcube.cityid, sum(testcube.msr2) from c2_testfact testcube where ((testcube.dt = '2017-01-01-00')"
+        + " or (testcube.dt = '2017-01-01-01')) and testcube.cityid in (1, 2, 3) group by testcube.cityid"
+        + " having sum(testcube.msr2) > 100 order by testcube.cityid asc limit 10"},
+      {"select citydim.name, case when testcube.msr2 > 10 then 'high' when testcube.msr2 is null then 'none'"
+        + " else 'low' end, cast(testcube.msr3 as double) from c1_testfact testcube join c1_citytable citydim"
+        + " on testcube.cityid = citydim.id and (citydim.dt = 'latest') where testcube.msr1 between 1 and 10"
+        + " and testcube.zipcode is not null and not testcube.stateid in (5, 6)"},
+      {"select t.dim1, count(distinct t.dim2), round(sum(t.msr1) / count(t.msr2), 2) from (select dim1, dim2,"
+        + " msr1, msr2 from c1_summary1 where dt in ('2017-01-01', '2017-01-02') union all select dim1, dim2, msr1,"
+        + " msr2 from c2_summary1 where dt = '2017-01-03') t group by t.dim1 order by t.dim1 desc"},
+    };
+  }
+
+  /**
+   * Checks that the strings of rewritten queries are the same as with collapsing their white spaces with a regular
+   * expression, and logs the times taken to print them, and to look up the select expressions of the query parsed
+   * again among the select expressions of the query, as map keys.
+   */
+  @Test(dataProvider = "rewrittenQueries")
+  public void testPrintRewrittenQuery(String query) throws LensException {
+    ASTNode tree = HQLParser.parseHQL(query, conf);
+    int iterations = 2000;
+
+    long begin = System.nanoTime();
+    String regexString = null;
+    for (int i = 0; i < iterations; i++) {
+      StringBuilder buf = new StringBuilder();
+      HQLParser.toInfixString(tree, buf, HQLParser.AppendMode.DEFAULT);
+      regexString = buf.toString().trim().replaceAll("\\s+", " ");
+    }
+    long regexNanos = System.nanoTime() - begin;
+
+    begin = System.nanoTime();
+    String string = null;
+    for (int i = 0; i < iterations; i++) {
+      string = HQLParser.getString(tree, HQLParser.AppendMode.DEFAULT);
+    }
+    long printNanos = System.nanoTime() - begin;
+    Assert.assertEquals(string, regexString);
+
+    Map<HQLParser.HashableASTNode, Integer> selects = new HashMap<>();
+    ASTNode select = findSelect(tree);
+    for (int i = 0; i < select.getChildCount(); i++) {
+      selects.put(new HQLParser.HashableASTNode((ASTNode) select.getChild(i)), i);
+    }
+    // Keys built from other trees, as when expressions are looked up during a rewrite, have their strings computed
+    // for each lookup, while the strings of the keys in the map are computed once
+    ASTNode reparsedSelect = findSelect(HQLParser.parseHQL(query, conf));
+    Assert.assertEquals(reparsedSelect.getChildCount(), select.getChildCount());
+    begin = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      for (int j = 0; j < reparsedSelect.getChildCount(); j++) {
+        Assert.assertEquals(selects.get(new HQLParser.HashableASTNode((ASTNode) reparsedSelect.getChild(j))),
+          Integer.valueOf(j));
+      }
+    }
+    long lookupNanos = System.nanoTime() - begin;
+    log.info("Printed query {} times in {} ms, and with a regular expression in {} ms. {} lookups of select"
+      + " expressions in {} ms", iterations, printNanos / 1000000, regexNanos / 1000000,
+      iterations * reparsedSelect.getChildCount(), lookupNanos / 1000000);
+  }
+
+  private static ASTNode findSelect(ASTNode tree) {
+    ASTNode select = HQLParser.findNodeByPath(tree, TOK_INSERT, TOK_SELECT);
+    return select != null ? select : HQLParser.findNodeByPath(tree, TOK_INSERT, TOK_SELECTDI);
+  }
 }
@@ -25,21 +25,29 @@ import static org.apache.lens.cube.parse.CubeQueryConfUtil.*;
 import static org.apache.lens.cube.parse.CubeTestSetup.*;
 import static org.apache.lens.cube.parse.TestCubeRewriter.*;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.*;
 
 import java.util.*;
 import java.util.stream.Collectors;
 
 import org.apache.lens.cube.error.NoCandidateFactAvailableException;
+import org.apache.lens.cube.metadata.FactPartition;
 import org.apache.lens.server.api.LensServerAPITestUtil;
 import org.apache.lens.server.api.error.LensException;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.ql.parse.ASTNode;
+import org.apache.hadoop.hive.ql.parse.HiveParser;
 
+import org.antlr.runtime.CommonToken;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -396,4 +404,97 @@ public class TestUnionQueries extends TestQueryRewrite {
     );
     compareQueries(hqlQuery2, expected);
   }
+
+  private static final String SUB_QUERY_SELECT = "(testcube.cityid) as `alias0`, sum((testcube.msr2)) as `alias1`";
+  private static final String SUB_QUERY_FROM = "TestQueryRewrite.c1_testfact testcube";
+  private static final String SUB_QUERY_GROUP_BY = "(testcube.cityid)";
+
+  private static QueryAST mockQueryAST(String groupBy, String having, String orderBy, Integer limit) {
+    QueryAST queryAst = mock(QueryAST.class);
+    when(queryAst.getSelectString()).thenReturn(SUB_QUERY_SELECT);
+    when(queryAst.getGroupByString()).thenReturn(groupBy);
+    when(queryAst.getHavingString()).thenReturn(having);
+    when(queryAst.getOrderByString()).thenReturn(orderBy);
+    when(queryAst.getLimitValue()).thenReturn(limit);
+    return queryAst;
+  }
+
+  private static StorageCandidate mockStorageCandidate(QueryAST queryAst, int day) {
+    FactPartition partition = new FactPartition("dt", getDateWithOffset(DAILY, -day), DAILY, null, null);
+    StorageCandidate sc = mock(StorageCandidate.class);
+    when(sc.getResolvedName()).thenReturn("c1_testfact");
+    when(sc.getFromString()).thenReturn(SUB_QUERY_FROM);
+    when(sc.getWhereString()).thenReturn("(testcube.dt = 'day" + day + "')");
+    when(sc.getQueryAst()).thenReturn(queryAst);
+    when(sc.getParticipatingPartitions()).thenReturn(Sets.newHashSet(partition));
+    return sc;
+  }
+
+  private static String getSubQuery(StorageCandidate sc) {
+    return CandidateUtil.buildHQLString(SUB_QUERY_SELECT, SUB_QUERY_FROM, sc.getWhereString(), SUB_QUERY_GROUP_BY,
+      null, null, null);
+  }
+
+  @Test
+  public void testCollapsedSubQuery() throws Exception {
+    QueryAST queryAst = mockQueryAST(SUB_QUERY_GROUP_BY, null, null, null);
+    StorageCandidate sc1 = mockStorageCandidate(queryAst, 1);
+    StorageCandidate sc2 = mockStorageCandidate(queryAst, 2);
+    UnionQueryWriter.SubQuery subQuery = new UnionQueryWriter.SubQuery(sc1, getSubQuery(sc1));
+    assertTrue(subQuery.canCollapse(sc2));
+    subQuery.collapse(sc2);
+    assertEquals(subQuery.toHQL(), "SELECT (testcube.cityid) as `alias0`, sum((testcube.msr2)) as `alias1` "
+      + "FROM TestQueryRewrite.c1_testfact testcube WHERE ((testcube.dt = 'day1')) OR ((testcube.dt = 'day2')) "
+      + "GROUP BY (testcube.cityid)");
+    // Partitions already read by the sub query are not read again
+    assertFalse(subQuery.canCollapse(mockStorageCandidate(queryAst, 2)));
+  }
+
+  @Test
+  public void testSubQueryNotCollapsed() throws Exception {
+    QueryAST queryAst = mockQueryAST(SUB_QUERY_GROUP_BY, null, null, null);
+    StorageCandidate sc1 = mockStorageCandidate(queryAst, 1);
+    String hql = getSubQuery(sc1);
+    assertEquals(hql, "SELECT (testcube.cityid) as `alias0`, sum((testcube.msr2)) as `alias1` "
+      + "FROM TestQueryRewrite.c1_testfact testcube WHERE (testcube.dt = 'day1') GROUP BY (testcube.cityid)");
+    List<QueryAST> notCollapsible = Lists.newArrayList(
+      mockQueryAST(null, null, null, null),
+      mockQueryAST(SUB_QUERY_GROUP_BY, "(sum((testcube.msr2)) > 10)", null, null),
+      mockQueryAST(SUB_QUERY_GROUP_BY, null, "testcube.alias0 asc", null),
+      mockQueryAST(SUB_QUERY_GROUP_BY, null, null, 5));
+    for (QueryAST otherAst : notCollapsible) {
+      UnionQueryWriter.SubQuery subQuery = new UnionQueryWriter.SubQuery(sc1, hql);
+      assertFalse(subQuery.canCollapse(mockStorageCandidate(otherAst, 2)));
+      assertEquals(subQuery.toHQL(), hql);
+      // Neither is a candidate collapsed into a sub query with a having clause, an order by or a limit
+      if (otherAst.getGroupByString() != null) {
+        StorageCandidate first = mockStorageCandidate(otherAst, 1);
+        subQuery = new UnionQueryWriter.SubQuery(first, hql);
+        assertFalse(subQuery.canCollapse(mockStorageCandidate(queryAst, 2)));
+        assertEquals(subQuery.toHQL(), hql);
+      }
+    }
+  }
+
+  @Test
+  public void testDefaultMeasure() throws Exception {
+    ASTNode defaultMeasure = new ASTNode(new CommonToken(HiveParser.TOK_SELEXPR, "TOK_SELEXPR"));
+    defaultMeasure.addChild(UnionQueryWriter.getDefaultMeasureAST());
+    defaultMeasure.addChild(new ASTNode(new CommonToken(HiveParser.Identifier, "alias1")));
+    ASTNode parsed = HQLParser.parseHQL("select 0.0 as `alias1` from testcube", new HiveConf());
+    ASTNode parsedSelectExpr = HQLParser.findNodeByPath(parsed, HiveParser.TOK_INSERT, HiveParser.TOK_SELECT,
+      HiveParser.TOK_SELEXPR);
+    // The default measure is written as if it was parsed
+    assertEquals(HQLParser.getString(UnionQueryWriter.getDefaultMeasureAST()), "0.0");
+    assertEquals(HQLParser.getString(defaultMeasure), HQLParser.getString(parsedSelectExpr));
+    assertEquals(HQLParser.getString(defaultMeasure), "0.0 as `alias1`");
+  }
+
+  @Test
+  public void testBuildHQLString() {
+    assertEquals(CandidateUtil.buildHQLString("a", "t", null, null, null, null, null), "SELECT a FROM t");
+    assertEquals(CandidateUtil.buildHQLString("a", "t", " ", "", null, null, null), "SELECT a FROM t");
+    assertEquals(CandidateUtil.buildHQLString("a, sum(b)", "t", "c = 1", "a", "a desc", "sum(b) > 1", 10),
+      "SELECT a, sum(b) FROM t WHERE c = 1 GROUP BY a HAVING sum(b) > 1 ORDER BY a desc LIMIT 10");
+  }
 }
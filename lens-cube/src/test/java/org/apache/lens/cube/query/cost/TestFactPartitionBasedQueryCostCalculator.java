@@ -27,6 +27,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.*;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
 
@@ -35,7 +36,9 @@ import org.apache.lens.cube.metadata.UpdatePeriod;
 import org.apache.lens.server.api.driver.DriverQueryPlan;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.cost.QueryFeatures;
 
 import org.apache.hadoop.conf.Configuration;
 
@@ -55,6 +58,7 @@ public class TestFactPartitionBasedQueryCostCalculator {
   public void setUp() {
     driver = mock(LensDriver.class);
     when(driver.getConf()).thenReturn(new Configuration());
+    when(driver.getFullyQualifiedName()).thenReturn("mock/driver");
     queryContext = mock(AbstractQueryContext.class);
 
     ImmutableMap<String, Double> tableWeights = new ImmutableMap.Builder<String, Double>().build();
@@ -104,4 +108,28 @@ public class TestFactPartitionBasedQueryCostCalculator {
     QueryCost cost = calculator.calculateCost(queryContext2, driver);
     assertTrue(cost.getEstimatedResourceUsage() == 2.0, "Estimated resource usage:" + cost.getEstimatedResourceUsage());
   }
+
+  @Test
+  public void testExecutionTimeCost() throws Exception {
+    ExecutionTimeModel model = new ExecutionTimeModel();
+    ExecutionTimeQueryCostCalculator timeCalculator = new ExecutionTimeQueryCostCalculator(model);
+    when(queryContext.getDriverQuery(driver)).thenReturn("SELECT msr FROM fact WHERE dt = '2016-01-01'");
+
+    // Without a fit, the cost has no estimated time
+    QueryCost cost = timeCalculator.calculateCost(queryContext, driver);
+    assertTrue(cost.getEstimatedResourceUsage() > 19.0, "Estimated resource usage:" + cost.getEstimatedResourceUsage());
+    try {
+      cost.getEstimatedExecTimeMillis();
+      fail("Expected no estimated time");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // The five partitions of the plan of the rewrite are queried
+    model.train(Collections.singletonList(
+      new ExecutionTimeModel.Sample(new QueryFeatures("mock/driver", "fact", 0, 5), 5000)), 1);
+    cost = timeCalculator.calculateCost(queryContext, driver);
+    assertEquals(cost.getEstimatedExecTimeMillis(), 5000);
+    assertTrue(cost.getEstimatedResourceUsage() > 19.0, "Estimated resource usage:" + cost.getEstimatedResourceUsage());
+  }
 }
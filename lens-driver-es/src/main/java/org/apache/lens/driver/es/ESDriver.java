@@ -58,6 +58,8 @@ import org.apache.hadoop.hive.ql.session.SessionState;
 import org.antlr.runtime.CommonToken;
 import org.antlr.runtime.tree.Tree;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 
 import lombok.extern.slf4j.Slf4j;
@@ -75,13 +77,21 @@ public class ESDriver extends AbstractLensDriver {
   private ESClient esClient;
   private ExecutorService asyncQueryPool;
   private ESDriverConfig config;
+  /**
+   * Conf used for parsing driver queries, built once as building a HiveConf loads all its resources
+   */
+  private HiveConf parseConf;
 
   /**
    * States
    */
-  private final Map<String, ESQuery> rewrittenQueriesCache = Maps.newConcurrentMap();
+  private Cache<String, ESQuery> rewrittenQueriesCache;
   private final Map<QueryHandle, Future<LensResultSet>> resultSetMap = Maps.newConcurrentMap();
   private final Map<QueryHandle, QueryContext> handleContextMap = Maps.newConcurrentMap();
+  /**
+   * Result sets handed out by fetchResultSet, closed with their query to release the pages not read yet
+   */
+  private final Map<QueryHandle, ESResultSet> fetchedResultSets = Maps.newConcurrentMap();
 
   @Override
   public QueryCost estimate(AbstractQueryContext qctx) {
@@ -169,7 +179,11 @@ public class ESDriver extends AbstractLensDriver {
       /**
        * removing the result set as soon as the fetch is done
        */
-      return resultSetMap.remove(context.getQueryHandle()).get();
+      final LensResultSet resultSet = resultSetMap.remove(context.getQueryHandle()).get();
+      if (resultSet instanceof ESResultSet) {
+        fetchedResultSets.put(context.getQueryHandle(), (ESResultSet) resultSet);
+      }
+      return resultSet;
     } catch (NullPointerException e) {
       throw new LensException("The results for the query "
         + context.getQueryHandleString()
@@ -181,8 +195,20 @@ public class ESDriver extends AbstractLensDriver {
 
   @Override
   public void closeResultSet(QueryHandle handle) throws LensException {
-    if (resultSetMap.containsKey(handle)) {
-      resultSetMap.remove(handle);
+    final Future<LensResultSet> pending = resultSetMap.remove(handle);
+    if (pending != null && pending.isDone() && !pending.isCancelled()) {
+      try {
+        close(pending.get());
+      } catch (InterruptedException | ExecutionException e) {
+        log.debug("Result set of query {} was not available to close", handle.getHandleIdString(), e);
+      }
+    }
+    close(fetchedResultSets.remove(handle));
+  }
+
+  private static void close(LensResultSet resultSet) {
+    if (resultSet instanceof ESResultSet) {
+      ((ESResultSet) resultSet).close();
     }
   }
 
@@ -201,7 +227,10 @@ public class ESDriver extends AbstractLensDriver {
 
   @Override
   public void closeQuery(QueryHandle handle) throws LensException {
-    cancelQuery(handle);
+    // queries whose result set was fetched have nothing to cancel
+    if (!fetchedResultSets.containsKey(handle)) {
+      cancelQuery(handle);
+    }
     closeResultSet(handle);
     handleContextMap.remove(handle);
   }
@@ -215,6 +244,12 @@ public class ESDriver extends AbstractLensDriver {
         log.error("Error while closing query {}", handle.getHandleIdString(), e);
       }
     }
+    for (QueryHandle handle : fetchedResultSets.keySet()) {
+      close(fetchedResultSets.remove(handle));
+    }
+    if (esClient != null) {
+      esClient.close();
+    }
   }
 
   @Override
@@ -224,10 +259,11 @@ public class ESDriver extends AbstractLensDriver {
 
   private ESQuery rewrite(AbstractQueryContext context) throws LensException {
     final String key = keyFor(context);
-    if (rewrittenQueriesCache.containsKey(key)) {
-      return rewrittenQueriesCache.get(key);
+    final ESQuery cached = rewrittenQueriesCache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
     } else {
-      final ASTNode rootQueryNode = HQLParser.parseHQL(context.getDriverQuery(this), new HiveConf());
+      final ASTNode rootQueryNode = HQLParser.parseHQL(context.getDriverQuery(this), parseConf);
       setIndexAndTypeIfNotPresent(context, rootQueryNode);
       final ESQuery esQuery = ESVisitor.rewrite(config, rootQueryNode);
       rewrittenQueriesCache.put(key, esQuery);
@@ -268,18 +304,33 @@ public class ESDriver extends AbstractLensDriver {
     }
   }
 
+  /**
+   * Tables without index and type are looked up in the database of the query, so the database is part of the key
+   */
   private String keyFor(AbstractQueryContext context) {
-    return String.valueOf(context.getFinalDriverQuery(this)!=null) + ":" + context.getDriverQuery(this);
+    return String.valueOf(context.getFinalDriverQuery(this)!=null) + ":" + context.getDatabase() + ":"
+      + context.getDriverQuery(this);
   }
 
   ESClient getESClient() {
     return esClient;
   }
 
+  /**
+   * @return number of translated queries cached
+   */
+  long getTranslationCacheSize() {
+    return rewrittenQueriesCache.size();
+  }
+
   @Override
   public void configure(Configuration conf, String driverType, String driverName) throws LensException {
     super.configure(conf, driverType, driverName);
     config = new ESDriverConfig(getConf());
+    parseConf = new HiveConf(getConf(), ESDriver.class);
+    rewrittenQueriesCache = CacheBuilder.newBuilder()
+      .maximumSize(config.getTranslationCacheMaxEntries())
+      .build();
     Class klass;
     try {
       klass = Class.forName(getConf().get(ESDriverConfig.CLIENT_CLASS_KEY));
@@ -34,6 +34,13 @@ public final class ESDriverConfig {
   public static final String TERM_FETCH_SIZE_KEY = "lens.driver.es.term.fetch.size";
   public static final String AGGR_BUCKET_SIZE_LENS_KEY = "lens.driver.es.aggr.bucket.size";
   public static final String QUERY_TIME_OUT_LENS_KEY = "lens.driver.es.query.timeout.millis";
+  public static final String TERM_PAGING_MODE_KEY = "lens.driver.es.term.paging.mode";
+  public static final String TERM_PREFETCH_KEY = "lens.driver.es.term.prefetch";
+  public static final String SCROLL_KEEP_ALIVE_KEY = "lens.driver.es.scroll.keep.alive";
+  public static final String SCROLL_SLICES_KEY = "lens.driver.es.scroll.slices";
+  public static final String PAGE_FETCHER_THREADS_KEY = "lens.driver.es.page.fetcher.threads";
+  public static final String SEARCH_AFTER_TIEBREAKER_KEY = "lens.driver.es.search.after.tiebreaker";
+  public static final String TRANSLATION_CACHE_MAX_ENTRIES_KEY = "lens.driver.es.translation.cache.max.entries";
 
   public static final String AGGS = "aggs";
   public static final String MATCH_ALL = "match_all";
@@ -48,6 +55,10 @@ public final class ESDriverConfig {
   public static final String TERM_SORT = "sort";
   public static final String SIZE = "size";
   public static final String QUERY_TIME_OUT_STRING = "timeout";
+  public static final String SEARCH_AFTER = "search_after";
+  public static final String SLICE = "slice";
+  public static final String SLICE_ID = "id";
+  public static final String SLICE_MAX = "max";
 
   public static final ImmutableMap<ASTVisitor.OrderBy, String> ORDER_BYS;
   public static final int AGGR_TERM_FETCH_SIZE = 0;
@@ -57,6 +68,31 @@ public final class ESDriverConfig {
   private static final int QUERY_TIME_OUT_MS_DEFAULT = 10000;
 
   private static final int TERM_FETCH_SIZE_DEFAULT = 5000;
+  private static final PagingMode TERM_PAGING_MODE_DEFAULT = PagingMode.FROM_SIZE;
+  private static final boolean TERM_PREFETCH_DEFAULT = true;
+  private static final String SCROLL_KEEP_ALIVE_DEFAULT = "1m";
+  private static final int SCROLL_SLICES_DEFAULT = 1;
+  private static final int PAGE_FETCHER_THREADS_DEFAULT = 10;
+  private static final String SEARCH_AFTER_TIEBREAKER_DEFAULT = "_uid";
+  private static final int TRANSLATION_CACHE_MAX_ENTRIES_DEFAULT = 1000;
+
+  /**
+   * How the results of document look up queries are paged
+   */
+  public enum PagingMode {
+    /**
+     * Re-execute the query for every page with increasing offsets, limited by the max result window of the index
+     */
+    FROM_SIZE,
+    /**
+     * Execute the query for every page after the sort values of the last hit of the previous page (es 5.0 onwards)
+     */
+    SEARCH_AFTER,
+    /**
+     * Open a scroll context and fetch pages from it, optionally as parallel slices (slices need es 5.0 onwards)
+     */
+    SCROLL
+  }
 
   static {
     final ImmutableMap.Builder<ASTVisitor.OrderBy, String> orderByBuilder = ImmutableMap.builder();
@@ -72,6 +108,20 @@ public final class ESDriverConfig {
   @Getter
   private final int queryTimeOutMs;
   private final int termFetchSize;
+  @Getter
+  private final PagingMode termPagingMode;
+  @Getter
+  private final boolean termPrefetch;
+  @Getter
+  private final String scrollKeepAlive;
+  @Getter
+  private final int scrollSlices;
+  @Getter
+  private final int pageFetcherThreads;
+  @Getter
+  private final String searchAfterTiebreaker;
+  @Getter
+  private final int translationCacheMaxEntries;
 
   public int getTermFetchSize() {
     return termFetchSize;
@@ -82,6 +132,13 @@ public final class ESDriverConfig {
     aggrBucketSize = conf.getInt(AGGR_BUCKET_SIZE_LENS_KEY, AGGR_BUCKET_SIZE_DEFAULT);
     queryTimeOutMs = conf.getInt(QUERY_TIME_OUT_LENS_KEY, QUERY_TIME_OUT_MS_DEFAULT);
     termFetchSize = conf.getInt(TERM_FETCH_SIZE_KEY, TERM_FETCH_SIZE_DEFAULT);
+    termPagingMode = conf.getEnum(TERM_PAGING_MODE_KEY, TERM_PAGING_MODE_DEFAULT);
+    termPrefetch = conf.getBoolean(TERM_PREFETCH_KEY, TERM_PREFETCH_DEFAULT);
+    scrollKeepAlive = conf.get(SCROLL_KEEP_ALIVE_KEY, SCROLL_KEEP_ALIVE_DEFAULT);
+    scrollSlices = Math.max(1, conf.getInt(SCROLL_SLICES_KEY, SCROLL_SLICES_DEFAULT));
+    pageFetcherThreads = Math.max(1, conf.getInt(PAGE_FETCHER_THREADS_KEY, PAGE_FETCHER_THREADS_DEFAULT));
+    searchAfterTiebreaker = conf.get(SEARCH_AFTER_TIEBREAKER_KEY, SEARCH_AFTER_TIEBREAKER_DEFAULT);
+    translationCacheMaxEntries = conf.getInt(TRANSLATION_CACHE_MAX_ENTRIES_KEY, TRANSLATION_CACHE_MAX_ENTRIES_DEFAULT);
   }
 
 
@@ -18,36 +18,96 @@
  */
 package org.apache.lens.driver.es.client;
 
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lens.api.query.ResultRow;
 import org.apache.lens.driver.es.ESDriverConfig;
 import org.apache.lens.driver.es.ESQuery;
 import org.apache.lens.driver.es.exceptions.ESClientException;
+import org.apache.lens.driver.es.translator.ASTVisitor;
 
 import org.apache.hadoop.conf.Configuration;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 public abstract class ESClient {
 
   @NonNull
   protected final ESDriverConfig esDriverConfig;
 
+  /**
+   * Fetches pages in the background, for the paging modes which support it. Bounded by the configured number of
+   * threads, pages to fetch beyond it wait in the queue.
+   */
+  private final ThreadPoolExecutor pageFetcher;
+
   private ExecutionMode getExecutionModeFor(ESQuery esQuery) {
-    return esQuery.getQueryType().equals(ESQuery.QueryType.AGGR)
-      ?
-      new DefaultExecutionMode(esQuery)
-      :
-      new ScrollingExecutionMode(esQuery);
+    if (esQuery.getQueryType().equals(ESQuery.QueryType.AGGR)) {
+      return new DefaultExecutionMode(esQuery);
+    }
+    switch (esDriverConfig.getTermPagingMode()) {
+    case SEARCH_AFTER:
+      return new SearchAfterExecutionMode(esQuery);
+    case SCROLL:
+      return new ScrollExecutionMode(esQuery);
+    default:
+      return new FromSizeExecutionMode(esQuery);
+    }
   }
 
   protected abstract ESResultSet executeImpl(ESQuery esQuery) throws ESClientException;
 
+  /**
+   * Executes the query and returns its first page, along with the sort values of its last hit and the scroll id.
+   * Needed by the search after and scroll paging modes.
+   *
+   * @param esQuery         the query
+   * @param scrollKeepAlive how long to keep the scroll context alive, null to not open a scroll context
+   * @return the page
+   * @throws ESClientException if the query fails or paging is not supported
+   */
+  protected ESPage executePage(ESQuery esQuery, String scrollKeepAlive) throws ESClientException {
+    throw new ESClientException("Paging is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Fetches the next page of a scroll context. Needed by the scroll paging mode.
+   *
+   * @param esQuery         the query the scroll context was opened for
+   * @param scrollId        id of the scroll context
+   * @param scrollKeepAlive how long to keep the scroll context alive
+   * @return the page
+   * @throws ESClientException if the page could not be fetched or scrolling is not supported
+   */
+  protected ESPage scrollPage(ESQuery esQuery, String scrollId, String scrollKeepAlive) throws ESClientException {
+    throw new ESClientException("Scrolling is not supported by " + getClass().getName());
+  }
+
+  /**
+   * Releases a scroll context before its keep alive expires. Clients which do not support it leave the context to
+   * expire.
+   *
+   * @param scrollId id of the scroll context
+   * @throws ESClientException if the scroll context could not be released
+   */
+  protected void clearScroll(String scrollId) throws ESClientException {
+  }
+
   private abstract static class ExecutionMode {
 
     @NonNull
@@ -61,12 +121,12 @@ public abstract class ESClient {
 
   }
 
-  private class ScrollingExecutionMode extends ExecutionMode {
+  private class FromSizeExecutionMode extends ExecutionMode {
 
     @NonNull
     final JsonObject jsonQuery;
 
-    ScrollingExecutionMode(ESQuery query) {
+    FromSizeExecutionMode(ESQuery query) {
       super(query);
       jsonQuery = (JsonObject) new JsonParser().parse(query.getQuery());
     }
@@ -144,6 +204,205 @@ public abstract class ESClient {
     }
   }
 
+  /**
+   * Base of the modes which fetch every page from the state of the previous one, instead of from an offset
+   */
+  private abstract class PagedExecutionMode extends ExecutionMode {
+
+    PagedExecutionMode(ESQuery query) {
+      super(query);
+    }
+
+    /**
+     * @return fetchers of the slices of the query
+     */
+    abstract List<PagedResultIterator.PageFetcher> getFetchers();
+
+    ESQuery modify(JsonObject jsonQuery) {
+      return new ESQuery(
+        esQuery.getIndex(),
+        esQuery.getType(),
+        jsonQuery.toString(),
+        ImmutableList.copyOf(esQuery.getSchema()),
+        ImmutableList.copyOf(esQuery.getColumns()),
+        esQuery.getQueryType(),
+        esQuery.getLimit()
+      );
+    }
+
+    JsonObject parse() {
+      final JsonObject jsonQuery = (JsonObject) new JsonParser().parse(esQuery.getQuery());
+      jsonQuery.remove(ESDriverConfig.FROM);
+      return jsonQuery;
+    }
+
+    boolean isSorted(JsonObject jsonQuery) {
+      final JsonArray sorts = jsonQuery.getAsJsonArray(ESDriverConfig.TERM_SORT);
+      return sorts != null && sorts.size() > 0;
+    }
+
+    boolean isLimitReached(int fetched) {
+      return esQuery.getLimit() != -1 && fetched >= esQuery.getLimit();
+    }
+
+    int getPageSize(int fetched) {
+      final int fetchSize = esDriverConfig.getTermFetchSize();
+      return esQuery.getLimit() == -1 ? fetchSize : Math.min(fetchSize, esQuery.getLimit() - fetched);
+    }
+
+    @Override
+    ESResultSet executeInternal() throws ESClientException {
+      final PagedResultIterator iterator = new PagedResultIterator(getFetchers(),
+        esDriverConfig.isTermPrefetch() ? pageFetcher : null, esQuery.getLimit());
+      return new ESResultSet(
+        esQuery.getLimit(),
+        new Iterable<ResultRow>() {
+          @Override
+          public Iterator<ResultRow> iterator() {
+            return iterator;
+          }
+        },
+        iterator.getMetadata()
+      );
+    }
+  }
+
+  /**
+   * Pages by the sort values of the last hit of the previous page. A tiebreaker is added to the sort, so that every
+   * hit has unique sort values.
+   */
+  private class SearchAfterExecutionMode extends PagedExecutionMode {
+
+    SearchAfterExecutionMode(ESQuery query) {
+      super(query);
+    }
+
+    @Override
+    List<PagedResultIterator.PageFetcher> getFetchers() {
+      final JsonObject jsonQuery = parse();
+      JsonArray sorts = jsonQuery.getAsJsonArray(ESDriverConfig.TERM_SORT);
+      if (sorts == null) {
+        sorts = new JsonArray();
+        jsonQuery.add(ESDriverConfig.TERM_SORT, sorts);
+      }
+      final String tiebreaker = esDriverConfig.getSearchAfterTiebreaker();
+      boolean hasTiebreaker = false;
+      for (JsonElement sort : sorts) {
+        hasTiebreaker |= sort.isJsonObject() && sort.getAsJsonObject().has(tiebreaker);
+      }
+      if (!hasTiebreaker) {
+        final JsonObject tiebreakerSort = new JsonObject();
+        tiebreakerSort.addProperty(tiebreaker, ESDriverConfig.ORDER_BYS.get(ASTVisitor.OrderBy.ASC));
+        sorts.add(tiebreakerSort);
+      }
+      return Collections.<PagedResultIterator.PageFetcher>singletonList(new PagedResultIterator.PageFetcher() {
+        int fetched = 0;
+        int requested = 0;
+
+        @Override
+        public void release() {
+          // search after keeps no state on the cluster
+        }
+
+        @Override
+        public ESPage fetch(ESPage previous) throws ESClientException {
+          if (previous != null) {
+            final int size = previous.getResultSet().size();
+            fetched += size;
+            if (size < requested || previous.getLastSortValues() == null || isLimitReached(fetched)) {
+              return null;
+            }
+            jsonQuery.add(ESDriverConfig.SEARCH_AFTER, previous.getLastSortValues());
+          }
+          requested = getPageSize(fetched);
+          jsonQuery.addProperty(ESDriverConfig.SIZE, requested);
+          return executePage(modify(jsonQuery), null);
+        }
+      });
+    }
+  }
+
+  /**
+   * Pages through a scroll context. Unsorted queries are split into the configured number of slices, which are
+   * scrolled in parallel.
+   */
+  private class ScrollExecutionMode extends PagedExecutionMode {
+
+    ScrollExecutionMode(ESQuery query) {
+      super(query);
+    }
+
+    @Override
+    List<PagedResultIterator.PageFetcher> getFetchers() {
+      final boolean sorted = isSorted(parse());
+      final int slices = sorted ? 1 : esDriverConfig.getScrollSlices();
+      final List<PagedResultIterator.PageFetcher> fetchers = Lists.newArrayList();
+      for (int i = 0; i < slices; i++) {
+        final JsonObject jsonQuery = parse();
+        jsonQuery.addProperty(ESDriverConfig.SIZE, getPageSize(0));
+        if (slices > 1) {
+          final JsonObject slice = new JsonObject();
+          slice.addProperty(ESDriverConfig.SLICE_ID, i);
+          slice.addProperty(ESDriverConfig.SLICE_MAX, slices);
+          jsonQuery.add(ESDriverConfig.SLICE, slice);
+        }
+        fetchers.add(new PagedResultIterator.PageFetcher() {
+          int fetched = 0;
+          String scrollId;
+          boolean released;
+
+          @Override
+          public ESPage fetch(ESPage previous) throws ESClientException {
+            final String keepAlive = esDriverConfig.getScrollKeepAlive();
+            if (previous == null) {
+              return opened(executePage(modify(jsonQuery), keepAlive));
+            }
+            final int size = previous.getResultSet().size();
+            fetched += size;
+            if (size == 0 || previous.getScrollId() == null || isLimitReached(fetched)) {
+              return null;
+            }
+            return opened(scrollPage(esQuery, previous.getScrollId(), keepAlive));
+          }
+
+          /**
+           * Tracks the scroll id to release, pages fetched after the release are released right away
+           */
+          private ESPage opened(ESPage page) {
+            final boolean releaseNow;
+            synchronized (this) {
+              releaseNow = released;
+              if (!releaseNow) {
+                scrollId = page.getScrollId();
+              }
+            }
+            if (releaseNow && page.getScrollId() != null) {
+              clear(page.getScrollId());
+            }
+            return page;
+          }
+
+          @Override
+          public void release() {
+            final String toClear;
+            synchronized (this) {
+              if (released) {
+                return;
+              }
+              released = true;
+              toClear = scrollId;
+              scrollId = null;
+            }
+            if (toClear != null) {
+              clear(toClear);
+            }
+          }
+        });
+      }
+      return fetchers;
+    }
+  }
+
   private class DefaultExecutionMode extends ExecutionMode {
 
     DefaultExecutionMode(ESQuery query) {
@@ -157,8 +416,28 @@ public abstract class ESClient {
 
   }
 
+  private void clear(String scrollId) {
+    try {
+      clearScroll(scrollId);
+    } catch (ESClientException e) {
+      log.warn("Could not clear scroll context {}, it is released when its keep alive expires", scrollId, e);
+    }
+  }
+
   public ESClient(ESDriverConfig esDriverConfig, Configuration conf) {
     this.esDriverConfig = esDriverConfig;
+    final int threads = esDriverConfig.getPageFetcherThreads();
+    this.pageFetcher = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+      new LinkedBlockingQueue<Runnable>(),
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ESDriver-PageFetcher-%d").build());
+    this.pageFetcher.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Stops fetching pages in the background. The client can not execute paged queries with prefetch after this.
+   */
+  public void close() {
+    pageFetcher.shutdownNow();
   }
 
   public final ESResultSet execute(final ESQuery esQuery) throws ESClientException {
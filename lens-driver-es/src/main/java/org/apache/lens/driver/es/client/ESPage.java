@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.es.client;
+
+import com.google.gson.JsonArray;
+import lombok.Data;
+
+/**
+ * A page of results of a document look up query, along with what is needed to fetch the page after it
+ */
+@Data
+public final class ESPage {
+  /**
+   * rows of the page
+   */
+  private final ESResultSet resultSet;
+  /**
+   * sort values of the last hit of the page, null if the page has no hits
+   */
+  private final JsonArray lastSortValues;
+  /**
+   * id of the scroll context the page was fetched from, null if the query was not scrolled
+   */
+  private final String scrollId;
+}
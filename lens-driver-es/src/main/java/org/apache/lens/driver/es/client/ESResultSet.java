@@ -18,6 +18,8 @@
  */
 package org.apache.lens.driver.es.client;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Iterator;
 
 import org.apache.lens.api.query.ResultRow;
@@ -58,6 +60,19 @@ public class ESResultSet extends InMemoryResultSet {
 
   }
 
+  /**
+   * Releases the resources held for the rows not read yet, like the scroll contexts of paged queries.
+   */
+  public void close() {
+    if (resultSetIterator instanceof Closeable) {
+      try {
+        ((Closeable) resultSetIterator).close();
+      } catch (IOException e) {
+        throw new IllegalStateException("Could not close es resultset", e);
+      }
+    }
+  }
+
   @Override
   public Integer size() {
     return size;
@@ -0,0 +1,209 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.es.client;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.driver.es.exceptions.ESClientException;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Iterates over the pages of one or more slices of a document look up query. Slices are read one after the other.
+ * When an executor is given, the first pages of all the slices are fetched in parallel and the page after the current
+ * one of every slice is fetched in the background while the current one is being read. The state kept on the cluster
+ * for a slice, like a scroll context, is released once the slice is read or the iterator is closed.
+ */
+class PagedResultIterator implements Iterator<ResultRow>, Closeable {
+
+  /**
+   * Fetches the pages of a slice, one after the other
+   */
+  interface PageFetcher {
+    /**
+     * @param previous the page fetched last, null to fetch the first page
+     * @return the next page, null if there are no more pages
+     * @throws ESClientException if the page could not be fetched
+     */
+    ESPage fetch(ESPage previous) throws ESClientException;
+
+    /**
+     * Releases the state kept on the cluster for the slice. Called once the slice is read or closed, and may be
+     * called more than once.
+     */
+    void release();
+  }
+
+  private final List<Slice> slices = Lists.newArrayList();
+  private final ExecutorService executor;
+  private final int limit;
+  private int current = 0;
+  private int processed = 0;
+
+  private final class Slice {
+    private final PageFetcher fetcher;
+    private ESPage page;
+    private ESResultSet rows;
+    private Future<ESPage> pending;
+    private boolean finished;
+
+    Slice(PageFetcher fetcher) {
+      this.fetcher = fetcher;
+    }
+
+    void prefetch() {
+      final ESPage previous = page;
+      pending = executor.submit(new Callable<ESPage>() {
+        @Override
+        public ESPage call() throws ESClientException {
+          return fetcher.fetch(previous);
+        }
+      });
+    }
+
+    boolean advance() throws ESClientException {
+      final ESPage next;
+      if (pending != null) {
+        next = await(pending);
+        pending = null;
+      } else if (finished) {
+        return false;
+      } else {
+        next = fetcher.fetch(page);
+      }
+      if (next == null) {
+        finished = true;
+        rows = null;
+        fetcher.release();
+        return false;
+      }
+      page = next;
+      rows = page.getResultSet();
+      if (executor != null) {
+        prefetch();
+      }
+      return true;
+    }
+
+    void cancel() {
+      finished = true;
+      if (pending != null) {
+        pending.cancel(true);
+        pending = null;
+      }
+      fetcher.release();
+    }
+  }
+
+  /**
+   * Starts fetching the slices and waits for the first page of the first slice.
+   *
+   * @param fetchers fetchers of the slices
+   * @param executor executor for fetching pages in the background, null to fetch pages only when they are read
+   * @param limit    maximum number of rows to return, -1 for no limit
+   * @throws ESClientException if the first page could not be fetched
+   */
+  PagedResultIterator(List<PageFetcher> fetchers, ExecutorService executor, int limit) throws ESClientException {
+    this.executor = executor;
+    this.limit = limit;
+    for (PageFetcher fetcher : fetchers) {
+      slices.add(new Slice(fetcher));
+    }
+    if (executor != null) {
+      for (Slice slice : slices.subList(1, slices.size())) {
+        slice.prefetch();
+      }
+    }
+    slices.get(0).advance();
+  }
+
+  /**
+   * @return metadata of the first page
+   */
+  LensResultSetMetadata getMetadata() {
+    return slices.get(0).page.getResultSet().getMetadata();
+  }
+
+  private static ESPage await(Future<ESPage> future) throws ESClientException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ESClientException("Interrupted while fetching page", e);
+    } catch (ExecutionException e) {
+      throw new ESClientException("Fetching page failed", e.getCause());
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (limit != -1 && processed >= limit) {
+      close();
+      return false;
+    }
+    try {
+      while (current < slices.size()) {
+        final Slice slice = slices.get(current);
+        if (slice.rows != null && slice.rows.hasNext()) {
+          return true;
+        }
+        if (!slice.advance()) {
+          current++;
+        }
+      }
+    } catch (ESClientException e) {
+      close();
+      throw new RuntimeException("Encountered a runtime issue during execution", e);
+    }
+    return false;
+  }
+
+  @Override
+  public ResultRow next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException("Processed : " + processed + ", Limit : " + limit);
+    }
+    processed++;
+    return slices.get(current).rows.next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("Cannot remove from es resultset!");
+  }
+
+  /**
+   * Stops fetching pages in the background and releases the state kept on the cluster for all the slices.
+   */
+  @Override
+  public void close() {
+    for (Slice slice : slices) {
+      slice.cancel();
+    }
+  }
+}
@@ -18,21 +18,35 @@
  */
 package org.apache.lens.driver.es.client.jest;
 
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Collection;
+
 import org.apache.lens.driver.es.ESDriverConfig;
 import org.apache.lens.driver.es.ESQuery;
 import org.apache.lens.driver.es.client.ESClient;
+import org.apache.lens.driver.es.client.ESPage;
 import org.apache.lens.driver.es.client.ESResultSet;
+import org.apache.lens.driver.es.client.jest.JestResultSetTransformer.ResultSetConstants;
 import org.apache.lens.driver.es.exceptions.ESClientException;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.hadoop.conf.Configuration;
 
+import com.google.common.base.Charsets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestClientFactory;
+import io.searchbox.client.JestResult;
 import io.searchbox.client.config.HttpClientConfig;
 import io.searchbox.core.Explain;
 import io.searchbox.core.Search;
 import io.searchbox.core.SearchResult;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.params.Parameters;
 import lombok.NonNull;
 
 /**
@@ -48,17 +62,21 @@ public class JestClientImpl extends ESClient {
 
   @NonNull
   private final JestClient client;
+  @NonNull
+  private final String server;
 
   public JestClientImpl(ESDriverConfig esDriverConfig, Configuration conf) {
     super(esDriverConfig, conf);
+    final Collection<String> servers = Validate.notNull(conf.getStringCollection(ES_SERVERS));
     final JestClientFactory factory = new JestClientFactory();
     factory.setHttpClientConfig(new HttpClientConfig
-      .Builder(Validate.notNull(conf.getStringCollection(ES_SERVERS)))
+      .Builder(servers)
       .maxTotalConnection(conf.getInt(MAX_TOTAL_CONN, DEFAULT_MAX_CONN))
       .multiThreaded(conf.getBoolean(IS_MULTITHREADED, DEFAULT_MULTI_THREADED))
       .readTimeout(esDriverConfig.getQueryTimeOutMs())
       .build());
     client = factory.getObject();
+    server = servers.isEmpty() ? "" : servers.iterator().next().replaceAll("/+$", "");
   }
 
   @Override
@@ -79,6 +97,92 @@ public class JestClientImpl extends ESClient {
     }
   }
 
+  @Override
+  protected ESPage executePage(ESQuery esQuery, String scrollKeepAlive) throws ESClientException {
+    try {
+      final Search.Builder builder = new Search.Builder(esQuery.getQuery())
+        .addIndex(esQuery.getIndex())
+        .addType(esQuery.getType());
+      if (scrollKeepAlive != null) {
+        builder.setParameter(Parameters.SCROLL, scrollKeepAlive);
+      }
+      return toPage(client.execute(builder.build()), esQuery);
+    } catch (ESClientException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ESClientException("Execution failed, ", e);
+    }
+  }
+
+  @Override
+  protected ESPage scrollPage(ESQuery esQuery, String scrollId, String scrollKeepAlive) throws ESClientException {
+    try {
+      return toPage(client.execute(new SearchScroll.Builder(scrollId, scrollKeepAlive).build()), esQuery);
+    } catch (ESClientException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new ESClientException("Scrolling failed, ", e);
+    }
+  }
+
+  /**
+   * Jest has no clear scroll action, so the scroll api of the first server is called directly.
+   */
+  @Override
+  protected void clearScroll(String scrollId) throws ESClientException {
+    HttpURLConnection connection = null;
+    try {
+      connection = (HttpURLConnection) new URL(server + "/_search/scroll/"
+        + URLEncoder.encode(scrollId, Charsets.UTF_8.name())).openConnection();
+      connection.setRequestMethod("DELETE");
+      connection.setConnectTimeout(esDriverConfig.getQueryTimeOutMs());
+      connection.setReadTimeout(esDriverConfig.getQueryTimeOutMs());
+      final int status = connection.getResponseCode();
+      // not found if the context already expired
+      if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_NOT_FOUND) {
+        throw new ESClientException("Clearing scroll failed with status " + status);
+      }
+    } catch (IOException e) {
+      throw new ESClientException("Clearing scroll failed, ", e);
+    } finally {
+      if (connection != null) {
+        connection.disconnect();
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    super.close();
+    client.shutdownClient();
+  }
+
+  private static ESPage toPage(JestResult result, ESQuery esQuery) throws ESClientException {
+    if (result == null) {
+      throw new NullPointerException("Got null result from client for " + esQuery);
+    }
+    final JsonObject json = result.getJsonObject();
+    if (json == null || !json.has(ResultSetConstants.HITS_KEY)) {
+      throw new ESClientException("Invalid response for " + esQuery + " : " + result.getJsonString());
+    }
+    final JsonArray hits = json.getAsJsonObject(ResultSetConstants.HITS_KEY)
+      .getAsJsonArray(ResultSetConstants.HITS_KEY);
+    JsonArray lastSortValues = null;
+    if (hits.size() > 0) {
+      final JsonObject lastHit = hits.get(hits.size() - 1).getAsJsonObject();
+      if (lastHit.has(ResultSetConstants.SORT_KEY)) {
+        lastSortValues = lastHit.getAsJsonArray(ResultSetConstants.SORT_KEY);
+      }
+    }
+    final String scrollId = json.has(ResultSetConstants.SCROLL_ID_KEY)
+      ? json.get(ResultSetConstants.SCROLL_ID_KEY).getAsString()
+      : null;
+    return new ESPage(
+      JestResultSetTransformer.transformFrom(json, esQuery.getSchema(), esQuery.getColumns()),
+      lastSortValues,
+      scrollId);
+  }
+
   public String explain(ESQuery esQuery) throws ESClientException {
     try {
       return client
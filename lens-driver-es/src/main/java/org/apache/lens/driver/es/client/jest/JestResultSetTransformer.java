@@ -260,5 +260,7 @@ public abstract class JestResultSetTransformer {
     public static final String FILTER_WRAPPER_KEY = "filter_wrapper";
     public static final String HITS_KEY = "hits";
     public static final String FIELDS_KEY = "fields";
+    public static final String SORT_KEY = "sort";
+    public static final String SCROLL_ID_KEY = "_scroll_id";
   }
 }
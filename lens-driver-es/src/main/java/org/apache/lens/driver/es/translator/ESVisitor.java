@@ -76,10 +76,21 @@ public abstract class ESVisitor implements ASTVisitor {
     return matchAllNode;
   }
 
+  /**
+   * Conf used for parsing when none is given, built once as building a HiveConf loads all its resources
+   */
+  private static final class DefaultParseConf {
+    private static final HiveConf CONF = new HiveConf();
+  }
+
   public static ESQuery rewrite(ESDriverConfig config, String hql) throws LensException {
+    return rewrite(config, hql, DefaultParseConf.CONF);
+  }
+
+  public static ESQuery rewrite(ESDriverConfig config, String hql, HiveConf parseConf) throws LensException {
     ASTNode rootQueryNode;
     try {
-      rootQueryNode = HQLParser.parseHQL(hql, new HiveConf());
+      rootQueryNode = HQLParser.parseHQL(hql, parseConf);
     } catch (Exception e) {
       throw new ESRewriteException(e);
     }
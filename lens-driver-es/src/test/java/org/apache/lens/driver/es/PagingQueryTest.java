@@ -0,0 +1,346 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.es;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.driver.es.client.ESResultSet;
+import org.apache.lens.driver.es.client.jest.JestClientImpl;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the search after and scroll paging modes of the jest client against a stub of the search api
+ */
+public class PagingQueryTest {
+
+  private static final int NUM_DOCS = 10;
+  private static final String QUERY =
+    "{\"from\":0,\"size\":3,\"fields\":[\"col1\"],\"sort\":[],\"timeout\":10000,\"filter\":{\"match_all\":{}}}";
+
+  private HttpServer server;
+  private final AtomicInteger searches = new AtomicInteger();
+  private final AtomicInteger scrolls = new AtomicInteger();
+  private final AtomicInteger scrollIds = new AtomicInteger();
+  private final Map<String, List<Integer>> scrollContexts = new ConcurrentHashMap<>();
+  private final Map<String, Integer> scrollSizes = new ConcurrentHashMap<>();
+  private final Set<String> clearedScrolls = Sets.newConcurrentHashSet();
+
+  /**
+   * Mimics the search and scroll apis over NUM_DOCS documents with ids d0, d1 ... sorted by their uid
+   */
+  private class SearchHandler implements HttpHandler {
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      final String body;
+      try (InputStream in = exchange.getRequestBody()) {
+        body = IOUtils.toString(in, Charsets.UTF_8.name());
+      }
+      final String path = exchange.getRequestURI().getPath();
+      final String params = exchange.getRequestURI().getQuery();
+      final JsonObject response;
+      if (exchange.getRequestMethod().equals("DELETE")) {
+        final String scrollId = path.substring(path.lastIndexOf('/') + 1);
+        clearedScrolls.add(scrollId);
+        scrollContexts.remove(scrollId);
+        response = new JsonObject();
+        response.addProperty("succeeded", true);
+      } else if (path.endsWith("/_search/scroll")) {
+        scrolls.incrementAndGet();
+        response = scroll(getScrollId(body, params));
+      } else {
+        searches.incrementAndGet();
+        final String keepAlive = getParam(params, "scroll");
+        response = search((JsonObject) new JsonParser().parse(body), keepAlive != null);
+      }
+      final byte[] bytes = response.toString().getBytes(Charsets.UTF_8);
+      exchange.getResponseHeaders().add("Content-Type", "application/json");
+      exchange.sendResponseHeaders(200, bytes.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(bytes);
+      }
+    }
+  }
+
+  private static String getParam(String params, String name) {
+    if (params != null) {
+      for (String param : params.split("&")) {
+        if (param.startsWith(name + "=")) {
+          return param.substring(name.length() + 1);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String getScrollId(String body, String params) {
+    final String fromParams = getParam(params, "scroll_id");
+    if (fromParams != null) {
+      return fromParams;
+    }
+    final String trimmed = body.trim();
+    if (trimmed.startsWith("{")) {
+      return ((JsonObject) new JsonParser().parse(trimmed)).get("scroll_id").getAsString();
+    }
+    return trimmed;
+  }
+
+  private static String uid(int doc) {
+    return "type#d" + doc;
+  }
+
+  private JsonObject search(JsonObject query, boolean scroll) {
+    final List<Integer> docs = Lists.newArrayList();
+    for (int i = 0; i < NUM_DOCS; i++) {
+      docs.add(i);
+    }
+    if (query.has(ESDriverConfig.SLICE)) {
+      final JsonObject slice = query.getAsJsonObject(ESDriverConfig.SLICE);
+      final int id = slice.get(ESDriverConfig.SLICE_ID).getAsInt();
+      final int max = slice.get(ESDriverConfig.SLICE_MAX).getAsInt();
+      final List<Integer> sliceDocs = Lists.newArrayList();
+      for (Integer doc : docs) {
+        if (doc % max == id) {
+          sliceDocs.add(doc);
+        }
+      }
+      docs.retainAll(sliceDocs);
+    }
+    if (query.has(ESDriverConfig.SEARCH_AFTER)) {
+      final String after = query.getAsJsonArray(ESDriverConfig.SEARCH_AFTER).get(0).getAsString();
+      final List<Integer> remaining = Lists.newArrayList();
+      for (Integer doc : docs) {
+        if (uid(doc).compareTo(after) > 0) {
+          remaining.add(doc);
+        }
+      }
+      docs.retainAll(remaining);
+    }
+    final int from = query.has(ESDriverConfig.FROM) ? query.get(ESDriverConfig.FROM).getAsInt() : 0;
+    final int size = query.get(ESDriverConfig.SIZE).getAsInt();
+    final List<Integer> page = Lists.newArrayList(docs.subList(Math.min(from, docs.size()),
+      Math.min(from + size, docs.size())));
+    final JsonObject response = toResponse(page);
+    if (scroll) {
+      final String scrollId = "scroll" + scrollIds.incrementAndGet();
+      scrollContexts.put(scrollId, Lists.newArrayList(docs.subList(page.size(), docs.size())));
+      scrollSizes.put(scrollId, size);
+      response.addProperty("_scroll_id", scrollId);
+    }
+    return response;
+  }
+
+  private JsonObject scroll(String scrollId) {
+    final List<Integer> remaining = scrollContexts.get(scrollId);
+    final List<Integer> page = Lists.newArrayList(remaining.subList(0,
+      Math.min(scrollSizes.get(scrollId), remaining.size())));
+    remaining.removeAll(page);
+    final JsonObject response = toResponse(page);
+    response.addProperty("_scroll_id", scrollId);
+    return response;
+  }
+
+  private static JsonObject toResponse(List<Integer> docs) {
+    final JsonArray hits = new JsonArray();
+    for (Integer doc : docs) {
+      final JsonObject hit = new JsonObject();
+      hit.addProperty("_id", "d" + doc);
+      final JsonObject fields = new JsonObject();
+      final JsonArray values = new JsonArray();
+      values.add(new JsonParser().parse("\"v" + doc + "\""));
+      fields.add("col1", values);
+      hit.add("fields", fields);
+      final JsonArray sort = new JsonArray();
+      sort.add(new JsonParser().parse("\"" + uid(doc) + "\""));
+      hit.add("sort", sort);
+      hits.add(hit);
+    }
+    final JsonObject hitsObject = new JsonObject();
+    hitsObject.addProperty("total", NUM_DOCS);
+    hitsObject.add("hits", hits);
+    final JsonObject response = new JsonObject();
+    response.add("hits", hitsObject);
+    return response;
+  }
+
+  @BeforeClass
+  public void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new SearchHandler());
+    server.start();
+  }
+
+  @AfterClass
+  public void stopServer() {
+    server.stop(0);
+  }
+
+  private JestClientImpl createClient(ESDriverConfig.PagingMode mode, int slices, boolean prefetch) {
+    final Configuration conf = new Configuration(false);
+    conf.set("lens.driver.es.jest.servers", "http://localhost:" + server.getAddress().getPort());
+    conf.setInt(ESDriverConfig.TERM_FETCH_SIZE_KEY, 3);
+    conf.setEnum(ESDriverConfig.TERM_PAGING_MODE_KEY, mode);
+    conf.setInt(ESDriverConfig.SCROLL_SLICES_KEY, slices);
+    conf.setBoolean(ESDriverConfig.TERM_PREFETCH_KEY, prefetch);
+    searches.set(0);
+    scrolls.set(0);
+    clearedScrolls.clear();
+    scrollContexts.clear();
+    return new JestClientImpl(new ESDriverConfig(conf), conf);
+  }
+
+  private static ESResultSet execute(JestClientImpl client, int limit) throws LensException {
+    return client.execute(new ESQuery("index", "type", QUERY, ImmutableList.of("col1"), ImmutableList.of("col1"),
+      ESQuery.QueryType.TERM, limit));
+  }
+
+  private static List<String> fetchAll(JestClientImpl client, int limit) throws LensException {
+    final ESResultSet resultSet = execute(client, limit);
+    final List<String> values = Lists.newArrayList();
+    while (resultSet.hasNext()) {
+      final ResultRow row = resultSet.next();
+      values.add((String) row.getValues().get(0));
+    }
+    return values;
+  }
+
+  private static List<String> allValues(int count) {
+    final List<String> values = Lists.newArrayList();
+    for (int i = 0; i < count; i++) {
+      values.add("v" + i);
+    }
+    return values;
+  }
+
+  @Test
+  public void testSearchAfter() throws LensException {
+    Assert.assertEquals(fetchAll(createClient(ESDriverConfig.PagingMode.SEARCH_AFTER, 1, false), -1),
+      allValues(NUM_DOCS));
+    // pages of 3, 3, 3 and 1 documents
+    Assert.assertEquals(searches.get(), 4);
+    Assert.assertEquals(scrolls.get(), 0);
+  }
+
+  @Test
+  public void testSearchAfterWithLimitAndPrefetch() throws LensException {
+    Assert.assertEquals(fetchAll(createClient(ESDriverConfig.PagingMode.SEARCH_AFTER, 1, true), 5), allValues(5));
+    // the second page is fetched for the remaining 2 documents only
+    Assert.assertEquals(searches.get(), 2);
+  }
+
+  @Test
+  public void testScroll() throws LensException {
+    Assert.assertEquals(fetchAll(createClient(ESDriverConfig.PagingMode.SCROLL, 1, true), -1),
+      allValues(NUM_DOCS));
+    Assert.assertEquals(searches.get(), 1);
+    // pages of 3, 3, 1 and an empty page ending the scroll
+    Assert.assertEquals(scrolls.get(), 4);
+    // the scroll context is released once read
+    Assert.assertEquals(clearedScrolls, Sets.newHashSet("scroll" + scrollIds.get()));
+    Assert.assertTrue(scrollContexts.isEmpty());
+  }
+
+  @Test
+  public void testScrollClearedOnClose() throws LensException, InterruptedException {
+    final JestClientImpl client = createClient(ESDriverConfig.PagingMode.SCROLL, 2, true);
+    try {
+      final ESResultSet resultSet = execute(client, -1);
+      Assert.assertTrue(resultSet.hasNext());
+      resultSet.next();
+      // the first page of the second slice is fetched in the background
+      long timeout = System.currentTimeMillis() + 5000;
+      while (scrollContexts.size() < 2 && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(scrollContexts.size(), 2);
+      // both scroll contexts are released though the rows are not all read. The page of the second slice may still be
+      // on its way to the client, its context is released once it arrives.
+      resultSet.close();
+      timeout = System.currentTimeMillis() + 5000;
+      while (clearedScrolls.size() < 2 && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+      }
+      Assert.assertEquals(clearedScrolls.size(), 2);
+      Assert.assertTrue(scrollContexts.isEmpty());
+    } finally {
+      client.close();
+    }
+  }
+
+  @Test
+  public void testSlicedScroll() throws LensException {
+    final List<String> values = fetchAll(createClient(ESDriverConfig.PagingMode.SCROLL, 3, true), -1);
+    Assert.assertEquals(values.size(), NUM_DOCS);
+    final Set<String> distinct = Sets.newHashSet(values);
+    Assert.assertEquals(distinct, Sets.newHashSet(allValues(NUM_DOCS)));
+    // one search per slice
+    Assert.assertEquals(searches.get(), 3);
+  }
+
+  @Test
+  public void testSlicedScrollWithLimit() throws LensException {
+    final List<String> values = fetchAll(createClient(ESDriverConfig.PagingMode.SCROLL, 2, false), 4);
+    Assert.assertEquals(values.size(), 4);
+    for (String value : values) {
+      Assert.assertTrue(allValues(NUM_DOCS).contains(value), value);
+    }
+    // reaching the limit releases the scroll context of the slice read, the other one was never opened
+    Assert.assertEquals(clearedScrolls.size(), 1);
+  }
+
+  @Test
+  public void testUnsupportedClient() {
+    final Configuration conf = new Configuration(false);
+    conf.setEnum(ESDriverConfig.TERM_PAGING_MODE_KEY, ESDriverConfig.PagingMode.SEARCH_AFTER);
+    try {
+      new MockClientES(new ESDriverConfig(conf), conf).execute(new ESQuery("index", "type", QUERY,
+        ImmutableList.of("col1"), ImmutableList.of("col1"), ESQuery.QueryType.TERM, -1));
+      Assert.fail("Paging should fail on a client which does not support it");
+    } catch (LensException e) {
+      Assert.assertTrue(e.getMessage().contains("not supported"), e.getMessage());
+    }
+  }
+}
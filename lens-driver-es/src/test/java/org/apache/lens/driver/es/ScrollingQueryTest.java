@@ -18,13 +18,17 @@
  */
 package org.apache.lens.driver.es;
 
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.lens.api.LensConf;
 import org.apache.lens.api.query.ResultRow;
 import org.apache.lens.cube.parse.CubeQueryConfUtil;
 import org.apache.lens.driver.es.client.ESResultSet;
 import org.apache.lens.driver.es.translator.ESVisitor;
+import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
 
 import org.apache.hadoop.conf.Configuration;
 
@@ -90,4 +94,17 @@ public class ScrollingQueryTest extends ESDriverTest{
     Assert.assertEquals(rows.size(), 3, "Streaming failed!!!");
   }
 
+  @Test
+  protected void testTranslationCache() throws LensException {
+    final long cached = driver.getTranslationCacheSize();
+    for (int i = 0; i < 2; i++) {
+      final QueryContext context = new QueryContext("select col1 from index.type limit 1", "testuser",
+        new LensConf(), config, Collections.<LensDriver>singletonList(driver));
+      final ESResultSet resultSet = (ESResultSet) driver.execute(context);
+      Assert.assertTrue(resultSet.hasNext());
+      Assert.assertEquals(resultSet.next().getValues().get(0), "v1");
+    }
+    Assert.assertEquals(driver.getTranslationCacheSize(), cached + 1, "Translation should be cached");
+  }
+
 }
@@ -0,0 +1,50 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.hive;
+
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hive.service.cli.CLIServiceClient;
+import org.apache.hive.service.cli.HiveSQLException;
+
+/**
+ * Runs calls against hive server, each on a client which is held only for the duration of the call.
+ */
+public interface HiveClientCaller {
+
+  /**
+   * Run the call on a client.
+   *
+   * @param call the call
+   * @param <T>  the result type
+   * @return result of the call
+   * @throws LensException    if a client could not be obtained
+   * @throws HiveSQLException the error returned by the call
+   */
+  <T> T call(ClientCall<T> call) throws LensException, HiveSQLException;
+
+  /**
+   * A call against hive server.
+   *
+   * @param <T> the result type
+   */
+  interface ClientCall<T> {
+    T call(CLIServiceClient client) throws HiveSQLException;
+  }
+}
@@ -26,7 +26,6 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -41,6 +40,7 @@ import org.apache.lens.server.api.driver.*;
 import org.apache.lens.server.api.driver.DriverQueryStatus.DriverQueryState;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
 import org.apache.lens.server.api.query.AbstractQueryContext;
 import org.apache.lens.server.api.query.PreparedQueryContext;
 import org.apache.lens.server.api.query.QueryContext;
@@ -50,6 +50,7 @@ import org.apache.lens.server.api.query.cost.QueryCostCalculator;
 import org.apache.lens.server.api.query.priority.CostRangePriorityDecider;
 import org.apache.lens.server.api.query.priority.CostToPriorityRangeConf;
 import org.apache.lens.server.api.query.priority.QueryPriorityDecider;
+import org.apache.lens.server.api.util.LayeredConfiguration;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
@@ -64,6 +65,7 @@ import org.apache.hive.service.rpc.thrift.TOperationHandle;
 import org.apache.hive.service.rpc.thrift.TProtocolVersion;
 import org.apache.hive.service.rpc.thrift.TSessionHandle;
 
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -82,6 +84,24 @@ public class HiveDriver extends AbstractLensDriver {
   /** The Constant HS2_CONNECTION_EXPIRY_DELAY. */
   public static final String HS2_CONNECTION_EXPIRY_DELAY = "lens.driver.hive.hs2.connection.expiry.delay";
 
+  /** Maximum connections to HiveServer2 open at a time for a user. */
+  public static final String HS2_CONNECTION_POOL_MAX_PER_USER = "lens.driver.hive.hs2.connection.pool.max.per.user";
+
+  /** Maximum time in milliseconds to wait for a connection to HiveServer2. */
+  public static final String HS2_CONNECTION_POOL_MAX_WAIT = "lens.driver.hive.hs2.connection.pool.max.wait";
+
+  /** Whether plans of native queries are cached. */
+  public static final String EXPLAIN_CACHE_ENABLED = "lens.driver.hive.explain.cache.enabled";
+
+  /** Maximum number of plans of native queries cached. */
+  public static final String EXPLAIN_CACHE_MAX_ENTRIES = "lens.driver.hive.explain.cache.max.entries";
+
+  /** Time in milliseconds after which a cached plan expires. */
+  public static final String EXPLAIN_CACHE_TTL = "lens.driver.hive.explain.cache.ttl";
+
+  /** Prefixes of the query conf keys which are part of the key of a cached plan. */
+  public static final String EXPLAIN_CACHE_CONF_PREFIXES = "lens.driver.hive.explain.cache.conf.prefixes";
+
   public static final String HS2_CALCULATE_PRIORITY = "lens.driver.hive.calculate.priority";
   public static final String HS2_COST_CALCULATOR = "lens.driver.hive.cost.calculator.class";
 
@@ -92,6 +112,12 @@ public class HiveDriver extends AbstractLensDriver {
 
   // Default values of conf params
   public static final long DEFAULT_EXPIRY_DELAY = 600 * 1000;
+  public static final int DEFAULT_CONNECTION_POOL_MAX_PER_USER = 16;
+  public static final long DEFAULT_CONNECTION_POOL_MAX_WAIT = 60 * 1000;
+  public static final boolean DEFAULT_EXPLAIN_CACHE_ENABLED = false;
+  public static final int DEFAULT_EXPLAIN_CACHE_MAX_ENTRIES = 1000;
+  public static final long DEFAULT_EXPLAIN_CACHE_TTL = 3600 * 1000;
+  public static final String DEFAULT_EXPLAIN_CACHE_CONF_PREFIXES = "hive.,mapreduce.job.queuename";
   public static final String HS2_PRIORITY_DEFAULT_RANGES = "VERY_HIGH,7.0,HIGH,30.0,NORMAL,90,LOW";
   public static final String SESSION_KEY_DELIMITER = ".";
 
@@ -111,16 +137,9 @@ public class HiveDriver extends AbstractLensDriver {
   /** The session lock. */
   private final Lock sessionLock;
 
-  // connections need to be separate for each user and each thread
-  /** The thread connections. */
-  private final Map<String, ExpirableConnection> threadConnections =
-    new ConcurrentHashMap<String, ExpirableConnection>();
-
-  /** The thrift conn expiry queue. */
-  private final DelayQueue<ExpirableConnection> thriftConnExpiryQueue = new DelayQueue<ExpirableConnection>();
-
-  /** The connection expiry thread. */
-  private final Thread connectionExpiryThread = new Thread(new ConnectionExpiryRunnable());
+  // connections need to be separate for each user, assigned only in case of remote connection
+  /** The connection pool. */
+  private ThriftConnectionPool connectionPool;
 
   // assigned only in case of embedded connection
   /** The embedded connection. */
@@ -134,6 +153,10 @@ public class HiveDriver extends AbstractLensDriver {
   /** The driver listeners. */
   private List<LensEventListener<DriverEvent>> driverListeners;
 
+  /** Cache of the plans of native queries, null if disabled. */
+  @Getter
+  private HiveExplainPlanCache explainPlanCache;
+
   QueryCostCalculator queryCostCalculator;
   QueryPriorityDecider queryPriorityDecider;
   // package-local. Test case can change.
@@ -172,125 +195,13 @@ public class HiveDriver extends AbstractLensDriver {
     resourcesAddedForSession.put(hiveSession, Boolean.TRUE);
   }
 
-  /**
-   * The Class ConnectionExpiryRunnable.
-   */
-  class ConnectionExpiryRunnable implements Runnable {
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Runnable#run()
-     */
-    @Override
-    public void run() {
-      try {
-        while (true) {
-          ExpirableConnection expired = thriftConnExpiryQueue.take();
-          expired.setExpired();
-          ThriftConnection thConn = expired.getConnection();
-
-          if (thConn != null) {
-            try {
-              log.info("Closed connection: {}", expired.getConnId());
-              thConn.close();
-            } catch (IOException e) {
-              log.error("Error closing connection", e);
-            }
-          }
-        }
-      } catch (InterruptedException intr) {
-        log.warn("Connection expiry thread interrupted", intr);
-        return;
-      }
-    }
-  }
-
-  /** The Constant CONNECTION_COUNTER. */
-  private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
-
-  /**
-   * The Class ExpirableConnection.
-   */
-  static class ExpirableConnection implements Delayed {
-
-    /** The access time. */
-    long accessTime;
-
-    /** The conn. */
-    private final ThriftConnection conn;
-
-    /** The timeout. */
-    private final long timeout;
-
-    /** The expired. */
-    private volatile boolean expired;
-
-    /** The conn id. */
-    private final int connId;
-
-    /**
-     * Instantiates a new expirable connection.
-     *
-     * @param conn    the conn
-     * @param timeout the timeout
-     */
-    ExpirableConnection(ThriftConnection conn, long timeout) {
-      this.conn = conn;
-      this.timeout = timeout;
-      connId = CONNECTION_COUNTER.incrementAndGet();
-      accessTime = System.currentTimeMillis();
-    }
-
-    private ThriftConnection getConnection() {
-      accessTime = System.currentTimeMillis();
-      return conn;
-    }
-
-    private boolean isExpired() {
-      return expired;
-    }
-
-    /**
-     * Sets the expired.
-     */
-    private void setExpired() {
-      expired = true;
-    }
-
-    private int getConnId() {
-      return connId;
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.lang.Comparable#compareTo(java.lang.Object)
-     */
-    @Override
-    public int compareTo(Delayed other) {
-      return (int) (this.getDelay(TimeUnit.MILLISECONDS) - other.getDelay(TimeUnit.MILLISECONDS));
-    }
-
-    /*
-     * (non-Javadoc)
-     *
-     * @see java.util.concurrent.Delayed#getDelay(java.util.concurrent.TimeUnit)
-     */
-    @Override
-    public long getDelay(TimeUnit unit) {
-      long age = System.currentTimeMillis() - accessTime;
-      return unit.convert(timeout - age, TimeUnit.MILLISECONDS);
-    }
-  }
-
   /**
    * Open connections.
    *
    * @return the int
    */
   int openConnections() {
-    return thriftConnExpiryQueue.size();
+    return connectionPool == null ? 0 : connectionPool.getOpenConnections();
   }
 
   /** The connection class. */
@@ -313,9 +224,6 @@ public class HiveDriver extends AbstractLensDriver {
     opHandleToSession = new ConcurrentHashMap<>();
     orphanedHiveSessions = new ConcurrentLinkedQueue<>();
     resourcesAddedForSession = new HashMap<>();
-    connectionExpiryThread.setDaemon(true);
-    connectionExpiryThread.setName("HiveDriver-ConnectionExpiryThread");
-    connectionExpiryThread.start();
     driverListeners = new ArrayList<LensEventListener<DriverEvent>>();
     log.info("Hive driver inited");
   }
@@ -336,6 +244,24 @@ public class HiveDriver extends AbstractLensDriver {
       ThriftConnection.class);
     isEmbedded = (connectionClass.getName().equals(EmbeddedThriftConnection.class.getName()));
     connectionExpiryTimeout = getConf().getLong(HS2_CONNECTION_EXPIRY_DELAY, DEFAULT_EXPIRY_DELAY);
+    if (!isEmbedded) {
+      if (connectionPool != null) {
+        connectionPool.close();
+      }
+      connectionPool = new ThriftConnectionPool(connectionClass, hiveConf, getFullyQualifiedName(),
+        getConf().getInt(HS2_CONNECTION_POOL_MAX_PER_USER, DEFAULT_CONNECTION_POOL_MAX_PER_USER),
+        getConf().getLong(HS2_CONNECTION_POOL_MAX_WAIT, DEFAULT_CONNECTION_POOL_MAX_WAIT), connectionExpiryTimeout,
+        LensMetricsRegistry.getStaticRegistry().timer(
+          MetricRegistry.name("lens", HiveDriver.class.getSimpleName(), getFullyQualifiedName(), "connection-wait")));
+    }
+    if (getConf().getBoolean(EXPLAIN_CACHE_ENABLED, DEFAULT_EXPLAIN_CACHE_ENABLED)) {
+      explainPlanCache = new HiveExplainPlanCache(
+        getConf().getInt(EXPLAIN_CACHE_MAX_ENTRIES, DEFAULT_EXPLAIN_CACHE_MAX_ENTRIES),
+        getConf().getLong(EXPLAIN_CACHE_TTL, DEFAULT_EXPLAIN_CACHE_TTL),
+        Arrays.asList(getConf().getTrimmedStrings(EXPLAIN_CACHE_CONF_PREFIXES, DEFAULT_EXPLAIN_CACHE_CONF_PREFIXES)));
+    } else {
+      explainPlanCache = null;
+    }
     whetherCalculatePriority = getConf().getBoolean(HS2_CALCULATE_PRIORITY, true);
     Class<? extends QueryCostCalculator> queryCostCalculatorClass = getConf().getClass(HS2_COST_CALCULATOR,
       FactPartitionBasedQueryCostCalculator.class, QueryCostCalculator.class);
@@ -399,7 +325,19 @@ public class HiveDriver extends AbstractLensDriver {
       return (HiveQueryPlan) explainCtx.getDriverContext().getDriverQueryPlan(this);
     }
     log.info("{} Explain: {}", getFullyQualifiedName(), explainCtx.getDriverQuery(this));
-    Configuration explainConf = new Configuration(explainCtx.getDriverConf(this));
+    // Plans of cube queries are not cached, their cost depends on the query context
+    String cacheKey = null;
+    if (explainPlanCache != null && !explainCtx.isOlapQuery()) {
+      cacheKey = explainPlanCache.getKey(explainCtx, this, explainCtx.getDriverConf(this));
+      hiveConf.setClassLoader(explainCtx.getConf().getClassLoader());
+      HiveQueryPlan cached = explainPlanCache.lookup(cacheKey, hiveConf);
+      if (cached != null) {
+        log.info("{} Using cached plan for: {}", getFullyQualifiedName(), explainCtx.getDriverQuery(this));
+        explainCtx.getDriverContext().setDriverQueryPlan(this, cached);
+        return cached;
+      }
+    }
+    Configuration explainConf = LayeredConfiguration.create(explainCtx.getDriverConf(this));
     explainConf.setClassLoader(explainCtx.getConf().getClassLoader());
     explainConf.setBoolean(LensConfConstants.QUERY_PERSISTENT_RESULT_INDRIVER, false);
     final String explainQuery = "EXPLAIN EXTENDED " + explainCtx.getDriverQuery(this);
@@ -417,6 +355,9 @@ public class HiveDriver extends AbstractLensDriver {
     try {
       hiveConf.setClassLoader(explainCtx.getConf().getClassLoader());
       HiveQueryPlan hqp = new HiveQueryPlan(explainOutput, null, hiveConf, calculateQueryCost(explainCtx));
+      if (cacheKey != null) {
+        explainPlanCache.put(cacheKey, hqp, hiveConf);
+      }
       explainCtx.getDriverContext().setDriverQueryPlan(this, hqp);
       return hqp;
     } catch (HiveException e) {
@@ -478,13 +419,14 @@ public class HiveDriver extends AbstractLensDriver {
       Configuration qdconf = ctx.getDriverConf(this);
       qdconf.set("mapred.job.name", ctx.getQueryHandle().toString());
       SessionHandle sessionHandle = getSession(ctx);
-      op = getClient().executeStatement(sessionHandle, ctx.getSelectedDriverQuery(), qdconf.getValByRegex(".*"));
+      op = withClient(client -> client.executeStatement(sessionHandle, ctx.getSelectedDriverQuery(),
+        qdconf.getValByRegex(".*")));
       log.info("The hive operation handle: {}", op);
       ctx.setDriverOpHandle(op.toString());
       hiveHandles.put(ctx.getQueryHandle(), op);
       opHandleToSession.put(op, sessionHandle);
       updateStatus(ctx);
-      OperationStatus status = getClient().getOperationStatus(op);
+      OperationStatus status = getOperationStatus(op);
       if (status.getState() == OperationState.ERROR) {
         throw new LensException("Unknown error while running query " + ctx.getUserQuery());
       }
@@ -521,8 +463,8 @@ public class HiveDriver extends AbstractLensDriver {
       qdconf.set("mapred.job.name", ctx.getQueryHandle().toString());
       decidePriority(ctx);
       SessionHandle sessionHandle = getSession(ctx);
-      OperationHandle op = getClient().executeStatementAsync(sessionHandle, ctx.getSelectedDriverQuery(),
-        qdconf.getValByRegex(".*"));
+      OperationHandle op = withClient(client -> client.executeStatementAsync(sessionHandle,
+        ctx.getSelectedDriverQuery(), qdconf.getValByRegex(".*")));
       ctx.setDriverOpHandle(op.toString());
       log.info("QueryHandle: {} HiveHandle:{}", ctx.getQueryHandle(), op);
       hiveHandles.put(ctx.getQueryHandle(), op);
@@ -547,7 +489,7 @@ public class HiveDriver extends AbstractLensDriver {
     if (status == null) {
       status = new DriverQueryStatus();
     }
-    OperationStatus opStatus = getClient().getOperationStatus(handle);
+    OperationStatus opStatus = getOperationStatus(handle);
     log.debug("GetStatus on hiveHandle: {} returned state:", handle, opStatus.getState().name());
     switch (opStatus.getState()) {
     case CANCELED:
@@ -652,7 +594,9 @@ public class HiveDriver extends AbstractLensDriver {
 
   private void fetchLogs(OperationHandle opHandle) throws LensException {
     try {
-      for (Object[] o : getClient().fetchResults(opHandle, FetchOrientation.FETCH_NEXT, -1, FetchType.LOG)) {
+      RowSet logs = withClient(client -> client.fetchResults(opHandle, FetchOrientation.FETCH_NEXT, -1,
+        FetchType.LOG));
+      for (Object[] o : logs) {
         for (Object logLine : o) {
           log.info("Update from hive: " + String.valueOf(logLine));
         }
@@ -702,7 +646,10 @@ public class HiveDriver extends AbstractLensDriver {
       log.info("CloseQuery hiveHandle: {}", opHandle);
       try {
         fetchLogs(opHandle);
-        getClient().closeOperation(opHandle);
+        withClient(client -> {
+          client.closeOperation(opHandle);
+          return null;
+        });
       } catch (HiveSQLException e) {
         checkInvalidOperation(handle, e);
         throw new LensException("Unable to close query", e);
@@ -712,7 +659,10 @@ public class HiveDriver extends AbstractLensDriver {
           && orphanedHiveSessions.contains(hiveSession)) {
           orphanedHiveSessions.remove(hiveSession);
           try {
-            getClient().closeSession(hiveSession);
+            withClient(client -> {
+              client.closeSession(hiveSession);
+              return null;
+            });
             log.info("Closed orphaned hive session : {}", hiveSession.getHandleIdentifier());
           } catch (HiveSQLException e) {
             log.warn("Error closing orphan hive session : {} ", hiveSession.getHandleIdentifier(), e);
@@ -734,7 +684,10 @@ public class HiveDriver extends AbstractLensDriver {
     opHandleToSession.remove(hiveHandle);
     try {
       log.info("CancelQuery hiveHandle: {}", hiveHandle);
-      getClient().cancelOperation(hiveHandle);
+      withClient(client -> {
+        client.cancelOperation(hiveHandle);
+        return null;
+      });
       return true;
     } catch (HiveSQLException e) {
       checkInvalidOperation(handle, e);
@@ -755,6 +708,9 @@ public class HiveDriver extends AbstractLensDriver {
     lensToHiveSession.clear();
     orphanedHiveSessions.clear();
     sessionLock.unlock();
+    if (connectionPool != null) {
+      connectionPool.close();
+    }
   }
 
   /**
@@ -801,46 +757,63 @@ public class HiveDriver extends AbstractLensDriver {
     return null;
   }
 
-  protected CLIServiceClient getClient() throws LensException {
+  /**
+   * Run the call on a client of the current user.
+   *
+   * @param call the call
+   * @return result of the call
+   * @throws LensException    if a client could not be obtained
+   * @throws HiveSQLException the error returned by the call
+   */
+  protected <T> T withClient(HiveClientCaller.ClientCall<T> call) throws LensException, HiveSQLException {
     if (isEmbedded) {
-      if (embeddedConnection == null) {
-        try {
-          embeddedConnection = connectionClass.newInstance();
-          embeddedConnection.init(hiveConf, null);
-        } catch (Exception e) {
-          throw new LensException(e);
+      return call.call(getEmbeddedClient());
+    }
+    return connectionPool.execute(getConnectionUser(), call);
+  }
+
+  /**
+   * Get a caller which runs calls on clients of the given user, for result sets which fetch rows after the launching
+   * call returns.
+   *
+   * @param user the user
+   * @return the client caller
+   */
+  HiveClientCaller getClientCaller(final String user) {
+    return new HiveClientCaller() {
+      @Override
+      public <T> T call(ClientCall<T> call) throws LensException, HiveSQLException {
+        if (isEmbedded) {
+          return call.call(getEmbeddedClient());
         }
-        log.info("New thrift connection {}", connectionClass);
-      }
-      return embeddedConnection.getClient();
-    } else {
-      String user = hiveConf.getVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_CLIENT_USER);
-      if (SessionState.get() != null && SessionState.get().getUserName() != null) {
-        user = SessionState.get().getUserName();
+        return connectionPool.execute(user, call);
       }
+    };
+  }
 
-      String connectionKey = user.toLowerCase() + Thread.currentThread().getId();
-      ExpirableConnection connection = threadConnections.get(connectionKey);
-      if (connection == null || connection.isExpired()) {
-        try {
-          ThriftConnection tconn = connectionClass.newInstance();
-          tconn.init(hiveConf, user);
-          connection = new ExpirableConnection(tconn, connectionExpiryTimeout);
-          thriftConnExpiryQueue.offer(connection);
-          threadConnections.put(connectionKey, connection);
-          log.info("New thrift connection {} for thread: {} for user: {} connection ID={} on driver:{}",
-            connectionClass, Thread.currentThread().getId(), user, connection.getConnId(), getFullyQualifiedName());
-        } catch (Exception e) {
-          throw new LensException(e);
-        }
-      } else {
-        synchronized (thriftConnExpiryQueue) {
-          thriftConnExpiryQueue.remove(connection);
-          thriftConnExpiryQueue.offer(connection);
-        }
+  private synchronized CLIServiceClient getEmbeddedClient() throws LensException {
+    if (embeddedConnection == null) {
+      try {
+        embeddedConnection = connectionClass.newInstance();
+        embeddedConnection.init(hiveConf, null);
+      } catch (Exception e) {
+        throw new LensException(e);
       }
-      return connection.getConnection().getClient();
+      log.info("New thrift connection {}", connectionClass);
     }
+    return embeddedConnection.getClient();
+  }
+
+  private String getConnectionUser() {
+    String user = hiveConf.getVar(HiveConf.ConfVars.HIVE_SERVER2_THRIFT_CLIENT_USER);
+    if (SessionState.get() != null && SessionState.get().getUserName() != null) {
+      user = SessionState.get().getUserName();
+    }
+    return user.toLowerCase();
+  }
+
+  private OperationStatus getOperationStatus(OperationHandle opHandle) throws LensException, HiveSQLException {
+    return withClient(client -> client.getOperationStatus(opHandle));
   }
 
   @Override
@@ -861,9 +834,10 @@ public class HiveDriver extends AbstractLensDriver {
     log.info("Creating result set for hiveHandle:{}", op);
     try {
       if (context.isDriverPersistent()) {
-        return new HivePersistentResultSet(new Path(context.getDriverResultPath()), op, getClient());
+        return new HivePersistentResultSet(new Path(context.getDriverResultPath()), op,
+          getClientCaller(getConnectionUser()));
       } else if (op.hasResultSet()) {
-        return new HiveInMemoryResultSet(op, getClient(), closeAfterFetch);
+        return new HiveInMemoryResultSet(op, getClientCaller(getConnectionUser()), closeAfterFetch);
       } else {
         // queries that do not have result
         return null;
@@ -933,7 +907,7 @@ public class HiveDriver extends AbstractLensDriver {
       SessionHandle hiveSession;
       if (!lensToHiveSession.containsKey(sessionDbKey)) {
         try {
-          hiveSession = getClient().openSession(ctx.getClusterUser(), "", SESSION_CONF);
+          hiveSession = withClient(client -> client.openSession(ctx.getClusterUser(), "", SESSION_CONF));
           lensToHiveSession.put(sessionDbKey, hiveSession);
           log.info("New hive session for user: {} , lens session: {} , hive session handle: {} , driver : {}",
             ctx.getClusterUser(), sessionDbKey, hiveSession.getHandleIdentifier(), getFullyQualifiedName());
@@ -1053,7 +1027,7 @@ public class HiveDriver extends AbstractLensDriver {
     private boolean isFinished(OperationHandle hiveHandle) throws LensException {
       OperationState state;
       try {
-        state = getClient().getOperationStatus(hiveHandle).getState();
+        state = getOperationStatus(hiveHandle).getState();
       } catch (HiveSQLException e) {
         throw new LensException("Could not get Status", e);
       }
@@ -1287,7 +1261,10 @@ public class HiveDriver extends AbstractLensDriver {
           if (hiveSession != null) {
             try {
               if (isSessionClosable(hiveSession)) {
-                getClient().closeSession(hiveSession);
+                withClient(client -> {
+                  client.closeSession(hiveSession);
+                  return null;
+                });
                 log.info("Closed Hive session {} for lens session {}", hiveSession.getHandleIdentifier(),
                   sessionDbKey);
               } else {
@@ -1316,15 +1293,8 @@ public class HiveDriver extends AbstractLensDriver {
    * Close all connections.
    */
   private void closeAllConnections() {
-    synchronized (thriftConnExpiryQueue) {
-      for (ExpirableConnection connection : threadConnections.values()) {
-        try {
-          connection.getConnection().close();
-        } catch (Exception ce) {
-          log.warn("Error closing connection to hive server");
-        }
-      }
-      threadConnections.clear();
+    if (connectionPool != null) {
+      connectionPool.invalidateAll();
     }
   }
 
@@ -0,0 +1,319 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.hive;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.server.api.query.AbstractQueryContext;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hadoop.hive.metastore.IMetaStoreClient;
+import org.apache.hadoop.hive.metastore.api.FieldSchema;
+import org.apache.hadoop.hive.metastore.api.NotificationEvent;
+import org.apache.hadoop.hive.metastore.api.NotificationEventResponse;
+import org.apache.hadoop.hive.ql.metadata.Hive;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.metadata.Table;
+import org.apache.thrift.TException;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of the plans of native queries explained by hive driver.
+ * <p>
+ * A plan is identified by the driver query, the database it runs in, the submitter and the query conf matching the
+ * configured prefixes. Along with the plan, the state of the tables it reads is captured: table parameters, which
+ * carry the last DDL time and statistics, columns and location. Partitions are not listed, as that is costly for
+ * tables with many partitions. Instead, the plan records the id of the latest metastore notification event, and
+ * on a lookup only the events after it are read: any event on a queried table invalidates the plan. Partitions
+ * registered through lens also change the table parameters, as lens stores the partition timelines in them.
+ * Partitions added outside lens are hence only seen when the metastore notification log is enabled, otherwise the
+ * plan is served till it expires.
+ * <p>
+ * A cached plan is served only if the state of its tables is unchanged. Checking the state needs a metastore call
+ * per table and one for the notification events, which are much cheaper than compiling the query in hive server.
+ * Plans of queries which read no tables are not cached.
+ * <p>
+ * Every lookup returns a copy of the cached plan, as callers may set the prepare handle on it.
+ */
+@Slf4j
+public class HiveExplainPlanCache {
+
+  /**
+   * Maximum number of notification events read on a lookup. Plans with more events to check are invalidated, as
+   * reading the events would cost more than explaining the query again.
+   */
+  private static final int MAX_EVENTS = 1000;
+
+  private final List<String> confPrefixes = new ArrayList<>();
+  private final Cache<String, CachedPlan> plans;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * A cached plan along with the state of the tables it reads.
+   */
+  private static final class CachedPlan {
+    private final HiveQueryPlan plan;
+    private final String tableState;
+    /**
+     * Qualified names of the queried tables, in lower case, as in the notification events.
+     */
+    private final Set<String> tables;
+    /**
+     * Id of the latest notification event known not to change the queried tables.
+     */
+    private volatile long eventId;
+
+    CachedPlan(HiveQueryPlan plan, TableState state, long eventId) {
+      this.plan = plan;
+      this.tableState = state.hash;
+      this.tables = state.tables;
+      this.eventId = eventId;
+    }
+  }
+
+  /**
+   * State of the tables read by a plan.
+   */
+  static final class TableState {
+    private final String hash;
+    private final Set<String> tables;
+
+    TableState(String hash, Set<String> tables) {
+      this.hash = hash;
+      this.tables = tables;
+    }
+  }
+
+  /**
+   * Instantiates a new plan cache.
+   *
+   * @param maxEntries   maximum number of plans cached
+   * @param ttlMillis    time after which a cached plan expires
+   * @param confPrefixes prefixes of the query conf keys which affect the plan
+   */
+  public HiveExplainPlanCache(int maxEntries, long ttlMillis, Collection<String> confPrefixes) {
+    this.confPrefixes.addAll(confPrefixes);
+    this.plans = CacheBuilder.newBuilder()
+      .maximumSize(maxEntries)
+      .expireAfterWrite(Math.max(ttlMillis, 1), TimeUnit.MILLISECONDS)
+      .build();
+  }
+
+  /**
+   * Computes the key of the plan of a query.
+   *
+   * @param ctx        the query context
+   * @param driver     the driver explaining the query
+   * @param driverConf conf with which the query is explained
+   * @return the key
+   */
+  String getKey(AbstractQueryContext ctx, HiveDriver driver, Configuration driverConf) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    put(hasher, ctx.getDriverQuery(driver));
+    put(hasher, ctx.getDatabase());
+    put(hasher, ctx.getSubmittedUser());
+    SortedMap<String, String> relevantConf = new TreeMap<>();
+    for (Map.Entry<String, String> entry : driverConf) {
+      for (String prefix : confPrefixes) {
+        if (entry.getKey().startsWith(prefix)) {
+          relevantConf.put(entry.getKey(), entry.getValue());
+          break;
+        }
+      }
+    }
+    putAll(hasher, relevantConf);
+    return hasher.hash().toString();
+  }
+
+  /**
+   * Looks up the plan for the key.
+   *
+   * @param key           the key
+   * @param metastoreConf conf used to read the state of the queried tables
+   * @return copy of the cached plan, null on a miss
+   */
+  HiveQueryPlan lookup(String key, HiveConf metastoreConf) {
+    CachedPlan cached = plans.getIfPresent(key);
+    if (cached != null) {
+      TableState tableState = getTableState(cached.plan, metastoreConf);
+      if (tableState == null || !cached.tableState.equals(tableState.hash) || isChanged(cached, metastoreConf)) {
+        log.info("Tables {} changed since their plan was cached", cached.plan.getTablesQueried());
+        plans.invalidate(key);
+        cached = null;
+      }
+    }
+    if (cached == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return new HiveQueryPlan(cached.plan);
+  }
+
+  /**
+   * Caches the plan for the key.
+   *
+   * @param key           the key
+   * @param plan          the plan
+   * @param metastoreConf conf used to read the state of the queried tables
+   */
+  void put(String key, HiveQueryPlan plan, HiveConf metastoreConf) {
+    if (plan.getTablesQueried().isEmpty()) {
+      return;
+    }
+    // Read before the table state, so that changes done while reading the state are seen on lookup.
+    Long eventId = getCurrentEventId(metastoreConf);
+    TableState tableState = getTableState(plan, metastoreConf);
+    if (eventId != null && tableState != null) {
+      plans.put(key, new CachedPlan(new HiveQueryPlan(plan), tableState, eventId));
+    }
+  }
+
+  /**
+   * @return id of the latest metastore notification event, null if it can not be read.
+   */
+  private static Long getCurrentEventId(HiveConf metastoreConf) {
+    try {
+      return Hive.get(metastoreConf).getMSC().getCurrentNotificationEventId().getEventId();
+    } catch (HiveException | TException e) {
+      log.warn("Could not read the current metastore notification event id", e);
+      return null;
+    }
+  }
+
+  /**
+   * Reads the notification events after the ones already checked for the plan, and tells whether any of them is on
+   * the queried tables. The events are read only once per plan, as the checked id moves ahead on every lookup.
+   *
+   * @return true if any of the queried tables changed, or the events can not be read or are too many to read.
+   */
+  private static boolean isChanged(CachedPlan cached, HiveConf metastoreConf) {
+    NotificationEventResponse response;
+    try {
+      response = Hive.get(metastoreConf).getMSC().getNextNotification(cached.eventId, MAX_EVENTS,
+        new IMetaStoreClient.NotificationFilter() {
+          @Override
+          public boolean accept(NotificationEvent event) {
+            return true;
+          }
+        });
+    } catch (HiveException | TException e) {
+      log.warn("Could not read metastore notification events after {}", cached.eventId, e);
+      return true;
+    }
+    if (response == null || response.getEvents() == null) {
+      return false;
+    }
+    if (response.getEvents().size() >= MAX_EVENTS) {
+      return true;
+    }
+    long latest = cached.eventId;
+    for (NotificationEvent event : response.getEvents()) {
+      if (event.getTableName() != null && cached.tables.contains(
+        (event.getDbName() + "." + event.getTableName()).toLowerCase())) {
+        return true;
+      }
+      latest = Math.max(latest, event.getEventId());
+    }
+    cached.eventId = latest;
+    return false;
+  }
+
+  /**
+   * Computes the state of the tables read by the plan.
+   *
+   * @param plan          the plan
+   * @param metastoreConf conf used to read the tables
+   * @return the table states, null if any of the tables does not exist or can not be read
+   */
+  static TableState getTableState(HiveQueryPlan plan, HiveConf metastoreConf) {
+    try {
+      Hive metastore = Hive.get(metastoreConf);
+      Hasher hasher = Hashing.sha256().newHasher();
+      Set<String> tables = new HashSet<>();
+      for (String tableName : new TreeSet<>(plan.getTablesQueried())) {
+        Table table = metastore.getTable(tableName, false);
+        if (table == null) {
+          return null;
+        }
+        tables.add((table.getDbName() + "." + table.getTableName()).toLowerCase());
+        put(hasher, tableName);
+        putAll(hasher, new TreeMap<>(table.getParameters()));
+        for (FieldSchema column : table.getAllCols()) {
+          put(hasher, column.getName());
+          put(hasher, column.getType());
+        }
+        put(hasher, table.getDataLocation() == null ? null : table.getDataLocation().toString());
+      }
+      return new TableState(hasher.hash().toString(), tables);
+    } catch (HiveException e) {
+      log.warn("Could not read state of tables {}", plan.getTablesQueried(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Removes all cached plans.
+   */
+  public void invalidateAll() {
+    plans.invalidateAll();
+  }
+
+  /**
+   * @return number of cached plans
+   */
+  public long size() {
+    return plans.size();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private static void putAll(Hasher hasher, SortedMap<String, String> map) {
+    hasher.putInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      put(hasher, entry.getKey());
+      put(hasher, entry.getValue());
+    }
+  }
+
+  private static void put(Hasher hasher, String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(value.length());
+      hasher.putString(value, Charsets.UTF_8);
+    }
+  }
+}
@@ -38,8 +38,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class HiveInMemoryResultSet extends InMemoryResultSet {
 
-  /** The client. */
-  private final CLIServiceClient client;
+  /** The client caller. */
+  private final HiveClientCaller clientCaller;
 
   /** The op handle. */
   private final OperationHandle opHandle;
@@ -70,16 +70,17 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
    * Instantiates a new hive in memory result set.
    *
    * @param hiveHandle      the hive handle
-   * @param client          the client
+   * @param clientCaller    the client caller
    * @param closeAfterFecth the close after fecth
+   * @throws LensException    if a client could not be obtained
    * @throws HiveSQLException the hive sql exception
    */
-  public HiveInMemoryResultSet(OperationHandle hiveHandle, CLIServiceClient client, boolean closeAfterFecth)
-    throws HiveSQLException {
-    this.client = client;
+  public HiveInMemoryResultSet(OperationHandle hiveHandle, HiveClientCaller clientCaller, boolean closeAfterFecth)
+    throws LensException, HiveSQLException {
+    this.clientCaller = clientCaller;
     this.opHandle = hiveHandle;
     this.closeAfterFecth = closeAfterFecth;
-    this.metadata = client.getResultSetMetadata(opHandle);
+    this.metadata = clientCaller.call(client -> client.getResultSetMetadata(opHandle));
     this.numColumns = metadata.getColumnDescriptors().size();
     this.orientation = FetchOrientation.FETCH_FIRST;
   }
@@ -112,13 +113,17 @@ public class HiveInMemoryResultSet extends InMemoryResultSet {
   public boolean hasNext() throws LensException {
     if (fetchedRowsItr == null || !fetchedRowsItr.hasNext()) {
       try {
-        rowSet = client.fetchResults(opHandle, orientation, fetchSize, FetchType.QUERY_OUTPUT);
+        rowSet = clientCaller.call(client -> client.fetchResults(opHandle, orientation, fetchSize,
+          FetchType.QUERY_OUTPUT));
         orientation = FetchOrientation.FETCH_NEXT;
         noMoreResults = rowSet.numRows() == 0;
         if (noMoreResults) {
           if (closeAfterFecth) {
             log.info("No more results closing the query");
-            client.closeOperation(opHandle);
+            clientCaller.call(client -> {
+              client.closeOperation(opHandle);
+              return null;
+            });
           }
           return false;
         }
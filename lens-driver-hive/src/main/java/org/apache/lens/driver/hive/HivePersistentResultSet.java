@@ -23,7 +23,6 @@ import org.apache.lens.server.api.driver.PersistentResultSet;
 import org.apache.lens.server.api.error.LensException;
 
 import org.apache.hadoop.fs.Path;
-import org.apache.hive.service.cli.CLIServiceClient;
 import org.apache.hive.service.cli.HiveSQLException;
 import org.apache.hive.service.cli.OperationHandle;
 import org.apache.hive.service.cli.TableSchema;
@@ -44,13 +43,14 @@ public class HivePersistentResultSet extends PersistentResultSet {
    *
    * @param resultSetPath the result set path
    * @param opHandle      the op handle
-   * @param client        the client
+   * @param clientCaller  the client caller
+   * @throws LensException    if a client could not be obtained
    * @throws HiveSQLException the hive sql exception
    */
-  public HivePersistentResultSet(Path resultSetPath, OperationHandle opHandle, CLIServiceClient client)
-    throws HiveSQLException {
+  public HivePersistentResultSet(Path resultSetPath, OperationHandle opHandle, HiveClientCaller clientCaller)
+    throws LensException, HiveSQLException {
     this.path = resultSetPath;
-    this.metadata = client.getResultSetMetadata(opHandle);
+    this.metadata = clientCaller.call(client -> client.getResultSetMetadata(opHandle));
   }
 
   /*
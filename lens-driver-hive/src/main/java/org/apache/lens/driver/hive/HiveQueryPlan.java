@@ -91,6 +91,25 @@ public class HiveQueryPlan extends DriverQueryPlan {
     CREATE
   }
 
+  /**
+   * Instantiates a copy of the plan, without the prepare handle.
+   *
+   * @param plan the plan
+   */
+  HiveQueryPlan(HiveQueryPlan plan) {
+    this.cost = plan.cost;
+    this.explainOutput = plan.explainOutput;
+    setExecMode(plan.getExecMode());
+    setScanMode(plan.getScanMode());
+    setHasSubQuery(plan.hasSubQuery());
+    setResultDestination(plan.getResultDestination());
+    tablesQueried.addAll(plan.getTablesQueried());
+    tableWeights.putAll(plan.getTableWeights());
+    for (Map.Entry<String, Set<?>> entry : plan.getPartitions().entrySet()) {
+      partitions.put(entry.getKey(), new HashSet<>(entry.getValue()));
+    }
+  }
+
   /**
    * Instantiates a new hive query plan.
    *
@@ -0,0 +1,399 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.hive;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hive.service.cli.HiveSQLException;
+import org.apache.thrift.transport.TTransportException;
+
+import com.codahale.metrics.Timer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bounded pool of connections to hive server, kept separately for each user.
+ * <p>
+ * A connection is borrowed for a single call and returned right after, so the number of connections depends on the
+ * number of concurrent calls of a user and not on the number of threads making them. Callers wait for a connection
+ * when the user already has the maximum number of connections open. Connections are not reused when they failed
+ * with a transport error, when they were idle longer than the idle timeout or when they were opened before
+ * {@link #invalidateAll()}. Idle connections are closed by a background evictor.
+ */
+@Slf4j
+public class ThriftConnectionPool implements Closeable {
+
+  /** Counter used to number the connections in logs. */
+  private static final AtomicInteger CONNECTION_COUNTER = new AtomicInteger();
+
+  private final Class<? extends ThriftConnection> connectionClass;
+  private final HiveConf conf;
+  private final String name;
+  private final int maxConnectionsPerUser;
+  private final long maxWaitMillis;
+  private final long idleTimeoutMillis;
+
+  private final ConcurrentMap<String, UserPool> userPools = new ConcurrentHashMap<>();
+
+  /** Connections opened before the current generation are not reused. */
+  private final AtomicInteger generation = new AtomicInteger();
+
+  /** Time spent waiting for a connection. */
+  @Getter
+  private final Timer waitTimer;
+
+  private final AtomicLong createdConnections = new AtomicLong();
+  private final AtomicLong evictedConnections = new AtomicLong();
+  private final AtomicLong borrowTimeouts = new AtomicLong();
+
+  private final ScheduledExecutorService evictor;
+
+  private volatile boolean closed;
+
+  /**
+   * Connections of a user.
+   */
+  private static class UserPool {
+    /** Idle connections, most recently used first. */
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    /** Number of connections open, idle and borrowed. */
+    private int open;
+  }
+
+  /**
+   * Connection handed out by the pool.
+   */
+  static class PooledConnection {
+    private final ThriftConnection connection;
+    private final String user;
+    private final int connId;
+    private final int generation;
+    private long lastUsed;
+
+    PooledConnection(ThriftConnection connection, String user, int generation) {
+      this.connection = connection;
+      this.user = user;
+      this.generation = generation;
+      this.connId = CONNECTION_COUNTER.incrementAndGet();
+      this.lastUsed = System.currentTimeMillis();
+    }
+
+    ThriftConnection getConnection() {
+      return connection;
+    }
+  }
+
+  /**
+   * Instantiates a new connection pool.
+   *
+   * @param connectionClass       the connection class
+   * @param conf                  the conf used to open connections
+   * @param name                  name of the pool, used for the evictor thread and in logs
+   * @param maxConnectionsPerUser maximum connections open for a user
+   * @param maxWaitMillis         maximum time to wait for a connection
+   * @param idleTimeoutMillis     time after which an idle connection is closed
+   * @param waitTimer             timer updated with the time spent waiting for connections
+   */
+  public ThriftConnectionPool(Class<? extends ThriftConnection> connectionClass, HiveConf conf, String name,
+    int maxConnectionsPerUser, long maxWaitMillis, long idleTimeoutMillis, Timer waitTimer) {
+    if (maxConnectionsPerUser <= 0) {
+      throw new IllegalArgumentException("Maximum connections per user should be positive: " + maxConnectionsPerUser);
+    }
+    this.connectionClass = connectionClass;
+    this.conf = conf;
+    this.name = name;
+    this.maxConnectionsPerUser = maxConnectionsPerUser;
+    this.maxWaitMillis = maxWaitMillis;
+    this.idleTimeoutMillis = idleTimeoutMillis;
+    this.waitTimer = waitTimer;
+    this.evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread thread = new Thread(r, "HiveDriver-ConnectionEvictor-" + ThriftConnectionPool.this.name);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+    long evictionInterval = Math.max(1000, idleTimeoutMillis / 2);
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          evictIdle();
+        } catch (Exception e) {
+          log.warn("Error evicting idle connections of {}", ThriftConnectionPool.this.name, e);
+        }
+      }
+    }, evictionInterval, evictionInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Run the call on a connection of the user.
+   *
+   * @param user the user
+   * @param call the call
+   * @param <T>  the result type
+   * @return result of the call
+   * @throws LensException    if no connection could be obtained
+   * @throws HiveSQLException the error returned by the call
+   */
+  public <T> T execute(String user, HiveClientCaller.ClientCall<T> call) throws LensException, HiveSQLException {
+    PooledConnection connection = borrow(user);
+    boolean broken = true;
+    try {
+      T result = call.call(connection.getConnection().getClient());
+      broken = false;
+      return result;
+    } catch (HiveSQLException e) {
+      broken = isTransportFailure(e);
+      throw e;
+    } finally {
+      release(connection, broken);
+    }
+  }
+
+  /**
+   * Borrow a connection of the user. The connection should be given back through
+   * {@link #release(PooledConnection, boolean)}.
+   *
+   * @param user the user
+   * @return the connection
+   * @throws LensException if the pool is closed, on timeout or if the connection could not be opened
+   */
+  PooledConnection borrow(String user) throws LensException {
+    UserPool pool = getUserPool(user);
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    List<PooledConnection> unhealthy = new ArrayList<>();
+    PooledConnection reused = null;
+    try {
+      synchronized (pool) {
+        while (reused == null) {
+          if (closed) {
+            throw new LensException("Connection pool " + name + " is closed");
+          }
+          PooledConnection idle = pool.idle.pollFirst();
+          if (idle != null) {
+            if (isHealthy(idle, System.currentTimeMillis())) {
+              reused = idle;
+            } else {
+              pool.open--;
+              unhealthy.add(idle);
+            }
+          } else if (pool.open < maxConnectionsPerUser) {
+            pool.open++;
+            break;
+          } else {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              borrowTimeouts.incrementAndGet();
+              throw new LensException("Timed out after " + maxWaitMillis + " millis waiting for a connection to "
+                + "hive server for user " + user + " on " + name);
+            }
+            try {
+              TimeUnit.NANOSECONDS.timedWait(pool, remaining);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              throw new LensException("Interrupted waiting for a connection to hive server on " + name, e);
+            }
+          }
+        }
+      }
+    } finally {
+      closeAll(unhealthy);
+    }
+    waitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    if (reused != null) {
+      return reused;
+    }
+    try {
+      ThriftConnection connection = connectionClass.newInstance();
+      connection.init(conf, user);
+      PooledConnection pooled = new PooledConnection(connection, user, generation.get());
+      createdConnections.incrementAndGet();
+      log.info("New thrift connection {} for user: {} connection ID={} on {}", connectionClass, user, pooled.connId,
+        name);
+      return pooled;
+    } catch (Exception e) {
+      synchronized (pool) {
+        pool.open--;
+        pool.notify();
+      }
+      throw new LensException(e);
+    }
+  }
+
+  /**
+   * Give back a borrowed connection.
+   *
+   * @param connection the connection
+   * @param broken     whether the connection failed and should not be reused
+   */
+  void release(PooledConnection connection, boolean broken) {
+    UserPool pool = getUserPool(connection.user);
+    boolean discard = broken || closed || connection.generation != generation.get();
+    synchronized (pool) {
+      if (discard) {
+        pool.open--;
+      } else {
+        connection.lastUsed = System.currentTimeMillis();
+        pool.idle.offerFirst(connection);
+      }
+      pool.notify();
+    }
+    if (discard) {
+      closeConnection(connection);
+    }
+  }
+
+  /**
+   * Close the connections idle for longer than the idle timeout.
+   */
+  void evictIdle() {
+    long now = System.currentTimeMillis();
+    List<PooledConnection> expired = new ArrayList<>();
+    for (UserPool pool : userPools.values()) {
+      synchronized (pool) {
+        // Oldest connections are at the end
+        Iterator<PooledConnection> itr = pool.idle.descendingIterator();
+        while (itr.hasNext()) {
+          PooledConnection connection = itr.next();
+          if (isHealthy(connection, now)) {
+            break;
+          }
+          itr.remove();
+          pool.open--;
+          expired.add(connection);
+        }
+      }
+    }
+    evictedConnections.addAndGet(expired.size());
+    closeAll(expired);
+  }
+
+  /**
+   * Close all idle connections and stop reusing the borrowed ones, for example when hive server has lost its
+   * sessions.
+   */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    evictIdle();
+  }
+
+  /**
+   * @return number of open connections, idle and borrowed
+   */
+  public int getOpenConnections() {
+    int open = 0;
+    for (UserPool pool : userPools.values()) {
+      synchronized (pool) {
+        open += pool.open;
+      }
+    }
+    return open;
+  }
+
+  /**
+   * @return number of idle connections
+   */
+  public int getIdleConnections() {
+    int idle = 0;
+    for (UserPool pool : userPools.values()) {
+      synchronized (pool) {
+        idle += pool.idle.size();
+      }
+    }
+    return idle;
+  }
+
+  public long getCreatedConnections() {
+    return createdConnections.get();
+  }
+
+  public long getEvictedConnections() {
+    return evictedConnections.get();
+  }
+
+  public long getBorrowTimeouts() {
+    return borrowTimeouts.get();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    evictor.shutdownNow();
+    List<PooledConnection> idle = new ArrayList<>();
+    for (UserPool pool : userPools.values()) {
+      synchronized (pool) {
+        idle.addAll(pool.idle);
+        pool.open -= pool.idle.size();
+        pool.idle.clear();
+        pool.notifyAll();
+      }
+    }
+    closeAll(idle);
+  }
+
+  private UserPool getUserPool(String user) {
+    UserPool pool = userPools.get(user);
+    if (pool == null) {
+      UserPool newPool = new UserPool();
+      pool = userPools.putIfAbsent(user, newPool);
+      if (pool == null) {
+        pool = newPool;
+      }
+    }
+    return pool;
+  }
+
+  private boolean isHealthy(PooledConnection connection, long now) {
+    return connection.generation == generation.get() && now - connection.lastUsed < idleTimeoutMillis;
+  }
+
+  private static boolean isTransportFailure(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TTransportException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void closeAll(Collection<PooledConnection> connections) {
+    for (PooledConnection connection : connections) {
+      closeConnection(connection);
+    }
+  }
+
+  private void closeConnection(PooledConnection connection) {
+    try {
+      connection.getConnection().close();
+      log.info("Closed connection: {} of user {} on {}", connection.connId, connection.user, name);
+    } catch (Exception e) {
+      log.error("Error closing connection {} on {}", connection.connId, name, e);
+    }
+  }
+}
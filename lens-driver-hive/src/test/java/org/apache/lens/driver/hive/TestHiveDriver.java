@@ -787,6 +787,59 @@ public class TestHiveDriver {
     assertTrue(((String) plan.getPartitions().get(dataBase + ".test_part_table").iterator().next()).contains("dt"));
   }
 
+  /**
+   * Test that plans of native queries are cached till the queried tables change.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testExplainPlanCache() throws Exception {
+    createPartitionedTable("test_explain_cache");
+    Configuration cacheConf = new Configuration(driverConf);
+    cacheConf.setBoolean(HiveDriver.EXPLAIN_CACHE_ENABLED, true);
+    HiveDriver cachingDriver = new HiveDriver();
+    cachingDriver.configure(cacheConf, "hive", "hive1");
+    List<LensDriver> cachingDrivers = Lists.<LensDriver>newArrayList(cachingDriver);
+    HiveExplainPlanCache cache = cachingDriver.getExplainPlanCache();
+    assertNotNull(cache);
+    try {
+      SessionState.setCurrentSessionState(ss);
+      String query = "SELECT ID FROM test_explain_cache";
+      DriverQueryPlan plan = cachingDriver.explain(createExplainContext(query, queryConf, cachingDrivers));
+      assertEquals(cache.getMisses(), 1);
+      assertEquals(cache.size(), 1);
+
+      DriverQueryPlan cached = cachingDriver.explain(createExplainContext(query, queryConf, cachingDrivers));
+      assertEquals(cache.getHits(), 1);
+      assertNotSame(cached, plan);
+      assertEquals(cached.getTablesQueried(), plan.getTablesQueried());
+      assertEquals(cached.getPartitions(), plan.getPartitions());
+      assertEquals(cached.getPlan(), plan.getPlan());
+
+      // Registering a partition through lens invalidates the plan, as lens stores the partition timelines in the
+      // table parameters
+      QueryContext context = createContext("ALTER TABLE test_explain_cache ADD PARTITION (dt='tomorrow')", queryConf,
+        cachingDriver);
+      cachingDriver.execute(context);
+      context = createContext("ALTER TABLE test_explain_cache SET TBLPROPERTIES ('cube.storagetable.partition"
+        + ".timeline.cache.present'='true')", queryConf, cachingDriver);
+      cachingDriver.execute(context);
+      cachingDriver.explain(createExplainContext(query, queryConf, cachingDrivers));
+      assertEquals(cache.getHits(), 1);
+      assertEquals(cache.getMisses(), 2);
+    } finally {
+      cachingDriver.close();
+    }
+  }
+
+  private ExplainQueryContext createExplainContext(final String query, Configuration conf,
+    List<LensDriver> explainDrivers) {
+    ExplainQueryContext ectx = new ExplainQueryContext(UUID.randomUUID().toString(), query, "testuser", null, conf,
+      explainDrivers);
+    ectx.setLensSessionIdentifier(sessionid);
+    return ectx;
+  }
+
   /**
    * Test explain output.
    *
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.driver.hive;
+
+import static org.testng.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+import org.apache.hive.service.cli.CLIServiceClient;
+import org.apache.hive.service.cli.HiveSQLException;
+import org.apache.thrift.transport.TTransportException;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Timer;
+
+/**
+ * Tests for the connection pool of hive driver.
+ */
+@Test(groups = "unit-test")
+public class TestThriftConnectionPool {
+
+  /**
+   * Connection which only records whether it was closed.
+   */
+  public static class TestConnection implements ThriftConnection {
+    static final AtomicInteger CLOSED = new AtomicInteger();
+    private String user;
+
+    @Override
+    public CLIServiceClient getClient() throws LensException {
+      return null;
+    }
+
+    @Override
+    public void init(HiveConf conf, String user) {
+      this.user = user;
+    }
+
+    @Override
+    public void close() {
+      CLOSED.incrementAndGet();
+    }
+  }
+
+  private ThriftConnectionPool createPool(int maxPerUser, long maxWait, long idleTimeout) {
+    return new ThriftConnectionPool(TestConnection.class, new HiveConf(), "test", maxPerUser, maxWait, idleTimeout,
+      new Timer());
+  }
+
+  public void testReuse() throws Exception {
+    try (ThriftConnectionPool pool = createPool(2, 1000, 60000)) {
+      ThriftConnectionPool.PooledConnection first = pool.borrow("foo");
+      pool.release(first, false);
+      ThriftConnectionPool.PooledConnection second = pool.borrow("foo");
+      assertSame(second, first);
+      ThriftConnectionPool.PooledConnection other = pool.borrow("bar");
+      assertNotSame(other, first);
+      assertEquals(((TestConnection) other.getConnection()).user, "bar");
+      assertEquals(pool.getOpenConnections(), 2);
+      assertEquals(pool.getCreatedConnections(), 2);
+      pool.release(second, false);
+      pool.release(other, false);
+      assertEquals(pool.getIdleConnections(), 2);
+      assertEquals(pool.getWaitTimer().getCount(), 3);
+    }
+  }
+
+  public void testMaxConnectionsPerUser() throws Exception {
+    try (ThriftConnectionPool pool = createPool(2, 100, 60000)) {
+      ThriftConnectionPool.PooledConnection first = pool.borrow("foo");
+      pool.borrow("foo");
+      try {
+        pool.borrow("foo");
+        fail("Expected borrow to time out");
+      } catch (LensException e) {
+        assertEquals(pool.getBorrowTimeouts(), 1);
+      }
+      // Other users are not affected
+      pool.borrow("bar");
+
+      // A waiting borrow gets the returned connection
+      final AtomicReference<ThriftConnectionPool.PooledConnection> borrowed = new AtomicReference<>();
+      final CountDownLatch done = new CountDownLatch(1);
+      try (ThriftConnectionPool waitingPool = createPool(1, 10000, 60000)) {
+        final ThriftConnectionPool.PooledConnection held = waitingPool.borrow("foo");
+        Thread waiter = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              borrowed.set(waitingPool.borrow("foo"));
+            } catch (LensException e) {
+              // checked below
+            } finally {
+              done.countDown();
+            }
+          }
+        });
+        waiter.start();
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        waitingPool.release(held, false);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(borrowed.get(), held);
+      }
+      pool.release(first, false);
+      assertEquals(pool.getOpenConnections(), 3);
+    }
+  }
+
+  public void testBrokenConnections() throws Exception {
+    try (ThriftConnectionPool pool = createPool(2, 1000, 60000)) {
+      int closed = TestConnection.CLOSED.get();
+      try {
+        pool.execute("foo", new HiveClientCaller.ClientCall<Object>() {
+          @Override
+          public Object call(CLIServiceClient client) throws HiveSQLException {
+            throw new HiveSQLException(new TTransportException("broken pipe"));
+          }
+        });
+        fail("Expected the error of the call");
+      } catch (HiveSQLException e) {
+        // expected
+      }
+      assertEquals(TestConnection.CLOSED.get(), closed + 1);
+      assertEquals(pool.getOpenConnections(), 0);
+
+      // Query errors keep the connection
+      try {
+        pool.execute("foo", new HiveClientCaller.ClientCall<Object>() {
+          @Override
+          public Object call(CLIServiceClient client) throws HiveSQLException {
+            throw new HiveSQLException("SemanticException");
+          }
+        });
+        fail("Expected the error of the call");
+      } catch (HiveSQLException e) {
+        // expected
+      }
+      assertEquals(pool.getIdleConnections(), 1);
+
+      // Invalidated connections are closed, borrowed ones when they are returned
+      ThriftConnectionPool.PooledConnection borrowed = pool.borrow("bar");
+      pool.invalidateAll();
+      assertEquals(TestConnection.CLOSED.get(), closed + 2);
+      pool.release(borrowed, false);
+      assertEquals(TestConnection.CLOSED.get(), closed + 3);
+      assertEquals(pool.getOpenConnections(), 0);
+    }
+  }
+
+  public void testIdleEviction() throws Exception {
+    try (ThriftConnectionPool pool = createPool(2, 1000, 100)) {
+      int closed = TestConnection.CLOSED.get();
+      ThriftConnectionPool.PooledConnection connection = pool.borrow("foo");
+      pool.release(connection, false);
+      pool.evictIdle();
+      assertEquals(pool.getIdleConnections(), 1);
+      Thread.sleep(200);
+      pool.evictIdle();
+      assertEquals(pool.getIdleConnections(), 0);
+      assertEquals(pool.getEvictedConnections(), 1);
+      assertEquals(TestConnection.CLOSED.get(), closed + 1);
+      assertNotSame(pool.borrow("foo"), connection);
+    }
+  }
+}
@@ -51,8 +51,10 @@ import org.apache.lens.server.api.query.AbstractQueryContext;
 import org.apache.lens.server.api.query.PreparedQueryContext;
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.constraint.MaxConcurrentDriverQueriesConstraintFactory;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
 import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.query.cost.QueryFeatures;
 import org.apache.lens.server.api.query.rewrite.QueryRewriter;
 import org.apache.lens.server.api.util.LensUtil;
 import org.apache.lens.server.model.LogSegregationContext;
@@ -542,7 +544,10 @@ public class JDBCDriver extends AbstractLensDriver {
       VALIDATE_GAUGE);
     validate(qctx);
     validateGauge.markSuccess();
-    return JDBC_DRIVER_COST;
+    // Execution time is predicted once the server has trained the model on finished queries of the driver
+    Long execTime = ExecutionTimeModel.getStaticModel().predict(QueryFeatures.fromDriverQuery(getFullyQualifiedName(),
+      qctx.getDriverQuery(this), QueryFeatures.countPartitions(qctx.getDriverRewriterPlan(this))));
+    return execTime == null ? JDBC_DRIVER_COST : new FactPartitionBasedQueryCost(0, execTime);
   }
 
   /**
@@ -20,11 +20,14 @@ package org.apache.lens.lib.query;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.ParseException;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeMap;
 
+import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.LensResultSetMetadata;
 import org.apache.lens.server.api.query.PersistedOutputFormatter;
 import org.apache.lens.server.api.query.QueryContext;
@@ -39,7 +42,9 @@ import lombok.extern.slf4j.Slf4j;
 /**
  * File formatter for {@link PersistedOutputFormatter}
  * <p></p>
- * This is a {@link WrappedFileFormatter} which can wrap any {@link FileFormatter}.
+ * This is a {@link WrappedFileFormatter} which can wrap any {@link FileFormatter}. The part files are read in
+ * parallel, ahead of the formatter, and their rows are written in the order of the part files. Rows are copied
+ * without decoding them when they are written to a {@link HadoopFileFormatter} in the same encoding.
  */
 @Slf4j
 public class FilePersistentFormatter extends WrappedFileFormatter implements PersistedOutputFormatter {
@@ -114,26 +119,38 @@ public class FilePersistentFormatter extends WrappedFileFormatter implements Per
       for (FileStatus file : partFiles) {
         partFileMap.put(new PartFile(file.getPath().getName()), file);
       }
+    } catch (ParseException e) {
+      throw new IOException(e);
+    }
+    List<Path> paths = new ArrayList<>(partFileMap.size());
+    for (FileStatus file : partFileMap.values()) {
+      paths.add(file.getPath());
+    }
 
-      for (Map.Entry<PartFile, FileStatus> entry : partFileMap.entrySet()) {
-        log.info("Processing file:{}", entry.getValue().getPath());
-        BufferedReader in = null;
-        try {
-          // default encoding in hadoop filesystem is utf-8
-          in = new BufferedReader(new InputStreamReader(persistFs.open(entry.getValue().getPath()), "UTF-8"));
-          String row = in.readLine();
-          while (row != null) {
-            writeRow(row);
-            row = in.readLine();
-          }
-        } finally {
-          if (in != null) {
-            in.close();
+    AbstractFileFormatter fileFormatter = getFileFormatter();
+    HadoopFileFormatter copier = fileFormatter instanceof HadoopFileFormatter
+      && ((HadoopFileFormatter) fileFormatter).canCopyRows() ? (HadoopFileFormatter) fileFormatter : null;
+    int parallelism = ctx.getConf().getInt(LensConfConstants.PERSISTED_RESULT_READ_PARALLELISM,
+      LensConfConstants.DEFAULT_PERSISTED_RESULT_READ_PARALLELISM);
+    long readaheadBytes = ctx.getConf().getLong(LensConfConstants.PERSISTED_RESULT_READAHEAD_BYTES,
+      LensConfConstants.DEFAULT_PERSISTED_RESULT_READAHEAD_BYTES);
+    try (PartFileReadahead readahead = new PartFileReadahead(persistFs, paths, parallelism, readaheadBytes)) {
+      for (Path path : paths) {
+        log.info("Processing file:{}", path);
+        try (InputStream in = readahead.next()) {
+          if (copier != null) {
+            copier.copyRows(in);
+          } else {
+            // default encoding in hadoop filesystem is utf-8
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            String row = reader.readLine();
+            while (row != null) {
+              writeRow(row);
+              row = reader.readLine();
+            }
           }
         }
       }
-    } catch (ParseException e) {
-      throw new IOException(e);
     }
   }
 }
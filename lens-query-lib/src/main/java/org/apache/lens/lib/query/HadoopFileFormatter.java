@@ -19,6 +19,10 @@
 package org.apache.lens.lib.query;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 
 import org.apache.lens.lib.query.LensFileOutputFormat.LensRowWriter;
 
@@ -107,6 +111,54 @@ public class HadoopFileFormatter extends AbstractFileFormatter {
     numRows++;
   }
 
+  /**
+   * @return whether rows of UTF-8 encoded files can be copied to the output by {@link #copyRows(InputStream)}
+   */
+  public boolean canCopyRows() {
+    return StandardCharsets.UTF_8.equals(Charset.forName(getEncoding()));
+  }
+
+  /**
+   * Copies the rows of a UTF-8 encoded stream to the output without decoding and encoding them again. Line terminators
+   * are normalized, and the rows are counted, like when the rows are read and written one by one.
+   *
+   * @param in the stream
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  public void copyRows(InputStream in) throws IOException {
+    OutputStream out = rowWriter.getRawStream();
+    byte[] buffer = new byte[PartFileReadahead.CHUNK_SIZE];
+    boolean afterCarriageReturn = false;
+    boolean inRow = false;
+    int read;
+    while ((read = in.read(buffer)) >= 0) {
+      int start = 0;
+      for (int i = 0; i < read; i++) {
+        if (buffer[i] == '\n' || buffer[i] == '\r') {
+          out.write(buffer, start, i - start);
+          start = i + 1;
+          // \r\n ends a single row
+          if (buffer[i] == '\n' && afterCarriageReturn) {
+            afterCarriageReturn = false;
+          } else {
+            out.write('\n');
+            numRows++;
+            afterCarriageReturn = buffer[i] == '\r';
+          }
+          inRow = false;
+        } else {
+          afterCarriageReturn = false;
+          inRow = true;
+        }
+      }
+      out.write(buffer, start, read - start);
+    }
+    if (inRow) {
+      out.write('\n');
+      numRows++;
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -20,6 +20,7 @@ package org.apache.lens.lib.query;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.regex.Matcher;
@@ -76,6 +77,11 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
      */
     protected OutputStreamWriter out;
 
+    /**
+     * The stream the rows are encoded to.
+     */
+    private final OutputStream rawOut;
+
     /**
      * The tmp path.
      */
@@ -97,6 +103,7 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
     public LensRowWriter(DataOutputStream out, String encoding, Path tmpPath, String extn) {
       this.tmpPath = tmpPath;
       this.extn = extn;
+      this.rawOut = out;
       try {
         this.out = new OutputStreamWriter(out, encoding);
       } catch (UnsupportedEncodingException uee) {
@@ -137,6 +144,18 @@ public class LensFileOutputFormat extends FileOutputFormat<NullWritable, Text> {
       }
     }
 
+    /**
+     * Gets the stream the rows are encoded to, for writing rows which are already encoded. The rows written so far
+     * are flushed to it first.
+     *
+     * @return the stream
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public synchronized OutputStream getRawStream() throws IOException {
+      out.flush();
+      return rawOut;
+    }
+
     public Path getTmpPath() {
       return tmpPath;
     }
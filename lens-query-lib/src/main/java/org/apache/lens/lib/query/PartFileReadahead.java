@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.lib.query;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reads part files in parallel, ahead of their consumer, and hands them out in order.
+ * <p></p>
+ * Up to parallelism part files, starting from the one being consumed, are read concurrently. Each of them is buffered
+ * in chunks up to the readahead size, after which its reader waits for the consumer, so the memory used is bounded by
+ * parallelism times the readahead size whatever the number and size of the part files.
+ */
+@Slf4j
+class PartFileReadahead implements Closeable {
+
+  /** Size of the chunks the part files are read in. */
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  /** Marks the end of a part file in its chunk queue. */
+  private static final byte[] EOF = new byte[0];
+
+  private final FileSystem fs;
+  private final List<Path> partFiles;
+  private final int parallelism;
+  private final int bufferedChunks;
+  private final ExecutorService readers;
+  private final PartStream[] streams;
+  private int next = 0;
+  private int submitted = 0;
+
+  /**
+   * Instantiates a new part file readahead.
+   *
+   * @param fs             the file system of the part files
+   * @param partFiles      the part files, in the order they are consumed
+   * @param parallelism    number of part files read concurrently
+   * @param readaheadBytes bytes buffered ahead of the consumer for each part file
+   */
+  PartFileReadahead(FileSystem fs, List<Path> partFiles, int parallelism, long readaheadBytes) {
+    this.fs = fs;
+    this.partFiles = partFiles;
+    this.parallelism = Math.max(1, Math.min(parallelism, partFiles.size()));
+    this.bufferedChunks = (int) Math.max(1, Math.min(Integer.MAX_VALUE, readaheadBytes / CHUNK_SIZE));
+    this.streams = new PartStream[partFiles.size()];
+    ThreadFactory factory = new BasicThreadFactory.Builder()
+      .namingPattern("PartFileReader-%d")
+      .daemon(true)
+      .build();
+    this.readers = Executors.newFixedThreadPool(this.parallelism, factory);
+  }
+
+  /**
+   * Gets the next part file, starting to read the part files which follow it.
+   *
+   * @return stream of the next part file, which fails with the error of its reader, if any
+   */
+  InputStream next() {
+    // Part files are read in order, so every part file in the window has a reader
+    while (submitted < partFiles.size() && submitted < next + parallelism) {
+      streams[submitted] = new PartStream(partFiles.get(submitted));
+      readers.submit(streams[submitted]);
+      submitted++;
+    }
+    PartStream stream = streams[next];
+    streams[next] = null;
+    next++;
+    return stream;
+  }
+
+  @Override
+  public void close() {
+    readers.shutdownNow();
+  }
+
+  /**
+   * Stream of a part file, fed by its reader.
+   */
+  private class PartStream extends InputStream implements Runnable {
+    private final Path path;
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(bufferedChunks);
+    private volatile Exception error;
+    private byte[] chunk;
+    private int position;
+
+    PartStream(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    public void run() {
+      try (InputStream in = fs.open(path)) {
+        log.debug("Reading part file {}", path);
+        while (true) {
+          byte[] buffer = new byte[CHUNK_SIZE];
+          int length = 0;
+          int read = 0;
+          while (length < CHUNK_SIZE && (read = in.read(buffer, length, CHUNK_SIZE - length)) >= 0) {
+            length += read;
+          }
+          if (length > 0) {
+            chunks.put(length == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, length));
+          }
+          if (read < 0) {
+            break;
+          }
+        }
+      } catch (InterruptedException e) {
+        // readahead closed
+        return;
+      } catch (IOException | RuntimeException e) {
+        error = e;
+      }
+      try {
+        chunks.put(EOF);
+      } catch (InterruptedException e) {
+        // readahead closed
+      }
+    }
+
+    private boolean nextChunk() throws IOException {
+      if (chunk == EOF) {
+        return false;
+      }
+      if (chunk == null || position == chunk.length) {
+        try {
+          chunk = chunks.take();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted while reading " + path);
+        }
+        position = 0;
+        if (chunk == EOF) {
+          if (error != null) {
+            throw new IOException("Could not read " + path, error);
+          }
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+      return nextChunk() ? chunk[position++] & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!nextChunk()) {
+        return -1;
+      }
+      int length = Math.min(len, chunk.length - position);
+      System.arraycopy(chunk, position, b, off, length);
+      position += length;
+      return length;
+    }
+  }
+}
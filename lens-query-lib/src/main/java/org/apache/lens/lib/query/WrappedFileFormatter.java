@@ -95,6 +95,13 @@ public abstract class WrappedFileFormatter extends AbstractOutputFormatter {
     formatter.writeRow(row);
   }
 
+  /**
+   * @return the wrapped formatter
+   */
+  protected AbstractFileFormatter getFileFormatter() {
+    return formatter;
+  }
+
   @Override
   public Integer getNumRows() {
     return formatter.getNumRows();
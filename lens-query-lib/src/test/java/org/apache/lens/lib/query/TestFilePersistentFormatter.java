@@ -20,8 +20,10 @@ package org.apache.lens.lib.query;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -55,6 +57,16 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
    */
   private Path partFileTextDir = new Path("target/parttextfiles");
 
+  /**
+   * The dir of many part files, with different line terminators.
+   */
+  private Path manyPartFileDir = new Path("target/partmanyfiles");
+
+  /**
+   * The rows of the many part files.
+   */
+  private List<String> manyPartFileRows = new ArrayList<String>();
+
   /**
    * Creates the part files.
    *
@@ -96,6 +108,24 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
     writer.close();
     writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(partFileTextDir, "_SUCCESS"))));
     writer.close();
+
+    // create many part files, ending rows with \n, \r\n and \r, and with or without a final terminator
+    fs = manyPartFileDir.getFileSystem(new Configuration());
+    String[] terminators = {"\n", "\r\n", "\r"};
+    for (int part = 0; part < 30; part++) {
+      writer = new BufferedWriter(new OutputStreamWriter(fs.create(new Path(manyPartFileDir,
+        String.format("%06d_0", part))), "UTF-8"));
+      int rows = part % 5 == 0 ? 0 : 200;
+      for (int row = 0; row < rows; row++) {
+        String value = "\"" + part + "\",\"" + row + "\",\"\u00e9t\u00e9\",\"" + (row % 7 == 0 ? "" : "x") + "\"";
+        manyPartFileRows.add(value);
+        writer.write(value);
+        if (row < rows - 1 || part % 2 == 0) {
+          writer.write(terminators[(part + row) % terminators.length]);
+        }
+      }
+      writer.close();
+    }
   }
 
   /**
@@ -108,6 +138,7 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
     FileSystem fs = partFileDir.getFileSystem(new Configuration());
     fs.delete(partFileDir, true);
     fs.delete(partFileTextDir, true);
+    fs.delete(manyPartFileDir, true);
   }
 
   /*
@@ -256,6 +287,52 @@ public class TestFilePersistentFormatter extends TestAbstractFileFormatter {
     Assert.assertEquals(actual, getExpectedCSVRowsWithMultiple());
   }
 
+  /**
+   * Test many part files read in parallel, with rows copied for UTF-8 output and rewritten for UTF-16LE output.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test
+  public void testManyPartFiles() throws IOException {
+    for (String encoding : new String[]{"UTF-8", "UTF-16LE"}) {
+      Configuration conf = new Configuration();
+      setConf(conf);
+      conf.set("test.partfile.dir", manyPartFileDir.toString());
+      conf.set(LensConfConstants.QUERY_OUTPUT_CHARSET_ENCODING, encoding);
+      conf.set(LensConfConstants.QUERY_OUTPUT_HEADER, "header");
+      conf.set(LensConfConstants.QUERY_OUTPUT_FOOTER, "");
+      conf.setInt(LensConfConstants.PERSISTED_RESULT_READ_PARALLELISM, 3);
+      conf.setLong(LensConfConstants.PERSISTED_RESULT_READAHEAD_BYTES, 1);
+      testFormatter(conf, encoding.equals("UTF-8") ? "UTF8" : "UnicodeLittleUnmarked",
+        LensConfConstants.RESULT_SET_PARENT_DIR_DEFAULT, ".csv", getMockedResultSet());
+
+      List<String> expected = new ArrayList<String>();
+      expected.add("header");
+      expected.addAll(manyPartFileRows);
+      expected.add("Total rows:" + manyPartFileRows.size());
+      Assert.assertEquals(formatter.getNumRows().intValue(), manyPartFileRows.size());
+      Assert.assertEquals(readFinalOutputFile(new Path(formatter.getFinalOutputPath()), conf, encoding), expected);
+    }
+  }
+
+  /**
+   * Test errors reading part files are thrown to the formatter.
+   *
+   * @throws IOException Signals that an I/O exception has occurred.
+   */
+  @Test(expectedExceptions = IOException.class)
+  public void testPartFileReadError() throws IOException {
+    FileSystem fs = partFileDir.getFileSystem(new Configuration());
+    try (PartFileReadahead readahead = new PartFileReadahead(fs,
+      Arrays.asList(new Path(partFileDir, "000000_2"), new Path(partFileDir, "missing_0")), 2, 1)) {
+      InputStream in = readahead.next();
+      while (in.read() >= 0) {
+        // consume the first part file
+      }
+      readahead.next().read();
+    }
+  }
+
   /**
    * Test text files output path.
    *
@@ -702,6 +702,26 @@ public final class LensConfConstants {
    */
   public static final long DEFAULT_RESULT_SPLIT_MULTIPLE_MAX_ROWS = 100000;
 
+  /**
+   * Number of part files of a result persisted by the driver which are read concurrently while formatting it.
+   */
+  public static final String PERSISTED_RESULT_READ_PARALLELISM = QUERY_PFX + "result.persisted.read.parallelism";
+
+  /**
+   * Default persisted result read parallelism
+   */
+  public static final int DEFAULT_PERSISTED_RESULT_READ_PARALLELISM = 4;
+
+  /**
+   * Bytes of each part file of a result persisted by the driver which are read ahead of the formatter.
+   */
+  public static final String PERSISTED_RESULT_READAHEAD_BYTES = QUERY_PFX + "result.persisted.readahead.bytes";
+
+  /**
+   * Default persisted result readahead bytes
+   */
+  public static final long DEFAULT_PERSISTED_RESULT_READAHEAD_BYTES = 1024 * 1024; // 1MB
+
   /**
    * The Constant RESULT_FS_READ_URL.
    */
@@ -1027,6 +1047,59 @@ public final class LensConfConstants {
    */
   public static final String DEFAULT_HDFS_OUTPUT_RETENTION = "1 day";
 
+  /**
+   * Whether persisted results of finished queries are reused by identical queries submitted later.
+   */
+  public static final String QUERY_RESULT_CACHE_ENABLED = SERVER_PFX + "query.result.cache.enabled";
+
+  /**
+   * Query result cache is disabled by default
+   */
+  public static final boolean DEFAULT_QUERY_RESULT_CACHE_ENABLED = false;
+
+  /**
+   * Time for which a persisted result can be reused. It is capped by the resultset retention when the result purger
+   * is enabled.
+   */
+  public static final String QUERY_RESULT_CACHE_TTL_SECS = SERVER_PFX + "query.result.cache.ttl.secs";
+
+  /**
+   * Default query result cache TTL, one hour
+   */
+  public static final long DEFAULT_QUERY_RESULT_CACHE_TTL_SECS = 3600;
+
+  /**
+   * Maximum number of results held by the query result cache.
+   */
+  public static final String QUERY_RESULT_CACHE_MAX_ENTRIES = SERVER_PFX + "query.result.cache.max.entries";
+
+  /**
+   * Default maximum number of results held by the query result cache
+   */
+  public static final int DEFAULT_QUERY_RESULT_CACHE_MAX_ENTRIES = 1000;
+
+  /**
+   * Whether a cached result of one user can be served to other users.
+   */
+  public static final String QUERY_RESULT_CACHE_SHARE_ACROSS_USERS = SERVER_PFX
+    + "query.result.cache.share.across.users";
+
+  /**
+   * Cached results are not shared across users by default
+   */
+  public static final boolean DEFAULT_QUERY_RESULT_CACHE_SHARE_ACROSS_USERS = false;
+
+  /**
+   * Comma separated prefixes of the query conf keys which affect the persisted result and are part of the cache key.
+   */
+  public static final String QUERY_RESULT_CACHE_CONF_PREFIXES = SERVER_PFX + "query.result.cache.conf.prefixes";
+
+  /**
+   * Default query conf prefixes which are part of the cache key
+   */
+  public static final String DEFAULT_QUERY_RESULT_CACHE_CONF_PREFIXES =
+    "lens.query.output.,lens.query.result.,lens.query.enable.persistent.resultset";
+
   /**
    * Pre Fetch results in case of in memory result sets.
    */
@@ -1047,6 +1120,48 @@ public final class LensConfConstants {
    */
   public static final int DEFAULT_PREFETCH_INMEMORY_RESULTSET_ROWS = 100;
 
+  /**
+   * Whether the rows of in memory results of persistent queries can be fetched while the result is being persisted.
+   */
+  public static final String PROGRESSIVE_RESULT_ENABLED = QUERY_PFX + "result.progressive.enabled";
+
+  /**
+   * Progressive results are disabled by default
+   */
+  public static final boolean DEFAULT_PROGRESSIVE_RESULT_ENABLED = false;
+
+  /**
+   * Maximum number of rows of a progressive result buffered in the server for the client to fetch.
+   */
+  public static final String PROGRESSIVE_RESULT_BUFFER_ROWS = QUERY_PFX + "result.progressive.buffer.rows";
+
+  /**
+   * Default progressive result buffer rows
+   */
+  public static final int DEFAULT_PROGRESSIVE_RESULT_BUFFER_ROWS = 1000;
+
+  /**
+   * Time for which the persisting of a progressive result waits for the client, once it has fetched rows, to fetch rows
+   * from a full buffer, after which the client has to fetch the persisted result.
+   */
+  public static final String PROGRESSIVE_RESULT_PUBLISH_TIMEOUT_MILLIS = QUERY_PFX
+    + "result.progressive.publish.timeout.millis";
+
+  /**
+   * Default progressive result publish timeout
+   */
+  public static final long DEFAULT_PROGRESSIVE_RESULT_PUBLISH_TIMEOUT_MILLIS = 60 * 1000; // 1 minute
+
+  /**
+   * Maximum time for which fetching a progressive result waits for rows to be available.
+   */
+  public static final String PROGRESSIVE_RESULT_FETCH_WAIT_MILLIS = QUERY_PFX + "result.progressive.fetch.wait.millis";
+
+  /**
+   * Default progressive result fetch wait
+   */
+  public static final long DEFAULT_PROGRESSIVE_RESULT_FETCH_WAIT_MILLIS = 1000;
+
   /**
    * The Constant EXCLUDE_CUBE_TABLES.
    */
@@ -1232,6 +1347,49 @@ public final class LensConfConstants {
    */
   public static final String MAX_SCHEDULED_JOB_PER_USER  = SERVER_PFX + "scheduler.max.job.per.user";
 
+  /**
+   * Whether job definitions are stored compressed in the scheduler store.
+   */
+  public static final String SCHEDULER_STORE_JOB_COMPRESSION_ENABLED =
+    SERVER_PFX + "scheduler.store.job.compression.enabled";
+
+  /**
+   * Default value of job definition compression in the scheduler store
+   */
+  public static final boolean DEFAULT_SCHEDULER_STORE_JOB_COMPRESSION_ENABLED = true;
+
+  /**
+   * Maximum number of parsed job definitions cached by the scheduler store.
+   */
+  public static final String SCHEDULER_STORE_JOB_CACHE_SIZE = SERVER_PFX + "scheduler.store.job.cache.size";
+
+  /**
+   * Default number of parsed job definitions cached by the scheduler store
+   */
+  public static final int DEFAULT_SCHEDULER_STORE_JOB_CACHE_SIZE = 1000;
+
+  /**
+   * Whether scheduled instances running an identical query for the same nominal time share a single execution.
+   */
+  public static final String SCHEDULER_QUERY_DEDUP_ENABLED = SERVER_PFX + "scheduler.query.dedup.enabled";
+
+  /**
+   * Default value of scheduler query deduplication flag
+   */
+  public static final boolean DEFAULT_SCHEDULER_QUERY_DEDUP_ENABLED = true;
+
+  /**
+   * Time for which the result of a successful scheduled execution is reused by identical instances launched later
+   * for the same nominal time.
+   */
+  public static final String SCHEDULER_QUERY_DEDUP_RESULT_REUSE_MILLIS = SERVER_PFX
+    + "scheduler.query.dedup.result.reuse.millis";
+
+  /**
+   * Default result reuse time for scheduled executions, one hour
+   */
+  public static final long DEFAULT_SCHEDULER_QUERY_DEDUP_RESULT_REUSE_MILLIS = 60 * 60 * 1000L;
+
   /**
    * The class that implements the DataCompletenessChecker Interface. This will take effect if the flag
    * "lens.cube.metastore.enable.datacompleteness.check" is set.
@@ -1253,4 +1411,203 @@ public final class LensConfConstants {
    * Default Value of the config "lens.cube.metastore.enable.datacompleteness.check"
    */
   public static final boolean DEFAULT_ENABLE_DATACOMPLETENESS_CHECK = false;
+
+  /**
+   * Tick duration of the lowest level of the timing wheel used by the timer wheel based alarm service.
+   */
+  public static final String ALARM_TIMER_WHEEL_TICK_MILLIS = SERVER_PFX + "alarm.timer.wheel.tick.millis";
+
+  /**
+   * Default tick duration of the alarm timing wheel in milliseconds
+   */
+  public static final long DEFAULT_ALARM_TIMER_WHEEL_TICK_MILLIS = 1000;
+
+  /**
+   * Number of buckets in each level of the timing wheel used by the timer wheel based alarm service.
+   */
+  public static final String ALARM_TIMER_WHEEL_SIZE = SERVER_PFX + "alarm.timer.wheel.size";
+
+  /**
+   * Default number of buckets in each level of the alarm timing wheel
+   */
+  public static final int DEFAULT_ALARM_TIMER_WHEEL_SIZE = 512;
+
+  /**
+   * Maximum number of alarms fired and persisted together by the timer wheel based alarm service.
+   */
+  public static final String ALARM_FIRE_BATCH_SIZE = SERVER_PFX + "alarm.fire.batch.size";
+
+  /**
+   * Default alarm fire batch size
+   */
+  public static final int DEFAULT_ALARM_FIRE_BATCH_SIZE = 500;
+
+  /**
+   * Whether the server trains the execution time model of query costs on finished queries.
+   */
+  public static final String QUERY_COST_MODEL_ENABLED = SERVER_PFX + "query.cost.model.enabled";
+
+  /**
+   * Default value of query cost model enabled
+   */
+  public static final boolean DEFAULT_QUERY_COST_MODEL_ENABLED = false;
+
+  /**
+   * Interval at which the execution time model of query costs is trained.
+   */
+  public static final String QUERY_COST_MODEL_TRAINING_INTERVAL_MILLIS = SERVER_PFX
+    + "query.cost.model.training.interval.millis";
+
+  /**
+   * Default query cost model training interval
+   */
+  public static final long DEFAULT_QUERY_COST_MODEL_TRAINING_INTERVAL_MILLIS = 60 * 60 * 1000; // 1 hour
+
+  /**
+   * Age of the oldest finished queries the execution time model of query costs is trained on.
+   */
+  public static final String QUERY_COST_MODEL_HISTORY_MILLIS = SERVER_PFX + "query.cost.model.history.millis";
+
+  /**
+   * Default query cost model history
+   */
+  public static final long DEFAULT_QUERY_COST_MODEL_HISTORY_MILLIS = 7 * 24 * 60 * 60 * 1000L; // 7 days
+
+  /**
+   * Minimum number of finished queries of a driver, or of a driver and set of facts, for the execution time model of
+   * query costs to predict their queries.
+   */
+  public static final String QUERY_COST_MODEL_MIN_SAMPLES = SERVER_PFX + "query.cost.model.min.samples";
+
+  /**
+   * Default query cost model minimum samples
+   */
+  public static final int DEFAULT_QUERY_COST_MODEL_MIN_SAMPLES = 10;
+
+  /**
+   * Whether a query still running on its driver after the hedge latency percentile of the driver is launched on the
+   * next best eligible driver as well, keeping the result of the execution which succeeds first.
+   */
+  public static final String QUERY_HEDGE_ENABLED = QUERY_PFX + "hedge.enabled";
+
+  /**
+   * Queries are not hedged by default
+   */
+  public static final boolean DEFAULT_QUERY_HEDGE_ENABLED = false;
+
+  /**
+   * Percentile of the execution times of the queries finished on a driver after which a query running on the driver
+   * is hedged.
+   */
+  public static final String QUERY_HEDGE_LATENCY_PERCENTILE = QUERY_PFX + "hedge.latency.percentile";
+
+  /**
+   * Default hedge latency percentile
+   */
+  public static final double DEFAULT_QUERY_HEDGE_LATENCY_PERCENTILE = 0.95;
+
+  /**
+   * Minimum number of queries finished on a driver before queries running on it are hedged.
+   */
+  public static final String QUERY_HEDGE_MIN_SAMPLES = SERVER_PFX + "query.hedge.min.samples";
+
+  /**
+   * Default hedge minimum samples
+   */
+  public static final int DEFAULT_QUERY_HEDGE_MIN_SAMPLES = 20;
+
+  /**
+   * Maximum number of hedges running at a time.
+   */
+  public static final String QUERY_HEDGE_MAX_RUNNING = SERVER_PFX + "query.hedge.max.running";
+
+  /**
+   * Default maximum running hedges
+   */
+  public static final int DEFAULT_QUERY_HEDGE_MAX_RUNNING = 10;
+
+  /**
+   * Interval at which running queries are checked for hedging, and hedges for completion.
+   */
+  public static final String QUERY_HEDGE_CHECK_INTERVAL_MILLIS = SERVER_PFX + "query.hedge.check.interval.millis";
+
+  /**
+   * Default hedge check interval
+   */
+  public static final long DEFAULT_QUERY_HEDGE_CHECK_INTERVAL_MILLIS = 1000;
+
+  /**
+   * Minimum length of the user queries, driver queries and confs of finished queries which are compressed and stored
+   * once per content, instead of inline in the finished queries table.
+   */
+  public static final String FINISHED_QUERY_TEXT_SHARED_MIN_LENGTH = SERVER_PFX
+    + "finished.query.text.shared.min.length";
+
+  /**
+   * Default minimum length of shared finished query texts
+   */
+  public static final int DEFAULT_FINISHED_QUERY_TEXT_SHARED_MIN_LENGTH = 256;
+
+  /**
+   * Number of shared finished query texts cached in memory.
+   */
+  public static final String FINISHED_QUERY_TEXT_CACHE_SIZE = SERVER_PFX + "finished.query.text.cache.size";
+
+  /**
+   * Default finished query text cache size
+   */
+  public static final int DEFAULT_FINISHED_QUERY_TEXT_CACHE_SIZE = 1000;
+
+  /**
+   * Age of the finished queries after which they are moved from the finished queries table to the finished query
+   * archive. Finished queries are not archived if the age is not positive.
+   */
+  public static final String FINISHED_QUERY_HOT_RETENTION_MILLIS = SERVER_PFX + "finished.query.hot.retention.millis";
+
+  /**
+   * Default finished query hot retention
+   */
+  public static final long DEFAULT_FINISHED_QUERY_HOT_RETENTION_MILLIS = 30 * 24 * 60 * 60 * 1000L; // 30 days
+
+  /**
+   * Interval at which finished queries older than the hot retention are archived.
+   */
+  public static final String FINISHED_QUERY_ARCHIVE_INTERVAL_MILLIS = SERVER_PFX
+    + "finished.query.archive.interval.millis";
+
+  /**
+   * Default finished query archive interval
+   */
+  public static final long DEFAULT_FINISHED_QUERY_ARCHIVE_INTERVAL_MILLIS = 60 * 60 * 1000; // 1 hour
+
+  /**
+   * Location of the finished query archive.
+   */
+  public static final String FINISHED_QUERY_ARCHIVE_LOCATION = SERVER_PFX + "finished.query.archive.location";
+
+  /**
+   * Default finished query archive location
+   */
+  public static final String DEFAULT_FINISHED_QUERY_ARCHIVE_LOCATION = "file:///tmp/lensserver/finished_queries";
+
+  /**
+   * Number of threads registering the partitions of asynchronous partition registrations.
+   */
+  public static final String PARTITION_REGISTRATION_THREADS = SERVER_PFX + "metastore.partition.registration.threads";
+
+  /**
+   * Default partition registration threads
+   */
+  public static final int DEFAULT_PARTITION_REGISTRATION_THREADS = 10;
+
+  /**
+   * Time for which the status of a finished partition registration is kept.
+   */
+  public static final String PARTITION_REGISTRATION_RETENTION_MILLIS = SERVER_PFX
+    + "metastore.partition.registration.retention.millis";
+
+  /**
+   * Default partition registration retention
+   */
+  public static final long DEFAULT_PARTITION_REGISTRATION_RETENTION_MILLIS = 60 * 60 * 1000; // 1 hour
 }
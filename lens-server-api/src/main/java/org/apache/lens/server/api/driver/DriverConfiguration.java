@@ -21,12 +21,15 @@ package org.apache.lens.server.api.driver;
 
 import static org.apache.lens.server.api.LensConfConstants.DRIVER_PFX;
 
+import org.apache.lens.server.api.util.LayeredConfiguration;
+
 import org.apache.hadoop.conf.Configuration;
 
 public class DriverConfiguration extends Configuration {
   private final String driverClassType;
   private String driverType;
   private final Class<? extends AbstractLensDriver> driverClass;
+  private volatile Configuration snapshot;
 
   public DriverConfiguration(Configuration conf, String driverType, Class<? extends AbstractLensDriver> driverClass) {
     super(conf);
@@ -51,6 +54,49 @@ public class DriverConfiguration extends Configuration {
     return getInternal(name);
   }
 
+  /**
+   * Gets an immutable snapshot of this conf, shared till this conf is changed.
+   *
+   * @return the snapshot
+   */
+  public Configuration getSnapshot() {
+    Configuration current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        current = snapshot;
+        if (current == null) {
+          current = LayeredConfiguration.snapshot(this);
+          snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  @Override
+  public void set(String name, String value, String source) {
+    super.set(name, value, source);
+    snapshot = null;
+  }
+
+  @Override
+  public synchronized void unset(String name) {
+    super.unset(name);
+    snapshot = null;
+  }
+
+  @Override
+  public synchronized void reloadConfiguration() {
+    super.reloadConfiguration();
+    snapshot = null;
+  }
+
+  @Override
+  public synchronized void clear() {
+    super.clear();
+    snapshot = null;
+  }
+
   public String getInternal(String name) {
     for (String key : new String[]{DRIVER_PFX + driverType + "." + name, DRIVER_PFX + driverClassType + "." + name,
       DRIVER_PFX + name, name, }) {
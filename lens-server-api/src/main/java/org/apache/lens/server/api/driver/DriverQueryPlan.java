@@ -25,6 +25,7 @@ import java.util.*;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryPlan;
 import org.apache.lens.api.query.QueryPrepareHandle;
+import org.apache.lens.api.query.RewritePhase;
 import org.apache.lens.server.api.query.cost.QueryCost;
 import org.apache.lens.server.api.query.cost.QueryCostTOBuilder;
 
@@ -120,6 +121,11 @@ public abstract class DriverQueryPlan {
 
   protected Map<String, Set<?>> partitions = new HashMap<String, Set<?>>();
 
+  /**
+   * The phases of the rewrite of the query, if they were profiled.
+   */
+  protected final List<RewritePhase> rewritePhases = new ArrayList<RewritePhase>();
+
   /**
    * Get the query plan
    *
@@ -296,6 +302,25 @@ public abstract class DriverQueryPlan {
     return partitions;
   }
 
+  /**
+   * Get the phases of the rewrite of the query, in the order they were run. Empty if the rewrite was not profiled.
+   *
+   * @return the rewrite phases
+   */
+  public List<RewritePhase> getRewritePhases() {
+    return rewritePhases;
+  }
+
+  /**
+   * Set the phases of the rewrite of the query.
+   *
+   * @param phases the rewrite phases
+   */
+  public void setRewritePhases(List<RewritePhase> phases) {
+    rewritePhases.clear();
+    rewritePhases.addAll(phases);
+  }
+
   /**
    * To query plan.
    *
@@ -305,6 +330,7 @@ public abstract class DriverQueryPlan {
   public QueryPlan toQueryPlan() throws UnsupportedEncodingException {
     return new QueryPlan(new ArrayList<>(tablesQueried), hasSubQuery, execMode != null ? execMode.name() : null,
       scanMode != null ? scanMode.name() : null, handle,
-      URLEncoder.encode(getPlan(), "UTF-8"), new QueryCostTOBuilder(getCost()).build());
+      URLEncoder.encode(getPlan(), "UTF-8"), new QueryCostTOBuilder(getCost()).build(),
+      new ArrayList<>(rewritePhases));
   }
 }
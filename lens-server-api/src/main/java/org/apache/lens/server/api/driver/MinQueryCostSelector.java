@@ -18,11 +18,14 @@
  */
 package org.apache.lens.server.api.driver;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 
 import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.cost.DriverQueryCostComparator;
 import org.apache.lens.server.api.query.cost.QueryCost;
 
 import org.apache.hadoop.conf.Configuration;
@@ -47,13 +50,22 @@ public class MinQueryCostSelector implements DriverSelector {
     for (LensDriver driver : drivers) {
       log.debug("Cost on driver {}: {}", driver, ctx.getDriverQueryCost(driver));
     }
+    final DriverQueryCostComparator costComparator = new DriverQueryCostComparator(getCosts(ctx, drivers));
     return Collections.min(drivers, new Comparator<LensDriver>() {
       @Override
       public int compare(LensDriver d1, LensDriver d2) {
         final QueryCost c1 = ctx.getDriverQueryCost(d1);
         final QueryCost c2 = ctx.getDriverQueryCost(d2);
-        return c1.compareTo(c2);
+        return costComparator.compare(c1, c2);
       }
     });
   }
+
+  static List<QueryCost> getCosts(AbstractQueryContext ctx, Collection<LensDriver> drivers) {
+    List<QueryCost> costs = new ArrayList<>(drivers.size());
+    for (LensDriver driver : drivers) {
+      costs.add(ctx.getDriverQueryCost(driver));
+    }
+    return costs;
+  }
 }
@@ -27,6 +27,7 @@ import static org.apache.lens.server.api.LensConfConstants.DEFAULT_DRIVER_WEIGHT
 import static org.apache.lens.server.api.LensConfConstants.DRIVER_WEIGHT;
 
 import org.apache.lens.server.api.query.AbstractQueryContext;
+import org.apache.lens.server.api.query.cost.DriverQueryCostComparator;
 import org.apache.lens.server.api.query.cost.QueryCost;
 
 import org.apache.hadoop.conf.Configuration;
@@ -58,12 +59,14 @@ public class WeightedQueryCostDriverSelector implements DriverSelector {
     }
 
     //The min-cost driver
+    final DriverQueryCostComparator costComparator =
+      new DriverQueryCostComparator(MinQueryCostSelector.getCosts(ctx, drivers));
     final LensDriver minCostDriver = Collections.min(drivers, new Comparator<LensDriver>() {
       @Override
       public int compare(LensDriver d1, LensDriver d2) {
         final QueryCost c1 = ctx.getDriverQueryCost(d1);
         final QueryCost c2 = ctx.getDriverQueryCost(d2);
-        return c1.compareTo(c2);
+        return costComparator.compare(c1, c2);
       }
     });
 
@@ -71,7 +74,7 @@ public class WeightedQueryCostDriverSelector implements DriverSelector {
     final QueryCost minCost = ctx.getDriverQueryCost(minCostDriver);
     final ArrayList<LensDriver> eligibleDrivers = new ArrayList<>();
     for (LensDriver driver : drivers) {
-      if (ctx.getDriverQueryCost(driver).equals(minCost)) {
+      if (costComparator.compare(ctx.getDriverQueryCost(driver), minCost) == 0) {
         eligibleDrivers.add(driver);
       }
     }
@@ -512,6 +512,29 @@ public interface CubeMetastoreService extends LensService, SessionValidator {
   int addPartitionsToFactStorage(LensSessionHandle sessionid, String fact, String storageName,
     XPartitionList partitions) throws LensException;
 
+  /**
+   * Registers partitions in many fact and dimension table storages asynchronously. Storages are processed in
+   * parallel, and partitions registered in a storage table are registered in the order of the registrations.
+   *
+   * @param sessionid    The sessionid
+   * @param registration {@link XPartitionRegistration}
+   * @throws LensException
+   * @return status of the registration, with its handle
+   */
+  XPartitionRegistrationStatus registerPartitions(LensSessionHandle sessionid, XPartitionRegistration registration)
+    throws LensException;
+
+  /**
+   * Get the status of a partition registration
+   *
+   * @param sessionid The sessionid
+   * @param handle    The handle of the registration
+   * @throws LensException
+   * @return status of the registration
+   */
+  XPartitionRegistrationStatus getPartitionRegistrationStatus(LensSessionHandle sessionid, String handle)
+    throws LensException;
+
   /**
    * Drop partition from storage with spec specified as comma separated string
    *
@@ -548,6 +571,17 @@ public interface CubeMetastoreService extends LensService, SessionValidator {
   XFlattenedColumns getFlattenedColumns(LensSessionHandle sessionHandle, String tableName, boolean addChains)
     throws LensException;
 
+  /**
+   * Get the version of the flattened columns and join chains of a cube or dimension. The version changes whenever the
+   * cube or dimension, or a dimension reachable through its join chains, changes.
+   *
+   * @param sessionHandle The session handle
+   * @param tableName     The table name - cube name or dimension name
+   * @return the version
+   * @throws LensException
+   */
+  String getCatalogVersion(LensSessionHandle sessionHandle, String tableName) throws LensException;
+
   /**
    * Get the latest available date upto which data is available for the base cubes, for the time dimension
    *
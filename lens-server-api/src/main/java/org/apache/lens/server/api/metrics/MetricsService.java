@@ -18,6 +18,9 @@
  */
 package org.apache.lens.server.api.metrics;
 
+import java.util.List;
+
+import org.apache.lens.api.query.RewritePhase;
 import org.apache.lens.server.api.LensService;
 
 import org.glassfish.jersey.server.ContainerRequest;
@@ -166,6 +169,19 @@ public interface MetricsService extends LensService {
    */
   void publishReport();
 
+  /**
+   * Name of the histograms of the phases of cube query rewrites
+   */
+  String REWRITE_PHASES = "rewrite-phases";
+
+  /**
+   * Adds the phases of the rewrite of a cube query to the histograms of the time taken, and of the memory allocated,
+   * by their rewriters.
+   *
+   * @param phases the rewrite phases
+   */
+  void updateRewritePhases(List<RewritePhase> phases);
+
   /**
    * API method for getting metrics measuring context for given resource method and container request
    *
@@ -36,6 +36,7 @@ import org.apache.lens.server.api.metrics.MethodMetricsContext;
 import org.apache.lens.server.api.metrics.MethodMetricsFactory;
 import org.apache.lens.server.api.query.DriverSelectorQueryContext.DriverQueryContext;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.util.LayeredConfiguration;
 import org.apache.lens.server.api.util.LensUtil;
 
 import org.apache.hadoop.conf.Configuration;
@@ -422,7 +423,7 @@ public abstract class AbstractQueryContext implements Serializable {
     hiveConfLock.lock();
     try {
       if (hiveConf == null) {
-        hiveConf = new HiveConf(this.conf, this.getClass());
+        hiveConf = new HiveConf(LayeredConfiguration.materialize(this.conf), this.getClass());
         hiveConf.setClassLoader(this.conf.getClassLoader());
       }
     } finally {
@@ -21,10 +21,12 @@ package org.apache.lens.server.api.query;
 import java.util.*;
 
 import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.DriverConfiguration;
 import org.apache.lens.server.api.driver.DriverQueryPlan;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.util.LayeredConfiguration;
 import org.apache.lens.server.api.util.LensUtil;
 
 import org.apache.commons.lang3.StringUtils;
@@ -153,12 +155,13 @@ public class DriverSelectorQueryContext {
    * @return the final query conf
    */
   private Configuration mergeConf(LensDriver driver, Configuration queryConf) {
-    Configuration conf = new Configuration(driver.getConf());
-    for (Map.Entry<String, String> entry : queryConf) {
-      conf.set(entry.getKey(), entry.getValue());
+    // The query conf layered over a snapshot of the driver conf, which is shared by the queries till the driver conf
+    // changes. Later changes to the query conf do not change the driver confs, as when they were copies.
+    Configuration driverConf = driver.getConf();
+    if (driverConf instanceof DriverConfiguration) {
+      driverConf = ((DriverConfiguration) driverConf).getSnapshot();
     }
-    conf.setClassLoader(queryConf.getClassLoader());
-    return conf;
+    return LayeredConfiguration.create(queryConf, driverConf);
   }
 
   /**
@@ -24,10 +24,12 @@ import java.util.List;
 import org.apache.lens.api.LensConf;
 import org.apache.lens.api.Priority;
 import org.apache.lens.api.query.FailedAttempt;
+import org.apache.lens.api.query.LensQuery;
 import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryStatus;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.collect.WaitingQueriesSelectionPolicy;
+import org.apache.lens.server.api.query.cost.QueryFeatures;
 
 import org.apache.hadoop.conf.Configuration;
 
@@ -186,6 +188,13 @@ public class FinishedLensQuery {
   @Setter
   private String driverQuery;
 
+  /**
+   * The number of partitions queried by the selected driver's query, null if unknown.
+   */
+  @Getter
+  @Setter
+  private Integer numPartitions;
+
   @Getter
   @Setter
   private List<FailedAttempt> failedAttempts;
@@ -221,6 +230,7 @@ public class FinishedLensQuery {
     if (null != ctx.getSelectedDriver()) {
       this.driverName = ctx.getSelectedDriver().getFullyQualifiedName();
       this.driverQuery = ctx.getSelectedDriverQuery();
+      this.numPartitions = QueryFeatures.countPartitions(ctx.getDriverRewriterPlan(ctx.getSelectedDriver()));
     }
     //Priority can be null in case no driver is fit to execute a query and launch fails.
     if (null != ctx.getPriority()) {
@@ -259,6 +269,21 @@ public class FinishedLensQuery {
     return qctx;
   }
 
+  /**
+   * Creates the summary of the query, without its driver query and conf, for listing queries. The query is taken as
+   * persistent if it has a result.
+   *
+   * @return the summary
+   */
+  public LensQuery toLensQuerySummary() {
+    QueryStatus queryStatus = new QueryStatus(1.0, null, QueryStatus.Status.valueOf(getStatus()), null,
+      getResult() != null, null, getErrorMessage() == null ? "" : getErrorMessage(), null);
+    return new LensQuery(QueryHandle.fromString(handle), userQuery, submitter,
+      getPriority() == null ? null : Priority.valueOf(getPriority()), getResult() != null, driverName, null,
+      queryStatus, getResult(), null, null, submissionTime, startTime, driverStartTime, driverEndTime, endTime, 0,
+      queryName, getFailedAttempts());
+  }
+
   private LensDriver getDriverFromName(Collection<LensDriver> drivers) {
     for (LensDriver driver : drivers) {
       if (driverName.equals(driver.getFullyQualifiedName())) {
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.lens.api.query.ResultRow;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+
+import lombok.Getter;
+
+/**
+ * Bounded buffer of the rows of a query, which are published while the result is being formatted and fetched by the
+ * client at the same time, so that the client gets the first rows before the whole result is persisted.
+ * <p>
+ * The buffer holds at most its capacity of rows. Once the client has fetched rows, publishing a row into a full
+ * buffer waits for the client to fetch rows, so that the client slows down the driver rather than the server buffering
+ * the result. If the buffer fills up before the client fetches any row, or if the client does not fetch for the publish
+ * timeout, the buffer is abandoned: its rows are dropped, publishing stops waiting and the client has to fetch the
+ * persisted result once the query succeeds.
+ * <p>
+ * Rows are fetched in order, and each row is returned once.
+ */
+public class ProgressiveResultBuffer {
+
+  @Getter
+  private final LensResultSetMetadata metadata;
+  private final int capacity;
+  private final long publishTimeoutMillis;
+  private final Deque<ResultRow> rows;
+  private boolean finished;
+  private boolean abandoned;
+  private boolean attached;
+  private long published;
+  private long fetched;
+
+  /**
+   * Instantiates a new progressive result buffer.
+   *
+   * @param metadata             metadata of the result
+   * @param capacity             maximum number of rows buffered
+   * @param publishTimeoutMillis time to wait for the client to fetch rows from a full buffer, before abandoning it
+   */
+  public ProgressiveResultBuffer(LensResultSetMetadata metadata, int capacity, long publishTimeoutMillis) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.metadata = metadata;
+    this.capacity = capacity;
+    this.publishTimeoutMillis = publishTimeoutMillis;
+    this.rows = new ArrayDeque<>(Math.min(capacity, 1024));
+  }
+
+  /**
+   * Publishes a row, waiting for the client to fetch rows while the buffer is full. A full buffer from which the client
+   * has not fetched yet is abandoned right away, so that results nobody fetches progressively are not delayed.
+   *
+   * @param row the row
+   * @return false if the buffer is abandoned, in which case the rows need not be published anymore
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized boolean publish(ResultRow row) throws InterruptedException {
+    if (abandoned) {
+      return false;
+    }
+    if (rows.size() >= capacity && !attached) {
+      abandon();
+      return false;
+    }
+    long deadline = System.currentTimeMillis() + publishTimeoutMillis;
+    while (rows.size() >= capacity && !abandoned) {
+      long wait = deadline - System.currentTimeMillis();
+      if (wait <= 0) {
+        abandon();
+      } else {
+        wait(wait);
+      }
+    }
+    if (abandoned) {
+      return false;
+    }
+    rows.add(row);
+    published++;
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Marks all the rows of the result as published.
+   */
+  public synchronized void finish() {
+    finished = true;
+    notifyAll();
+  }
+
+  /**
+   * Abandons the buffer, dropping its rows, like when the client stops fetching or the formatting fails.
+   */
+  public synchronized void abandon() {
+    abandoned = true;
+    rows.clear();
+    notifyAll();
+  }
+
+  /**
+   * Fetches the next rows, waiting for the first of them to be published if the buffer is empty.
+   *
+   * @param maxRows    maximum number of rows to fetch
+   * @param waitMillis maximum time to wait for a row
+   * @return the rows, empty if none was published in time or if all the rows have been fetched
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized List<ResultRow> fetch(int maxRows, long waitMillis) throws InterruptedException {
+    attached = true;
+    long deadline = System.currentTimeMillis() + waitMillis;
+    while (rows.isEmpty() && !finished && !abandoned) {
+      long wait = deadline - System.currentTimeMillis();
+      if (wait <= 0) {
+        break;
+      }
+      wait(wait);
+    }
+    List<ResultRow> result = new ArrayList<>(Math.min(maxRows, rows.size()));
+    while (result.size() < maxRows && !rows.isEmpty()) {
+      result.add(rows.poll());
+    }
+    fetched += result.size();
+    notifyAll();
+    return result;
+  }
+
+  public synchronized boolean isAbandoned() {
+    return abandoned;
+  }
+
+  /**
+   * @return whether all the rows have been published and fetched
+   */
+  public synchronized boolean isExhausted() {
+    return finished && rows.isEmpty();
+  }
+
+  public synchronized long getPublishedRows() {
+    return published;
+  }
+
+  public synchronized long getFetchedRows() {
+    return fetched;
+  }
+}
@@ -35,6 +35,7 @@ import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
 import org.apache.lens.server.api.retry.BackOffRetryHandler;
 import org.apache.lens.server.api.retry.FailureContext;
+import org.apache.lens.server.api.util.LayeredConfiguration;
 import org.apache.lens.server.api.util.LensUtil;
 
 import org.apache.hadoop.conf.Configuration;
@@ -179,6 +180,13 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
   @Getter
   private transient LensResultSet driverResult;
 
+  /**
+   * Rows of the result which can be fetched while the result is being persisted, null if not enabled.
+   */
+  @Getter
+  @Setter
+  private transient ProgressiveResultBuffer progressiveResult;
+
   /**
    * True if driver has registered the result
    */
@@ -199,6 +207,13 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
   @Setter
   private transient Future queryLauncher;
   transient List<QueryDriverStatusUpdateListener> driverStatusUpdateListeners = Lists.newArrayList();
+
+  /**
+   * Listener notified when the status of the query changes
+   */
+  @Getter
+  @Setter
+  private transient QueryStatusChangeListener statusChangeListener;
   @Getter
   @Setter
   List<FailedAttempt> failedAttempts = Lists.newArrayList();
@@ -317,14 +332,7 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
    * @return the configuration
    */
   private static Configuration mergeConf(Configuration prepared, Configuration current) {
-    Configuration conf = new Configuration(false);
-    for (Map.Entry<String, String> entry : prepared) {
-      conf.set(entry.getKey(), entry.getValue());
-    }
-    for (Map.Entry<String, String> entry : current) {
-      conf.set(entry.getKey(), entry.getValue());
-    }
-    return conf;
+    return LayeredConfiguration.create(current, prepared);
   }
 
   public String getResultSetParentDir() {
@@ -350,6 +358,16 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
       driverStatus.getDriverFinishTime(), endTime, closedTime, queryName, getFailedAttempts());
   }
 
+  /**
+   * @return the query without its driver query and conf, which can be large, for listing queries
+   */
+  public LensQuery toLensQuerySummary() {
+    return new LensQuery(queryHandle, userQuery, super.getSubmittedUser(), getPriority(), isPersistent,
+      getSelectedDriver() != null ? getSelectedDriver().getFullyQualifiedName() : null, null, status,
+      resultSetPath, driverOpHandle, null, submissionTime, launchTime, driverStatus.getDriverStartTime(),
+      driverStatus.getDriverFinishTime(), endTime, closedTime, queryName, getFailedAttempts());
+  }
+
   public boolean isResultAvailableInDriver() {
     // result is available in driver if driverStatus.isResultSetAvailable() - will be true for fetching inmemory
     // result set.
@@ -367,17 +385,89 @@ public class QueryContext extends AbstractQueryContext implements FailureContext
     isDriverPersistent = false;
   }
 
+  /**
+   * Creates the context of a hedge of this query on another eligible driver. The hedge has the same handle, so that
+   * the driver keeps the execution of the hedge under the handle of this query, and is launched with the query and
+   * the cost estimated for the driver while selecting the driver of this query.
+   * <p>
+   * The result of the hedge is never persisted in the driver, so that it does not overwrite the result directory of
+   * this query.
+   *
+   * @param driver the driver of the hedge
+   * @return the hedge context
+   */
+  public QueryContext createHedgeContext(LensDriver driver) {
+    QueryContext hedge = new QueryContext(userQuery, getSubmittedUser(), lensConf, conf, Lists.newArrayList(driver),
+      driver, submissionTime, true);
+    hedge.setQueryHandle(queryHandle);
+    hedge.setLensSessionIdentifier(getLensSessionIdentifier());
+    hedge.setQueryName(getQueryName());
+    hedge.setSelectedDriverQuery(getDriverContext().getDriverQuery(driver));
+    hedge.setSelectedDriverQueryCost(getDriverContext().getDriverQueryCost(driver));
+    hedge.unSetDriverPersistent();
+    return hedge;
+  }
+
+  /**
+   * Makes the driver of a successful hedge the driver of this query, taking over the driver status, the driver query
+   * and the driver result of the hedge. The execution of this query on its previous driver should be cancelled with
+   * {@link #detachFromDriver()} first.
+   *
+   * @param hedge the hedge, created by {@link #createHedgeContext(LensDriver)}
+   */
+  public void adoptHedge(QueryContext hedge) {
+    setSelectedDriver(hedge.getSelectedDriver());
+    setSelectedDriverQuery(hedge.getSelectedDriverQuery());
+    setSelectedDriverQueryCost(hedge.getSelectedDriverQueryCost());
+    isDriverPersistent = hedge.isDriverPersistent();
+    driverOpHandle = hedge.getDriverOpHandle();
+    driverResultPath = hedge.getDriverResultPath();
+    DriverQueryStatus hedgeStatus = hedge.getDriverStatus();
+    driverStatus.setState(hedgeStatus.getState());
+    driverStatus.setProgress(hedgeStatus.getProgress());
+    driverStatus.setStatusMessage(hedgeStatus.getStatusMessage());
+    driverStatus.setProgressMessage(hedgeStatus.getProgressMessage());
+    driverStatus.setErrorMessage(hedgeStatus.getErrorMessage());
+    driverStatus.setResultSetAvailable(hedgeStatus.isResultSetAvailable());
+    driverStatus.setDriverStartTime(hedgeStatus.getDriverStartTime());
+    driverStatus.setDriverFinishTime(hedgeStatus.getDriverFinishTime());
+    statusUpdateFailures.clear();
+  }
+
+  /**
+   * Stops following the execution of this query on its driver before it is cancelled in favour of a hedge: the status
+   * updates pushed by the driver are no longer listened to, and the driver status is marked cancelled, so that the
+   * driver does not report the cancelled execution as failed.
+   */
+  public void detachFromDriver() {
+    synchronized (this.driverStatusUpdateListeners) {
+      this.driverStatusUpdateListeners.clear();
+    }
+    setDriverStatus(DriverQueryStatus.DriverQueryState.CANCELED, "Cancelled in favour of a hedge");
+  }
+
   /*
    * Introduced for Recovering finished query.
    */
   public void setStatusSkippingTransitionTest(final QueryStatus newStatus) {
+    QueryStatus before = this.status;
     this.status = newStatus;
+    notifyStatusChange(before, newStatus);
   }
 
   public synchronized void setStatus(final QueryStatus newStatus) throws LensException {
     validateTransition(newStatus);
     log.info("Updating status of {} from {} to {}", getQueryHandle(), this.status, newStatus);
+    QueryStatus before = this.status;
     this.status = newStatus;
+    notifyStatusChange(before, newStatus);
+  }
+
+  private void notifyStatusChange(QueryStatus before, QueryStatus after) {
+    QueryStatusChangeListener listener = statusChangeListener;
+    if (listener != null && after != null && (before == null || before.getStatus() != after.getStatus())) {
+      listener.onStatusChanged(this, before == null ? null : before.getStatus(), after.getStatus());
+    }
   }
 
   /**
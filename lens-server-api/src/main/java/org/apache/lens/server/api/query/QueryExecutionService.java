@@ -260,6 +260,27 @@ public interface QueryExecutionService extends LensService, SessionValidator {
   List<LensQuery> getAllQueryDetails(LensSessionHandle sessionHandle, String states, String user, String driver,
     String queryName, String fromDate, String toDate) throws LensException;
 
+  /**
+   * Returns a page of the summaries of the queries in the specified state, for the given user and matching query name,
+   * from the latest submitted to the earliest. Summaries don't have the driver query and the conf of the queries.
+   *
+   * @param sessionHandle the session handle
+   * @param states        return queries in these state. if null, all queries will be returned. Multiple states can
+   *                      be supplied separated by comma
+   * @param user          Get queries submitted by a specific user.
+   *                      If this set to "all", queries of all users are returned
+   * @param driver        Get queries submitted on a specific driver.
+   * @param queryName     return queries containing the query name. If null, all queries will be returned
+   * @param fromDate      start date of time range interval
+   * @param toDate        end date of the time range interval
+   * @param after         handle of the last query of the previous page, null for the first page
+   * @param pageSize      maximum number of queries of the page
+   * @return List of Lens Query summaries
+   * @throws LensException the lens exception
+   */
+  List<LensQuery> getQueryHistory(LensSessionHandle sessionHandle, String states, String user, String driver,
+    String queryName, String fromDate, String toDate, String after, int pageSize) throws LensException;
+
   /**
    * Returns all the prepared queries for the specified user. If no user is passed, queries of all users will be
    * returned.
@@ -0,0 +1,295 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.constraint;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.error.LensDriverErrorCode;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Limits the queries launched on a driver to a limit which adapts to the execution time and the failures of the
+ * queries finished on the driver, so that fewer queries are launched when the driver slows down or fails, and more
+ * when it recovers.
+ * <p>
+ * Two algorithms are supported:
+ * <ul>
+ *   <li>{@link Algorithm#AIMD}: the limit grows by one for every query which succeeds within the latency threshold
+ *   while the driver is using at least half of the limit, and is multiplied by the backoff ratio for every query
+ *   which fails or exceeds the threshold.</li>
+ *   <li>{@link Algorithm#GRADIENT}: the limit follows the ratio of the long term average latency to the recent
+ *   average latency. It grows while recent queries take no longer than the tolerated multiple of the long term
+ *   average and the driver is using at least half of the limit, shrinks when they take longer, and is multiplied by
+ *   the backoff ratio for every failure.</li>
+ * </ul>
+ * A limit is kept per driver, so the constraint can be configured for the server or for a driver. Queries are
+ * reported when they leave the driver, which for failed queries is while they are still failing, before they are
+ * retried or marked failed. Cancelled queries and queries failing on semantic errors, which are errors of the user
+ * rather than of the driver, are ignored. The limit, the latency averages and the number of failures of each driver
+ * are exported as gauges.
+ */
+@Slf4j
+public class AdaptiveConcurrencyConstraint implements AdaptiveQueryLaunchingConstraint {
+
+  /**
+   * Limit algorithms.
+   */
+  public enum Algorithm {
+    AIMD, GRADIENT
+  }
+
+  /** Weight of a new latency in the recent average. */
+  private static final double SHORT_WINDOW_WEIGHT = 0.2;
+  /** Weight of a new latency in the long term average. */
+  private static final double LONG_WINDOW_WEIGHT = 0.02;
+  /** Weight of a newly computed gradient limit in the limit. */
+  private static final double GRADIENT_SMOOTHING = 0.2;
+  /** Bounds of the gradient, so that a single slow query does not collapse the limit. */
+  private static final double MIN_GRADIENT = 0.5;
+
+  private final Algorithm algorithm;
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final long latencyThresholdMillis;
+  private final double latencyTolerance;
+
+  private final ConcurrentMap<String, DriverLimit> driverLimits = new ConcurrentHashMap<>();
+
+  /**
+   * Adaptive limit of a driver.
+   */
+  public final class DriverLimit {
+    private double limit = initialLimit;
+    private double shortLatency;
+    private double longLatency;
+    private long failures;
+    private int inFlight;
+
+    public synchronized int getLimit() {
+      return (int) limit;
+    }
+
+    /**
+     * @return recent average execution time in millis
+     */
+    public synchronized double getShortLatency() {
+      return shortLatency;
+    }
+
+    /**
+     * @return long term average execution time in millis
+     */
+    public synchronized double getLongLatency() {
+      return longLatency;
+    }
+
+    public synchronized long getFailures() {
+      return failures;
+    }
+
+    private synchronized void setInFlight(int inFlight) {
+      this.inFlight = inFlight;
+    }
+
+    private synchronized void update(long latencyMillis, boolean failed) {
+      if (failed) {
+        failures++;
+        limit = limit * backoffRatio;
+      } else {
+        if (longLatency == 0) {
+          shortLatency = latencyMillis;
+          longLatency = latencyMillis;
+        } else {
+          shortLatency += SHORT_WINDOW_WEIGHT * (latencyMillis - shortLatency);
+          longLatency += LONG_WINDOW_WEIGHT * (latencyMillis - longLatency);
+        }
+        switch (algorithm) {
+        case AIMD:
+          if (latencyThresholdMillis > 0 && latencyMillis > latencyThresholdMillis) {
+            limit = limit * backoffRatio;
+          } else if (inFlight * 2 >= limit) {
+            limit = limit + 1;
+          }
+          break;
+        case GRADIENT:
+          double gradient = Math.max(MIN_GRADIENT, Math.min(1.0, latencyTolerance * longLatency / shortLatency));
+          // Room to grow is given only while the driver uses the limit
+          double headroom = inFlight * 2 >= limit ? Math.sqrt(limit) : 0;
+          double newLimit = limit * gradient + headroom;
+          limit = limit * (1 - GRADIENT_SMOOTHING) + newLimit * GRADIENT_SMOOTHING;
+          break;
+        default:
+          break;
+        }
+      }
+      limit = Math.max(minLimit, Math.min(maxLimit, limit));
+    }
+  }
+
+  /**
+   * Instantiates a new adaptive concurrency constraint.
+   *
+   * @param algorithm              the limit algorithm
+   * @param initialLimit           limit before any query finishes
+   * @param minLimit               minimum limit
+   * @param maxLimit               maximum limit
+   * @param backoffRatio           ratio by which the limit is multiplied on failures
+   * @param latencyThresholdMillis execution time beyond which a query is treated as a failure by AIMD, 0 to disable
+   * @param latencyTolerance       multiple of the long term average latency tolerated by GRADIENT
+   */
+  public AdaptiveConcurrencyConstraint(Algorithm algorithm, int initialLimit, int minLimit, int maxLimit,
+    double backoffRatio, long latencyThresholdMillis, double latencyTolerance) {
+    if (minLimit < 1 || maxLimit < minLimit) {
+      throw new IllegalArgumentException("Invalid limits, min: " + minLimit + ", max: " + maxLimit);
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("Backoff ratio should be between 0 and 1: " + backoffRatio);
+    }
+    this.algorithm = algorithm;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.initialLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.backoffRatio = backoffRatio;
+    this.latencyThresholdMillis = latencyThresholdMillis;
+    this.latencyTolerance = latencyTolerance;
+  }
+
+  @Override
+  public String allowsLaunchOf(
+    final QueryContext candidateQuery, final EstimatedImmutableQueryCollection launchedQueries) {
+
+    final LensDriver selectedDriver = candidateQuery.getSelectedDriver();
+    final int launched = launchedQueries.getQueriesCount(selectedDriver);
+    final DriverLimit driverLimit = getDriverLimit(selectedDriver);
+    driverLimit.setInFlight(launched);
+    final int limit = driverLimit.getLimit();
+    if (launched >= limit) {
+      return launched + "/" + limit + " queries running on " + selectedDriver.getFullyQualifiedName()
+        + " (adaptive limit)";
+    }
+    return null;
+  }
+
+  @Override
+  public void queryFinished(final QueryContext finishedQuery) {
+    final LensDriver driver = finishedQuery.getSelectedDriver();
+    if (driver == null || finishedQuery.getStatus().cancelled()) {
+      return;
+    }
+    final DriverLimit driverLimit = getDriverLimit(driver);
+    if (finishedQuery.getStatus().failing() || finishedQuery.getStatus().failed()) {
+      if (isUserError(finishedQuery.getStatus())) {
+        log.debug("Query {} failed on a user error, not backing off {}", finishedQuery.getQueryHandleString(),
+          driver.getFullyQualifiedName());
+        return;
+      }
+      driverLimit.update(0, true);
+    } else {
+      long latency = getExecutionTime(finishedQuery);
+      if (latency > 0) {
+        driverLimit.update(latency, false);
+      }
+    }
+    log.debug("Adaptive limit of {} is {} after query {}", driver.getFullyQualifiedName(), driverLimit.getLimit(),
+      finishedQuery.getQueryHandleString());
+  }
+
+  /**
+   * Gets the adaptive limit of the driver.
+   *
+   * @param driver the driver
+   * @return the limit, created with the initial limit if the driver has none yet
+   */
+  public DriverLimit getDriverLimit(LensDriver driver) {
+    String name = driver.getFullyQualifiedName();
+    DriverLimit driverLimit = driverLimits.get(name);
+    if (driverLimit == null) {
+      DriverLimit newLimit = new DriverLimit();
+      driverLimit = driverLimits.putIfAbsent(name, newLimit);
+      if (driverLimit == null) {
+        driverLimit = newLimit;
+        registerGauges(name, newLimit);
+      }
+    }
+    return driverLimit;
+  }
+
+  private static boolean isUserError(QueryStatus status) {
+    Integer errorCode = status.getErrorCode();
+    return errorCode != null && errorCode == LensDriverErrorCode.SEMANTIC_ERROR.getLensErrorInfo().getErrorCode();
+  }
+
+  private static long getExecutionTime(QueryContext query) {
+    Long start = query.getDriverStatus().getDriverStartTime();
+    Long finish = query.getDriverStatus().getDriverFinishTime();
+    if (start != null && finish != null && start > 0 && finish >= start) {
+      return finish - start;
+    }
+    if (query.getLaunchTime() > 0 && query.getEndTime() >= query.getLaunchTime()) {
+      return query.getEndTime() - query.getLaunchTime();
+    }
+    return 0;
+  }
+
+  private void registerGauges(String driverName, final DriverLimit driverLimit) {
+    MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+    register(registry, driverName, "limit", new Gauge<Integer>() {
+      @Override
+      public Integer getValue() {
+        return driverLimit.getLimit();
+      }
+    });
+    register(registry, driverName, "recent-latency-millis", new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return driverLimit.getShortLatency();
+      }
+    });
+    register(registry, driverName, "average-latency-millis", new Gauge<Double>() {
+      @Override
+      public Double getValue() {
+        return driverLimit.getLongLatency();
+      }
+    });
+    register(registry, driverName, "failures", new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return driverLimit.getFailures();
+      }
+    });
+  }
+
+  private static void register(MetricRegistry registry, String driverName, String metric, Gauge<?> gauge) {
+    String name = MetricRegistry.name("lens", AdaptiveConcurrencyConstraint.class.getSimpleName(), driverName, metric);
+    // Replaces the gauge of a constraint created earlier for the driver, like on reconfiguring it
+    registry.remove(name);
+    registry.register(name, gauge);
+  }
+}
@@ -0,0 +1,65 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.constraint;
+
+import org.apache.lens.server.api.common.ConfigBasedObjectCreationFactory;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.hadoop.conf.Configuration;
+
+public class AdaptiveConcurrencyConstraintFactory
+  implements ConfigBasedObjectCreationFactory<AdaptiveConcurrencyConstraint> {
+
+  private static final String PREFIX = "driver.adaptive.concurrency.";
+  public static final String ALGORITHM_KEY = PREFIX + "algorithm";
+  public static final String INITIAL_LIMIT_KEY = PREFIX + "initial.limit";
+  public static final String MIN_LIMIT_KEY = PREFIX + "min.limit";
+  public static final String MAX_LIMIT_KEY = PREFIX + "max.limit";
+  public static final String BACKOFF_RATIO_KEY = PREFIX + "backoff.ratio";
+  public static final String LATENCY_THRESHOLD_MILLIS_KEY = PREFIX + "latency.threshold.millis";
+  public static final String LATENCY_TOLERANCE_KEY = PREFIX + "latency.tolerance";
+
+  public static final String DEFAULT_ALGORITHM = AdaptiveConcurrencyConstraint.Algorithm.AIMD.name();
+  public static final int DEFAULT_INITIAL_LIMIT = 10;
+  public static final int DEFAULT_MIN_LIMIT = 1;
+  public static final int DEFAULT_MAX_LIMIT = 100;
+  public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+  public static final long DEFAULT_LATENCY_THRESHOLD_MILLIS = 0;
+  public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+  @Override
+  public AdaptiveConcurrencyConstraint create(final Configuration conf) {
+    // The static limit of the driver, if any, is the default ceiling of the adaptive one
+    int maxLimit = StringUtils.isBlank(conf.get(MAX_LIMIT_KEY))
+      ? conf.getInt(MaxConcurrentDriverQueriesConstraintFactory.MAX_CONCURRENT_QUERIES_KEY, DEFAULT_MAX_LIMIT)
+      : conf.getInt(MAX_LIMIT_KEY, DEFAULT_MAX_LIMIT);
+    String algorithm = conf.get(ALGORITHM_KEY);
+    if (algorithm == null) {
+      algorithm = DEFAULT_ALGORITHM;
+    }
+    return new AdaptiveConcurrencyConstraint(
+      AdaptiveConcurrencyConstraint.Algorithm.valueOf(algorithm.trim().toUpperCase()),
+      conf.getInt(INITIAL_LIMIT_KEY, DEFAULT_INITIAL_LIMIT),
+      conf.getInt(MIN_LIMIT_KEY, DEFAULT_MIN_LIMIT),
+      maxLimit,
+      conf.getDouble(BACKOFF_RATIO_KEY, DEFAULT_BACKOFF_RATIO),
+      conf.getLong(LATENCY_THRESHOLD_MILLIS_KEY, DEFAULT_LATENCY_THRESHOLD_MILLIS),
+      conf.getDouble(LATENCY_TOLERANCE_KEY, DEFAULT_LATENCY_TOLERANCE));
+  }
+}
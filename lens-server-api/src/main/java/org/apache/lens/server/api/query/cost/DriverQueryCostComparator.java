@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import java.util.Collection;
+import java.util.Comparator;
+
+/**
+ * Compares the costs of a query on several drivers by one key: by their predicted execution times when all of the
+ * costs have one, by their natural order otherwise. Comparing each pair of costs by the key they share would not be
+ * transitive when only some of the costs have predicted times.
+ */
+public class DriverQueryCostComparator implements Comparator<QueryCost> {
+
+  private final boolean byExecTime;
+
+  /**
+   * @param costs the costs to be compared
+   */
+  public DriverQueryCostComparator(Collection<? extends QueryCost> costs) {
+    boolean allPredicted = !costs.isEmpty();
+    for (QueryCost cost : costs) {
+      allPredicted &= hasEstimatedExecTime(cost);
+    }
+    this.byExecTime = allPredicted;
+  }
+
+  private static boolean hasEstimatedExecTime(QueryCost cost) {
+    return cost instanceof FactPartitionBasedQueryCost && ((FactPartitionBasedQueryCost) cost).hasEstimatedExecTime();
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public int compare(QueryCost c1, QueryCost c2) {
+    if (byExecTime) {
+      return Long.compare(c1.getEstimatedExecTimeMillis(), c2.getEstimatedExecTimeMillis());
+    }
+    return c1.compareTo(c2);
+  }
+}
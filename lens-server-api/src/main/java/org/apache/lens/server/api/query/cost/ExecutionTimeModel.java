@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Predicts the execution time of driver queries from the execution time of finished queries with similar
+ * {@link QueryFeatures}.
+ * <p>
+ * A linear regression of the execution time on the number of partitions and dimensions is fitted for the queries of
+ * every driver and set of facts, and for all the queries of every driver. A query is predicted with the fit of its
+ * driver and facts, or with the fit of its driver if its facts have too few finished queries. Training replaces all
+ * the fits at once, so predictions can be made while the model is retrained.
+ * <p>
+ * The server trains the model returned by {@link #getStaticModel()} periodically on the history of finished queries,
+ * and drivers predict with it through their cost calculators.
+ */
+@Slf4j
+public class ExecutionTimeModel {
+
+  private static final ExecutionTimeModel STATIC_MODEL = new ExecutionTimeModel();
+
+  /** Regularization keeping the fit defined when a feature does not vary among the finished queries. */
+  private static final double RIDGE = 1e-3;
+
+  /** Coefficients of the fits, by driver and facts, and by driver */
+  private volatile Map<String, double[]> fits = Collections.emptyMap();
+
+  /**
+   * @return the model shared by the server and its drivers
+   */
+  public static ExecutionTimeModel getStaticModel() {
+    return STATIC_MODEL;
+  }
+
+  /**
+   * Execution time of a finished query.
+   */
+  @Data
+  public static class Sample {
+    private final QueryFeatures features;
+    private final long execTimeMillis;
+  }
+
+  /**
+   * Error of the predictions of a model for finished queries.
+   */
+  @Data
+  public static class PredictionError {
+    /** Number of queries */
+    private final int count;
+    /** Number of queries for which the model made a prediction */
+    private final int predicted;
+    private final double meanAbsoluteErrorMillis;
+    /** Mean of the absolute error relative to the execution time, in percent */
+    private final double meanAbsolutePercentageError;
+  }
+
+  /**
+   * Fits the model on finished queries, replacing the previous fits.
+   *
+   * @param samples    the finished queries
+   * @param minSamples minimum number of finished queries to fit the queries of a driver or of a driver and facts
+   * @return number of fits
+   */
+  public int train(List<Sample> samples, int minSamples) {
+    Map<String, List<Sample>> groups = new HashMap<>();
+    for (Sample sample : samples) {
+      QueryFeatures features = sample.getFeatures();
+      addToGroup(groups, getKey(features.getDriverName(), null), sample);
+      addToGroup(groups, getKey(features.getDriverName(), features.getFacts()), sample);
+    }
+    Map<String, double[]> newFits = new HashMap<>();
+    for (Map.Entry<String, List<Sample>> group : groups.entrySet()) {
+      if (group.getValue().size() >= Math.max(1, minSamples)) {
+        double[] fit = fit(group.getValue());
+        if (fit != null) {
+          newFits.put(group.getKey(), fit);
+        }
+      }
+    }
+    fits = newFits;
+    log.info("Trained execution time model on {} queries with {} fits", samples.size(), newFits.size());
+    return newFits.size();
+  }
+
+  /**
+   * Predicts the execution time of a query.
+   *
+   * @param features features of the query
+   * @return the predicted time in millis, null if the model has no fit for the driver of the query
+   */
+  public Long predict(QueryFeatures features) {
+    Map<String, double[]> current = fits;
+    double[] fit = current.get(getKey(features.getDriverName(), features.getFacts()));
+    if (fit == null) {
+      fit = current.get(getKey(features.getDriverName(), null));
+    }
+    if (fit == null) {
+      return null;
+    }
+    double prediction = fit[0] + fit[1] * features.getPartitions() + fit[2] * features.getDimensions();
+    return Math.max(0, Math.round(prediction));
+  }
+
+  /**
+   * Measures the error of the predictions of the model for finished queries.
+   *
+   * @param samples the finished queries
+   * @return the error
+   */
+  public PredictionError evaluate(List<Sample> samples) {
+    int predicted = 0;
+    int relative = 0;
+    double absoluteError = 0;
+    double percentageError = 0;
+    for (Sample sample : samples) {
+      Long prediction = predict(sample.getFeatures());
+      if (prediction != null) {
+        predicted++;
+        double error = Math.abs(prediction - sample.getExecTimeMillis());
+        absoluteError += error;
+        if (sample.getExecTimeMillis() > 0) {
+          relative++;
+          percentageError += 100.0 * error / sample.getExecTimeMillis();
+        }
+      }
+    }
+    return new PredictionError(samples.size(), predicted, predicted == 0 ? 0 : absoluteError / predicted,
+      relative == 0 ? 0 : percentageError / relative);
+  }
+
+  /**
+   * Replays finished queries: trains a model on the first of them, and measures its error on the rest, as if they
+   * had been estimated after the model was trained.
+   *
+   * @param samples       the finished queries, in the order they finished
+   * @param trainFraction fraction of the queries to train on
+   * @param minSamples    minimum number of finished queries for a fit
+   * @return the error of the predictions of the remaining queries
+   */
+  public static PredictionError replay(List<Sample> samples, double trainFraction, int minSamples) {
+    if (trainFraction <= 0 || trainFraction >= 1) {
+      throw new IllegalArgumentException("Training fraction should be between 0 and 1: " + trainFraction);
+    }
+    int split = (int) (samples.size() * trainFraction);
+    ExecutionTimeModel model = new ExecutionTimeModel();
+    model.train(new ArrayList<>(samples.subList(0, split)), minSamples);
+    return model.evaluate(samples.subList(split, samples.size()));
+  }
+
+  private static String getKey(String driverName, String facts) {
+    return facts == null ? driverName : driverName + "/" + facts;
+  }
+
+  private static void addToGroup(Map<String, List<Sample>> groups, String key, Sample sample) {
+    List<Sample> group = groups.get(key);
+    if (group == null) {
+      group = new ArrayList<>();
+      groups.put(key, group);
+    }
+    group.add(sample);
+  }
+
+  /**
+   * Solves the regularized normal equations of the least squares fit of the execution time on the intercept, the
+   * partitions and the dimensions.
+   */
+  private static double[] fit(List<Sample> samples) {
+    int n = 3;
+    double[][] a = new double[n][n + 1];
+    for (Sample sample : samples) {
+      double[] x = {1, sample.getFeatures().getPartitions(), sample.getFeatures().getDimensions()};
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          a[i][j] += x[i] * x[j];
+        }
+        a[i][n] += x[i] * sample.getExecTimeMillis();
+      }
+    }
+    // The intercept is not regularized
+    for (int i = 1; i < n; i++) {
+      a[i][i] += RIDGE * samples.size();
+    }
+    // Gaussian elimination with partial pivoting
+    for (int col = 0; col < n; col++) {
+      int pivot = col;
+      for (int row = col + 1; row < n; row++) {
+        if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+          pivot = row;
+        }
+      }
+      if (Math.abs(a[pivot][col]) < 1e-12) {
+        return null;
+      }
+      double[] tmp = a[col];
+      a[col] = a[pivot];
+      a[pivot] = tmp;
+      for (int row = 0; row < n; row++) {
+        if (row != col) {
+          double factor = a[row][col] / a[col][col];
+          for (int k = col; k <= n; k++) {
+            a[row][k] -= factor * a[col][k];
+          }
+        }
+      }
+    }
+    double[] coefficients = new double[n];
+    for (int i = 0; i < n; i++) {
+      coefficients[i] = a[i][n] / a[i][i];
+    }
+    return coefficients;
+  }
+}
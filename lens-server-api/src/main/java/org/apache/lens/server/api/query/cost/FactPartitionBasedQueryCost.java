@@ -34,15 +34,26 @@ import lombok.ToString;
 public class FactPartitionBasedQueryCost implements QueryCost<FactPartitionBasedQueryCost>, Serializable {
 
   private final double partitionCost;
+  /** Predicted execution time, null if not predicted. */
+  private final Long estimatedExecTimeMillis;
 
   public FactPartitionBasedQueryCost(final double partitionCost) {
+    this(partitionCost, null);
+  }
+
+  public FactPartitionBasedQueryCost(final double partitionCost, final Long estimatedExecTimeMillis) {
     Preconditions.checkArgument(partitionCost >= 0, "Cost can't be negative");
+    Preconditions.checkArgument(estimatedExecTimeMillis == null || estimatedExecTimeMillis >= 0,
+      "Estimated time can't be negative");
     this.partitionCost = partitionCost;
+    this.estimatedExecTimeMillis = estimatedExecTimeMillis;
   }
 
   @Override
   public FactPartitionBasedQueryCost add(final FactPartitionBasedQueryCost other) {
-    return new FactPartitionBasedQueryCost(partitionCost + other.partitionCost);
+    Long execTime = estimatedExecTimeMillis == null || other.estimatedExecTimeMillis == null
+      ? null : estimatedExecTimeMillis + other.estimatedExecTimeMillis;
+    return new FactPartitionBasedQueryCost(partitionCost + other.partitionCost, execTime);
   }
 
   @Override
@@ -52,7 +63,14 @@ public class FactPartitionBasedQueryCost implements QueryCost<FactPartitionBased
 
   @Override
   public long getEstimatedExecTimeMillis() throws UnsupportedOperationException {
-    throw new UnsupportedOperationException("Estimated time is not implemented");
+    if (estimatedExecTimeMillis == null) {
+      throw new UnsupportedOperationException("Estimated time is not available");
+    }
+    return estimatedExecTimeMillis;
+  }
+
+  public boolean hasEstimatedExecTime() {
+    return estimatedExecTimeMillis != null;
   }
 
   @Override
@@ -60,13 +78,27 @@ public class FactPartitionBasedQueryCost implements QueryCost<FactPartitionBased
     return partitionCost;
   }
 
+  /**
+   * Compares partition costs, and then predicted execution times, costs without one first. Costs of a query on
+   * several drivers are compared by their predicted times through {@link DriverQueryCostComparator}.
+   */
   @Override
   public int compareTo(final FactPartitionBasedQueryCost o) {
-    return new Double(partitionCost).compareTo(o.partitionCost);
+    int result = Double.compare(partitionCost, o.partitionCost);
+    if (result != 0) {
+      return result;
+    }
+    if (estimatedExecTimeMillis == null || o.estimatedExecTimeMillis == null) {
+      return Boolean.compare(estimatedExecTimeMillis != null, o.estimatedExecTimeMillis != null);
+    }
+    return estimatedExecTimeMillis.compareTo(o.estimatedExecTimeMillis);
   }
 
   @Override
   public String toString() {
+    if (estimatedExecTimeMillis != null) {
+      return getQueryCostType() + "(" + getEstimatedResourceUsage() + ", " + estimatedExecTimeMillis + "ms)";
+    }
     return getQueryCostType() + "(" + getEstimatedResourceUsage() + ")";
   }
 
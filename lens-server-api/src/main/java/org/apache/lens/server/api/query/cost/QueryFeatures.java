@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+
+import org.apache.commons.lang3.StringUtils;
+
+import lombok.Data;
+
+/**
+ * Features of a driver query used to predict its execution time by {@link ExecutionTimeModel}.
+ * <p>
+ * The features are extracted from the driver query and from the plan of its rewrite, which are persisted by the
+ * server with the finished queries the model is trained on:
+ * <ul>
+ *   <li>facts: the tables read in the from clauses, which for queries rewritten from cubes are the fact tables</li>
+ *   <li>dimensions: the number of distinct tables joined</li>
+ *   <li>partitions: the number of partitions queried, as found by the rewrite of the query</li>
+ * </ul>
+ */
+@Data
+public class QueryFeatures {
+
+  private static final Pattern TABLE_PATTERN = Pattern.compile("\\b(from|join)\\s+([\\w.`]+)",
+    Pattern.CASE_INSENSITIVE);
+  private static final Pattern LITERAL_PATTERN = Pattern.compile("'(?:[^'\\\\]|\\\\.)*'");
+
+  private final String driverName;
+  private final String facts;
+  private final int dimensions;
+  private final int partitions;
+
+  /**
+   * Extracts the features of a driver query.
+   *
+   * @param driverName  fully qualified name of the driver
+   * @param driverQuery the driver query
+   * @param partitions  the number of partitions queried, see {@link #countPartitions(DriverQueryPlan)}
+   * @return the features
+   */
+  public static QueryFeatures fromDriverQuery(String driverName, String driverQuery, int partitions) {
+    Set<String> facts = new TreeSet<>();
+    Set<String> dimensions = new TreeSet<>();
+    if (driverQuery != null) {
+      // Literals are dropped so that their contents are not taken for tables
+      Matcher tables = TABLE_PATTERN.matcher(LITERAL_PATTERN.matcher(driverQuery).replaceAll("''"));
+      while (tables.find()) {
+        String table = tables.group(2).replace("`", "").toLowerCase();
+        if ("from".equalsIgnoreCase(tables.group(1))) {
+          facts.add(table);
+        } else {
+          dimensions.add(table);
+        }
+      }
+    }
+    return new QueryFeatures(driverName, StringUtils.join(facts, ","), dimensions.size(), partitions);
+  }
+
+  /**
+   * Counts the partitions queried on all the tables of the plan of the rewrite of a query.
+   *
+   * @param rewriterPlan the plan of the rewrite, null if the query was not rewritten
+   * @return the number of partitions
+   */
+  public static int countPartitions(DriverQueryPlan rewriterPlan) {
+    int partitions = 0;
+    if (rewriterPlan != null) {
+      for (Map.Entry<String, Set<?>> entry : rewriterPlan.getPartitions().entrySet()) {
+        partitions += entry.getValue() == null ? 0 : entry.getValue().size();
+      }
+    }
+    return partitions;
+  }
+}
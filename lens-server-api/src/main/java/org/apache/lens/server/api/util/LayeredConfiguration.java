@@ -0,0 +1,304 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.util;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+
+/**
+ * A configuration layered over immutable snapshots of other configurations, instead of a full copy of them.
+ * <p>
+ * Properties are read from the properties set on the configuration, and then from the layers, topmost first.
+ * Properties set or unset on the configuration never change its layers. For example, the driver specific conf of a
+ * query is the query conf layered over a snapshot of the driver conf, which is shared by the queries till the driver
+ * conf changes, and the query conf is layered over a snapshot of the session conf.
+ * <p>
+ * The properties of the layers are copied into the configuration, which then behaves as a plain configuration, only
+ * when all the properties are needed: on iterating or serializing the configuration, or on reloading its resources.
+ * Copies made through {@link Configuration#Configuration(Configuration)} only get the properties copied into the
+ * configuration, so configurations which can be layered should be copied through {@link #materialize(Configuration)}.
+ */
+public class LayeredConfiguration extends Configuration {
+
+  /**
+   * The layers, topmost first.
+   */
+  private final List<Configuration> layers;
+
+  /**
+   * Properties of the layers unset on this configuration, till the layers are copied into it.
+   */
+  private final Set<String> unsetNames = new HashSet<>();
+
+  /**
+   * Whether properties were set or unset on this configuration.
+   */
+  private volatile boolean changed;
+
+  /**
+   * Whether the properties of the layers are copied into this configuration.
+   */
+  private volatile boolean materialized;
+
+  /**
+   * Snapshot of the properties set on this configuration, till it is changed again.
+   */
+  private Configuration changesSnapshot;
+
+  private LayeredConfiguration(List<Configuration> layers) {
+    super(false);
+    this.layers = layers;
+  }
+
+  /**
+   * Creates a configuration layered over snapshots of the given configurations. Snapshots, and the layers of layered
+   * configurations, are layered as they are. The other configurations are copied.
+   *
+   * @param confs the configurations, topmost first
+   * @return the layered configuration, with the class loader of the topmost configuration
+   */
+  public static LayeredConfiguration create(Configuration... confs) {
+    List<Configuration> layers = new ArrayList<>();
+    for (Configuration conf : confs) {
+      if (conf instanceof LayeredConfiguration) {
+        ((LayeredConfiguration) conf).addLayers(layers);
+      } else {
+        layers.add(snapshot(conf));
+      }
+    }
+    LayeredConfiguration layered = new LayeredConfiguration(Collections.unmodifiableList(layers));
+    if (confs.length > 0) {
+      layered.setClassLoader(confs[0].getClassLoader());
+    }
+    return layered;
+  }
+
+  /**
+   * Gets an immutable snapshot of a configuration. Setting or unsetting properties of the snapshot fails.
+   *
+   * @param conf the configuration
+   * @return the snapshot, which is the configuration itself if it is a snapshot already
+   */
+  public static Configuration snapshot(Configuration conf) {
+    if (conf instanceof Snapshot) {
+      return conf;
+    }
+    if (conf instanceof LayeredConfiguration) {
+      LayeredConfiguration layered = (LayeredConfiguration) conf;
+      if (!layered.changed && layered.layers.size() == 1) {
+        return layered.layers.get(0);
+      }
+      layered.materialize();
+    }
+    return new Snapshot(conf);
+  }
+
+  /**
+   * Copies the properties of the layers of a layered configuration into it, so that it can be copied like a plain
+   * configuration, for example into a {@link org.apache.hadoop.hive.conf.HiveConf}.
+   *
+   * @param conf the configuration
+   * @return the configuration
+   */
+  public static Configuration materialize(Configuration conf) {
+    if (conf instanceof LayeredConfiguration) {
+      ((LayeredConfiguration) conf).materialize();
+    }
+    return conf;
+  }
+
+  private synchronized void addLayers(List<Configuration> target) {
+    if (changed && (materialized || !unsetNames.isEmpty())) {
+      target.add(snapshot(this));
+      return;
+    }
+    if (changed) {
+      if (changesSnapshot == null) {
+        // Only the properties set on this configuration are copied, as the layers are not copied into it
+        changesSnapshot = new Snapshot(this);
+      }
+      target.add(changesSnapshot);
+    }
+    target.addAll(layers);
+  }
+
+  private synchronized void materialize() {
+    if (materialized) {
+      return;
+    }
+    Set<String> setNames = new HashSet<>();
+    Iterator<Map.Entry<String, String>> iterator = super.iterator();
+    while (iterator.hasNext()) {
+      setNames.add(iterator.next().getKey());
+    }
+    materialized = true;
+    for (int i = layers.size() - 1; i >= 0; i--) {
+      for (Map.Entry<String, String> entry : layers.get(i)) {
+        if (!setNames.contains(entry.getKey()) && !unsetNames.contains(entry.getKey())) {
+          super.set(entry.getKey(), entry.getValue(), null);
+        }
+      }
+    }
+    unsetNames.clear();
+  }
+
+  private synchronized String getFromLayers(String name) {
+    if (unsetNames.contains(name)) {
+      return null;
+    }
+    for (Configuration layer : layers) {
+      String value = layer.getRaw(name);
+      if (value != null) {
+        return value;
+      }
+    }
+    return null;
+  }
+
+  private static boolean hasVariables(String value) {
+    return value != null && value.contains("${");
+  }
+
+  @Override
+  public String get(String name) {
+    String value = super.get(name);
+    if (value != null || materialized) {
+      return value;
+    }
+    value = getFromLayers(name);
+    // Variables are substituted by the configuration, as they can refer to properties of other layers
+    return hasVariables(value) ? super.get(name, value) : value;
+  }
+
+  @Override
+  public String get(String name, String defaultValue) {
+    if (materialized) {
+      return super.get(name, defaultValue);
+    }
+    String value = get(name);
+    if (value != null) {
+      return value;
+    }
+    return hasVariables(defaultValue) ? super.get(name, defaultValue) : defaultValue;
+  }
+
+  @Override
+  public String getRaw(String name) {
+    String value = super.getRaw(name);
+    return value != null || materialized ? value : getFromLayers(name);
+  }
+
+  @Override
+  public synchronized void set(String name, String value, String source) {
+    changed = true;
+    changesSnapshot = null;
+    unsetNames.remove(name);
+    super.set(name, value, source);
+  }
+
+  @Override
+  public synchronized void unset(String name) {
+    changed = true;
+    changesSnapshot = null;
+    if (!materialized) {
+      unsetNames.add(name);
+    }
+    super.unset(name);
+  }
+
+  @Override
+  public synchronized void clear() {
+    changed = true;
+    changesSnapshot = null;
+    materialized = true;
+    unsetNames.clear();
+    super.clear();
+  }
+
+  @Override
+  public synchronized void reloadConfiguration() {
+    materialize();
+    super.reloadConfiguration();
+  }
+
+  @Override
+  public int size() {
+    materialize();
+    return super.size();
+  }
+
+  @Override
+  public Iterator<Map.Entry<String, String>> iterator() {
+    materialize();
+    return super.iterator();
+  }
+
+  @Override
+  public Map<String, String> getValByRegex(String regex) {
+    materialize();
+    return super.getValByRegex(regex);
+  }
+
+  @Override
+  public synchronized String[] getPropertySources(String name) {
+    materialize();
+    return super.getPropertySources(name);
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    materialize();
+    super.write(out);
+  }
+
+  @Override
+  public void writeXml(Writer out) throws IOException {
+    materialize();
+    super.writeXml(out);
+  }
+
+  /**
+   * An immutable copy of a configuration.
+   */
+  private static final class Snapshot extends Configuration {
+
+    private Snapshot(Configuration conf) {
+      super(conf);
+    }
+
+    @Override
+    public void set(String name, String value, String source) {
+      throw new UnsupportedOperationException("Configuration snapshots can not be changed");
+    }
+
+    @Override
+    public synchronized void unset(String name) {
+      throw new UnsupportedOperationException("Configuration snapshots can not be changed");
+    }
+
+    @Override
+    public synchronized void clear() {
+      throw new UnsupportedOperationException("Configuration snapshots can not be changed");
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lens.api.query.ResultRow;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+public class TestProgressiveResultBuffer {
+
+  private final ExecutorService publisher = Executors.newSingleThreadExecutor();
+
+  @AfterClass
+  public void shutdown() {
+    publisher.shutdownNow();
+  }
+
+  private static ResultRow row(int value) {
+    return new ResultRow(Collections.<Object>singletonList(value));
+  }
+
+  private Future<Integer> publish(final ProgressiveResultBuffer buffer, final int rows) {
+    return publisher.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        int published = 0;
+        for (int i = 0; i < rows && buffer.publish(row(i)); i++) {
+          published++;
+        }
+        buffer.finish();
+        return published;
+      }
+    });
+  }
+
+  @Test
+  public void testStreamingWithBackpressure() throws Exception {
+    ProgressiveResultBuffer buffer = new ProgressiveResultBuffer(null, 10, 10000);
+    // The client attaches before the rows are published
+    assertTrue(buffer.fetch(7, 0).isEmpty());
+    Future<Integer> published = publish(buffer, 1000);
+
+    List<Object> fetched = new ArrayList<>();
+    while (!buffer.isExhausted()) {
+      List<ResultRow> rows = buffer.fetch(7, 1000);
+      assertTrue(rows.size() <= 7);
+      for (ResultRow row : rows) {
+        fetched.add(row.getValues().get(0));
+      }
+      // The buffer never holds more than its capacity
+      assertTrue(buffer.getPublishedRows() - buffer.getFetchedRows() <= 10);
+    }
+    assertEquals(published.get().intValue(), 1000);
+    assertEquals(fetched.size(), 1000);
+    for (int i = 0; i < fetched.size(); i++) {
+      assertEquals(fetched.get(i), i);
+    }
+    assertTrue(buffer.fetch(10, 1000).isEmpty());
+    assertFalse(buffer.isAbandoned());
+  }
+
+  @Test
+  public void testFetchWaitsForRows() throws Exception {
+    ProgressiveResultBuffer buffer = new ProgressiveResultBuffer(null, 10, 10000);
+    long start = System.currentTimeMillis();
+    assertTrue(buffer.fetch(10, 100).isEmpty());
+    assertTrue(System.currentTimeMillis() - start >= 100);
+
+    publish(buffer, 3);
+    List<ResultRow> rows = buffer.fetch(10, 10000);
+    assertFalse(rows.isEmpty());
+  }
+
+  @Test
+  public void testAbandonedWithoutClient() throws Exception {
+    ProgressiveResultBuffer buffer = new ProgressiveResultBuffer(null, 5, 10000);
+    // Without a client, publishing does not wait for the timeout once the buffer is full, and skips the remaining rows
+    long start = System.currentTimeMillis();
+    assertEquals(publish(buffer, 1000).get().intValue(), 5);
+    assertTrue(System.currentTimeMillis() - start < 10000);
+    assertTrue(buffer.isAbandoned());
+    assertTrue(buffer.fetch(10, 0).isEmpty());
+    assertFalse(buffer.publish(row(0)));
+  }
+
+  @Test
+  public void testAbandonedWhenClientStopsFetching() throws Exception {
+    ProgressiveResultBuffer buffer = new ProgressiveResultBuffer(null, 5, 100);
+    assertTrue(buffer.fetch(5, 0).isEmpty());
+    // Publishing waits for the client which has fetched, and stops waiting after the timeout
+    long start = System.currentTimeMillis();
+    assertEquals(publish(buffer, 1000).get().intValue(), 5);
+    assertTrue(System.currentTimeMillis() - start >= 100);
+    assertTrue(buffer.isAbandoned());
+    assertTrue(buffer.fetch(10, 0).isEmpty());
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new ProgressiveResultBuffer(null, 0, 100);
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.constraint;
+
+import static org.apache.lens.server.api.LensServerAPITestUtil.getConfiguration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.api.result.LensErrorTO;
+import org.apache.lens.server.api.driver.DriverQueryStatus;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.error.LensDriverErrorCode;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+
+import org.testng.annotations.Test;
+
+import com.codahale.metrics.Gauge;
+
+public class AdaptiveConcurrencyConstraintTest {
+
+  private final AdaptiveConcurrencyConstraintFactory factory = new AdaptiveConcurrencyConstraintFactory();
+
+  private static LensDriver mockDriver(String name) {
+    LensDriver driver = mock(LensDriver.class);
+    when(driver.getFullyQualifiedName()).thenReturn(name);
+    return driver;
+  }
+
+  private static QueryContext finishedQuery(LensDriver driver, QueryStatus.Status status, long executionMillis) {
+    return finishedQuery(driver, status, executionMillis, null);
+  }
+
+  private static QueryContext finishedQuery(LensDriver driver, QueryStatus.Status status, long executionMillis,
+    LensErrorTO error) {
+    QueryContext query = mock(QueryContext.class);
+    when(query.getSelectedDriver()).thenReturn(driver);
+    when(query.getStatus()).thenReturn(new QueryStatus(1.0, null, status, null, false, null, null, error));
+    DriverQueryStatus driverStatus = new DriverQueryStatus();
+    driverStatus.setDriverStartTime(1000L);
+    driverStatus.setDriverFinishTime(1000L + executionMillis);
+    when(query.getDriverStatus()).thenReturn(driverStatus);
+    return query;
+  }
+
+  private static String allowsLaunch(QueryLaunchingConstraint constraint, LensDriver driver, int launched) {
+    QueryContext candidate = mock(QueryContext.class);
+    when(candidate.getSelectedDriver()).thenReturn(driver);
+    EstimatedImmutableQueryCollection launchedQueries = mock(EstimatedImmutableQueryCollection.class);
+    when(launchedQueries.getQueriesCount(driver)).thenReturn(launched);
+    return constraint.allowsLaunchOf(candidate, launchedQueries);
+  }
+
+  @Test
+  public void testAIMD() {
+    AdaptiveConcurrencyConstraint constraint = factory.create(getConfiguration(
+      "driver.adaptive.concurrency.algorithm", "aimd",
+      "driver.adaptive.concurrency.initial.limit", 4,
+      "driver.adaptive.concurrency.max.limit", 6,
+      "driver.adaptive.concurrency.backoff.ratio", 0.5,
+      "driver.adaptive.concurrency.latency.threshold.millis", 1000));
+    LensDriver driver = mockDriver("hive/aimd");
+
+    assertNull(allowsLaunch(constraint, driver, 3));
+    assertNotNull(allowsLaunch(constraint, driver, 4));
+
+    // Grows by one for every fast query while the limit is used, up to the maximum
+    for (int i = 0; i < 5; i++) {
+      constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.SUCCESSFUL, 100));
+    }
+    assertEquals(constraint.getDriverLimit(driver).getLimit(), 6);
+    assertNull(allowsLaunch(constraint, driver, 5));
+
+    // Halves for slow and failed queries
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.SUCCESSFUL, 5000));
+    assertEquals(constraint.getDriverLimit(driver).getLimit(), 3);
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.FAILED, 100));
+    assertEquals(constraint.getDriverLimit(driver).getLimit(), 1);
+    assertEquals(constraint.getDriverLimit(driver).getFailures(), 1);
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.FAILED, 100));
+    assertEquals(constraint.getDriverLimit(driver).getLimit(), 1);
+    assertNotNull(allowsLaunch(constraint, driver, 1));
+
+    // Cancelled queries are ignored
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.CANCELED, 100));
+    assertEquals(constraint.getDriverLimit(driver).getFailures(), 2);
+  }
+
+  @Test
+  public void testFailures() {
+    AdaptiveConcurrencyConstraint constraint = factory.create(getConfiguration(
+      "driver.adaptive.concurrency.initial.limit", 8,
+      "driver.adaptive.concurrency.backoff.ratio", 0.5));
+    LensDriver driver = mockDriver("hive/failures");
+    AdaptiveConcurrencyConstraint.DriverLimit limit = constraint.getDriverLimit(driver);
+
+    // Queries leave the driver while failing, before being retried or marked failed
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.FAILING, 100,
+      LensErrorTO.composedOf(LensDriverErrorCode.DRIVER_ERROR.getLensErrorInfo().getErrorCode(), "driver error",
+        null)));
+    assertEquals(limit.getLimit(), 4);
+    assertEquals(limit.getFailures(), 1);
+    assertEquals(limit.getLongLatency(), 0.0);
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.FAILING, 100));
+    assertEquals(limit.getLimit(), 2);
+
+    // Semantic errors are errors of the user, the driver is neither backed off nor its latency recorded
+    constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.FAILING, 100,
+      LensErrorTO.composedOf(LensDriverErrorCode.SEMANTIC_ERROR.getLensErrorInfo().getErrorCode(), "semantic error",
+        null)));
+    assertEquals(limit.getLimit(), 2);
+    assertEquals(limit.getFailures(), 2);
+    assertEquals(limit.getLongLatency(), 0.0);
+  }
+
+  @Test
+  public void testGradient() {
+    AdaptiveConcurrencyConstraint constraint = factory.create(getConfiguration(
+      "driver.adaptive.concurrency.algorithm", "GRADIENT",
+      "driver.adaptive.concurrency.initial.limit", 10,
+      "driver.adaptive.concurrency.max.limit", 20,
+      "driver.adaptive.concurrency.latency.tolerance", 1.5));
+    LensDriver driver = mockDriver("jdbc/gradient");
+    AdaptiveConcurrencyConstraint.DriverLimit limit = constraint.getDriverLimit(driver);
+
+    // Steady latencies with the limit in use let the limit grow
+    allowsLaunch(constraint, driver, 10);
+    for (int i = 0; i < 20; i++) {
+      constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.SUCCESSFUL, 1000));
+    }
+    assertEquals(limit.getLimit(), 20);
+    assertEquals(limit.getLongLatency(), 1000.0);
+
+    // The limit shrinks when the driver slows down
+    for (int i = 0; i < 20; i++) {
+      constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.SUCCESSFUL, 10000));
+    }
+    assertTrue(limit.getShortLatency() > 1.5 * limit.getLongLatency());
+    int slowLimit = limit.getLimit();
+    assertTrue(slowLimit < 15, "limit: " + slowLimit);
+
+    // and grows back when it recovers
+    allowsLaunch(constraint, driver, slowLimit);
+    for (int i = 0; i < 20; i++) {
+      constraint.queryFinished(finishedQuery(driver, QueryStatus.Status.SUCCESSFUL, 1000));
+    }
+    assertTrue(limit.getLimit() > slowLimit, "limit: " + limit.getLimit());
+  }
+
+  @Test
+  public void testLimitsPerDriverAndMetrics() {
+    AdaptiveConcurrencyConstraint constraint = factory.create(getConfiguration(
+      "driver.max.concurrent.launched.queries", 3,
+      "driver.adaptive.concurrency.initial.limit", 5));
+    LensDriver driver1 = mockDriver("hive/driver1");
+    LensDriver driver2 = mockDriver("hive/driver2");
+
+    // The static limit is the default maximum
+    assertEquals(constraint.getDriverLimit(driver1).getLimit(), 3);
+    constraint.queryFinished(finishedQuery(driver1, QueryStatus.Status.FAILED, 100));
+    assertEquals(constraint.getDriverLimit(driver1).getLimit(), 2);
+    assertEquals(constraint.getDriverLimit(driver2).getLimit(), 3);
+
+    Gauge<?> gauge = LensMetricsRegistry.getStaticRegistry().getGauges()
+      .get("lens.AdaptiveConcurrencyConstraint.hive/driver1.limit");
+    assertEquals(gauge.getValue(), 2);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidBackoffRatio() {
+    factory.create(getConfiguration("driver.adaptive.concurrency.backoff.ratio", 1.5));
+  }
+}
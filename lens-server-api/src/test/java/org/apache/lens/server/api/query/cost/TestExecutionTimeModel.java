@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.query.cost;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Sets;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+public class TestExecutionTimeModel {
+
+  private static final String QUERY = "SELECT dim1.name, sum(fact1.msr) FROM db.fact1 fact1"
+    + " JOIN dim1 ON fact1.dim1id = dim1.id LEFT OUTER JOIN `db`.`dim2` dim2 ON fact1.dim2id = dim2.id"
+    + " WHERE ((fact1.dt = '2016-01-01') OR (fact1.dt = '2016-01-02') OR (fact1.dt = 'from x join y'))"
+    + " GROUP BY dim1.name";
+
+  @Test
+  public void testFeatures() {
+    QueryFeatures features = QueryFeatures.fromDriverQuery("hive/hive1", QUERY, 3);
+    assertEquals(features.getDriverName(), "hive/hive1");
+    assertEquals(features.getFacts(), "db.fact1");
+    assertEquals(features.getDimensions(), 2);
+    assertEquals(features.getPartitions(), 3);
+
+    features = QueryFeatures.fromDriverQuery("jdbc/jdbc1",
+      "SELECT * FROM (SELECT a FROM fact2 UNION ALL SELECT a FROM fact1) t", 0);
+    assertEquals(features.getFacts(), "fact1,fact2");
+    assertEquals(features.getDimensions(), 0);
+    assertEquals(features.getPartitions(), 0);
+    assertEquals(QueryFeatures.fromDriverQuery("jdbc/jdbc1", null, 0).getFacts(), "");
+  }
+
+  @Test
+  public void testCountPartitions() {
+    DriverQueryPlan plan = new DriverQueryPlan() {
+      @Override
+      public String getPlan() {
+        return null;
+      }
+
+      @Override
+      public QueryCost getCost() {
+        return null;
+      }
+    };
+    assertEquals(QueryFeatures.countPartitions(null), 0);
+    assertEquals(QueryFeatures.countPartitions(plan), 0);
+    plan.getPartitions().put("db.fact1", Sets.newHashSet("2016-01-01", "2016-01-02"));
+    plan.getPartitions().put("db.fact2", Sets.newHashSet("2016-01-01"));
+    assertEquals(QueryFeatures.countPartitions(plan), 3);
+  }
+
+  private static ExecutionTimeModel.Sample sample(String driver, String fact, int partitions, int dimensions,
+    long execTime) {
+    return new ExecutionTimeModel.Sample(new QueryFeatures(driver, fact, dimensions, partitions), execTime);
+  }
+
+  @Test
+  public void testTrainAndPredict() {
+    ExecutionTimeModel model = new ExecutionTimeModel();
+    assertNull(model.predict(new QueryFeatures("hive/hive1", "fact1", 0, 1)));
+
+    List<ExecutionTimeModel.Sample> samples = new ArrayList<>();
+    for (int partitions = 1; partitions <= 10; partitions++) {
+      // fact1 takes a second plus two per partition and half a second per dimension
+      samples.add(sample("hive/hive1", "fact1", partitions, partitions % 3, 1000 + 2000 * partitions
+        + 500 * (partitions % 3)));
+      // fact2 takes 10 seconds whatever the partitions
+      samples.add(sample("hive/hive1", "fact2", partitions, 1, 10000));
+    }
+    samples.add(sample("jdbc/jdbc1", "fact1", 1, 0, 100));
+    assertEquals(model.train(samples, 5), 3);
+
+    assertEquals(model.predict(new QueryFeatures("hive/hive1", "fact1", 2, 20)), 42000, 100);
+    assertEquals(model.predict(new QueryFeatures("hive/hive1", "fact2", 1, 5)), 10000, 100);
+    // Facts with too few queries are predicted from all the queries of the driver
+    assertNotNull(model.predict(new QueryFeatures("hive/hive1", "fact3", 0, 5)));
+    assertNull(model.predict(new QueryFeatures("jdbc/jdbc1", "fact1", 0, 1)));
+
+    ExecutionTimeModel.PredictionError error = model.evaluate(samples);
+    assertEquals(error.getCount(), 21);
+    assertEquals(error.getPredicted(), 20);
+    assertTrue(error.getMeanAbsolutePercentageError() < 1, "error: " + error);
+
+    // Retraining replaces the fits
+    assertEquals(model.train(new ArrayList<ExecutionTimeModel.Sample>(), 5), 0);
+    assertNull(model.predict(new QueryFeatures("hive/hive1", "fact1", 0, 1)));
+  }
+
+  /**
+   * Replays a noisy history, as the offline harness does with the finished queries of a server.
+   */
+  @Test
+  public void testReplay() {
+    Random random = new Random(7);
+    List<ExecutionTimeModel.Sample> samples = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      int partitions = 1 + random.nextInt(30);
+      int dimensions = random.nextInt(4);
+      double noise = 0.9 + 0.2 * random.nextDouble();
+      String fact = "fact" + random.nextInt(3);
+      long perPartition = fact.equals("fact0") ? 1000 : 5000;
+      samples.add(sample("hive/hive1", fact, partitions, dimensions,
+        (long) (noise * (2000 + perPartition * partitions + 3000 * dimensions))));
+    }
+    ExecutionTimeModel.PredictionError error = ExecutionTimeModel.replay(samples, 0.8, 10);
+    log.info("Replay error: {}", error);
+    assertEquals(error.getCount(), 200);
+    assertEquals(error.getPredicted(), 200);
+    assertTrue(error.getMeanAbsolutePercentageError() < 10, "error: " + error);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void testInvalidTrainFraction() {
+    ExecutionTimeModel.replay(new ArrayList<ExecutionTimeModel.Sample>(), 1.0, 10);
+  }
+}
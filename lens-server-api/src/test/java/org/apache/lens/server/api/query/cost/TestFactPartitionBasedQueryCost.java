@@ -23,6 +23,8 @@ package org.apache.lens.server.api.query.cost;
 
 import static org.testng.Assert.*;
 
+import java.util.Arrays;
+
 import org.apache.lens.api.query.QueryCostType;
 import org.apache.lens.api.serialize.SerializationTest;
 
@@ -57,6 +59,36 @@ public class TestFactPartitionBasedQueryCost {
     cost1.getEstimatedExecTimeMillis();
   }
 
+  @Test
+  public void testEstimatedExecTime() throws Exception {
+    FactPartitionBasedQueryCost slow = new FactPartitionBasedQueryCost(0.2, 5000L);
+    FactPartitionBasedQueryCost fast = new FactPartitionBasedQueryCost(0.3, 1000L);
+    assertEquals(slow.getEstimatedExecTimeMillis(), 5000L);
+    assertEquals(slow.add(fast), new FactPartitionBasedQueryCost(0.5, 6000L));
+    assertEquals(slow.add(new FactPartitionBasedQueryCost(0.3)), new FactPartitionBasedQueryCost(0.5));
+    // Partition costs are compared first, so that the order is transitive and consistent with equals
+    assertEquals(fast.compareTo(slow), 1);
+    assertEquals(slow.compareTo((FactPartitionBasedQueryCost) cost2), -1);
+    assertEquals(slow.compareTo((FactPartitionBasedQueryCost) cost1), 1);
+    assertEquals(slow.compareTo(new FactPartitionBasedQueryCost(0.2, 5000L)), 0);
+    assertFalse(slow.equals(cost1));
+  }
+
+  @Test
+  public void testDriverQueryCostComparator() throws Exception {
+    FactPartitionBasedQueryCost slow = new FactPartitionBasedQueryCost(0.2, 5000L);
+    FactPartitionBasedQueryCost fast = new FactPartitionBasedQueryCost(0.3, 1000L);
+    // Times are compared when all the costs have them
+    DriverQueryCostComparator comparator = new DriverQueryCostComparator(Arrays.asList(slow, fast));
+    assertTrue(comparator.compare(fast, slow) < 0);
+    assertTrue(comparator.compare(slow, fast) > 0);
+    // Partition costs are compared for all the costs otherwise
+    comparator = new DriverQueryCostComparator(Arrays.asList(slow, fast, cost0));
+    assertTrue(comparator.compare(fast, slow) > 0);
+    assertTrue(comparator.compare(cost0, slow) < 0);
+    assertTrue(comparator.compare(cost0, fast) < 0);
+  }
+
   @Test
   public void testGetEstimatedResourceUsage() throws Exception {
     assertEquals(cost1.getEstimatedResourceUsage(), 0.2);
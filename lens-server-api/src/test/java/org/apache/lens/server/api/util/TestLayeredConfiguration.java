@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.api.util;
+
+import static org.testng.Assert.*;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tests for layered configurations.
+ */
+@Slf4j
+public class TestLayeredConfiguration {
+
+  private Configuration driverConf;
+  private Configuration queryConf;
+
+  @BeforeClass
+  public void setup() {
+    driverConf = new Configuration(false);
+    driverConf.set("driver.key", "driver");
+    driverConf.set("common.key", "driver");
+    driverConf.set("driver.variable", "${driver.key}-${session.key}");
+    for (int i = 0; i < 1000; i++) {
+      driverConf.set("driver.key." + i, "value" + i);
+    }
+    Configuration session = new Configuration(false);
+    session.set("session.key", "session");
+    session.set("common.key", "session");
+    session.set(HiveConf.ConfVars.EXECPARALLEL.varname, "true");
+    queryConf = LayeredConfiguration.create(LayeredConfiguration.snapshot(session));
+  }
+
+  @Test
+  public void testReads() throws Exception {
+    Configuration conf = LayeredConfiguration.create(queryConf, driverConf);
+    assertEquals(conf.get("driver.key"), "driver");
+    assertEquals(conf.get("session.key"), "session");
+    assertEquals(conf.get("common.key"), "session");
+    assertEquals(conf.get("driver.key.10"), "value10");
+    assertEquals(conf.get("driver.variable"), "driver-session");
+    assertEquals(conf.getRaw("driver.variable"), "${driver.key}-${session.key}");
+    assertNull(conf.get("missing.key"));
+    assertEquals(conf.getInt("missing.key", 5), 5);
+    assertEquals(conf.get("missing.key", "${session.key}"), "session");
+    assertEquals(conf.size(), driverConf.size() + 2);
+    Map<String, String> entries = new HashMap<>();
+    for (Map.Entry<String, String> entry : conf) {
+      entries.put(entry.getKey(), entry.getValue());
+    }
+    assertEquals(entries.size(), conf.size());
+    assertEquals(entries.get("common.key"), "session");
+  }
+
+  @Test
+  public void testCopyOnWrite() throws Exception {
+    Configuration conf = LayeredConfiguration.create(queryConf, driverConf);
+    conf.set("common.key", "query");
+    conf.setInt("driver.key.10", 10);
+    conf.unset("driver.key");
+    assertEquals(conf.get("common.key"), "query");
+    assertEquals(conf.getInt("driver.key.10", 0), 10);
+    assertNull(conf.get("driver.key"));
+    assertEquals(conf.get("session.key"), "session");
+    assertEquals(conf.size(), driverConf.size() + 1);
+
+    // Layers are unchanged
+    assertEquals(queryConf.get("common.key"), "session");
+    assertEquals(driverConf.get("driver.key"), "driver");
+    assertEquals(driverConf.get("driver.key.10"), "value10");
+
+    conf.set("driver.key", "again");
+    assertEquals(conf.get("driver.key"), "again");
+  }
+
+  @Test
+  public void testSnapshots() throws Exception {
+    Configuration source = new Configuration(false);
+    source.set("source.key", "before");
+    Configuration conf = LayeredConfiguration.create(source);
+
+    // Changes to the configurations layered over are not seen by the layered configuration
+    source.set("source.key", "after");
+    source.set("new.key", "new");
+    assertEquals(conf.get("source.key"), "before");
+    assertNull(conf.get("new.key"));
+
+    // Nor are changes to a layered configuration seen by the configurations layered over it
+    Configuration query = LayeredConfiguration.create(source);
+    Configuration driver = LayeredConfiguration.create(query, driverConf);
+    query.set("source.key", "updated");
+    assertEquals(driver.get("source.key"), "after");
+    driver = LayeredConfiguration.create(query, driverConf);
+    query.set("source.key", "again");
+    query.unset("new.key");
+    assertEquals(driver.get("source.key"), "updated");
+    assertEquals(driver.get("new.key"), "new");
+
+    Configuration snapshot = LayeredConfiguration.snapshot(source);
+    assertSame(LayeredConfiguration.snapshot(snapshot), snapshot);
+    assertSame(LayeredConfiguration.snapshot(LayeredConfiguration.create(snapshot)), snapshot);
+    try {
+      snapshot.set("source.key", "changed");
+      fail("Snapshots should not be changed");
+    } catch (UnsupportedOperationException e) {
+      assertEquals(snapshot.get("source.key"), "after");
+    }
+  }
+
+  @Test
+  public void testCopies() throws Exception {
+    Configuration conf = LayeredConfiguration.create(queryConf, driverConf);
+    conf.set("common.key", "query");
+    Configuration copy = new Configuration(LayeredConfiguration.materialize(conf));
+    assertEquals(copy.get("common.key"), "query");
+    assertEquals(copy.get("driver.key"), "driver");
+    assertEquals(copy.size(), conf.size());
+    copy.set("common.key", "copy");
+    copy.unset("session.key");
+    assertEquals(conf.get("common.key"), "query");
+    assertEquals(conf.get("session.key"), "session");
+
+    // Copies of unchanged layered configurations see the layers too
+    Configuration unchanged = LayeredConfiguration.create(queryConf, driverConf);
+    assertEquals(new Configuration(LayeredConfiguration.materialize(unchanged)).get("driver.key.10"), "value10");
+    assertEquals(unchanged.get("common.key"), "session");
+
+    // Resources added by hive confs do not override the properties of the layers
+    HiveConf hiveConf = new HiveConf(conf, TestLayeredConfiguration.class);
+    assertEquals(hiveConf.get("common.key"), "query");
+    assertEquals(hiveConf.get("driver.key.10"), "value10");
+    assertEquals(hiveConf.get("session.key"), "session");
+    assertTrue(hiveConf.getBoolVar(HiveConf.ConfVars.EXECPARALLEL));
+
+    // Writables carry all the properties
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    conf.write(new DataOutputStream(bytes));
+    Configuration read = new Configuration(false);
+    read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(read.size(), conf.size());
+    assertEquals(read.get("common.key"), "query");
+  }
+
+  /**
+   * Compares the memory allocated to build driver confs of a query by copying and by layering.
+   */
+  @Test
+  public void testAllocation() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long threadId = Thread.currentThread().getId();
+    int queries = 100;
+
+    long start = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < queries; i++) {
+      Configuration conf = new Configuration(driverConf);
+      for (Map.Entry<String, String> entry : queryConf) {
+        conf.set(entry.getKey(), entry.getValue());
+      }
+      assertEquals(conf.get("common.key"), "session");
+    }
+    long copied = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+    // The driver conf snapshot is shared by the queries, as drivers do
+    Configuration driverSnapshot = LayeredConfiguration.snapshot(driverConf);
+    start = threadBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < queries; i++) {
+      Configuration conf = LayeredConfiguration.create(queryConf, driverSnapshot);
+      assertEquals(conf.get("common.key"), "session");
+    }
+    long layered = threadBean.getThreadAllocatedBytes(threadId) - start;
+
+    log.info("Bytes allocated per query, copied: {}, layered: {}", copied / queries, layered / queries);
+    assertTrue(layered * 10 < copied, "copied: " + copied + ", layered: " + layered);
+  }
+}
@@ -27,6 +27,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.ws.rs.BadRequestException;
 import javax.ws.rs.ClientErrorException;
@@ -45,9 +46,11 @@ import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.events.LensEvent;
 import org.apache.lens.server.api.events.LensEventService;
 import org.apache.lens.server.api.query.QueryExecutionService;
+import org.apache.lens.server.api.util.LayeredConfiguration;
 import org.apache.lens.server.error.LensServerErrorCode;
 import org.apache.lens.server.query.QueryExecutionServiceImpl;
 import org.apache.lens.server.session.LensSessionImpl;
+import org.apache.lens.server.session.SessionRegistry;
 import org.apache.lens.server.user.UserConfigLoaderFactory;
 import org.apache.lens.server.util.UtilityMethods;
 
@@ -83,11 +86,10 @@ public abstract class BaseLensService extends CompositeService implements Extern
   /** Utility to validate and get valid paths for input paths **/
   private PathValidator pathValidator;
 
-  // Static session map which is used by query submission thread to get the
+  // Static session registry which is used by query submission thread to get the
   // lens session before submitting a query to hive server
-  /** The session map. */
-  protected static final ConcurrentHashMap<String, LensSessionHandle> SESSION_MAP
-    = new ConcurrentHashMap<>();
+  /** The session registry. */
+  protected static final SessionRegistry SESSION_REGISTRY = new SessionRegistry();
 
   /**
    * This map maintains active session count for each user
@@ -100,7 +102,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
    * Maintains a map with user to SessionUser instance.
    * This map is used for acquiring a lock on specific user for while opening & closing sessions
    */
-  private static final Map<String, SessionUser> SESSION_USER_INSTANCE_MAP = new HashMap<>();
+  private static final ConcurrentMap<String, SessionUser> SESSION_USER_INSTANCE_MAP = new ConcurrentHashMap<>();
 
   private final int maxNumSessionsPerUser;
 
@@ -136,7 +138,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
   }
 
   public static int getNumberOfSessions() {
-    return BaseLensService.SESSION_MAP.size();
+    return BaseLensService.SESSION_REGISTRY.size();
   }
 
   private static int getMaximumNumberOfSessionsPerUser() {
@@ -176,8 +178,11 @@ public abstract class BaseLensService extends CompositeService implements Extern
     }
     SessionUser sessionUser = SESSION_USER_INSTANCE_MAP.get(username);
     if (sessionUser == null) {
-      sessionUser = new SessionUser(username);
-      SESSION_USER_INSTANCE_MAP.put(username, sessionUser);
+      SessionUser newUser = new SessionUser(username);
+      sessionUser = SESSION_USER_INSTANCE_MAP.putIfAbsent(username, newUser);
+      if (sessionUser == null) {
+        sessionUser = newUser;
+      }
     }
     synchronized (sessionUser) {
       if (isMaxSessionsLimitReachedPerUser(username)) {
@@ -221,19 +226,14 @@ public abstract class BaseLensService extends CompositeService implements Extern
       }
       LensSessionHandle lensSessionHandle = new LensSessionHandle(sessionHandle.getHandleIdentifier().getPublicId(),
           sessionHandle.getHandleIdentifier().getSecretId());
-      SESSION_MAP.put(lensSessionHandle.getPublicId().toString(), lensSessionHandle);
+      SESSION_REGISTRY.register(lensSessionHandle, getSession(lensSessionHandle));
       updateSessionsPerUser(username);
       return lensSessionHandle;
     }
   }
 
   private void updateSessionsPerUser(String userName) {
-    Integer numOfSessions = SESSIONS_PER_USER.get(userName);
-    if (null == numOfSessions) {
-      SESSIONS_PER_USER.put(userName, 1);
-    } else {
-      SESSIONS_PER_USER.put(userName, ++numOfSessions);
-    }
+    SESSIONS_PER_USER.merge(userName, 1, Integer::sum);
   }
 
   protected LensEventService getEventService() {
@@ -264,7 +264,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
         new HashMap<String, String>());
       LensSessionHandle restoredSession = new LensSessionHandle(hiveSessionHandle.getHandleIdentifier().getPublicId(),
         hiveSessionHandle.getHandleIdentifier().getSecretId());
-      SESSION_MAP.put(restoredSession.getPublicId().toString(), restoredSession);
+      SESSION_REGISTRY.register(restoredSession, getSession(restoredSession));
       updateSessionsPerUser(userName);
     } catch (HiveSQLException e) {
       throw new LensException("Error restoring session " + sessionHandle, e);
@@ -314,13 +314,13 @@ public abstract class BaseLensService extends CompositeService implements Extern
         session.markForClose();
       } else {
         cliService.closeSession(getHiveSessionHandle(sessionHandle));
-        SESSION_MAP.remove(sessionHandle.getPublicId().toString());
+        SESSION_REGISTRY.remove(sessionHandle);
         log.info("Closed session {} for {} user", sessionHandle, session.getLoggedInUser());
       }
       if (shouldDecrementOpenedSessionCount) {
         decrementSessionCountForUser(sessionHandle, session.getLoggedInUser());
       }
-      if (!SESSION_MAP.containsKey(sessionHandle.getPublicId().toString())) {
+      if (!SESSION_REGISTRY.contains(sessionHandle.getPublicId().toString())) {
         // Inform query service
         BaseLensService svc = LensServices.get().getService(QueryExecutionService.NAME);
         if (svc instanceof QueryExecutionServiceImpl) {
@@ -339,12 +339,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
       return;
     }
     synchronized (sessionUser) {
-      Integer sessionCount = SESSIONS_PER_USER.get(userName);
-      if (sessionCount == 1) {
-        SESSIONS_PER_USER.remove(userName);
-      } else {
-        SESSIONS_PER_USER.put(userName, --sessionCount);
-      }
+      SESSIONS_PER_USER.computeIfPresent(userName, (user, sessionCount) -> sessionCount == 1 ? null : sessionCount - 1);
     }
   }
 
@@ -390,7 +385,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
    * @param sessionHandle public UUID of the session
    */
   public void acquire(String sessionHandle) {
-    LensSessionHandle handle = SESSION_MAP.get(sessionHandle);
+    LensSessionHandle handle = SESSION_REGISTRY.get(sessionHandle);
 
     if (handle == null) {
       throw new NotFoundException("Session handle not found " + sessionHandle);
@@ -418,7 +413,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
    * @throws LensException if session cannot be released
    */
   public void release(String sessionHandle) throws LensException {
-    LensSessionHandle handle = SESSION_MAP.get(sessionHandle);
+    LensSessionHandle handle = SESSION_REGISTRY.get(sessionHandle);
     if (handle != null) {
       getSession(handle).release();
     }
@@ -431,7 +426,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
    * @return the session handle
    */
   protected LensSessionHandle getSessionHandle(String sessionid) {
-    return SESSION_MAP.get(sessionid);
+    return SESSION_REGISTRY.get(sessionid);
   }
 
   /**
@@ -441,8 +436,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
    * @return the hive session handle
    */
   public static SessionHandle getHiveSessionHandle(LensSessionHandle lensHandle) {
-    return new SessionHandle(new HandleIdentifier(lensHandle.getPublicId(), lensHandle.getSecretId()),
-      CLIService.SERVER_VERSION);
+    return SESSION_REGISTRY.getHiveSessionHandle(lensHandle);
   }
 
   /**
@@ -454,17 +448,16 @@ public abstract class BaseLensService extends CompositeService implements Extern
    * @throws LensException the lens exception
    */
   public Configuration getLensConf(LensSessionHandle sessionHandle, LensConf conf) throws LensException {
-    Configuration qconf = new Configuration(false);
-    for (Map.Entry<String, String> entry : getSession(sessionHandle).getSessionConf()) {
-      qconf.set(entry.getKey(), entry.getValue());
-    }
+    LensSessionImpl session = getSession(sessionHandle);
+    // The snapshot is shared till the session conf changes, so the query conf is layered over it instead of copying it
+    Configuration qconf = LayeredConfiguration.create(session.getSessionConfSnapshot());
 
     if (conf != null && !conf.getProperties().isEmpty()) {
       for (Map.Entry<String, String> entry : conf.getProperties().entrySet()) {
         qconf.set(entry.getKey(), entry.getValue());
       }
     }
-    qconf.setClassLoader(getSession(sessionHandle).getClassLoader());
+    qconf.setClassLoader(session.getClassLoader());
     return qconf;
   }
 
@@ -573,7 +566,7 @@ public abstract class BaseLensService extends CompositeService implements Extern
 
   public List<UserSessionInfo> getSessionInfo() {
     List<UserSessionInfo> userSessionInfoList = new ArrayList<>();
-    for (LensSessionHandle handle : SESSION_MAP.values()) {
+    for (LensSessionHandle handle : SESSION_REGISTRY.getHandles()) {
       LensSessionImpl session = getSession(handle);
       UserSessionInfo sessionInfo = new UserSessionInfo();
       sessionInfo.setHandle(handle.getPublicId().toString());
@@ -36,9 +36,11 @@ import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.health.HealthStatus;
 import org.apache.lens.server.api.metastore.CubeMetastoreService;
+import org.apache.lens.server.session.LensSessionImpl;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.apache.hadoop.hive.metastore.IMetaStoreClient;
 import org.apache.hadoop.hive.metastore.api.*;
 import org.apache.hadoop.hive.ql.metadata.Hive;
@@ -52,10 +54,66 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class CubeMetastoreServiceImpl extends BaseLensService implements CubeMetastoreService {
 
+  /** Registers the partitions of asynchronous partition registrations */
+  private PartitionRegistrar partitionRegistrar;
+
+  /** Flattened columns and join chains of cubes and dimensions */
+  private final MetastoreCatalog catalog = new MetastoreCatalog();
+
   public CubeMetastoreServiceImpl(CLIService cliService) {
     super(NAME, cliService);
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.hive.service.CompositeService#init(org.apache.hadoop.hive.conf.HiveConf)
+   */
+  @Override
+  public synchronized void init(HiveConf hiveConf) {
+    super.init(hiveConf);
+    partitionRegistrar = new PartitionRegistrar(new PartitionRegistrar.PartitionAdder() {
+      @Override
+      public int addPartitions(LensSessionHandle sessionid, CubeMetastoreClient client,
+        XStoragePartitions storagePartitions) throws LensException {
+        try (SessionContext ignored = new SessionContext(sessionid)) {
+          String storage = storagePartitions.getStorageName();
+          if (storagePartitions.getTableType() == XPartitionedTableType.FACT) {
+            client.verifyStorageExists(client.getCubeFact(storagePartitions.getTableName()), storage);
+            return client.addPartitions(storagePartSpecListFromXPartitionList(storagePartitions.getPartitions()),
+              storage, CubeTableType.FACT).size();
+          }
+          client.verifyStorageExists(client.getDimensionTable(storagePartitions.getTableName()), storage);
+          return client.addPartitions(storagePartSpecListFromXPartitionList(storagePartitions.getPartitions()),
+            storage, CubeTableType.DIM_TABLE).size();
+        } catch (HiveException exc) {
+          throw new LensException(exc);
+        }
+      }
+
+      @Override
+      public void finished(LensSessionHandle sessionid) {
+        closeRegistrationSession(sessionid);
+      }
+    }, hiveConf.getInt(LensConfConstants.PARTITION_REGISTRATION_THREADS,
+      LensConfConstants.DEFAULT_PARTITION_REGISTRATION_THREADS),
+      hiveConf.getLong(LensConfConstants.PARTITION_REGISTRATION_RETENTION_MILLIS,
+        LensConfConstants.DEFAULT_PARTITION_REGISTRATION_RETENTION_MILLIS));
+  }
+
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.hive.service.CompositeService#stop()
+   */
+  @Override
+  public synchronized void stop() {
+    if (partitionRegistrar != null) {
+      partitionRegistrar.stop();
+    }
+    super.stop();
+  }
+
   synchronized CubeMetastoreClient getClient(LensSessionHandle sessionid) throws LensException {
     return getSession(sessionid).getCubeMetastoreClient();
   }
@@ -604,6 +662,57 @@ public class CubeMetastoreServiceImpl extends BaseLensService implements CubeMet
     }
   }
 
+  @Override
+  public XPartitionRegistrationStatus registerPartitions(LensSessionHandle sessionid,
+    XPartitionRegistration registration) throws LensException {
+    // Partitions are added after the call returns, in a session of their own, so that they are added in the database
+    // of the session at the time of the call, even if the session changes its database or is closed in between
+    String user;
+    String database;
+    Map<String, String> config;
+    try (SessionContext ignored = new SessionContext(sessionid)) {
+      LensSessionImpl session = getSession(sessionid);
+      user = session.getLoggedInUser();
+      database = session.getCurrentDatabase();
+      config = new HashMap<>(session.getLensSessionPersistInfo().getConfig());
+    }
+    LensSessionHandle registrationSession = openSession(user, "", config, false);
+    // The session is kept until all the partitions are added
+    getSession(registrationSession).addActiveOperation();
+    try {
+      CubeMetastoreClient client;
+      try (SessionContext ignored = new SessionContext(registrationSession)) {
+        getSession(registrationSession).setCurrentDatabase(database);
+        client = getClient(registrationSession);
+      }
+      return partitionRegistrar.register(registrationSession, client, registration);
+    } catch (RuntimeException | LensException e) {
+      closeRegistrationSession(registrationSession);
+      throw e;
+    }
+  }
+
+  private void closeRegistrationSession(LensSessionHandle sessionid) {
+    try {
+      getSession(sessionid).removeActiveOperation();
+      closeSession(sessionid);
+    } catch (Exception e) {
+      log.error("Unable to close partition registration session {}", sessionid, e);
+    }
+  }
+
+  @Override
+  public XPartitionRegistrationStatus getPartitionRegistrationStatus(LensSessionHandle sessionid, String handle)
+    throws LensException {
+    try (SessionContext ignored = new SessionContext(sessionid)) {
+      XPartitionRegistrationStatus status = partitionRegistrar.getStatus(handle);
+      if (status == null) {
+        throw new NotFoundException("Partition registration " + handle + " not found");
+      }
+      return status;
+    }
+  }
+
   private CubeDimensionTable checkDimTableStorage(LensSessionHandle sessionid, String dimTable, String storage)
     throws HiveException, LensException {
     CubeMetastoreClient client = getClient(sessionid);
@@ -1038,121 +1147,23 @@ public class CubeMetastoreServiceImpl extends BaseLensService implements CubeMet
     }
   }
 
-  private void addAllMeasuresToFlattenedList(ObjectFactory objectFactory, CubeInterface cube,
-    List<XFlattenedColumn> columnList) {
-    for (CubeMeasure msr : cube.getMeasures()) {
-      XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
-      fcol.setMeasure(JAXBUtils.xMeasureFromHiveMeasure(msr));
-      fcol.setTableName(cube.getName());
-      columnList.add(fcol);
-    }
-  }
-
-  private void addAllDirectAttributesToFlattenedListFromCube(ObjectFactory objectFactory, CubeInterface cube,
-    List<XFlattenedColumn> columnList) {
-    AbstractBaseTable baseTbl = (AbstractBaseTable) (cube instanceof DerivedCube
-      ? ((DerivedCube) cube).getParent() : cube);
-    for (CubeDimAttribute dim : cube.getDimAttributes()) {
-      XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
-      fcol.setDimAttribute(JAXBUtils.xDimAttrFromHiveDimAttr(dim, baseTbl));
-      fcol.setTableName(cube.getName());
-      columnList.add(fcol);
-    }
-  }
-
-  private void addAllDirectAttributesToFlattenedListFromDimension(ObjectFactory objectFactory, Dimension dimension,
-    List<XFlattenedColumn> columnList, String chainName) {
-    for (CubeDimAttribute cd : dimension.getAttributes()) {
-      XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
-      fcol.setDimAttribute(JAXBUtils.xDimAttrFromHiveDimAttr(cd, dimension));
-      fcol.setTableName(dimension.getName());
-      if (chainName != null) {
-        fcol.setChainName(chainName);
-      }
-      columnList.add(fcol);
-    }
-  }
-
-  private void addAllDirectExpressionsToFlattenedList(ObjectFactory objectFactory, AbstractBaseTable baseTbl,
-    List<XFlattenedColumn> columnList, String chainName) {
-    if (baseTbl.getExpressions() != null) {
-      for (ExprColumn expr : baseTbl.getExpressions()) {
-        XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
-        fcol.setExpression(JAXBUtils.xExprColumnFromHiveExprColumn(expr));
-        fcol.setTableName(baseTbl.getName());
-        if (chainName != null) {
-          fcol.setChainName(chainName);
-        }
-        columnList.add(fcol);
-      }
-    }
-  }
-
-  private void addAllDirectExpressionsToFlattenedList(ObjectFactory objectFactory, CubeInterface baseTbl,
-    List<XFlattenedColumn> columnList, String chainName) {
-    if (baseTbl.getExpressions() != null) {
-      for (ExprColumn expr : baseTbl.getExpressions()) {
-        XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
-        fcol.setExpression(JAXBUtils.xExprColumnFromHiveExprColumn(expr));
-        fcol.setTableName(baseTbl.getName());
-        if (chainName != null) {
-          fcol.setChainName(chainName);
-        }
-        columnList.add(fcol);
-      }
-    }
-  }
-
-  private void addAllChainedColsToFlattenedListFromCube(CubeMetastoreClient client, ObjectFactory objectFactory,
-    CubeInterface cube, List<XFlattenedColumn> columnList) throws HiveException, LensException {
-    if (cube instanceof DerivedCube) {
-      return;
+  @Override
+  public XFlattenedColumns getFlattenedColumns(LensSessionHandle sessionHandle, String tableName, boolean addChains)
+    throws LensException {
+    try (SessionContext ignored = new SessionContext(sessionHandle)) {
+      return getCatalog(sessionHandle, tableName).getFlattenedColumns(addChains);
     }
-    addAllChainedColsToFlattenedList(client, objectFactory, (AbstractBaseTable) cube, columnList);
   }
 
-  private void addAllChainedColsToFlattenedList(CubeMetastoreClient client, ObjectFactory objectFactory,
-    AbstractBaseTable baseTbl, List<XFlattenedColumn> columnList) throws HiveException, LensException {
-    for (JoinChain chain : baseTbl.getJoinChains()) {
-      Dimension dim = client.getDimension(chain.getDestTable());
-      addAllDirectAttributesToFlattenedListFromDimension(objectFactory, dim, columnList, chain.getName());
-      addAllDirectExpressionsToFlattenedList(objectFactory, dim, columnList, chain.getName());
+  @Override
+  public String getCatalogVersion(LensSessionHandle sessionHandle, String tableName) throws LensException {
+    try (SessionContext ignored = new SessionContext(sessionHandle)) {
+      return getCatalog(sessionHandle, tableName).getVersion();
     }
   }
 
-  @Override
-  public XFlattenedColumns getFlattenedColumns(LensSessionHandle sessionHandle, String tableName, boolean addChains)
-    throws LensException {
-    try (SessionContext ignored = new SessionContext(sessionHandle)){
-      CubeMetastoreClient client = getClient(sessionHandle);
-
-      ObjectFactory objectFactory = new ObjectFactory();
-      XFlattenedColumns flattenedColumns = objectFactory.createXFlattenedColumns();
-      List<XFlattenedColumn> columnList = flattenedColumns.getFlattenedColumn();
-      // check if the table is a cube or dimension
-      if (client.isCube(tableName)) {
-        CubeInterface cube = client.getCube(tableName);
-        addAllMeasuresToFlattenedList(objectFactory, cube, columnList);
-        addAllDirectAttributesToFlattenedListFromCube(objectFactory, cube, columnList);
-        addAllDirectExpressionsToFlattenedList(objectFactory, cube, columnList, null);
-        if (addChains) {
-          addAllChainedColsToFlattenedListFromCube(client, objectFactory, cube, columnList);
-        }
-      } else if (client.isDimension(tableName)) {
-        Dimension dimension = client.getDimension(tableName);
-        addAllDirectAttributesToFlattenedListFromDimension(objectFactory, dimension, columnList, null);
-        addAllDirectExpressionsToFlattenedList(objectFactory, dimension, columnList, null);
-        if (addChains) {
-          addAllChainedColsToFlattenedList(client, objectFactory, dimension, columnList);
-        }
-      } else {
-        throw new BadRequestException("Can't get reachable columns. '"
-          + tableName + "' is neither a cube nor a dimension");
-      }
-      return flattenedColumns;
-    } catch (HiveException e) {
-      throw new LensException("Error getting flattened view for " + tableName, e);
-    }
+  private MetastoreCatalog.Entry getCatalog(LensSessionHandle sessionHandle, String tableName) throws LensException {
+    return catalog.get(getClient(sessionHandle), getSession(sessionHandle).getCurrentDatabase(), tableName);
   }
 
   @Override
@@ -1184,25 +1195,8 @@ public class CubeMetastoreServiceImpl extends BaseLensService implements CubeMet
 
   @Override
   public XJoinChains getAllJoinChains(LensSessionHandle sessionHandle, String tableName) throws LensException {
-    try (SessionContext ignored = new SessionContext(sessionHandle)){
-      CubeMetastoreClient client = getClient(sessionHandle);
-      Set<JoinChain> chains;
-      if (client.isCube(tableName)) {
-        chains = client.getCube(tableName).getJoinChains();
-      } else if (client.isDimension(tableName)) {
-        chains = client.getDimension(tableName).getJoinChains();
-      } else {
-        throw new BadRequestException("Can't get join chains. '"
-          + tableName + "' is neither a cube nor a dimension");
-      }
-      XJoinChains xJoinChains = new XJoinChains();
-      List<XJoinChain> joinChains = xJoinChains.getJoinChain();
-      if (chains != null) {
-        for (JoinChain chain : chains) {
-          joinChains.add(JAXBUtils.getXJoinChainFromJoinChain(chain));
-        }
-      }
-      return xJoinChains;
+    try (SessionContext ignored = new SessionContext(sessionHandle)) {
+      return getCatalog(sessionHandle, tableName).getJoinChains();
     }
   }
 
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.metastore;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.BadRequestException;
+
+import org.apache.lens.api.metastore.*;
+import org.apache.lens.cube.metadata.*;
+import org.apache.lens.server.api.error.LensException;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Catalog of the flattened columns and join chains of cubes and dimensions.
+ * <p>
+ * The catalog of a cube or dimension is built once, and served until the cube or dimension, or a dimension reachable
+ * through its join chains, changes. The metastore client replaces the cubes and dimensions it caches whenever they are
+ * altered or dropped, so a catalog is current as long as the client still caches the very cubes and dimensions the
+ * catalog was built from. Only the catalogs of the changed tables are rebuilt, the next time they are asked for.
+ * <p>
+ * Every build of a catalog gets a new version, which clients can use to skip fetching unchanged catalogs.
+ */
+@Slf4j
+class MetastoreCatalog {
+
+  /** Distinguishes the versions of this catalog from the versions of catalogs of earlier runs of the server */
+  private final String epoch = Long.toHexString(System.currentTimeMillis());
+  private final AtomicLong versions = new AtomicLong();
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the current catalog of a cube or dimension, building it if needed.
+   *
+   * @param client    the metastore client of the database of the table
+   * @param database  the database of the table
+   * @param tableName the cube or dimension name
+   * @return the catalog
+   * @throws LensException if the table is not found
+   */
+  Entry get(CubeMetastoreClient client, String database, String tableName) throws LensException {
+    String key = database.toLowerCase() + "." + tableName.trim().toLowerCase();
+    Entry entry = entries.get(key);
+    if (entry != null && entry.isCurrent(client)) {
+      return entry;
+    }
+    entries.remove(key);
+    entry = build(client, tableName);
+    entries.put(key, entry);
+    log.debug("Built catalog of {} with version {}", key, entry.getVersion());
+    return entry;
+  }
+
+  private Entry build(CubeMetastoreClient client, String tableName) throws LensException {
+    Entry entry = new Entry(client, epoch + "-" + versions.incrementAndGet());
+    ObjectFactory objectFactory = new ObjectFactory();
+    List<XFlattenedColumn> columnList = new ArrayList<>();
+    Set<JoinChain> chains;
+    if (client.isCube(tableName)) {
+      CubeInterface cube = client.getCube(tableName);
+      entry.cubes.put(tableName, cube);
+      addAllMeasuresToFlattenedList(objectFactory, cube, columnList);
+      addAllDirectAttributesToFlattenedListFromCube(objectFactory, cube, columnList);
+      addAllDirectExpressionsToFlattenedList(objectFactory, cube, columnList, null);
+      entry.directColumns = columnList.size();
+      addAllChainedColsToFlattenedListFromCube(entry, objectFactory, cube, columnList);
+      chains = cube.getJoinChains();
+    } else if (client.isDimension(tableName)) {
+      Dimension dimension = client.getDimension(tableName);
+      entry.dimensions.put(tableName, dimension);
+      addAllDirectAttributesToFlattenedListFromDimension(objectFactory, dimension, columnList, null);
+      addAllDirectExpressionsToFlattenedList(objectFactory, dimension, columnList, null);
+      entry.directColumns = columnList.size();
+      addAllChainedColsToFlattenedList(entry, objectFactory, dimension, columnList);
+      chains = dimension.getJoinChains();
+    } else {
+      throw new BadRequestException("Can't get reachable columns or join chains. '"
+        + tableName + "' is neither a cube nor a dimension");
+    }
+    entry.columns = columnList;
+    if (chains != null) {
+      for (JoinChain chain : chains) {
+        entry.joinChains.add(JAXBUtils.getXJoinChainFromJoinChain(chain));
+      }
+    }
+    return entry;
+  }
+
+  private static void addAllMeasuresToFlattenedList(ObjectFactory objectFactory, CubeInterface cube,
+    List<XFlattenedColumn> columnList) {
+    for (CubeMeasure msr : cube.getMeasures()) {
+      XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
+      fcol.setMeasure(JAXBUtils.xMeasureFromHiveMeasure(msr));
+      fcol.setTableName(cube.getName());
+      columnList.add(fcol);
+    }
+  }
+
+  private static void addAllDirectAttributesToFlattenedListFromCube(ObjectFactory objectFactory, CubeInterface cube,
+    List<XFlattenedColumn> columnList) {
+    AbstractBaseTable baseTbl = (AbstractBaseTable) (cube instanceof DerivedCube
+      ? ((DerivedCube) cube).getParent() : cube);
+    for (CubeDimAttribute dim : cube.getDimAttributes()) {
+      XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
+      fcol.setDimAttribute(JAXBUtils.xDimAttrFromHiveDimAttr(dim, baseTbl));
+      fcol.setTableName(cube.getName());
+      columnList.add(fcol);
+    }
+  }
+
+  private static void addAllDirectAttributesToFlattenedListFromDimension(ObjectFactory objectFactory,
+    Dimension dimension, List<XFlattenedColumn> columnList, String chainName) {
+    for (CubeDimAttribute cd : dimension.getAttributes()) {
+      XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
+      fcol.setDimAttribute(JAXBUtils.xDimAttrFromHiveDimAttr(cd, dimension));
+      fcol.setTableName(dimension.getName());
+      if (chainName != null) {
+        fcol.setChainName(chainName);
+      }
+      columnList.add(fcol);
+    }
+  }
+
+  private static void addAllDirectExpressionsToFlattenedList(ObjectFactory objectFactory, AbstractBaseTable baseTbl,
+    List<XFlattenedColumn> columnList, String chainName) {
+    if (baseTbl.getExpressions() != null) {
+      for (ExprColumn expr : baseTbl.getExpressions()) {
+        XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
+        fcol.setExpression(JAXBUtils.xExprColumnFromHiveExprColumn(expr));
+        fcol.setTableName(baseTbl.getName());
+        if (chainName != null) {
+          fcol.setChainName(chainName);
+        }
+        columnList.add(fcol);
+      }
+    }
+  }
+
+  private static void addAllDirectExpressionsToFlattenedList(ObjectFactory objectFactory, CubeInterface baseTbl,
+    List<XFlattenedColumn> columnList, String chainName) {
+    if (baseTbl.getExpressions() != null) {
+      for (ExprColumn expr : baseTbl.getExpressions()) {
+        XFlattenedColumn fcol = objectFactory.createXFlattenedColumn();
+        fcol.setExpression(JAXBUtils.xExprColumnFromHiveExprColumn(expr));
+        fcol.setTableName(baseTbl.getName());
+        if (chainName != null) {
+          fcol.setChainName(chainName);
+        }
+        columnList.add(fcol);
+      }
+    }
+  }
+
+  private static void addAllChainedColsToFlattenedListFromCube(Entry entry, ObjectFactory objectFactory,
+    CubeInterface cube, List<XFlattenedColumn> columnList) throws LensException {
+    if (cube instanceof DerivedCube) {
+      return;
+    }
+    addAllChainedColsToFlattenedList(entry, objectFactory, (AbstractBaseTable) cube, columnList);
+  }
+
+  private static void addAllChainedColsToFlattenedList(Entry entry, ObjectFactory objectFactory,
+    AbstractBaseTable baseTbl, List<XFlattenedColumn> columnList) throws LensException {
+    for (JoinChain chain : baseTbl.getJoinChains()) {
+      Dimension dim = entry.client.getDimension(chain.getDestTable());
+      entry.dimensions.put(chain.getDestTable(), dim);
+      addAllDirectAttributesToFlattenedListFromDimension(objectFactory, dim, columnList, chain.getName());
+      addAllDirectExpressionsToFlattenedList(objectFactory, dim, columnList, chain.getName());
+    }
+  }
+
+  /**
+   * Catalog of a cube or dimension. The columns and chains of a catalog are shared by all the requests served from it,
+   * and are never modified.
+   */
+  static class Entry {
+    private final CubeMetastoreClient client;
+    @Getter
+    private final String version;
+    /** Cubes and dimensions the catalog was built from, by name */
+    private final Map<String, CubeInterface> cubes = new HashMap<>();
+    private final Map<String, Dimension> dimensions = new HashMap<>();
+    private List<XFlattenedColumn> columns;
+    /** Number of columns of the table itself, which come before the columns reachable through chains */
+    private int directColumns;
+    private final List<XJoinChain> joinChains = new ArrayList<>();
+
+    Entry(CubeMetastoreClient client, String version) {
+      this.client = client;
+      this.version = version;
+    }
+
+    /**
+     * @return whether the cubes and dimensions the catalog was built from are still the ones the client caches
+     */
+    boolean isCurrent(CubeMetastoreClient currentClient) {
+      if (currentClient != client) {
+        return false;
+      }
+      try {
+        for (Map.Entry<String, CubeInterface> cube : cubes.entrySet()) {
+          if (client.getCube(cube.getKey()) != cube.getValue()) {
+            return false;
+          }
+        }
+        for (Map.Entry<String, Dimension> dimension : dimensions.entrySet()) {
+          if (client.getDimension(dimension.getKey()) != dimension.getValue()) {
+            return false;
+          }
+        }
+      } catch (LensException e) {
+        // Dropped
+        return false;
+      }
+      return true;
+    }
+
+    XFlattenedColumns getFlattenedColumns(boolean addChains) {
+      XFlattenedColumns flattenedColumns = new XFlattenedColumns();
+      flattenedColumns.getFlattenedColumn().addAll(addChains ? columns : columns.subList(0, directColumns));
+      return flattenedColumns;
+    }
+
+    XJoinChains getJoinChains() {
+      XJoinChains xJoinChains = new XJoinChains();
+      xJoinChains.getJoinChain().addAll(joinChains);
+      return xJoinChains;
+    }
+  }
+}
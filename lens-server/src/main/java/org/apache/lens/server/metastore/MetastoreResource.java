@@ -24,7 +24,14 @@ import static org.apache.lens.cube.error.LensCubeErrorCode.NO_PARTITION_FILTER;
 import java.util.List;
 
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericEntity;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.Variant;
 import javax.xml.bind.JAXBElement;
 
 import org.apache.lens.api.APIResult;
@@ -1448,6 +1455,46 @@ public class MetastoreResource {
       partitions.getPartition().size());
   }
 
+  /**
+   * Register partitions of storages of many fact and dimension tables. Partitions are added asynchronously; the
+   * partitions of a storage are added together, and the storages are processed in parallel.
+   *
+   * @param sessionid    The sessionid in which user is working
+   * @param registration {@link XPartitionRegistration} representation of partitions of storages
+   * @return JAXB representation of {@link XPartitionRegistrationStatus}, with the handle to poll the registration by
+   */
+  @POST
+  @Path("/partitions/registrations")
+  public JAXBElement<XPartitionRegistrationStatus> registerPartitions(
+    @QueryParam("sessionid") LensSessionHandle sessionid, XPartitionRegistration registration) throws LensException {
+    checkSessionId(sessionid);
+    checkNonNullArgs("Partition registration is null", registration);
+    for (XStoragePartitions storagePartitions : registration.getStoragePartitions()) {
+      checkNonNullArgs("Storage partitions are null", storagePartitions);
+      checkNonNullArgs("Storage partitions elements are null", storagePartitions.getTableName(),
+        storagePartitions.getStorageName(), storagePartitions.getTableType());
+      checkNonNullPartitionList(storagePartitions.getPartitions());
+    }
+    return X_CUBE_OBJECT_FACTORY.createXPartitionRegistrationStatus(getSvc().registerPartitions(sessionid,
+      registration));
+  }
+
+  /**
+   * Get the status of a partition registration
+   *
+   * @param sessionid The sessionid in which user is working
+   * @param handle    The handle of the registration
+   * @return JAXB representation of {@link XPartitionRegistrationStatus}
+   */
+  @GET
+  @Path("/partitions/registrations/{handle}")
+  public JAXBElement<XPartitionRegistrationStatus> getPartitionRegistrationStatus(
+    @QueryParam("sessionid") LensSessionHandle sessionid, @PathParam("handle") String handle) throws LensException {
+    checkSessionId(sessionid);
+    return X_CUBE_OBJECT_FACTORY.createXPartitionRegistrationStatus(getSvc().getPartitionRegistrationStatus(sessionid,
+      handle));
+  }
+
   /**
    * Add new partitions for a storage of dimension
    *
@@ -1472,37 +1519,77 @@ public class MetastoreResource {
   }
 
   /**
-   * Get flattened list of columns reachable from a cube or a dimension
+   * Media types of the responses tagged with the version of the catalog
+   */
+  private static final List<Variant> CATALOG_VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_XML_TYPE,
+    MediaType.APPLICATION_JSON_TYPE).build();
+
+  /**
+   * Get flattened list of columns reachable from a cube or a dimension. The response is tagged with the version of the
+   * columns, and is not sent again if the version in the If-None-Match header is still current.
    *
    * @param sessionid  session id
    * @param tableName  name of the table
    * @param addChains whether columns accessed via chains should also be returned
-   * @return list of measures, expressions or dimension attributes
+   * @param request    the request, with its preconditions
+   * @return list of measures, expressions or dimension attributes, or not modified
    */
   @GET
   @Path("flattened/{tableName}")
-  public JAXBElement<XFlattenedColumns> getFlattenedColumns(@QueryParam("sessionid") LensSessionHandle sessionid,
-    @PathParam("tableName") String tableName, @QueryParam("add_chains") @DefaultValue("true") boolean addChains)
-    throws LensException {
+  public Response getFlattenedColumns(@QueryParam("sessionid") LensSessionHandle sessionid,
+    @PathParam("tableName") String tableName, @QueryParam("add_chains") @DefaultValue("true") boolean addChains,
+    @Context Request request) throws LensException {
     checkSessionId(sessionid);
-    return X_CUBE_OBJECT_FACTORY.createXFlattenedColumns(
-      getSvc().getFlattenedColumns(sessionid, tableName, addChains));
+    Variant variant = getCatalogVariant(request);
+    EntityTag tag = getCatalogTag(sessionid, tableName, addChains ? "flattened" : "flattened-nochains", variant);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+    if (notModified != null) {
+      return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+    return Response.ok(new GenericEntity<JAXBElement<XFlattenedColumns>>(X_CUBE_OBJECT_FACTORY.createXFlattenedColumns(
+      getSvc().getFlattenedColumns(sessionid, tableName, addChains))) {
+    }, variant).tag(tag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
   }
 
   /**
-   * Get all chains that belong to a table(cube or dimension) in the metastore
+   * Get all chains that belong to a table(cube or dimension) in the metastore. The response is tagged with the version
+   * of the chains, and is not sent again if the version in the If-None-Match header is still current.
    *
    * @param sessionid The sessionid in which user is working
    * @param tableName name of the table. can be either cube or dimension
-   * @return {@link XJoinChains} object
+   * @param request   the request, with its preconditions
+   * @return {@link XJoinChains} object, or not modified
    */
   @GET
   @Path("/chains/{tableName}")
-  public JAXBElement<XJoinChains> getAllJoinChains(
-    @QueryParam("sessionid") LensSessionHandle sessionid, @PathParam("tableName") String tableName)
-    throws LensException {
+  public Response getAllJoinChains(
+    @QueryParam("sessionid") LensSessionHandle sessionid, @PathParam("tableName") String tableName,
+    @Context Request request) throws LensException {
     checkSessionId(sessionid);
-    return X_CUBE_OBJECT_FACTORY.createXJoinChains(getSvc().getAllJoinChains(sessionid, tableName));
+    Variant variant = getCatalogVariant(request);
+    EntityTag tag = getCatalogTag(sessionid, tableName, "chains", variant);
+    Response.ResponseBuilder notModified = request.evaluatePreconditions(tag);
+    if (notModified != null) {
+      return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    }
+    return Response.ok(new GenericEntity<JAXBElement<XJoinChains>>(X_CUBE_OBJECT_FACTORY.createXJoinChains(
+      getSvc().getAllJoinChains(sessionid, tableName))) {
+    }, variant).tag(tag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+  }
+
+  private static Variant getCatalogVariant(Request request) {
+    Variant variant = request.selectVariant(CATALOG_VARIANTS);
+    return variant == null ? CATALOG_VARIANTS.get(0) : variant;
+  }
+
+  /**
+   * The version is read before the catalog, so that a response is never tagged with a version newer than its content.
+   * Responses of different kinds, or in different media types, are tagged apart, as their contents differ.
+   */
+  private static EntityTag getCatalogTag(LensSessionHandle sessionid, String tableName, String kind, Variant variant)
+    throws LensException {
+    return new EntityTag(getSvc().getCatalogVersion(sessionid, tableName) + "-" + kind + "-"
+      + variant.getMediaType().getSubtype());
   }
 
   /**
@@ -0,0 +1,319 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.metastore;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lens.api.LensSessionHandle;
+import org.apache.lens.api.metastore.*;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.server.api.error.LensException;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registers the partitions of asynchronous partition registrations.
+ * <p>
+ * The partitions of a registration are grouped by storage of a table, so that the partitions of a storage are added
+ * together, and the timelines and latest partitions of its storage tables are updated once. Storages are processed in
+ * parallel by a pool of threads, while the partitions of a storage are registered one registration at a time, in the
+ * order of the registrations.
+ * <p>
+ * Each registration has a session of its own, in which its partitions are added with the metastore client of the
+ * database of the registering session at the time of the registration.
+ */
+@Slf4j
+class PartitionRegistrar {
+
+  /**
+   * Adds partitions to a storage of a fact or dimension table.
+   */
+  interface PartitionAdder {
+    /**
+     * @return the number of partitions added
+     */
+    int addPartitions(LensSessionHandle sessionid, CubeMetastoreClient client, XStoragePartitions storagePartitions)
+      throws LensException;
+
+    /**
+     * Called once all the partitions of a registration are added, or failed to be added.
+     *
+     * @param sessionid the session of the registration
+     */
+    void finished(LensSessionHandle sessionid);
+  }
+
+  private final PartitionAdder adder;
+  private final ExecutorService pool;
+  private final long retentionMillis;
+  private final ConcurrentMap<String, Registration> registrations = new ConcurrentHashMap<>();
+
+  /** Tasks waiting for the running task of their storage, by storage. Storages with a running task are keys. */
+  private final Map<String, Queue<StorageTask>> waitingTasks = new HashMap<>();
+
+  PartitionRegistrar(PartitionAdder adder, int threads, long retentionMillis) {
+    this.adder = adder;
+    this.retentionMillis = retentionMillis;
+    this.pool = Executors.newFixedThreadPool(threads, new BasicThreadFactory.Builder()
+      .namingPattern("PartitionRegistrar-%d")
+      .daemon(true)
+      .build());
+  }
+
+  /**
+   * Starts registering partitions.
+   *
+   * @param sessionid    the session of the registration, in which partitions are added
+   * @param client       the metastore client with which partitions are added
+   * @param registration the partitions
+   * @return the status of the registration
+   */
+  XPartitionRegistrationStatus register(LensSessionHandle sessionid, CubeMetastoreClient client,
+    XPartitionRegistration registration) {
+    purgeExpired();
+    Map<String, XStoragePartitions> partitionsByStorage = new LinkedHashMap<>();
+    for (XStoragePartitions storagePartitions : registration.getStoragePartitions()) {
+      String storage = getStorageKey(storagePartitions);
+      XStoragePartitions merged = partitionsByStorage.get(storage);
+      if (merged == null) {
+        merged = new XStoragePartitions().withTableName(storagePartitions.getTableName())
+          .withStorageName(storagePartitions.getStorageName()).withTableType(storagePartitions.getTableType())
+          .withPartitions(new XPartitionList());
+        partitionsByStorage.put(storage, merged);
+      }
+      merged.getPartitions().getPartition().addAll(storagePartitions.getPartitions().getPartition());
+    }
+    Registration running = new Registration(UUID.randomUUID().toString(), sessionid, client);
+    List<StorageTask> tasks = new ArrayList<>();
+    for (Map.Entry<String, XStoragePartitions> entry : partitionsByStorage.entrySet()) {
+      tasks.add(new StorageTask(entry.getKey(), running, entry.getValue(), running.addStorage(entry.getValue())));
+    }
+    registrations.put(running.getHandle(), running);
+    if (running.checkFinished()) {
+      adder.finished(sessionid);
+    }
+    for (StorageTask task : tasks) {
+      submit(task);
+    }
+    log.info("Registering partitions in {} storages, handle: {}", tasks.size(), running.getHandle());
+    return running.getStatus();
+  }
+
+  /**
+   * @return the status of a registration, null if it is not known
+   */
+  XPartitionRegistrationStatus getStatus(String handle) {
+    purgeExpired();
+    Registration registration = registrations.get(handle);
+    return registration == null ? null : registration.getStatus();
+  }
+
+  void stop() {
+    pool.shutdownNow();
+  }
+
+  private static String getStorageKey(XStoragePartitions storagePartitions) {
+    return (storagePartitions.getTableType() + "." + storagePartitions.getTableName() + "."
+      + storagePartitions.getStorageName()).toLowerCase();
+  }
+
+  private void purgeExpired() {
+    long now = System.currentTimeMillis();
+    Iterator<Registration> iterator = registrations.values().iterator();
+    while (iterator.hasNext()) {
+      if (iterator.next().isExpired(now, retentionMillis)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Runs a task once the earlier tasks of its storage are done.
+   */
+  private void submit(StorageTask task) {
+    synchronized (waitingTasks) {
+      Queue<StorageTask> waiting = waitingTasks.get(task.storage);
+      if (waiting != null) {
+        waiting.add(task);
+        return;
+      }
+      waitingTasks.put(task.storage, new ArrayDeque<StorageTask>());
+    }
+    pool.execute(task);
+  }
+
+  /**
+   * Runs the next task of a storage, if any. The task is run by the pool, so that the tasks of other storages get a
+   * chance to run.
+   */
+  private void runNext(String storage) {
+    StorageTask next;
+    synchronized (waitingTasks) {
+      next = waitingTasks.get(storage).poll();
+      if (next == null) {
+        waitingTasks.remove(storage);
+        return;
+      }
+    }
+    pool.execute(next);
+  }
+
+  private class StorageTask implements Runnable {
+    private final String storage;
+    private final Registration registration;
+    private final XStoragePartitions partitions;
+    private final XStoragePartitionsStatus status;
+
+    StorageTask(String storage, Registration registration, XStoragePartitions partitions,
+      XStoragePartitionsStatus status) {
+      this.storage = storage;
+      this.registration = registration;
+      this.partitions = partitions;
+      this.status = status;
+    }
+
+    @Override
+    public void run() {
+      try {
+        registration.started(status);
+        int registered = 0;
+        String errorMessage = null;
+        try {
+          registered = adder.addPartitions(registration.sessionid, registration.client, partitions);
+        } catch (Exception e) {
+          log.error("Unable to register partitions in {} of {}", partitions.getStorageName(),
+            partitions.getTableName(), e);
+          errorMessage = e.getMessage() == null ? e.toString() : e.getMessage();
+        }
+        if (registration.finished(status, registered, errorMessage)) {
+          adder.finished(registration.sessionid);
+        }
+      } finally {
+        runNext(storage);
+      }
+    }
+  }
+
+  /**
+   * State of a registration. The status of the registration and of its storages are guarded by the registration.
+   */
+  private static class Registration {
+    private final XPartitionRegistrationStatus status;
+    private final LensSessionHandle sessionid;
+    private final CubeMetastoreClient client;
+    private int remainingStorages;
+
+    Registration(String handle, LensSessionHandle sessionid, CubeMetastoreClient client) {
+      this.sessionid = sessionid;
+      this.client = client;
+      status = new XPartitionRegistrationStatus().withHandle(handle)
+        .withState(XPartitionRegistrationState.QUEUED).withProgress(0)
+        .withSubmissionTime(System.currentTimeMillis());
+    }
+
+    String getHandle() {
+      return status.getHandle();
+    }
+
+    synchronized XStoragePartitionsStatus addStorage(XStoragePartitions partitions) {
+      XStoragePartitionsStatus storageStatus = new XStoragePartitionsStatus().withTableName(partitions.getTableName())
+        .withStorageName(partitions.getStorageName()).withTableType(partitions.getTableType())
+        .withState(XPartitionRegistrationState.QUEUED).withPartitions(partitions.getPartitions().getPartition().size())
+        .withRegisteredPartitions(0);
+      status.getStorageStatus().add(storageStatus);
+      remainingStorages++;
+      return storageStatus;
+    }
+
+    synchronized void started(XStoragePartitionsStatus storageStatus) {
+      storageStatus.setState(XPartitionRegistrationState.RUNNING);
+      status.setState(XPartitionRegistrationState.RUNNING);
+    }
+
+    /**
+     * @return whether the registration is finished
+     */
+    synchronized boolean finished(XStoragePartitionsStatus storageStatus, int registered, String errorMessage) {
+      storageStatus.setRegisteredPartitions(registered);
+      storageStatus.setErrorMessage(errorMessage);
+      if (errorMessage != null || (registered == 0 && storageStatus.getPartitions() > 0)) {
+        storageStatus.setState(XPartitionRegistrationState.FAILED);
+      } else if (registered < storageStatus.getPartitions()) {
+        storageStatus.setState(XPartitionRegistrationState.PARTIAL);
+      } else {
+        storageStatus.setState(XPartitionRegistrationState.SUCCESSFUL);
+      }
+      remainingStorages--;
+      return checkFinished();
+    }
+
+    /**
+     * @return whether the registration is finished
+     */
+    synchronized boolean checkFinished() {
+      int storages = status.getStorageStatus().size();
+      status.setProgress(storages == 0 ? 1 : (double) (storages - remainingStorages) / storages);
+      if (remainingStorages > 0) {
+        return false;
+      }
+      int successful = 0;
+      int failed = 0;
+      for (XStoragePartitionsStatus storageStatus : status.getStorageStatus()) {
+        if (storageStatus.getState() == XPartitionRegistrationState.SUCCESSFUL) {
+          successful++;
+        } else if (storageStatus.getState() == XPartitionRegistrationState.FAILED) {
+          failed++;
+        }
+      }
+      if (successful == storages) {
+        status.setState(XPartitionRegistrationState.SUCCESSFUL);
+      } else if (failed == storages) {
+        status.setState(XPartitionRegistrationState.FAILED);
+      } else {
+        status.setState(XPartitionRegistrationState.PARTIAL);
+      }
+      status.setFinishTime(System.currentTimeMillis());
+      return true;
+    }
+
+    synchronized boolean isExpired(long now, long retentionMillis) {
+      return status.getFinishTime() != null && status.getFinishTime() + retentionMillis < now;
+    }
+
+    synchronized XPartitionRegistrationStatus getStatus() {
+      XPartitionRegistrationStatus copy = new XPartitionRegistrationStatus().withHandle(status.getHandle())
+        .withState(status.getState()).withProgress(status.getProgress())
+        .withSubmissionTime(status.getSubmissionTime()).withFinishTime(status.getFinishTime());
+      for (XStoragePartitionsStatus storageStatus : status.getStorageStatus()) {
+        copy.getStorageStatus().add(new XStoragePartitionsStatus().withTableName(storageStatus.getTableName())
+          .withStorageName(storageStatus.getStorageName()).withTableType(storageStatus.getTableType())
+          .withState(storageStatus.getState()).withPartitions(storageStatus.getPartitions())
+          .withRegisteredPartitions(storageStatus.getRegisteredPartitions())
+          .withErrorMessage(storageStatus.getErrorMessage()));
+      }
+      return copy;
+    }
+  }
+}
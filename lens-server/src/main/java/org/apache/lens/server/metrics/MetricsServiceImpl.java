@@ -29,6 +29,8 @@ import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.lens.api.query.QueryStatus.Status;
+import org.apache.lens.api.query.RewritePhase;
+import org.apache.lens.cube.metadata.ExpressionCache;
 import org.apache.lens.server.BaseLensService;
 import org.apache.lens.server.EventServiceImpl;
 import org.apache.lens.server.LensServices;
@@ -371,6 +373,27 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
         }
       });
 
+    metricRegistry.register(MetricRegistry.name(ExpressionCache.class, "hits"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return ExpressionCache.getHits();
+      }
+    });
+
+    metricRegistry.register(MetricRegistry.name(ExpressionCache.class, "misses"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return ExpressionCache.getMisses();
+      }
+    });
+
+    metricRegistry.register(MetricRegistry.name(ExpressionCache.class, "parse-millis-saved"), new Gauge<Long>() {
+      @Override
+      public Long getValue() {
+        return ExpressionCache.getParseMillisSaved();
+      }
+    });
+
     totalDatabaseResourceLoadErrors = metricRegistry.counter(MetricRegistry.name(DatabaseResourceService.class,
         DatabaseResourceService.LOAD_RESOURCES_ERRORS));
 
@@ -633,4 +656,16 @@ public class MetricsServiceImpl extends AbstractService implements MetricsServic
     return totalSuccessfulQueries.getCount();
   }
 
+  @Override
+  public void updateRewritePhases(List<RewritePhase> phases) {
+    for (RewritePhase phase : phases) {
+      metricRegistry.histogram(MetricRegistry.name(MetricsService.class, REWRITE_PHASES, phase.getName(),
+        "duration-micros")).update(TimeUnit.NANOSECONDS.toMicros(phase.getDurationNanos()));
+      if (phase.getAllocatedBytes() >= 0) {
+        metricRegistry.histogram(MetricRegistry.name(MetricsService.class, REWRITE_PHASES, phase.getName(),
+          "allocated-bytes")).update(phase.getAllocatedBytes());
+      }
+    }
+  }
+
 }
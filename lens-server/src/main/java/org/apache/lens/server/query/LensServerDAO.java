@@ -18,12 +18,15 @@
  */
 package org.apache.lens.server.query;
 
+import static org.apache.lens.server.api.LensConfConstants.*;
+import static org.apache.lens.server.query.QueryHistoryArchive.FAILED_ATTEMPTS;
+
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import javax.sql.DataSource;
 
@@ -33,19 +36,27 @@ import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.api.query.QueryStatus;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.query.FinishedLensQuery;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
+import org.apache.lens.server.api.query.cost.QueryFeatures;
 import org.apache.lens.server.util.UtilityMethods;
 
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.dbutils.*;
-import org.apache.commons.dbutils.handlers.BeanHandler;
+import org.apache.commons.dbutils.handlers.MapHandler;
+import org.apache.commons.dbutils.handlers.MapListHandler;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Top level class which logs and retrieves finished query from Database.
+ * <p>
+ * Large texts of finished queries are stored once per content by a {@link QueryTextStore}, and finished queries older
+ * than the hot retention are moved, with their texts, to a {@link QueryHistoryArchive}. Finished queries are read
+ * transparently from the finished queries table and from the archive.
  */
 @Slf4j
 public class LensServerDAO {
@@ -53,6 +64,57 @@ public class LensServerDAO {
   /** The ds. */
   private DataSource ds;
 
+  /** The store of the user queries, driver queries and confs of finished queries */
+  private QueryTextStore textStore;
+
+  /** The cold tier of finished queries */
+  private QueryHistoryArchive archive;
+
+  /** Queries submitted before this time may be archived, null while it is not known */
+  private volatile Long archivedUpTo;
+
+  /** Maximum number of queries archived at a time */
+  static final int ARCHIVE_BATCH_SIZE = 1000;
+
+  /** Columns of finished queries which may reference shared texts */
+  private static final String[] TEXT_COLUMNS = {"userquery", "driverquery", "conf"};
+
+  /** Columns of finished queries left out of the summaries of finished queries */
+  private static final List<String> NON_SUMMARY_COLUMNS = Arrays.asList("metadata", "driverquery", "conf");
+
+  private static final RowProcessor ROW_PROCESSOR = new BasicRowProcessor();
+
+  /** Handler of a row as a map of its column names to its values */
+  private static final ResultSetHandler<Map<String, Object>> ROW_HANDLER = new ResultSetHandler<Map<String, Object>>() {
+    @Override
+    public Map<String, Object> handle(ResultSet rs) throws SQLException {
+      return ROW_PROCESSOR.toMap(rs);
+    }
+  };
+
+  /** Handler of a long value of the first row, null if there is none */
+  private static final ResultSetHandler<Long> LONG_HANDLER = new ResultSetHandler<Long>() {
+    @Override
+    public Long handle(ResultSet rs) throws SQLException {
+      if (!rs.next()) {
+        return null;
+      }
+      long value = rs.getLong(1);
+      return rs.wasNull() ? null : value;
+    }
+  };
+
+  /** Maximum number of queries whose failed attempts are fetched by a single statement */
+  static final int FAILED_ATTEMPTS_BATCH_SIZE = 100;
+
+  /**
+   * Columns of the summaries of finished queries, leaving out the driver query, the conf and the result metadata,
+   * which can be large.
+   */
+  private static final String SUMMARY_COLUMNS = "handle, userquery, submitter, priority, starttime, endtime, result, "
+    + "status, rows, filesize, errormessage, driverstarttime, driverendtime, drivername, queryname, submissiontime, "
+    + "numfailedattempts";
+
   /**
    * Inits the.
    *
@@ -60,6 +122,11 @@ public class LensServerDAO {
    */
   public void init(Configuration conf) {
     ds = UtilityMethods.getDataSourceFromConf(conf);
+    textStore = new QueryTextStore(ds,
+      conf.getInt(FINISHED_QUERY_TEXT_SHARED_MIN_LENGTH, DEFAULT_FINISHED_QUERY_TEXT_SHARED_MIN_LENGTH),
+      conf.getInt(FINISHED_QUERY_TEXT_CACHE_SIZE, DEFAULT_FINISHED_QUERY_TEXT_CACHE_SIZE));
+    archive = new QueryHistoryArchive(
+      new Path(conf.get(FINISHED_QUERY_ARCHIVE_LOCATION, DEFAULT_FINISHED_QUERY_ARCHIVE_LOCATION)), conf);
   }
 
   public Connection getConnection() throws SQLException {
@@ -91,7 +158,7 @@ public class LensServerDAO {
       + "metadata varchar(100000), " + "rows int, " + "filesize bigint, " + "errormessage varchar(10000), "
       + "driverstarttime bigint, " + "driverendtime bigint, " + "drivername varchar(10000), "
       + "queryname varchar(255), " + "submissiontime bigint, " + "driverquery varchar(1000000), "
-      + "conf varchar(100000), numfailedattempts int)";
+      + "conf varchar(100000), numfailedattempts int, numpartitions int)";
     try {
       QueryRunner runner = new QueryRunner(ds);
       runner.update(sql);
@@ -99,6 +166,18 @@ public class LensServerDAO {
     } catch (SQLException e) {
       log.warn("Unable to create finished queries table", e);
     }
+    try {
+      // Tables created before the number of partitions was persisted
+      new QueryRunner(ds).update("ALTER TABLE finished_queries ADD COLUMN numpartitions int");
+      log.info("Added column numpartitions to finished queries table");
+    } catch (SQLException e) {
+      log.info("Unable to add column numpartitions to finished queries table, it may already exist: {}",
+        e.getMessage());
+    }
+    // Indexes of the filters and the ordering of the searches of finished queries
+    createIndex("finished_queries_submitter_idx", "finished_queries (submitter, submissiontime)");
+    createIndex("finished_queries_status_idx", "finished_queries (status, submissiontime)");
+    createIndex("finished_queries_submissiontime_idx", "finished_queries (submissiontime)");
   }
   public void createFailedAttemptsTable() throws Exception {
     String sql = "CREATE TABLE if not exists failed_attempts (handle varchar(255) not null,"
@@ -111,6 +190,44 @@ public class LensServerDAO {
     } catch (SQLException e) {
       log.error("Unable to create failed_attempts table", e);
     }
+    createIndex("failed_attempts_handle_idx", "failed_attempts (handle)");
+  }
+
+  /**
+   * Method to create the table of the shared texts of finished queries.
+   */
+  public void createQueryTextsTable() {
+    textStore.createTable();
+  }
+
+  /**
+   * Method to create the table of the handles and submission times of archived finished queries.
+   */
+  public void createArchivedQueriesTable() {
+    String sql = "CREATE TABLE if not exists archived_queries (handle varchar(255) not null unique, "
+      + "submissiontime bigint)";
+    try {
+      new QueryRunner(ds).update(sql);
+      log.info("Created archived queries table");
+    } catch (SQLException e) {
+      log.warn("Unable to create archived queries table", e);
+    }
+  }
+
+  /**
+   * Creates an index, unless it already exists.
+   *
+   * @param name    name of the index
+   * @param columns the table and the columns of the index
+   */
+  private void createIndex(String name, String columns) {
+    try {
+      new QueryRunner(ds).update("CREATE INDEX " + name + " ON " + columns);
+      log.info("Created index {}", name);
+    } catch (SQLException e) {
+      // Not all databases support creating indexes only if they don't exist
+      log.info("Unable to create index {}, it may already exist: {}", name, e.getMessage());
+    }
   }
 
   /**
@@ -126,19 +243,22 @@ public class LensServerDAO {
       String sql = "insert into finished_queries (handle, userquery, submitter, priority, "
         + "starttime,endtime,result,status,metadata,rows,filesize,"
         + "errormessage,driverstarttime,driverendtime, drivername, queryname, submissiontime, driverquery, conf, "
-        + "numfailedattempts)"
-        + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+        + "numfailedattempts, numpartitions)"
+        + " values (?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
       Connection conn = null;
       try {
         conn = getConnection();
         conn.setAutoCommit(false);
         QueryRunner runner = new QueryRunner();
-        runner.update(conn, sql, query.getHandle(), query.getUserQuery(), query.getSubmitter(), query.getPriority(),
+        String userQuery = textStore.share(runner, conn, query.getUserQuery());
+        String driverQuery = textStore.share(runner, conn, query.getDriverQuery());
+        String conf = textStore.share(runner, conn, serializeConf(query.getConf()));
+        runner.update(conn, sql, query.getHandle(), userQuery, query.getSubmitter(), query.getPriority(),
             query.getStartTime(), query.getEndTime(), query.getResult(), query.getStatus(), query.getMetadata(),
             query.getRows(), query.getFileSize(), query.getErrorMessage(), query.getDriverStartTime(),
             query.getDriverEndTime(), query.getDriverName(), query.getQueryName(), query.getSubmissionTime(),
-            query.getDriverQuery(), serializeConf(query.getConf()),
-            query.getFailedAttempts() == null ? 0 : query.getFailedAttempts().size());
+            driverQuery, conf,
+            query.getFailedAttempts() == null ? 0 : query.getFailedAttempts().size(), query.getNumPartitions());
         if (query.getFailedAttempts() != null) {
           for (int i = 0; i < query.getFailedAttempts().size(); i++) {
             insertFailedAttempt(runner, conn, query.getHandle(), query.getFailedAttempts().get(i), i);
@@ -180,31 +300,48 @@ public class LensServerDAO {
 
   public void getFailedAttempts(final FinishedLensQuery query) {
     if (query != null) {
-      String handle = query.getHandle();
-      ResultSetHandler<List<FailedAttempt>> rsh = new BeanHandler<List<FailedAttempt>>(null) {
-        @Override
-        public List<FailedAttempt> handle(ResultSet rs) throws SQLException {
-          List<FailedAttempt> attempts = Lists.newArrayList();
-          while (rs.next()) {
-            FailedAttempt attempt = new FailedAttempt(rs.getString(3), rs.getDouble(4), rs.getString(5),
-              rs.getString(6), rs.getLong(7), rs.getLong(8));
-            attempts.add(attempt);
+      getFailedAttempts(Collections.singletonList(query));
+    }
+  }
+
+  /**
+   * Sets the failed attempts of finished queries, fetching the attempts of up to {@link #FAILED_ATTEMPTS_BATCH_SIZE}
+   * queries at a time.
+   *
+   * @param queries the finished queries
+   */
+  public void getFailedAttempts(final List<FinishedLensQuery> queries) {
+    final Map<String, FinishedLensQuery> queriesByHandle = new HashMap<>();
+    for (FinishedLensQuery query : queries) {
+      query.setFailedAttempts(Lists.<FailedAttempt>newArrayList());
+      queriesByHandle.put(query.getHandle(), query);
+    }
+    ResultSetHandler<Void> rsh = new ResultSetHandler<Void>() {
+      @Override
+      public Void handle(ResultSet rs) throws SQLException {
+        while (rs.next()) {
+          FinishedLensQuery query = queriesByHandle.get(rs.getString(1));
+          if (query != null) {
+            query.getFailedAttempts().add(new FailedAttempt(rs.getString(3), rs.getDouble(4), rs.getString(5),
+              rs.getString(6), rs.getLong(7), rs.getLong(8)));
           }
-          return attempts;
         }
-      };
-      String sql = "select * from failed_attempts where handle=? order by attempt_number";
-      QueryRunner runner = new QueryRunner(ds);
+        return null;
+      }
+    };
+    QueryRunner runner = new QueryRunner(ds);
+    for (List<String> handles : Lists.partition(new ArrayList<>(queriesByHandle.keySet()),
+      FAILED_ATTEMPTS_BATCH_SIZE)) {
+      String sql = "select * from failed_attempts where handle in ("
+        + StringUtils.repeat("?", ", ", handles.size()) + ") order by handle, attempt_number";
       try {
-        query.setFailedAttempts(runner.query(sql, rsh, handle));
+        runner.query(sql, rsh, handles.toArray());
       } catch (SQLException e) {
         log.error("SQL exception while executing query.", e);
       }
     }
   }
 
-
-
   private String serializeConf(LensConf conf) {
     return Base64.encodeBase64String(conf.toXMLString().getBytes(Charset.defaultCharset()));
   }
@@ -215,52 +352,117 @@ public class LensServerDAO {
   }
 
   /**
-   * Fetch Finished query from Database.
+   * Fetch Finished query from Database, or from the archive.
    *
    * @param handle to be fetched
    * @return Finished query.
    */
   public FinishedLensQuery getQuery(String handle) {
-    ResultSetHandler<FinishedLensQuery> rsh = new BeanHandler<>(FinishedLensQuery.class,
-        new BasicRowProcessor(new FinishedLensQueryBeanProcessor()));
-    String sql = "select * from finished_queries where handle=?";
     QueryRunner runner = new QueryRunner(ds);
     try {
-      FinishedLensQuery finishedQuery = runner.query(sql, rsh, handle);
-      getFailedAttempts(finishedQuery);
-      return finishedQuery;
+      Map<String, Object> row = runner.query("select * from finished_queries where handle=?", new MapHandler(),
+        handle);
+      if (row == null && getArchivedUpTo() != Long.MIN_VALUE) {
+        Long submissionTime = runner.query("select submissiontime from archived_queries where handle=?",
+          LONG_HANDLER, handle);
+        if (submissionTime != null) {
+          row = archive.read(handle, submissionTime);
+        }
+      }
+      if (row != null) {
+        List<FinishedLensQuery> queries = toFinishedQueries(Collections.singletonList(row));
+        return queries.isEmpty() ? null : queries.get(0);
+      }
     } catch (SQLException e) {
       log.error("SQL exception while executing query.", e);
+    } catch (IOException e) {
+      log.error("Unable to read archived query " + handle, e);
     }
     return null;
   }
 
-  private class FinishedLensQueryBeanProcessor extends BeanProcessor {
-
-    @Override
-    protected Object processColumn(ResultSet rs, int index, Class<?> propType) throws SQLException {
-      Object obj = super.processColumn(rs, index, propType);
-      if (obj != null && propType.equals(LensConf.class) && obj instanceof String) {
-        return deserializeConf((String) obj);
+  /**
+   * Converts rows of finished queries, from the finished queries table or from the archive, to finished queries,
+   * resolving their shared texts and fetching their failed attempts in batches.
+   *
+   * @param rows the rows
+   * @return the finished queries
+   * @throws SQLException the exception
+   */
+  private List<FinishedLensQuery> toFinishedQueries(List<Map<String, Object>> rows) throws SQLException {
+    List<String> values = new ArrayList<>();
+    for (Map<String, Object> row : rows) {
+      for (String column : TEXT_COLUMNS) {
+        values.add((String) row.get(column));
       }
-      return obj;
     }
+    Map<String, String> texts = textStore.resolve(values);
+    List<FinishedLensQuery> queries = new ArrayList<>(rows.size());
+    List<FinishedLensQuery> notArchived = new ArrayList<>();
+    for (Map<String, Object> row : rows) {
+      try {
+        FinishedLensQuery query = toFinishedQuery(row, texts);
+        if (row.containsKey(FAILED_ATTEMPTS)) {
+          query.setFailedAttempts(toFailedAttempts(row));
+        } else {
+          notArchived.add(query);
+        }
+        queries.add(query);
+      } catch (RuntimeException e) {
+        log.warn("Unable to handle row " + row, e);
+      }
+    }
+    getFailedAttempts(notArchived);
+    return queries;
   }
 
-  private class NestedResultHandler<T> implements ResultSetHandler<T> {
-
-    private final Class<T> type;
-    private final RowProcessor convert;
-
-    public NestedResultHandler(Class<T> type, RowProcessor convert) {
-      this.type = type;
-      this.convert = convert;
+  private FinishedLensQuery toFinishedQuery(Map<String, Object> row, Map<String, String> texts) {
+    FinishedLensQuery query = new FinishedLensQuery();
+    query.setHandle((String) row.get("handle"));
+    query.setUserQuery(QueryTextStore.get(texts, (String) row.get("userquery")));
+    query.setSubmitter((String) row.get("submitter"));
+    query.setPriority((String) row.get("priority"));
+    query.setStartTime(getLong(row, "starttime"));
+    query.setEndTime(getLong(row, "endtime"));
+    query.setResult((String) row.get("result"));
+    query.setStatus((String) row.get("status"));
+    query.setMetadata((String) row.get("metadata"));
+    Number rows = (Number) row.get("rows");
+    query.setRows(rows == null ? null : rows.intValue());
+    Number fileSize = (Number) row.get("filesize");
+    query.setFileSize(fileSize == null ? null : fileSize.longValue());
+    query.setErrorMessage((String) row.get("errormessage"));
+    query.setDriverStartTime(getLong(row, "driverstarttime"));
+    query.setDriverEndTime(getLong(row, "driverendtime"));
+    query.setDriverName((String) row.get("drivername"));
+    Number numPartitions = (Number) row.get("numpartitions");
+    query.setNumPartitions(numPartitions == null ? null : numPartitions.intValue());
+    query.setQueryName((String) row.get("queryname"));
+    query.setSubmissionTime(getLong(row, "submissiontime"));
+    query.setDriverQuery(QueryTextStore.get(texts, (String) row.get("driverquery")));
+    String conf = QueryTextStore.get(texts, (String) row.get("conf"));
+    if (conf != null) {
+      query.setConf(deserializeConf(conf));
     }
+    return query;
+  }
 
-    @Override
-    public T handle(ResultSet rs) throws SQLException {
-      return this.convert.toBean(rs, this.type);
+  @SuppressWarnings("unchecked")
+  private static List<FailedAttempt> toFailedAttempts(Map<String, Object> row) {
+    List<FailedAttempt> failedAttempts = Lists.newArrayList();
+    for (Map<String, Object> attempt : (List<Map<String, Object>>) row.get(FAILED_ATTEMPTS)) {
+      Number progress = (Number) attempt.get("progress");
+      failedAttempts.add(new FailedAttempt((String) attempt.get("drivername"),
+        progress == null ? 0 : progress.doubleValue(), (String) attempt.get("progressmessage"),
+        (String) attempt.get("errormessage"), getLong(attempt, "driverstarttime"),
+        getLong(attempt, "driverendtime")));
     }
+    return failedAttempts;
+  }
+
+  private static long getLong(Map<String, Object> row, String column) {
+    Number value = (Number) row.get(column);
+    return value == null ? 0 : value.longValue();
   }
 
   private class QueryHandleNestedHandler implements ResultSetHandler<QueryHandle> {
@@ -290,9 +492,88 @@ public class LensServerDAO {
    */
   public List<FinishedLensQuery> findFinishedQueryDetails(List<QueryStatus.Status> states, String user,
     String driverName, String queryName, long fromDate, long toDate) throws LensException {
-    ResultSetHandler<FinishedLensQuery> handler = new NestedResultHandler<>(FinishedLensQuery.class,
-        new BasicRowProcessor(new FinishedLensQueryBeanProcessor()));
-    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, "*");
+    List<Map<String, Object>> rows = findInternal(states, user, driverName, queryName, fromDate, toDate, ROW_HANDLER,
+      "*");
+    rows.addAll(findArchived(states, user, driverName, queryName, fromDate, toDate, null, 0));
+    try {
+      return toFinishedQueries(removeDuplicates(rows));
+    } catch (SQLException e) {
+      throw new LensException(e);
+    }
+  }
+
+  /**
+   * Find a page of summaries of finished queries, from the latest submitted to the earliest. Summaries don't have the
+   * driver query, the conf and the result metadata of the queries.
+   *
+   * @param states     the state
+   * @param user       the user
+   * @param driverName the driver's fully qualified Name
+   * @param queryName  the query name
+   * @param fromDate   the from date
+   * @param toDate     the to date
+   * @param after      the query after which the page starts, in the order of the pages. Null for the first page.
+   * @param pageSize   maximum number of queries of the page
+   * @return the page
+   * @throws LensException the lens exception
+   */
+  public List<FinishedLensQuery> findFinishedQuerySummaries(List<QueryStatus.Status> states, String user,
+    String driverName, String queryName, long fromDate, long toDate, QueryHistoryCursor after, int pageSize)
+    throws LensException {
+    List<String> filters = new ArrayList<>(1);
+    List<Object> params = new ArrayList<>(3);
+    if (after != null) {
+      filters.add("(submissiontime < ? OR (submissiontime = ? AND handle < ?))");
+      params.add(after.getSubmissionTime());
+      params.add(after.getSubmissionTime());
+      params.add(after.getHandle().toString());
+    }
+    List<Map<String, Object>> rows = findInternal(states, user, driverName, queryName, fromDate, toDate, ROW_HANDLER,
+      SUMMARY_COLUMNS, filters, params, " ORDER BY submissiontime DESC, handle DESC LIMIT " + pageSize);
+    // The archive is read only when the page is not filled by the queries in the table
+    if (rows.size() < pageSize) {
+      for (Map<String, Object> row : findArchived(states, user, driverName, queryName, fromDate, toDate, after,
+        pageSize)) {
+        row.keySet().removeAll(NON_SUMMARY_COLUMNS);
+        rows.add(row);
+      }
+      rows = removeDuplicates(rows);
+      Collections.sort(rows, new Comparator<Map<String, Object>>() {
+        @Override
+        public int compare(Map<String, Object> row1, Map<String, Object> row2) {
+          int cmp = Long.compare(getLong(row2, "submissiontime"), getLong(row1, "submissiontime"));
+          return cmp != 0 ? cmp : ((String) row2.get("handle")).compareTo((String) row1.get("handle"));
+        }
+      });
+      rows = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+    }
+    try {
+      return toFinishedQueries(rows);
+    } catch (SQLException e) {
+      throw new LensException(e);
+    }
+  }
+
+  /**
+   * Fetch the submission time of a finished query.
+   *
+   * @param handle the query handle
+   * @return the submission time, null if the query is not found
+   */
+  public Long getSubmissionTime(String handle) {
+    QueryRunner runner = new QueryRunner(ds);
+    try {
+      Long submissionTime = runner.query("select submissiontime from finished_queries where handle=?", LONG_HANDLER,
+        handle);
+      if (submissionTime == null && getArchivedUpTo() != Long.MIN_VALUE) {
+        submissionTime = runner.query("select submissiontime from archived_queries where handle=?", LONG_HANDLER,
+          handle);
+      }
+      return submissionTime;
+    } catch (SQLException e) {
+      log.error("SQL exception while executing query.", e);
+    }
+    return null;
   }
 
   /**
@@ -311,11 +592,284 @@ public class LensServerDAO {
     String queryName, long fromDate, long toDate) throws LensException {
 
     ResultSetHandler<QueryHandle> handler = new QueryHandleNestedHandler();
-    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, "handle");
+    List<QueryHandle> handles = findInternal(states, user, driverName, queryName, fromDate, toDate, handler,
+      "handle");
+    List<Map<String, Object>> archived = findArchived(states, user, driverName, queryName, fromDate, toDate, null, 0);
+    if (!archived.isEmpty()) {
+      Set<QueryHandle> found = new LinkedHashSet<>(handles);
+      for (Map<String, Object> row : archived) {
+        try {
+          found.add(QueryHandle.fromString((String) row.get("handle")));
+        } catch (IllegalArgumentException exc) {
+          log.warn("Warning invalid query handle found in archive " + row.get("handle"));
+        }
+      }
+      handles = new ArrayList<>(found);
+    }
+    return handles;
+  }
+
+  /**
+   * Find execution times of successful queries, reading only the columns needed to predict execution times. The
+   * archive is read within the time range, as the history the model is trained on is bounded.
+   *
+   * @param fromDate the from date
+   * @param toDate   the to date
+   * @return execution times of the queries in the order they were submitted
+   * @throws LensException the lens exception
+   */
+  public List<ExecutionTimeModel.Sample> findExecutionTimeSamples(long fromDate, long toDate) throws LensException {
+    List<QueryStatus.Status> states = Lists.newArrayList(QueryStatus.Status.SUCCESSFUL);
+    List<Map<String, Object>> rows = findArchived(states, null, null, null, fromDate, toDate, null, 0);
+    rows.addAll(findInternal(states, null, null, null, fromDate, toDate, ROW_HANDLER,
+      "handle, drivername, driverquery, driverstarttime, driverendtime, numpartitions, submissiontime",
+      " ORDER BY submissiontime"));
+    rows = removeDuplicates(rows);
+    Collections.sort(rows, new Comparator<Map<String, Object>>() {
+      @Override
+      public int compare(Map<String, Object> row1, Map<String, Object> row2) {
+        return Long.compare(getLong(row1, "submissiontime"), getLong(row2, "submissiontime"));
+      }
+    });
+    List<String> driverQueries = new ArrayList<>(rows.size());
+    for (Map<String, Object> row : rows) {
+      driverQueries.add((String) row.get("driverquery"));
+    }
+    Map<String, String> texts;
+    try {
+      texts = textStore.resolve(driverQueries);
+    } catch (SQLException e) {
+      throw new LensException(e);
+    }
+    List<ExecutionTimeModel.Sample> samples = new ArrayList<>(rows.size());
+    for (Map<String, Object> row : rows) {
+      long startTime = getLong(row, "driverstarttime");
+      long endTime = getLong(row, "driverendtime");
+      String driverQuery = QueryTextStore.get(texts, (String) row.get("driverquery"));
+      Number numPartitions = (Number) row.get("numpartitions");
+      // Queries persisted without their number of partitions can't be told apart by it
+      if (row.get("drivername") == null || numPartitions == null || startTime <= 0 || endTime < startTime) {
+        continue;
+      }
+      try {
+        samples.add(new ExecutionTimeModel.Sample(QueryFeatures.fromDriverQuery((String) row.get("drivername"),
+          driverQuery, numPartitions.intValue()), endTime - startTime));
+      } catch (RuntimeException e) {
+        log.warn("Unable to handle row " + row, e);
+      }
+    }
+    return samples;
+  }
+
+  /**
+   * Moves the finished queries submitted before a time, with their failed attempts, from the finished queries table
+   * to the archive. Queries are written to the archive before they are deleted from the table, so they may be found
+   * in both for a while, and are then read from the table. Queries are archived with their texts, so that the archive
+   * can be read on its own, and the shared texts no longer referenced by the table are deleted with them.
+   *
+   * @param before the time
+   * @return the number of archived queries
+   * @throws LensException the lens exception
+   */
+  public int archiveFinishedQueries(long before) throws LensException {
+    QueryRunner runner = new QueryRunner(ds);
+    int archived = 0;
+    try {
+      while (true) {
+        List<Map<String, Object>> queries = runner.query("select * from finished_queries where submissiontime < ? "
+          + "ORDER BY submissiontime LIMIT " + ARCHIVE_BATCH_SIZE, new MapListHandler(), before);
+        if (queries.isEmpty()) {
+          break;
+        }
+        Map<String, List<Map<String, Object>>> failedAttempts = new LinkedHashMap<>();
+        for (Map<String, Object> query : queries) {
+          List<Map<String, Object>> queryFailedAttempts = new ArrayList<>();
+          query.put(FAILED_ATTEMPTS, queryFailedAttempts);
+          failedAttempts.put((String) query.get("handle"), queryFailedAttempts);
+        }
+        List<String> handles = new ArrayList<>(failedAttempts.keySet());
+        for (List<String> batch : Lists.partition(handles, FAILED_ATTEMPTS_BATCH_SIZE)) {
+          for (Map<String, Object> attempt : runner.query("select * from failed_attempts where handle in ("
+            + StringUtils.repeat("?", ", ", batch.size()) + ") order by handle, attempt_number", new MapListHandler(),
+            batch.toArray())) {
+            failedAttempts.get(attempt.get("handle")).add(attempt);
+          }
+        }
+        List<String> references = resolveTexts(queries);
+        archive.write(queries);
+        // Queries are read from the archive from now on, they are read from the table as well until deleted
+        archivedUpTo = Math.max(getArchivedUpTo(), getLong(queries.get(queries.size() - 1), "submissiontime") + 1);
+        int deletedTexts = deleteArchivedQueries(queries, handles, references);
+        archived += queries.size();
+        if (deletedTexts > 0) {
+          log.info("Deleted {} shared texts of archived queries", deletedTexts);
+        }
+      }
+    } catch (SQLException | IOException e) {
+      throw new LensException("Unable to archive finished queries", e);
+    }
+    return archived;
+  }
+
+  /**
+   * Replaces the references to shared texts among the text columns of rows of finished queries by the texts.
+   *
+   * @param rows the rows
+   * @return the values replaced, references or texts, once per row referencing them
+   * @throws SQLException the exception
+   */
+  private List<String> resolveTexts(List<Map<String, Object>> rows) throws SQLException {
+    List<String> values = new ArrayList<>();
+    for (Map<String, Object> row : rows) {
+      for (String column : TEXT_COLUMNS) {
+        values.add((String) row.get(column));
+      }
+    }
+    Map<String, String> texts = textStore.resolve(values);
+    for (Map<String, Object> row : rows) {
+      for (String column : TEXT_COLUMNS) {
+        String text = texts.get(row.get(column));
+        if (text != null) {
+          row.put(column, text);
+        }
+      }
+    }
+    return values;
+  }
+
+  /**
+   * Deletes archived queries from the table, with the references to shared texts they held.
+   *
+   * @return the number of shared texts deleted
+   */
+  private int deleteArchivedQueries(List<Map<String, Object>> queries, List<String> handles, List<String> references)
+    throws SQLException {
+    Object[][] archivedQueries = new Object[queries.size()][];
+    for (int i = 0; i < queries.size(); i++) {
+      archivedQueries[i] = new Object[]{queries.get(i).get("handle"), queries.get(i).get("submissiontime")};
+    }
+    Connection conn = null;
+    try {
+      conn = getConnection();
+      conn.setAutoCommit(false);
+      QueryRunner runner = new QueryRunner();
+      for (List<String> batch : Lists.partition(handles, FAILED_ATTEMPTS_BATCH_SIZE)) {
+        String filter = " where handle in (" + StringUtils.repeat("?", ", ", batch.size()) + ")";
+        // Queries archived again after a failure to delete them are archived once
+        runner.update(conn, "delete from archived_queries" + filter, batch.toArray());
+        runner.update(conn, "delete from failed_attempts" + filter, batch.toArray());
+        runner.update(conn, "delete from finished_queries" + filter, batch.toArray());
+      }
+      runner.batch(conn, "insert into archived_queries (handle, submissiontime) values (?, ?)", archivedQueries);
+      int deletedTexts = textStore.release(runner, conn, references);
+      conn.commit();
+      return deletedTexts;
+    } finally {
+      DbUtils.closeQuietly(conn);
+    }
+  }
+
+  /**
+   * @return the time before which queries may be archived, {@link Long#MIN_VALUE} if no query is archived
+   */
+  private long getArchivedUpTo() {
+    Long upTo = archivedUpTo;
+    if (upTo == null) {
+      try {
+        Long latest = new QueryRunner(ds).query("select max(submissiontime) from archived_queries", LONG_HANDLER);
+        upTo = latest == null ? Long.MIN_VALUE : latest + 1;
+      } catch (SQLException e) {
+        log.warn("Unable to read archived queries, the archive will not be read: {}", e.getMessage());
+        upTo = Long.MIN_VALUE;
+      }
+      archivedUpTo = upTo;
+    }
+    return upTo;
+  }
+
+  /**
+   * Finds the rows of the archived queries matching the filters of the finished queries table.
+   *
+   * @param limit the number of rows after which the archive isn't read further, from the latest submitted query to the
+   *              earliest, or 0 to read all the rows within the time range
+   */
+  private List<Map<String, Object>> findArchived(List<QueryStatus.Status> states, String user, String driverName,
+    String queryName, long fromDate, long toDate, QueryHistoryCursor after, int limit) throws LensException {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    long upTo = getArchivedUpTo();
+    if (fromDate >= upTo) {
+      return rows;
+    }
+    try {
+      for (List<Path> parts : archive.getPartitions(fromDate, Math.min(toDate, upTo - 1)).values()) {
+        for (Path part : parts) {
+          for (Map<String, Object> row : archive.read(part)) {
+            if (matches(row, states, user, driverName, queryName, fromDate, toDate)
+              && (after == null || after.isFollowedBy(getLong(row, "submissiontime"),
+                QueryHandle.fromString((String) row.get("handle"))))) {
+              rows.add(row);
+            }
+          }
+        }
+        // Partitions are read a day at a time, since the queries of a day are not ordered
+        if (limit > 0 && rows.size() >= limit) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      throw new LensException("Unable to read archived queries", e);
+    }
+    return rows;
+  }
+
+  private static boolean matches(Map<String, Object> row, List<QueryStatus.Status> states, String user,
+    String driverName, String queryName, long fromDate, long toDate) {
+    long submissionTime = getLong(row, "submissiontime");
+    if (submissionTime < fromDate || submissionTime > toDate) {
+      return false;
+    }
+    if (states != null && !states.isEmpty()) {
+      boolean found = false;
+      for (QueryStatus.Status status : states) {
+        found |= status.toString().equals(row.get("status"));
+      }
+      if (!found) {
+        return false;
+      }
+    }
+    return (StringUtils.isBlank(user) || user.equals(row.get("submitter")))
+      && (StringUtils.isBlank(queryName) || StringUtils.containsIgnoreCase((String) row.get("queryname"), queryName))
+      && (StringUtils.isBlank(driverName) || driverName.equalsIgnoreCase((String) row.get("drivername")));
+  }
+
+  /**
+   * @return the rows, keeping the first row of each handle
+   */
+  private static List<Map<String, Object>> removeDuplicates(List<Map<String, Object>> rows) {
+    Map<Object, Map<String, Object>> rowsByHandle = new LinkedHashMap<>();
+    for (Map<String, Object> row : rows) {
+      if (!rowsByHandle.containsKey(row.get("handle"))) {
+        rowsByHandle.put(row.get("handle"), row);
+      }
+    }
+    return new ArrayList<>(rowsByHandle.values());
   }
 
   private <T> List<T> findInternal(List<QueryStatus.Status> states, String user, String driverName, String queryName,
     long fromDate, long toDate, final ResultSetHandler<T> handler, String projection) throws LensException {
+    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, projection, "");
+  }
+
+  private <T> List<T> findInternal(List<QueryStatus.Status> states, String user, String driverName, String queryName,
+    long fromDate, long toDate, final ResultSetHandler<T> handler, String projection, String ordering)
+    throws LensException {
+    return findInternal(states, user, driverName, queryName, fromDate, toDate, handler, projection,
+      Collections.<String>emptyList(), Collections.emptyList(), ordering);
+  }
+
+  private <T> List<T> findInternal(List<QueryStatus.Status> states, String user, String driverName, String queryName,
+    long fromDate, long toDate, final ResultSetHandler<T> handler, String projection, List<String> extraFilters,
+    List<Object> extraParams, String ordering) throws LensException {
     StringBuilder builder = new StringBuilder("SELECT " + projection + " FROM finished_queries");
     List<Object> params = new ArrayList<>(3);
     builder.append(" WHERE ");
@@ -350,7 +904,10 @@ public class LensServerDAO {
     filters.add("submissiontime BETWEEN ? AND ?");
     params.add(fromDate);
     params.add(toDate);
+    filters.addAll(extraFilters);
+    params.addAll(extraParams);
     builder.append(StringUtils.join(filters, " AND "));
+    builder.append(ordering);
 
     ResultSetHandler<List<T>> resultSetHandler = new ResultSetHandler<List<T>>() {
       @Override
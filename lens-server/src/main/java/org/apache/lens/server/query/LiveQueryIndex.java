@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryStatusChangeListener;
+import org.apache.lens.server.util.UtilityMethods;
+
+import com.google.common.collect.Sets;
+
+/**
+ * Index of the queries held in memory by the query service, by submitter and by status, so that searching the queries
+ * of a user or in some states doesn't scan all the queries.
+ * <p>
+ * The index is kept up to date by listening to the status changes of the indexed queries. A query may be found for a
+ * status it just left, so callers check the status of the queries they look up.
+ */
+class LiveQueryIndex implements QueryStatusChangeListener {
+
+  private final ConcurrentMap<String, Set<QueryHandle>> byUser = new ConcurrentHashMap<>();
+  private final Map<QueryStatus.Status, Set<QueryHandle>> byStatus = new EnumMap<>(QueryStatus.Status.class);
+
+  LiveQueryIndex() {
+    for (QueryStatus.Status status : QueryStatus.Status.values()) {
+      byStatus.put(status, newHandleSet());
+    }
+  }
+
+  /**
+   * Indexes a query.
+   *
+   * @param ctx the query
+   */
+  void add(QueryContext ctx) {
+    // The listener is set before reading the status, so that no status change is missed
+    ctx.setStatusChangeListener(this);
+    byUser.computeIfAbsent(getUserKey(ctx.getSubmittedUser()), user -> newHandleSet()).add(ctx.getQueryHandle());
+    if (ctx.getStatus() != null) {
+      byStatus.get(ctx.getStatus().getStatus()).add(ctx.getQueryHandle());
+    }
+  }
+
+  /**
+   * Removes a query from the index.
+   *
+   * @param ctx the query
+   */
+  void remove(QueryContext ctx) {
+    ctx.setStatusChangeListener(null);
+    Set<QueryHandle> handles = byUser.get(getUserKey(ctx.getSubmittedUser()));
+    if (handles != null) {
+      handles.remove(ctx.getQueryHandle());
+    }
+    for (Set<QueryHandle> statusHandles : byStatus.values()) {
+      statusHandles.remove(ctx.getQueryHandle());
+    }
+  }
+
+  @Override
+  public void onStatusChanged(QueryContext ctx, QueryStatus.Status before, QueryStatus.Status after) {
+    byStatus.get(after).add(ctx.getQueryHandle());
+    if (before != null) {
+      byStatus.get(before).remove(ctx.getQueryHandle());
+    }
+  }
+
+  /**
+   * Finds the queries which may be of a user and in some states.
+   *
+   * @param user     the user, "all" for the queries of all the users
+   * @param statuses the states
+   * @return the handles of the queries, which include all the queries of the user in the states
+   */
+  Collection<QueryHandle> find(String user, Set<QueryStatus.Status> statuses) {
+    Collection<QueryHandle> statusHandles = null;
+    if (statuses.size() < QueryStatus.Status.values().length) {
+      statusHandles = new HashSet<>();
+      for (QueryStatus.Status status : statuses) {
+        statusHandles.addAll(byStatus.get(status));
+      }
+    }
+    if ("all".equalsIgnoreCase(user)) {
+      if (statusHandles != null) {
+        return statusHandles;
+      }
+      Set<QueryHandle> all = new HashSet<>();
+      for (Set<QueryHandle> handles : byStatus.values()) {
+        all.addAll(handles);
+      }
+      return all;
+    }
+    Set<QueryHandle> userHandles = byUser.get(getUserKey(UtilityMethods.removeDomain(user)));
+    if (userHandles == null) {
+      return Collections.emptyList();
+    }
+    List<QueryHandle> found = new ArrayList<>(userHandles.size());
+    for (QueryHandle handle : userHandles) {
+      if (statusHandles == null || statusHandles.contains(handle)) {
+        found.add(handle);
+      }
+    }
+    return found;
+  }
+
+  private static Set<QueryHandle> newHandleSet() {
+    return Sets.newSetFromMap(new ConcurrentHashMap<QueryHandle, Boolean>());
+  }
+
+  private static String getUserKey(String user) {
+    return user == null ? "" : user.toLowerCase();
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import java.util.List;
+
+import org.apache.lens.server.LensServerConf;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
+
+import org.apache.hadoop.conf.Configuration;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Trains the {@link ExecutionTimeModel} used by query cost calculators on the queries which succeeded recently, as
+ * persisted in the finished queries table.
+ * <p>
+ * The {@link #main(String[])} method replays the persisted history offline: it trains a model on the older queries
+ * and reports the error of the execution times it predicts for the newer ones.
+ */
+@Slf4j
+public class QueryCostModelTrainer implements Runnable {
+
+  private final LensServerDAO lensServerDao;
+  private final ExecutionTimeModel model;
+  private final long historyMillis;
+  private final int minSamples;
+
+  public QueryCostModelTrainer(LensServerDAO lensServerDao, ExecutionTimeModel model, Configuration conf) {
+    this.lensServerDao = lensServerDao;
+    this.model = model;
+    this.historyMillis = conf.getLong(QUERY_COST_MODEL_HISTORY_MILLIS, DEFAULT_QUERY_COST_MODEL_HISTORY_MILLIS);
+    this.minSamples = conf.getInt(QUERY_COST_MODEL_MIN_SAMPLES, DEFAULT_QUERY_COST_MODEL_MIN_SAMPLES);
+  }
+
+  @Override
+  public void run() {
+    try {
+      train();
+    } catch (Exception e) {
+      log.error("Unable to train the query cost model", e);
+    }
+  }
+
+  /**
+   * Trains the model on the queries which succeeded within the history.
+   *
+   * @return number of fits of the model
+   * @throws LensException the lens exception
+   */
+  public int train() throws LensException {
+    return model.train(getSamples(), minSamples);
+  }
+
+  private List<ExecutionTimeModel.Sample> getSamples() throws LensException {
+    long now = System.currentTimeMillis();
+    return lensServerDao.findExecutionTimeSamples(now - historyMillis, now);
+  }
+
+  /**
+   * Replays the finished queries persisted by the server configured in lens-site.xml.
+   *
+   * @param args optional fraction of the queries to train on, 0.8 by default
+   * @throws Exception the exception
+   */
+  public static void main(String[] args) throws Exception {
+    double trainFraction = args.length > 0 ? Double.parseDouble(args[0]) : 0.8;
+    Configuration conf = LensServerConf.getHiveConf();
+    LensServerDAO dao = new LensServerDAO();
+    dao.init(conf);
+    QueryCostModelTrainer trainer = new QueryCostModelTrainer(dao, new ExecutionTimeModel(), conf);
+    List<ExecutionTimeModel.Sample> samples = trainer.getSamples();
+    ExecutionTimeModel.PredictionError error = ExecutionTimeModel.replay(samples, trainFraction, trainer.minSamples);
+    log.info("Replayed {} queries, trained on {} of them", samples.size(), trainFraction);
+    log.info("Predicted: {}/{}", error.getPredicted(), error.getCount());
+    log.info("Mean absolute error (ms): {}", error.getMeanAbsoluteErrorMillis());
+    log.info("Mean absolute percentage error: {}", error.getMeanAbsolutePercentageError());
+  }
+}
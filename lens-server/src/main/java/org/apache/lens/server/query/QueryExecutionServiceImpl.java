@@ -62,6 +62,7 @@ import org.apache.lens.server.api.query.*;
 import org.apache.lens.server.api.query.collect.WaitingQueriesSelectionPolicy;
 import org.apache.lens.server.api.query.comparators.*;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
 import org.apache.lens.server.api.query.cost.QueryCost;
 import org.apache.lens.server.api.query.events.*;
 import org.apache.lens.server.api.retry.*;
@@ -134,6 +135,16 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   public static final String PREPARED_QUERY_PURGER_COUNTER = "prepared-query-purger-errors";
 
+  /**
+   * The Constant QUERY_RESULT_CACHE_HITS_COUNTER.
+   */
+  public static final String QUERY_RESULT_CACHE_HITS_COUNTER = "query-result-cache-hits";
+
+  /**
+   * The Constant QUERY_RESULT_CACHE_MISSES_COUNTER.
+   */
+  public static final String QUERY_RESULT_CACHE_MISSES_COUNTER = "query-result-cache-misses";
+
   /**
    * The millis in week.
    */
@@ -180,6 +191,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   protected final ConcurrentMap<QueryHandle, QueryContext> allQueries = new ConcurrentHashMap<>();
 
+  /**
+   * Index of all queries by user and status.
+   */
+  private final LiveQueryIndex liveQueryIndex = new LiveQueryIndex();
+
   /**
    * The conf.
    */
@@ -217,6 +233,26 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private ScheduledExecutorService queryExpirer;
 
+  /**
+   * Trains the execution time model of query costs, null if not enabled.
+   */
+  private ScheduledExecutorService queryCostModelTrainer;
+
+  /**
+   * Hedges launched queries on other drivers when they take longer than usual on their driver.
+   */
+  private QueryHedger queryHedger;
+
+  /**
+   * Checks launched queries for hedging and completes their hedges.
+   */
+  private ScheduledExecutorService queryHedgeChecker;
+
+  /**
+   * Moves finished queries older than the hot retention to the finished query archive, null if not enabled.
+   */
+  private ScheduledExecutorService finishedQueryArchiver;
+
   /**
    * The prepare query purger.
    */
@@ -227,6 +263,12 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
    */
   private QueryResultPurger queryResultPurger;
 
+  /**
+   * The cache of persisted results of finished queries
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private QueryResultCache resultCache;
+
   /**
    * The query acceptors.
    */
@@ -907,6 +949,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     // TODO: handle retries for post-processing, e.g. result formatting failure doesn't need query rerun
     if (ctx.getStatus().failing()) {
       if (removeFromLaunchedQueries(ctx)) {
+        queryConstraintsChecker.queryFinished(ctx);
         processWaitingQueriesAsync(ctx);
       }
       if (ctx.getDriverStatus().failed() && !getDriverRetryPolicy(ctx).hasExhaustedRetries(ctx)) {
@@ -1009,14 +1052,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       waitingQueries.remove(ctx);
       // Remove it from launched queries as well - the query got cancelled or failed to launch or failed to execute
       if (removeFromLaunchedQueries(ctx)) {
+        queryConstraintsChecker.queryFinished(ctx);
         processWaitingQueriesAsync(ctx);
       }
     }
     // Remove from active queries
-    if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
-      getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).removeFromActiveQueries(ctx.getQueryHandle());
+    if (SESSION_REGISTRY.contains(ctx.getLensSessionIdentifier())) {
+      getSession(SESSION_REGISTRY.get(ctx.getLensSessionIdentifier())).removeFromActiveQueries(ctx.getQueryHandle());
     }
+    queryHedger.queryFinished(ctx);
     finishedQueries.add(new FinishedQuery(ctx));
+    resultCache.finished(ctx);
     ctx.clearTransientStateAfterLaunch();
   }
 
@@ -1201,6 +1247,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
                 finished.ctx.setFinishedQueryPersisted(true);
                 log.info("Purging: {}", finished.getQueryHandle());
                 allQueries.remove(finished.getQueryHandle());
+                liveQueryIndex.remove(finished.getCtx());
                 resultSets.remove(finished.getQueryHandle());
               }
               fireStatusChangeEvent(finished.getCtx(),
@@ -1291,6 +1338,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     this.conf = hiveConf;
     this.isDuplicateQueryAllowed = conf.getBoolean(LensConfConstants.SERVER_DUPLICATE_QUERY_ALLOWED,
         LensConfConstants.DEFAULT_SERVER_DUPLICATE_QUERY_ALLOWED);
+    this.resultCache = new QueryResultCache(conf);
     try {
       loadQueryComparator();
     } catch (LensException e) {
@@ -1360,6 +1408,23 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       LensConfConstants.DEFAULT_STATUS_UPDATE_EXPONENTIAL_WAIT_FACTOR);
     statusUpdateRetryHandler = OperationRetryHandlerFactory.createExponentialBackOffHandler(statusUpdateRetries,
       statusUpdateRetryMaxDelay, statusUpdateExponentialWaiFactor);
+    queryHedger = new QueryHedger(conf, statusUpdateRetryHandler) {
+      @Override
+      protected void launch(QueryContext hedge) throws LensException {
+        acquire(hedge.getLensSessionIdentifier());
+        try {
+          addSessionResourcesToDriver(hedge);
+          super.launch(hedge);
+        } finally {
+          release(hedge.getLensSessionIdentifier());
+        }
+      }
+
+      @Override
+      protected void adopt(QueryContext query, QueryContext hedge) {
+        adoptHedge(query, hedge);
+      }
+    };
     log.info("Query execution service initialized");
   }
 
@@ -1378,6 +1443,8 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     try {
       this.lensServerDao.createFinishedQueriesTable();
       this.lensServerDao.createFailedAttemptsTable();
+      this.lensServerDao.createQueryTextsTable();
+      this.lensServerDao.createArchivedQueriesTable();
     } catch (Exception e) {
       log.warn("Unable to create finished query tables, query purger will not purge queries", e);
     }
@@ -1430,6 +1497,13 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
     // shutdown query expirer
     queryExpirer.shutdownNow();
+    if (queryCostModelTrainer != null) {
+      queryCostModelTrainer.shutdownNow();
+    }
+    queryHedgeChecker.shutdownNow();
+    if (finishedQueryArchiver != null) {
+      finishedQueryArchiver.shutdownNow();
+    }
     // Soft shutdown right now, will await termination in this method itself, since cancellation pool
     // should be terminated before query state gets persisted.
     queryCancellationPool.shutdown();
@@ -1474,11 +1548,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       for (QueryContext ctx : allQueries.values()) {
         // recover query configurations from session
         try {
-          if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
+          if (SESSION_REGISTRY.contains(ctx.getLensSessionIdentifier())) {
             // try setting configuration if the query session is still not closed
             ctx.setConf(getLensConf(getSessionHandle(ctx.getLensSessionIdentifier()), ctx.getLensConf()));
             // Add queryHandle to active queries
-            getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
+            getSession(SESSION_REGISTRY.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
           } else {
             ctx.setConf(getLensConf(ctx.getLensConf()));
           }
@@ -1520,8 +1594,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           break;
         case CLOSED:
           allQueries.remove(ctx.getQueryHandle());
-          if (SESSION_MAP.containsKey(ctx.getLensSessionIdentifier())) {
-            getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).removeFromActiveQueries(ctx.getQueryHandle());
+          liveQueryIndex.remove(ctx);
+          if (SESSION_REGISTRY.contains(ctx.getLensSessionIdentifier())) {
+            LensSessionHandle sessionHandle = SESSION_REGISTRY.get(ctx.getLensSessionIdentifier());
+            getSession(sessionHandle).removeFromActiveQueries(ctx.getQueryHandle());
           }
           log.info("Removed closed query from all Queries:" + ctx.getQueryHandle());
         }
@@ -1540,9 +1616,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     queryPurger.start();
     prepareQueryPurger.start();
     startQueryExpirer();
+    if (conf.getBoolean(QUERY_COST_MODEL_ENABLED, DEFAULT_QUERY_COST_MODEL_ENABLED)) {
+      startQueryCostModelTrainer();
+    }
+    startQueryHedgeChecker();
+    if (conf.getLong(FINISHED_QUERY_HOT_RETENTION_MILLIS, DEFAULT_FINISHED_QUERY_HOT_RETENTION_MILLIS) > 0) {
+      startFinishedQueryArchiver();
+    }
 
     if (conf.getBoolean(RESULTSET_PURGE_ENABLED, DEFAULT_RESULTSET_PURGE_ENABLED)) {
       queryResultPurger = new QueryResultPurger();
+      queryResultPurger.setResultCache(resultCache);
       queryResultPurger.init(conf);
     } else {
       log.info("Query result purger is not enabled");
@@ -1637,6 +1721,80 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     log.info("Enabled periodic exipry of queries at {} millis interval", expiryRunInterval);
   }
 
+  private void startQueryCostModelTrainer() {
+    ThreadFactory factory = new BasicThreadFactory.Builder()
+      .namingPattern("QueryCostModelTrainer-%d")
+      .daemon(true)
+      .priority(Thread.MIN_PRIORITY)
+      .build();
+    queryCostModelTrainer = Executors.newSingleThreadScheduledExecutor(factory);
+    long trainingInterval = conf.getLong(QUERY_COST_MODEL_TRAINING_INTERVAL_MILLIS,
+      DEFAULT_QUERY_COST_MODEL_TRAINING_INTERVAL_MILLIS);
+    queryCostModelTrainer.scheduleWithFixedDelay(
+      new QueryCostModelTrainer(lensServerDao, ExecutionTimeModel.getStaticModel(), conf),
+      0, trainingInterval, TimeUnit.MILLISECONDS);
+    log.info("Enabled periodic training of query cost model at {} millis interval", trainingInterval);
+  }
+
+  private void startQueryHedgeChecker() {
+    ThreadFactory factory = new BasicThreadFactory.Builder()
+      .namingPattern("QueryHedgeChecker-%d")
+      .daemon(true)
+      .build();
+    queryHedgeChecker = Executors.newSingleThreadScheduledExecutor(factory);
+    long checkInterval = conf.getLong(QUERY_HEDGE_CHECK_INTERVAL_MILLIS, DEFAULT_QUERY_HEDGE_CHECK_INTERVAL_MILLIS);
+    queryHedgeChecker.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        queryHedger.checkQueries(launchedQueries.getQueries());
+      }
+    }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+  }
+
+  private void startFinishedQueryArchiver() {
+    ThreadFactory factory = new BasicThreadFactory.Builder()
+      .namingPattern("FinishedQueryArchiver-%d")
+      .daemon(true)
+      .priority(Thread.MIN_PRIORITY)
+      .build();
+    finishedQueryArchiver = Executors.newSingleThreadScheduledExecutor(factory);
+    final long retention = conf.getLong(FINISHED_QUERY_HOT_RETENTION_MILLIS,
+      DEFAULT_FINISHED_QUERY_HOT_RETENTION_MILLIS);
+    long archiveInterval = conf.getLong(FINISHED_QUERY_ARCHIVE_INTERVAL_MILLIS,
+      DEFAULT_FINISHED_QUERY_ARCHIVE_INTERVAL_MILLIS);
+    finishedQueryArchiver.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          int archived = lensServerDao.archiveFinishedQueries(System.currentTimeMillis() - retention);
+          log.info("Archived {} finished queries", archived);
+        } catch (Exception e) {
+          log.error("Unable to archive finished queries", e);
+        }
+      }
+    }, archiveInterval, archiveInterval, TimeUnit.MILLISECONDS);
+    log.info("Enabled periodic archival of finished queries at {} millis interval", archiveInterval);
+  }
+
+  /**
+   * Makes a successful hedge the execution of a launched query, moving the query to the launched queries of the
+   * driver of the hedge.
+   *
+   * @param ctx   the query
+   * @param hedge the hedge context
+   */
+  private void adoptHedge(QueryContext ctx, QueryContext hedge) {
+    removalFromLaunchedQueriesLock.lock();
+    try {
+      boolean launched = launchedQueries.remove(ctx);
+      ctx.adoptHedge(hedge);
+      if (launched) {
+        launchedQueries.add(ctx);
+      }
+    } finally {
+      removalFromLaunchedQueriesLock.unlock();
+    }
+  }
 
   private void expireQueries() {
     for (QueryContext ctx : launchedQueries.getQueries()) {
@@ -1964,6 +2122,26 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Gets the rows of the result which the client can fetch while the result is being persisted. Once the query is
+   * successful, only a client which has fetched rows progressively keeps fetching them, until it closes the result.
+   *
+   * @param queryHandle the query handle
+   * @return the progressive result, null if the result should be fetched otherwise
+   */
+  private ProgressiveResultBuffer getProgressiveResult(QueryHandle queryHandle) {
+    QueryContext ctx = allQueries.get(queryHandle);
+    if (ctx == null) {
+      return null;
+    }
+    ProgressiveResultBuffer progressiveResult = ctx.getProgressiveResult();
+    if (progressiveResult == null || progressiveResult.isAbandoned()
+      || (ctx.finished() && progressiveResult.getFetchedRows() == 0)) {
+      return null;
+    }
+    return progressiveResult;
+  }
+
   /**
    * Gets the driver resultset.
    *
@@ -2042,7 +2220,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       prepared = prepareQuery(sessionHandle, query, lensConf, SubmitOp.EXPLAIN_AND_PREPARE);
       prepared.setQueryName(queryName);
       addSessionResourcesToDriver(prepared);
-      QueryPlan plan = prepared.getSelectedDriver().explainAndPrepare(prepared).toQueryPlan();
+      QueryPlan plan = toQueryPlan(prepared, prepared.getSelectedDriver().explainAndPrepare(prepared));
       plan.setPrepareHandle(prepared.getPrepareHandle());
       return plan;
     } catch (LensException e) {
@@ -2226,20 +2404,82 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
   }
 
   private QueryHandle submitQuery(final QueryContext ctx) throws LensException {
+    QueryResultCache.CachedResult cached = lookupCachedResult(ctx);
+    if (cached != null) {
+      return finishWithCachedResult(ctx, cached);
+    }
     synchronized (ctx) {
       QueryStatus before = ctx.getStatus();
       ctx.setStatus(QueryStatus.getQueuedStatus());
       queuedQueries.add(ctx);
       log.info("Added to Queued Queries:{}", ctx.getQueryHandleString());
       allQueries.put(ctx.getQueryHandle(), ctx);
+      liveQueryIndex.add(ctx);
       // Add to session's active query list
-      getSession(SESSION_MAP.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
+      getSession(SESSION_REGISTRY.get(ctx.getLensSessionIdentifier())).addToActiveQueries(ctx.getQueryHandle());
       fireStatusChangeEvent(ctx, ctx.getStatus(), before);
       log.info("Returning handle {}", ctx.getQueryHandle().getHandleId());
       return ctx.getQueryHandle();
     }
   }
 
+  /**
+   * Looks up the result cache for a rewritten query.
+   *
+   * @param ctx the query context
+   * @return the cached result, null if there is none or the query's result can not be cached.
+   */
+  private QueryResultCache.CachedResult lookupCachedResult(QueryContext ctx) {
+    if (!resultCache.isEnabled()) {
+      return null;
+    }
+    try {
+      QueryResultCache.Candidate candidate = resultCache.getCandidate(ctx,
+        getSession(SESSION_REGISTRY.get(ctx.getLensSessionIdentifier())).getCubeMetastoreClient());
+      if (candidate == null) {
+        return null;
+      }
+      QueryResultCache.CachedResult cached = resultCache.lookup(ctx.getQueryHandle(), candidate);
+      incrCounter(cached == null ? QUERY_RESULT_CACHE_MISSES_COUNTER : QUERY_RESULT_CACHE_HITS_COUNTER);
+      return cached;
+    } catch (LensException e) {
+      log.warn("Could not look up the result cache for {}", ctx.getQueryHandle(), e);
+      return null;
+    }
+  }
+
+  /**
+   * Finishes a query with the persisted result of an earlier identical query, without launching it on the driver.
+   *
+   * @param ctx    the query context
+   * @param cached the cached result
+   * @return the query handle
+   * @throws LensException the lens exception
+   */
+  private QueryHandle finishWithCachedResult(final QueryContext ctx, QueryResultCache.CachedResult cached)
+    throws LensException {
+    synchronized (ctx) {
+      QueryStatus before = ctx.getStatus();
+      long now = System.currentTimeMillis();
+      ctx.setLaunchTime(now);
+      ctx.setEndTime(now);
+      ctx.setResultSetPath(cached.getOutputPath());
+      // The query never reaches the driver, so there is nothing to close on it.
+      ctx.setQueryClosedOnDriver(true);
+      allQueries.put(ctx.getQueryHandle(), ctx);
+      liveQueryIndex.add(ctx);
+      resultSets.put(ctx.getQueryHandle(), new LensPersistentResult(ctx.getQueryHandle(), cached.getMetadata(),
+        cached.getOutputPath(), cached.getNumRows(), cached.getFileSize(), conf));
+      ctx.setStatusSkippingTransitionTest(new QueryStatus(1.0f, null, SUCCESSFUL,
+        "Query is successful! Result reused from " + cached.getSource(), true, null, null, null));
+      updateFinishedQuery(ctx, before);
+      fireStatusChangeEvent(ctx, ctx.getStatus(), before);
+      log.info("Query {} finished with the result of {}, result cache hit rate {}", ctx.getQueryHandle(),
+        cached.getSource(), resultCache.getHitRate());
+      return ctx.getQueryHandle();
+    }
+  }
+
   /*
    * (non-Javadoc)
    *
@@ -2604,6 +2844,10 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     try {
       log.info("GetResultSetMetadata: session:{} query: {}", sessionHandle, queryHandle);
       acquire(sessionHandle);
+      ProgressiveResultBuffer progressiveResult = getProgressiveResult(queryHandle);
+      if (progressiveResult != null) {
+        return progressiveResult.getMetadata().toQueryResultSetMetadata();
+      }
       LensResultSet resultSet = getResultset(queryHandle);
       if (resultSet != null) {
         return resultSet.getMetadata().toQueryResultSetMetadata();
@@ -2628,6 +2872,17 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     try {
       log.info("FetchResultSet: session:{} query:{}", sessionHandle, queryHandle);
       acquire(sessionHandle);
+      ProgressiveResultBuffer progressiveResult = getProgressiveResult(queryHandle);
+      if (progressiveResult != null) {
+        QueryContext ctx = allQueries.get(queryHandle);
+        int maxRows = fetchSize > 0 ? fetchSize : Integer.MAX_VALUE;
+        try {
+          return new InMemoryQueryResult(progressiveResult.fetch(maxRows,
+            ctx.getConf().getLong(PROGRESSIVE_RESULT_FETCH_WAIT_MILLIS, DEFAULT_PROGRESSIVE_RESULT_FETCH_WAIT_MILLIS)));
+        } catch (InterruptedException e) {
+          throw new LensException("Interrupted while fetching result of " + queryHandle, e);
+        }
+      }
       return getResultset(queryHandle).toQueryResult();
     } finally {
       release(sessionHandle);
@@ -2648,6 +2903,11 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       resultSets.remove(queryHandle);
       // Ask driver to close result set
       QueryContext ctx=getQueryContext(queryHandle);
+      if (null != ctx && null != ctx.getProgressiveResult()) {
+        // The persisted result can be fetched after closing the progressive result
+        ctx.getProgressiveResult().abandon();
+        ctx.setProgressiveResult(null);
+      }
       if (null != ctx) {
         ctx.getSelectedDriver().closeResultSet(queryHandle);
       }
@@ -2797,6 +3057,85 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /*
+   * (non-Javadoc)
+   *
+   * @see org.apache.lens.server.api.query.QueryExecutionService#getQueryHistory(
+   * org.apache.lens.api.LensSessionHandle, java.lang.String, java.lang.String, java.lang.String, java.lang.String,
+   * java.lang.String, java.lang.String, java.lang.String, int)
+   */
+  @Override
+  public List<LensQuery> getQueryHistory(LensSessionHandle sessionHandle, String states, String userName,
+    String driver, String queryName, String fromDate, String toDate, String after, int pageSize)
+    throws LensException {
+    if (pageSize <= 0) {
+      throw new BadRequestException("Page size should be positive: " + pageSize);
+    }
+    long fromTime = -1;
+    long toTime = Long.MAX_VALUE;
+    Date now = new Date();
+    if (fromDate != null) {
+      fromTime = DateUtil.resolveDate(fromDate, now).getTime();
+    }
+    if (toDate != null) {
+      toTime = DateUtil.resolveDate(toDate, now).getTime();
+    }
+    validateTimeRange(fromTime, toTime);
+    try {
+      acquire(sessionHandle);
+
+      if (StringUtils.isBlank(userName)) {
+        userName = getSession(sessionHandle).getLoggedInUser();
+      }
+      QueryHistoryCursor cursor = after == null ? null : getQueryHistoryCursor(after);
+      Set<Status> statuses = getStatuses(states);
+      Map<QueryHandle, LensQuery> result = new HashMap<>();
+      for (QueryHandle handle : getQueriesInMemory(statuses, userName, driver, queryName, fromTime, toTime)) {
+        QueryContext ctx = allQueries.get(handle);
+        if (ctx != null && (cursor == null || cursor.isFollowedBy(ctx.getSubmissionTime(), handle))) {
+          result.put(handle, ctx.toLensQuerySummary());
+        }
+      }
+      // Unless user wants to get queries in 'non finished' state, get a page of finished queries from DB as well
+      List<Status> finishedStatusesQueried = finishedStatuses(statuses);
+      if (finishedStatusesQueried == null || !finishedStatusesQueried.isEmpty()) {
+        for (FinishedLensQuery finished : lensServerDao.findFinishedQuerySummaries(finishedStatusesQueried,
+          "all".equalsIgnoreCase(userName) ? null : userName, driver, queryName, fromTime, toTime, cursor, pageSize)) {
+          LensQuery query = finished.toLensQuerySummary();
+          // Queries still in memory are more up to date
+          if (!result.containsKey(query.getQueryHandle())) {
+            result.put(query.getQueryHandle(), query);
+          }
+        }
+      }
+      List<LensQuery> page = new ArrayList<>(result.values());
+      Collections.sort(page, QUERY_HISTORY_ORDER);
+      return page.size() > pageSize ? new ArrayList<>(page.subList(0, pageSize)) : page;
+    } finally {
+      release(sessionHandle);
+    }
+  }
+
+  /** Order of the query history, from the latest submitted query to the earliest */
+  private static final Comparator<LensQuery> QUERY_HISTORY_ORDER = Comparator.comparingLong(
+    LensQuery::getSubmissionTime).thenComparing(query -> query.getQueryHandle().toString()).reversed();
+
+  private QueryHistoryCursor getQueryHistoryCursor(String after) {
+    QueryHandle handle;
+    try {
+      handle = QueryHandle.fromString(after);
+    } catch (IllegalArgumentException e) {
+      throw new BadRequestException("Invalid query handle " + after, e);
+    }
+    QueryContext ctx = allQueries.get(handle);
+    Long submissionTime = ctx != null ? Long.valueOf(ctx.getSubmissionTime())
+      : lensServerDao.getSubmissionTime(handle.toString());
+    if (submissionTime == null) {
+      throw new BadRequestException("Query not found: " + after);
+    }
+    return new QueryHistoryCursor(submissionTime, handle);
+  }
+
   private List<LensQuery> getPersistedQueries(String userName, String driver, String queryName,
     long fromTime, long toTime, Set<Status> statuses) throws LensException {
     // Unless user wants to get queries in 'non finished' state, get finished queries from DB as well
@@ -2867,11 +3206,16 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
 
     boolean filterByDriver = StringUtils.isNotBlank(driver);
 
-    List<QueryHandle> all = new ArrayList<QueryHandle>(allQueries.keySet());
+    // Only the queries the index finds for the user and the statuses are checked
+    List<QueryHandle> all = new ArrayList<QueryHandle>(liveQueryIndex.find(userName, statuses));
     Iterator<QueryHandle> itr = all.iterator();
     while (itr.hasNext()) {
       QueryHandle q = itr.next();
       QueryContext context = allQueries.get(q);
+      if (context == null) {
+        itr.remove();
+        continue;
+      }
       long querySubmitTime = context.getSubmissionTime();
       if ((!statuses.contains(context.getStatus().getStatus()))
         || (filterByQueryName && !context.getQueryName().toLowerCase().contains(queryName))
@@ -3044,7 +3388,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
       accept(query, qconf, SubmitOp.EXPLAIN);
       rewriteAndSelect(explainQueryContext);
       addSessionResourcesToDriver(explainQueryContext);
-      return explainQueryContext.getSelectedDriver().explain(explainQueryContext).toQueryPlan();
+      return toQueryPlan(explainQueryContext, explainQueryContext.getSelectedDriver().explain(explainQueryContext));
     } catch (UnsupportedEncodingException e) {
       throw new LensException(e);
     } finally {
@@ -3052,6 +3396,19 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
     }
   }
 
+  /**
+   * Converts the plan of the selected driver to a query plan, with the phases of the rewrite of the query for the
+   * driver, if they were profiled.
+   */
+  private static QueryPlan toQueryPlan(AbstractQueryContext ctx, DriverQueryPlan driverPlan)
+    throws UnsupportedEncodingException {
+    DriverQueryPlan rewriterPlan = ctx.getDriverRewriterPlan(ctx.getSelectedDriver());
+    if (rewriterPlan != null && rewriterPlan != driverPlan) {
+      driverPlan.setRewritePhases(rewriterPlan.getRewritePhases());
+    }
+    return driverPlan.toQueryPlan();
+  }
+
   /**
    * Creates the add/delete resource query.
    *
@@ -3153,6 +3510,7 @@ public class QueryExecutionServiceImpl extends BaseLensService implements QueryE
           }
         }
         allQueries.put(ctx.getQueryHandle(), ctx);
+        liveQueryIndex.add(ctx);
       }
     }
   }
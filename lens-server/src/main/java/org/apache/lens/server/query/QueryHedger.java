@@ -0,0 +1,345 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.server.api.driver.DriverQueryStatus;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.StatusUpdateFailureContext;
+import org.apache.lens.server.api.query.cost.DriverQueryCostComparator;
+import org.apache.lens.server.api.query.cost.QueryCost;
+import org.apache.lens.server.api.retry.BackOffRetryHandler;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Hedges launched queries which take longer than usual on their driver: a query still running on its driver after
+ * the configured percentile of the execution times of the queries which succeeded on the driver is launched on the
+ * next cheapest eligible driver as well. The execution which succeeds first is kept, and the other one is cancelled.
+ * <p>
+ * The hedge runs under the handle of the query, in a context of its own created by
+ * {@link QueryContext#createHedgeContext(LensDriver)}. When the hedge succeeds first, the query is cancelled on its
+ * driver and takes over the driver and the driver status of the hedge. When the query finishes on its driver first,
+ * or the hedge fails, the hedge is cancelled. A query is hedged at most once on a driver.
+ * <p>
+ * Hedges are launched outside the query launching constraints, bounded by the maximum number of running hedges.
+ * The execution times of the drivers, the hedges launched, won, lost and failed, and an estimate of the time saved by
+ * the hedges won are exported as metrics.
+ */
+@Slf4j
+public class QueryHedger {
+
+  /** Hedges of the launched queries, by handle of the query */
+  private final ConcurrentMap<QueryHandle, Hedge> hedges = new ConcurrentHashMap<>();
+  private final AtomicInteger runningHedges = new AtomicInteger();
+
+  private final BackOffRetryHandler<StatusUpdateFailureContext> statusUpdateRetryHandler;
+  private final int minSamples;
+  private final int maxRunning;
+
+  private final MetricRegistry registry = LensMetricsRegistry.getStaticRegistry();
+  private final Counter launched = registry.counter(getMetricName("hedges-launched"));
+  private final Counter won = registry.counter(getMetricName("hedges-won"));
+  private final Counter lost = registry.counter(getMetricName("hedges-lost"));
+  private final Counter failed = registry.counter(getMetricName("hedges-failed"));
+  private final Histogram latencySaved = registry.histogram(getMetricName("latency-saved-millis"));
+
+  /**
+   * Hedge of a launched query.
+   */
+  private static final class Hedge {
+    /** Context of the hedge, null once the hedge is done */
+    private QueryContext context;
+    private long primaryLaunchTime;
+  }
+
+  public QueryHedger(Configuration conf, BackOffRetryHandler<StatusUpdateFailureContext> statusUpdateRetryHandler) {
+    this.statusUpdateRetryHandler = statusUpdateRetryHandler;
+    this.minSamples = conf.getInt(QUERY_HEDGE_MIN_SAMPLES, DEFAULT_QUERY_HEDGE_MIN_SAMPLES);
+    this.maxRunning = conf.getInt(QUERY_HEDGE_MAX_RUNNING, DEFAULT_QUERY_HEDGE_MAX_RUNNING);
+  }
+
+  /**
+   * Hedges the launched queries which have been running longer than the hedge percentile of their driver, and
+   * completes the running hedges.
+   *
+   * @param launchedQueries the launched queries
+   */
+  public void checkQueries(Collection<QueryContext> launchedQueries) {
+    for (QueryContext query : launchedQueries) {
+      try {
+        checkQuery(query, System.currentTimeMillis());
+      } catch (Exception e) {
+        log.error("Error checking hedge of query {}", query.getQueryHandle(), e);
+      }
+    }
+  }
+
+  /**
+   * Records the execution time of a finished query for its driver, and cancels its running hedge if any.
+   *
+   * @param query the finished query
+   */
+  public void queryFinished(QueryContext query) {
+    synchronized (query) {
+      Hedge hedge = hedges.remove(query.getQueryHandle());
+      if (hedge != null && hedge.context != null) {
+        cancelHedge(hedge, lost);
+      }
+    }
+    if (query.getStatus().successful() && query.getSelectedDriver() != null) {
+      long executionTime = getExecutionTime(query.getDriverStatus());
+      if (executionTime > 0) {
+        getLatencies(query.getSelectedDriver()).update(executionTime);
+      }
+    }
+  }
+
+  void checkQuery(QueryContext query, long now) throws LensException {
+    synchronized (query) {
+      if (query.isLaunching() || query.queued() || query.finished()) {
+        return;
+      }
+      Hedge hedge = hedges.get(query.getQueryHandle());
+      if (hedge == null) {
+        if (shouldHedge(query, now)) {
+          launchHedge(query);
+        }
+      } else if (hedge.context != null) {
+        completeHedge(query, hedge);
+      }
+    }
+  }
+
+  /**
+   * @return whether the query has been running on its driver longer than the hedge percentile of the driver
+   */
+  boolean shouldHedge(QueryContext query, long now) {
+    if (!query.getConf().getBoolean(QUERY_HEDGE_ENABLED, DEFAULT_QUERY_HEDGE_ENABLED)
+      || query.getDriverStatus().isFinished() || query.getLaunchTime() <= 0) {
+      return false;
+    }
+    Long delay = getHedgeDelay(query.getSelectedDriver(),
+      query.getConf().getDouble(QUERY_HEDGE_LATENCY_PERCENTILE, DEFAULT_QUERY_HEDGE_LATENCY_PERCENTILE));
+    return delay != null && now - query.getLaunchTime() >= delay;
+  }
+
+  /**
+   * Gets the time after which queries running on the driver are hedged.
+   *
+   * @param driver     the driver
+   * @param percentile the percentile of the execution times of the queries which succeeded on the driver
+   * @return the delay in millis, null if too few queries succeeded on the driver
+   */
+  Long getHedgeDelay(LensDriver driver, double percentile) {
+    Histogram latencies = getLatencies(driver);
+    if (latencies.getCount() < Math.max(1, minSamples)) {
+      return null;
+    }
+    return (long) latencies.getSnapshot().getValue(percentile);
+  }
+
+  /**
+   * Selects the driver to hedge the query on: the cheapest eligible driver other than the driver of the query.
+   *
+   * @return the driver, null if the query has no other eligible driver
+   */
+  static LensDriver selectHedgeDriver(QueryContext query) {
+    Map<LensDriver, QueryCost> costs = new LinkedHashMap<>();
+    for (LensDriver driver : query.getDriverContext().getDriversWithValidQueryCost()) {
+      if (driver != query.getSelectedDriver() && query.getDriverContext().getDriverQuery(driver) != null) {
+        costs.put(driver, query.getDriverContext().getDriverQueryCost(driver));
+      }
+    }
+    DriverQueryCostComparator costComparator = new DriverQueryCostComparator(costs.values());
+    LensDriver selected = null;
+    QueryCost selectedCost = null;
+    for (Map.Entry<LensDriver, QueryCost> entry : costs.entrySet()) {
+      LensDriver driver = entry.getKey();
+      QueryCost cost = entry.getValue();
+      if (selectedCost == null || costComparator.compare(cost, selectedCost) < 0) {
+        selected = driver;
+        selectedCost = cost;
+      }
+    }
+    return selected;
+  }
+
+  private void launchHedge(QueryContext query) {
+    Hedge hedge = new Hedge();
+    hedges.put(query.getQueryHandle(), hedge);
+    LensDriver driver = selectHedgeDriver(query);
+    if (driver == null) {
+      log.debug("Query {} has no other eligible driver to be hedged on", query.getQueryHandle());
+      return;
+    }
+    if (runningHedges.incrementAndGet() > maxRunning) {
+      runningHedges.decrementAndGet();
+      // Hedged later if the query is still running once hedges finish
+      hedges.remove(query.getQueryHandle());
+      return;
+    }
+    QueryContext hedgeContext = query.createHedgeContext(driver);
+    try {
+      hedgeContext.setLaunchTime(System.currentTimeMillis());
+      launch(hedgeContext);
+      hedge.context = hedgeContext;
+      hedge.primaryLaunchTime = query.getLaunchTime();
+      launched.inc();
+      log.info("Hedged query {} running on {} on {}", query.getQueryHandle(),
+        query.getSelectedDriver().getFullyQualifiedName(), driver.getFullyQualifiedName());
+    } catch (Exception e) {
+      runningHedges.decrementAndGet();
+      failed.inc();
+      log.warn("Unable to hedge query {} on {}", query.getQueryHandle(), driver.getFullyQualifiedName(), e);
+    }
+  }
+
+  private void completeHedge(QueryContext query, Hedge hedge) {
+    if (query.getDriverStatus().isFinished()) {
+      // The query finished on its driver first. If it failed, it is retried without the hedge.
+      hedges.remove(query.getQueryHandle());
+      cancelHedge(hedge, lost);
+      return;
+    }
+    QueryContext hedgeContext = hedge.context;
+    try {
+      hedgeContext.updateDriverStatus(statusUpdateRetryHandler);
+    } catch (LensException e) {
+      log.warn("Unable to update status of hedge of query {}", query.getQueryHandle(), e);
+      cancelHedge(hedge, failed);
+      return;
+    }
+    DriverQueryStatus hedgeStatus = hedgeContext.getDriverStatus();
+    if (hedgeStatus.isSuccessful()) {
+      LensDriver driver = query.getSelectedDriver();
+      long elapsed = System.currentTimeMillis() - hedge.primaryLaunchTime;
+      query.detachFromDriver();
+      try {
+        driver.cancelQuery(query.getQueryHandle());
+        driver.closeQuery(query.getQueryHandle());
+      } catch (LensException e) {
+        log.warn("Unable to cancel query {} on {} after its hedge succeeded", query.getQueryHandle(),
+          driver.getFullyQualifiedName(), e);
+      }
+      adopt(query, hedgeContext);
+      hedge.context = null;
+      runningHedges.decrementAndGet();
+      won.inc();
+      latencySaved.update(estimateRemainingTime(driver, elapsed));
+      log.info("Hedge of query {} on {} succeeded first", query.getQueryHandle(),
+        hedgeContext.getSelectedDriver().getFullyQualifiedName());
+    } else if (hedgeStatus.isFinished()) {
+      cancelHedge(hedge, failed);
+    }
+  }
+
+  private void cancelHedge(Hedge hedge, Counter outcome) {
+    QueryContext hedgeContext = hedge.context;
+    hedge.context = null;
+    runningHedges.decrementAndGet();
+    outcome.inc();
+    LensDriver driver = hedgeContext.getSelectedDriver();
+    try {
+      if (!hedgeContext.getDriverStatus().isFinished()) {
+        driver.cancelQuery(hedgeContext.getQueryHandle());
+      }
+      driver.closeQuery(hedgeContext.getQueryHandle());
+    } catch (LensException e) {
+      log.warn("Unable to cancel hedge of query {} on {}", hedgeContext.getQueryHandle(),
+        driver.getFullyQualifiedName(), e);
+    }
+  }
+
+  /**
+   * Launches the hedge on its driver.
+   *
+   * @param hedge the hedge context
+   * @throws LensException the lens exception
+   */
+  protected void launch(QueryContext hedge) throws LensException {
+    hedge.getSelectedDriver().executeAsync(hedge);
+  }
+
+  /**
+   * Makes the successful hedge the execution of the query.
+   *
+   * @param query the query
+   * @param hedge the hedge context
+   */
+  protected void adopt(QueryContext query, QueryContext hedge) {
+    query.adoptHedge(hedge);
+  }
+
+  /**
+   * Estimates the time a query would still have run on its driver after it ran for the elapsed time, as the average
+   * execution time of the queries which took longer on the driver, less the elapsed time.
+   */
+  long estimateRemainingTime(LensDriver driver, long elapsed) {
+    Snapshot snapshot = getLatencies(driver).getSnapshot();
+    long total = 0;
+    int count = 0;
+    for (long latency : snapshot.getValues()) {
+      if (latency > elapsed) {
+        total += latency;
+        count++;
+      }
+    }
+    return count == 0 ? 0 : total / count - elapsed;
+  }
+
+  int getRunningHedges() {
+    return runningHedges.get();
+  }
+
+  Histogram getLatencies(LensDriver driver) {
+    return registry.histogram(getMetricName(driver.getFullyQualifiedName(), "latency-millis"));
+  }
+
+  private static long getExecutionTime(DriverQueryStatus status) {
+    Long start = status.getDriverStartTime();
+    Long finish = status.getDriverFinishTime();
+    if (start != null && finish != null && start > 0 && finish >= start) {
+      return finish - start;
+    }
+    return 0;
+  }
+
+  private static String getMetricName(String... names) {
+    return MetricRegistry.name("lens", QueryHedger.class.getSimpleName(), names);
+  }
+}
@@ -0,0 +1,244 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cold tier of the finished queries. Finished queries older than the hot retention are moved out of the finished
+ * queries table into part files on the persistence file system, partitioned by the day (in UTC) the queries were
+ * submitted on. The name of a part holds the range of the submission times of its queries, so that searches read only
+ * the parts within their time range.
+ * <p>
+ * Queries are archived as rows of the finished queries table, with lower case column names, and with the rows of
+ * their failed attempts under {@link #FAILED_ATTEMPTS}. A part file is a gzipped JSON document holding the values of
+ * each column of its queries together, and the same for their failed attempts, so that the repeated values of a
+ * column compress well.
+ */
+@Slf4j
+class QueryHistoryArchive {
+
+  /** Key of the failed attempts of an archived query */
+  static final String FAILED_ATTEMPTS = "failed_attempts";
+
+  private static final String QUERIES = "queries";
+  private static final String PARTITION_PREFIX = "submissiondate=";
+  /** Suffix of the name of a part, holding the earliest and the latest submission times of its queries */
+  private static final Pattern PART_SUBMISSION_TIMES = Pattern.compile("\\.(\\d+)-(\\d+)\\.json\\.gz$");
+  private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final Path root;
+  private final Configuration conf;
+
+  QueryHistoryArchive(Path root, Configuration conf) {
+    this.root = root;
+    this.conf = conf;
+  }
+
+  /**
+   * Writes queries into a new part of the partitions of the days they were submitted on.
+   *
+   * @param queries the queries
+   * @throws IOException the exception
+   */
+  void write(List<Map<String, Object>> queries) throws IOException {
+    Map<Long, List<Map<String, Object>>> queriesByDay = new TreeMap<>();
+    for (Map<String, Object> query : queries) {
+      long day = Math.floorDiv(((Number) query.get("submissiontime")).longValue(), DAY_MILLIS);
+      queriesByDay.computeIfAbsent(day, d -> new ArrayList<Map<String, Object>>()).add(query);
+    }
+    FileSystem fs = root.getFileSystem(conf);
+    String partPrefix = "part-" + System.currentTimeMillis() + "-" + UUID.randomUUID();
+    for (Map.Entry<Long, List<Map<String, Object>>> entry : queriesByDay.entrySet()) {
+      List<Map<String, Object>> failedAttempts = new ArrayList<>();
+      long earliest = Long.MAX_VALUE;
+      long latest = Long.MIN_VALUE;
+      for (Map<String, Object> query : entry.getValue()) {
+        failedAttempts.addAll(getFailedAttempts(query));
+        long submissionTime = ((Number) query.get("submissiontime")).longValue();
+        earliest = Math.min(earliest, submissionTime);
+        latest = Math.max(latest, submissionTime);
+      }
+      String partName = partPrefix + "." + earliest + "-" + latest + ".json.gz";
+      Map<String, Map<String, List<Object>>> part = new LinkedHashMap<>();
+      part.put(QUERIES, toColumns(entry.getValue()));
+      part.put(FAILED_ATTEMPTS, toColumns(failedAttempts));
+      Path partPath = new Path(new Path(root, PARTITION_PREFIX + LocalDate.ofEpochDay(entry.getKey())), partName);
+      try (OutputStream out = new GZIPOutputStream(fs.create(partPath, false))) {
+        MAPPER.writeValue(out, part);
+      }
+      log.info("Archived {} finished queries in {}", entry.getValue().size(), partPath);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Map<String, Object>> getFailedAttempts(Map<String, Object> query) {
+    Object failedAttempts = query.get(FAILED_ATTEMPTS);
+    return failedAttempts == null ? Collections.<Map<String, Object>>emptyList()
+      : (List<Map<String, Object>>) failedAttempts;
+  }
+
+  private static Map<String, List<Object>> toColumns(List<Map<String, Object>> rows) {
+    Set<String> names = new LinkedHashSet<>();
+    for (Map<String, Object> row : rows) {
+      for (String name : row.keySet()) {
+        if (!name.equalsIgnoreCase(FAILED_ATTEMPTS)) {
+          names.add(name.toLowerCase());
+        }
+      }
+    }
+    Map<String, List<Object>> columns = new LinkedHashMap<>();
+    for (String name : names) {
+      List<Object> values = new ArrayList<>(rows.size());
+      for (Map<String, Object> row : rows) {
+        values.add(row.get(name));
+      }
+      columns.put(name, values);
+    }
+    return columns;
+  }
+
+  private static List<Map<String, Object>> toRows(Map<String, List<Object>> columns) {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (Map.Entry<String, List<Object>> column : columns.entrySet()) {
+      for (int i = 0; i < column.getValue().size(); i++) {
+        if (rows.size() == i) {
+          rows.add(new HashMap<String, Object>());
+        }
+        rows.get(i).put(column.getKey(), column.getValue().get(i));
+      }
+    }
+    return rows;
+  }
+
+  /**
+   * Finds the parts of the partitions which may hold the queries submitted in a time range.
+   *
+   * @param fromDate the from date, inclusive
+   * @param toDate   the to date, inclusive
+   * @return the parts of the partitions, by the start of their day, from the latest day to the earliest
+   * @throws IOException the exception
+   */
+  SortedMap<Long, List<Path>> getPartitions(long fromDate, long toDate) throws IOException {
+    SortedMap<Long, List<Path>> partitions = new TreeMap<>(Collections.<Long>reverseOrder());
+    FileSystem fs = root.getFileSystem(conf);
+    if (!fs.exists(root)) {
+      return partitions;
+    }
+    for (FileStatus partition : fs.listStatus(root)) {
+      String name = partition.getPath().getName();
+      if (!partition.isDirectory() || !name.startsWith(PARTITION_PREFIX)) {
+        continue;
+      }
+      long dayStart;
+      try {
+        dayStart = LocalDate.parse(name.substring(PARTITION_PREFIX.length())).toEpochDay() * DAY_MILLIS;
+      } catch (DateTimeParseException e) {
+        log.warn("Skipping unknown directory {} in the finished query archive", partition.getPath());
+        continue;
+      }
+      if (dayStart <= toDate && dayStart + DAY_MILLIS > fromDate) {
+        List<Path> parts = new ArrayList<>();
+        for (FileStatus part : fs.listStatus(partition.getPath())) {
+          if (part.isFile() && isWithin(part.getPath().getName(), fromDate, toDate)) {
+            parts.add(part.getPath());
+          }
+        }
+        partitions.put(dayStart, parts);
+      }
+    }
+    return partitions;
+  }
+
+  /**
+   * @return whether a part may hold queries submitted in a time range. Parts named without the submission times of
+   * their queries are always read.
+   */
+  private static boolean isWithin(String partName, long fromDate, long toDate) {
+    Matcher matcher = PART_SUBMISSION_TIMES.matcher(partName);
+    return !matcher.find()
+      || (Long.parseLong(matcher.group(1)) <= toDate && Long.parseLong(matcher.group(2)) >= fromDate);
+  }
+
+  /**
+   * Reads the queries of a part.
+   *
+   * @param part the part
+   * @return the queries, with their failed attempts
+   * @throws IOException the exception
+   */
+  @SuppressWarnings("unchecked")
+  List<Map<String, Object>> read(Path part) throws IOException {
+    Map<String, Map<String, List<Object>>> columns;
+    try (InputStream in = new GZIPInputStream(part.getFileSystem(conf).open(part))) {
+      columns = MAPPER.readValue(in, Map.class);
+    }
+    List<Map<String, Object>> queries = toRows(columns.get(QUERIES));
+    Map<Object, List<Map<String, Object>>> failedAttemptsByHandle = new HashMap<>();
+    for (Map<String, Object> failedAttempt : toRows(columns.get(FAILED_ATTEMPTS))) {
+      failedAttemptsByHandle.computeIfAbsent(failedAttempt.get("handle"), h -> new ArrayList<Map<String, Object>>())
+        .add(failedAttempt);
+    }
+    for (Map<String, Object> query : queries) {
+      List<Map<String, Object>> failedAttempts = failedAttemptsByHandle.get(query.get("handle"));
+      query.put(FAILED_ATTEMPTS, failedAttempts == null ? new ArrayList<Map<String, Object>>() : failedAttempts);
+    }
+    return queries;
+  }
+
+  /**
+   * Reads an archived query.
+   *
+   * @param handle         the query handle
+   * @param submissionTime the submission time of the query
+   * @return the query, null if it is not found
+   * @throws IOException the exception
+   */
+  Map<String, Object> read(String handle, long submissionTime) throws IOException {
+    for (List<Path> parts : getPartitions(submissionTime, submissionTime).values()) {
+      for (Path part : parts) {
+        for (Map<String, Object> query : read(part)) {
+          if (handle.equals(query.get("handle"))) {
+            return query;
+          }
+        }
+      }
+    }
+    return null;
+  }
+}
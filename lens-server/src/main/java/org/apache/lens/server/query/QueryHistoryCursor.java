@@ -0,0 +1,41 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import org.apache.lens.api.query.QueryHandle;
+
+import lombok.Data;
+
+/**
+ * Position in the query history, which lists queries from the latest submitted to the earliest, and queries submitted
+ * at the same time by decreasing handle.
+ */
+@Data
+public class QueryHistoryCursor {
+  private final long submissionTime;
+  private final QueryHandle handle;
+
+  /**
+   * @return whether a query submitted at the submission time with the handle comes after this position in the history
+   */
+  public boolean isFollowedBy(long querySubmissionTime, QueryHandle queryHandle) {
+    return querySubmissionTime < submissionTime
+      || (querySubmissionTime == submissionTime && queryHandle.toString().compareTo(handle.toString()) < 0);
+  }
+}
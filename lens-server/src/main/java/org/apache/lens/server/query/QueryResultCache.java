@@ -0,0 +1,338 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.apache.lens.server.api.LensConfConstants.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.metadata.DateUtil;
+import org.apache.lens.cube.metadata.MetastoreConstants;
+import org.apache.lens.server.api.driver.DriverQueryPlan;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryOutputFormatter;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.metastore.api.hive_metastoreConstants;
+import org.apache.hadoop.hive.ql.metadata.Table;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cache of the persisted results of finished queries.
+ * <p>
+ * A query is identified by its driver query, the selected driver, the partitions it reads, the query conf which
+ * affects the persisted result and, unless sharing across users is enabled, the submitter. Along with the key, the
+ * partition timelines of all the tables read by the query are captured when the query is submitted. A cached result
+ * is served only if the timelines captured for the new query are the same as those captured for the query which
+ * produced the result, so results are never served after partitions got registered or dropped on the queried tables.
+ * <p>
+ * Only results persisted by the server are cached, as driver results are bound to the query which produced them.
+ * Entries expire after the configured TTL, which is capped by the resultset retention when the result purger is
+ * enabled, and are invalidated when the purger deletes their result.
+ */
+@Slf4j
+public class QueryResultCache {
+
+  private static final String TIMELINE_PFX = MetastoreConstants.STORAGE_PFX
+    + MetastoreConstants.PARTITION_TIMELINE_CACHE;
+
+  @Getter
+  private final boolean enabled;
+  private final boolean shareAcrossUsers;
+  private final List<String> confPrefixes = new ArrayList<>();
+  private final Cache<String, CachedResult> results;
+  private final Map<QueryHandle, Candidate> pending = new ConcurrentHashMap<>();
+  private final Configuration conf;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public QueryResultCache(Configuration conf) {
+    this.conf = conf;
+    this.enabled = conf.getBoolean(QUERY_RESULT_CACHE_ENABLED, DEFAULT_QUERY_RESULT_CACHE_ENABLED);
+    this.shareAcrossUsers = conf.getBoolean(QUERY_RESULT_CACHE_SHARE_ACROSS_USERS,
+      DEFAULT_QUERY_RESULT_CACHE_SHARE_ACROSS_USERS);
+    for (String prefix : conf.getTrimmedStrings(QUERY_RESULT_CACHE_CONF_PREFIXES,
+      DEFAULT_QUERY_RESULT_CACHE_CONF_PREFIXES)) {
+      confPrefixes.add(prefix);
+    }
+    long ttlMillis = TimeUnit.SECONDS.toMillis(conf.getLong(QUERY_RESULT_CACHE_TTL_SECS,
+      DEFAULT_QUERY_RESULT_CACHE_TTL_SECS));
+    if (conf.getBoolean(RESULTSET_PURGE_ENABLED, DEFAULT_RESULTSET_PURGE_ENABLED)) {
+      // Never serve results that the purger may have deleted.
+      try {
+        Date now = new Date();
+        long retentionMillis = now.getTime() - DateUtil.TimeDiff.parseFrom(
+          conf.get(QUERY_RESULTSET_RETENTION, DEFAULT_QUERY_RESULTSET_RETENTION)).negativeOffsetFrom(now).getTime();
+        ttlMillis = Math.min(ttlMillis, retentionMillis);
+      } catch (LensException e) {
+        log.warn("Could not parse resultset retention, using query result cache TTL of {} millis", ttlMillis, e);
+      }
+    }
+    this.results = CacheBuilder.newBuilder()
+      .maximumSize(conf.getInt(QUERY_RESULT_CACHE_MAX_ENTRIES, DEFAULT_QUERY_RESULT_CACHE_MAX_ENTRIES))
+      .expireAfterWrite(Math.max(ttlMillis, 1), TimeUnit.MILLISECONDS)
+      .build();
+  }
+
+  /**
+   * Key of a cacheable query along with the state of the partitions it reads.
+   */
+  static final class Candidate {
+    @Getter
+    private final String key;
+    @Getter
+    private final String partitionState;
+
+    Candidate(String key, String partitionState) {
+      this.key = key;
+      this.partitionState = partitionState;
+    }
+  }
+
+  /**
+   * A cached result.
+   */
+  static final class CachedResult {
+    @Getter
+    private final QueryHandle source;
+    @Getter
+    private final String partitionState;
+    @Getter
+    private final LensResultSetMetadata metadata;
+    @Getter
+    private final String outputPath;
+    @Getter
+    private final Integer numRows;
+    @Getter
+    private final Long fileSize;
+
+    CachedResult(QueryHandle source, String partitionState, LensResultSetMetadata metadata, String outputPath,
+      Integer numRows, Long fileSize) {
+      this.source = source;
+      this.partitionState = partitionState;
+      this.metadata = metadata;
+      this.outputPath = outputPath;
+      this.numRows = numRows;
+      this.fileSize = fileSize;
+    }
+  }
+
+  /**
+   * Computes the candidate for a rewritten query whose driver is selected.
+   *
+   * @param ctx    the query context
+   * @param client metastore client of the query's session
+   * @return the candidate, null if the query's result can not be cached.
+   * @throws LensException if the metastore can not be read
+   */
+  Candidate getCandidate(QueryContext ctx, CubeMetastoreClient client) throws LensException {
+    if (!enabled || !ctx.isPersistent() || ctx.getSelectedDriver() == null) {
+      return null;
+    }
+    DriverQueryPlan plan = ctx.getDriverRewriterPlan(ctx.getSelectedDriver());
+    // Partitions read by native queries are not known, so their results can not be validated.
+    if (plan == null || plan.getTablesQueried().isEmpty()) {
+      return null;
+    }
+    Hasher hasher = Hashing.sha256().newHasher();
+    put(hasher, ctx.getSelectedDriver().getFullyQualifiedName());
+    put(hasher, ctx.getSelectedDriverQuery());
+    put(hasher, shareAcrossUsers ? null : ctx.getSubmittedUser());
+    SortedMap<String, String> partitions = new TreeMap<>();
+    for (Map.Entry<String, Set<?>> entry : plan.getPartitions().entrySet()) {
+      SortedSet<String> names = new TreeSet<>();
+      for (Object partition : entry.getValue()) {
+        names.add(String.valueOf(partition));
+      }
+      partitions.put(entry.getKey(), names.toString());
+    }
+    putAll(hasher, partitions);
+    SortedMap<String, String> relevantConf = new TreeMap<>();
+    for (Map.Entry<String, String> entry : ctx.getConf()) {
+      for (String prefix : confPrefixes) {
+        if (entry.getKey().startsWith(prefix)) {
+          relevantConf.put(entry.getKey(), entry.getValue());
+          break;
+        }
+      }
+    }
+    putAll(hasher, relevantConf);
+    String partitionState = getPartitionState(plan.getTablesQueried(), client);
+    return partitionState == null ? null : new Candidate(hasher.hash().toString(), partitionState);
+  }
+
+  /**
+   * Captures the partition timelines of the given tables.
+   *
+   * @return hash of the timelines, null if any of the tables does not exist.
+   */
+  static String getPartitionState(Collection<String> tables, CubeMetastoreClient client) throws LensException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String tableName : new TreeSet<>(tables)) {
+      Table table = client.getTable(tableName, false);
+      if (table == null) {
+        return null;
+      }
+      SortedMap<String, String> state = new TreeMap<>();
+      for (Map.Entry<String, String> param : table.getParameters().entrySet()) {
+        if (param.getKey().startsWith(TIMELINE_PFX) || param.getKey().equals(hive_metastoreConstants.DDL_TIME)) {
+          state.put(param.getKey(), param.getValue());
+        }
+      }
+      put(hasher, tableName);
+      putAll(hasher, state);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void putAll(Hasher hasher, SortedMap<String, String> map) {
+    hasher.putInt(map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      put(hasher, entry.getKey());
+      put(hasher, entry.getValue());
+    }
+  }
+
+  private static void put(Hasher hasher, String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(value.length());
+      hasher.putString(value, Charsets.UTF_8);
+    }
+  }
+
+  /**
+   * Looks up a result for the candidate. On a miss, the query is tracked so that its result gets cached once it
+   * succeeds.
+   *
+   * @param handle    handle of the submitted query
+   * @param candidate the candidate
+   * @return the cached result, null on a miss.
+   */
+  CachedResult lookup(QueryHandle handle, Candidate candidate) {
+    CachedResult result = results.getIfPresent(candidate.getKey());
+    if (result != null && !result.getPartitionState().equals(candidate.getPartitionState())) {
+      log.info("Partitions read by {} changed since the cached result of {}", handle, result.getSource());
+      results.invalidate(candidate.getKey());
+      result = null;
+    }
+    if (result != null && !exists(result.getOutputPath())) {
+      results.invalidate(candidate.getKey());
+      result = null;
+    }
+    if (result == null) {
+      misses.incrementAndGet();
+      pending.put(handle, candidate);
+    } else {
+      hits.incrementAndGet();
+    }
+    return result;
+  }
+
+  private boolean exists(String outputPath) {
+    try {
+      Path path = new Path(outputPath);
+      return path.getFileSystem(conf).exists(path);
+    } catch (IOException | IllegalArgumentException e) {
+      log.warn("Could not check cached result {}", outputPath, e);
+      return false;
+    }
+  }
+
+  /**
+   * Caches the result of a tracked query if it succeeded with a result persisted by the server. Called for all
+   * finished queries.
+   *
+   * @param ctx the finished query
+   */
+  void finished(QueryContext ctx) {
+    Candidate candidate = pending.remove(ctx.getQueryHandle());
+    if (candidate == null || !ctx.successful()) {
+      return;
+    }
+    QueryOutputFormatter formatter = ctx.getQueryOutputFormatter();
+    if (formatter == null || formatter.getFinalOutputPath() == null) {
+      return;
+    }
+    try {
+      results.put(candidate.getKey(), new CachedResult(ctx.getQueryHandle(), candidate.getPartitionState(),
+        formatter.getMetadata(), formatter.getFinalOutputPath(), formatter.getNumRows(), formatter.getFileSize()));
+      log.info("Cached result {} of query {}", formatter.getFinalOutputPath(), ctx.getQueryHandle());
+    } catch (Exception e) {
+      log.warn("Could not cache result of query {}", ctx.getQueryHandle(), e);
+    }
+  }
+
+  /**
+   * Invalidates all the cached results under the given path. Called by the result purger after deleting a path.
+   *
+   * @param deleted deleted path
+   */
+  public void invalidate(Path deleted) {
+    String deletedPath = deleted.toUri().getPath();
+    Iterator<CachedResult> iterator = results.asMap().values().iterator();
+    while (iterator.hasNext()) {
+      String path = new Path(iterator.next().getOutputPath()).toUri().getPath();
+      if (path.equals(deletedPath) || path.startsWith(deletedPath + Path.SEPARATOR)) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * @return number of entries in the cache.
+   */
+  public long size() {
+    return results.size();
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return fraction of lookups served from the cache, 0 if there were no lookups.
+   */
+  public double getHitRate() {
+    long hitCount = hits.get();
+    long total = hitCount + misses.get();
+    return total == 0 ? 0 : (double) hitCount / total;
+  }
+}
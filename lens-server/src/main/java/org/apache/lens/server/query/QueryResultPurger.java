@@ -38,6 +38,7 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
 
@@ -78,6 +79,12 @@ public class QueryResultPurger implements Runnable {
    */
   private MetricsService metricsService;
 
+  /**
+   * The query result cache, whose entries are invalidated when their results get purged.
+   */
+  @Setter
+  private QueryResultCache resultCache;
+
   public void init(Configuration configuration) {
     this.conf = configuration;
     this.resultsetPath = new Path(conf.get(RESULT_SET_PARENT_DIR, RESULT_SET_PARENT_DIR_DEFAULT));
@@ -116,6 +123,9 @@ public class QueryResultPurger implements Runnable {
         try {
           if (fs.delete(f.getPath(), true)) {
             counter++;
+            if (resultCache != null) {
+              resultCache.invalidate(f.getPath());
+            }
           } else {
             getMetrics().incrCounter(this.getClass(), QUERY_RESULT_PURGER_ERROR_COUNTER);
           }
@@ -157,6 +157,35 @@ public class QueryServiceResource {
     return queryServer.getAllQueryDetails(sessionid, states, user, driver, queryName, fromDate, toDate);
   }
 
+  /**
+   * Get a page of the query history, from the latest submitted query to the earliest. The queries are filtered the
+   * same way as in {@link #getAllQueryDetails}, and are returned without their driver queries and configuration.
+   *
+   * @param sessionid The sessionid in which queryName is working
+   * @param states    If any state is passed, all the queries in that state will be returned, otherwise all queries will
+   *                  be returned. Multiple states can be passed as comma separated string
+   * @param queryName If any queryName is passed, all the queries containing the queryName will be returned
+   * @param user      Returns queries submitted by this user. If set to "all", returns queries of all users. By default,
+   *                  returns queries of the current user.
+   * @param driver    Get queries submitted on a specific driver.
+   * @param fromDate  from date to search queries in a time range, the range is inclusive(submitTime &gt;= fromDate)
+   * @param toDate    to date to search queries in a time range, the range is inclusive(toDate &gt; submitTime)
+   * @param after     handle of the last query of the previous page. By default, the first page is returned.
+   * @param pageSize  maximum number of queries to return, 100 by default
+   * @return List of {@link LensQuery} objects
+   */
+  @GET
+  @Path("queries/history")
+  @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN})
+  public List<LensQuery> getQueryHistory(@QueryParam("sessionid") LensSessionHandle sessionid,
+    @QueryParam("state") String states, @QueryParam("queryName") String queryName, @QueryParam("user") String user,
+    @QueryParam("driver") String driver, @QueryParam("fromDate") String fromDate, @QueryParam("toDate") String toDate,
+    @QueryParam("after") String after, @DefaultValue("100") @QueryParam("pageSize") int pageSize)
+    throws LensException {
+    validateSessionId(sessionid);
+    return queryServer.getQueryHistory(sessionid, states, user, driver, queryName, fromDate, toDate, after, pageSize);
+  }
+
   /**
    * Submit the query for explain or execute or execute with a timeout.
    *
@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Content addressed store of the large texts of finished queries, like user queries, driver queries and serialized
+ * confs. A text is compressed and stored once per content hash in the query_texts table, and the finished queries
+ * persist a reference to the hash instead of the text, so that a query submitted again and again, as dashboards do,
+ * is stored once. Each text counts the finished queries referencing it, in the transactions which insert and archive
+ * the queries, and is deleted once no finished query references it.
+ */
+@Slf4j
+class QueryTextStore {
+
+  /** Prefix of the references to shared texts */
+  static final String REFERENCE_PREFIX = "lens-text:sha256:";
+
+  /** Maximum number of texts fetched by a single statement */
+  private static final int BATCH_SIZE = 100;
+
+  private final DataSource ds;
+
+  /** Texts shorter than this are persisted inline */
+  private final int minSharedLength;
+
+  /** Recently shared or resolved texts by hash */
+  private final Cache<String, String> texts;
+
+  QueryTextStore(DataSource ds, int minSharedLength, int cacheSize) {
+    this.ds = ds;
+    this.minSharedLength = minSharedLength;
+    this.texts = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+  }
+
+  void createTable() {
+    String sql = "CREATE TABLE if not exists query_texts (hash varchar(64) not null unique, "
+      + "text varchar(1000000) not null, refcount int not null)";
+    try {
+      new QueryRunner(ds).update(sql);
+      log.info("Created query texts table");
+    } catch (SQLException e) {
+      log.warn("Unable to create query texts table", e);
+    }
+  }
+
+  static boolean isReference(String value) {
+    return value != null && value.startsWith(REFERENCE_PREFIX);
+  }
+
+  /**
+   * Stores a text, if it is long enough to be shared, and counts the reference to it which is persisted in the same
+   * transaction.
+   *
+   * @param runner the query runner
+   * @param conn   the connection of the transaction persisting the reference
+   * @param text   the text
+   * @return the value to persist in place of the text: a reference to the stored text, or the text itself
+   * @throws SQLException the exception
+   */
+  String share(QueryRunner runner, Connection conn, String text) throws SQLException {
+    if (text == null || text.length() < minSharedLength) {
+      return text;
+    }
+    String hash = DigestUtils.sha256Hex(text);
+    String countReference = "update query_texts set refcount = refcount + 1 where hash=?";
+    if (runner.update(conn, countReference, hash) == 0) {
+      try {
+        runner.update(conn, "insert into query_texts (hash, text, refcount) values (?, ?, 1)", hash, compress(text));
+      } catch (SQLException e) {
+        // The same text may have been stored concurrently
+        if (runner.update(conn, countReference, hash) == 0) {
+          throw e;
+        }
+      }
+    }
+    texts.put(hash, text);
+    return REFERENCE_PREFIX + hash;
+  }
+
+  /**
+   * Uncounts the references among some values, which are deleted in the same transaction, and deletes the texts no
+   * longer referenced.
+   *
+   * @param runner the query runner
+   * @param conn   the connection of the transaction deleting the references
+   * @param values the deleted values, references or texts
+   * @return the number of texts deleted
+   * @throws SQLException the exception
+   */
+  int release(QueryRunner runner, Connection conn, Collection<String> values) throws SQLException {
+    Map<String, Integer> counts = new HashMap<>();
+    for (String value : values) {
+      if (isReference(value)) {
+        String hash = value.substring(REFERENCE_PREFIX.length());
+        Integer count = counts.get(hash);
+        counts.put(hash, count == null ? 1 : count + 1);
+      }
+    }
+    if (counts.isEmpty()) {
+      return 0;
+    }
+    Object[][] uncounts = new Object[counts.size()][];
+    int i = 0;
+    for (Map.Entry<String, Integer> count : counts.entrySet()) {
+      uncounts[i++] = new Object[]{count.getValue(), count.getKey()};
+    }
+    runner.batch(conn, "update query_texts set refcount = refcount - ? where hash=?", uncounts);
+    int deleted = 0;
+    for (List<String> hashes : Lists.partition(new ArrayList<>(counts.keySet()), BATCH_SIZE)) {
+      deleted += runner.update(conn, "delete from query_texts where refcount <= 0 and hash in ("
+        + StringUtils.repeat("?", ", ", hashes.size()) + ")", hashes.toArray());
+    }
+    return deleted;
+  }
+
+  /**
+   * Resolves the references among some persisted values, fetching the texts which aren't cached in batches.
+   *
+   * @param values the persisted values, references or texts
+   * @return the texts of the references among the values, by reference
+   * @throws SQLException the exception
+   */
+  Map<String, String> resolve(Collection<String> values) throws SQLException {
+    final Map<String, String> resolved = new HashMap<>();
+    Set<String> missing = new HashSet<>();
+    for (String value : values) {
+      if (isReference(value) && !resolved.containsKey(value)) {
+        String text = texts.getIfPresent(value.substring(REFERENCE_PREFIX.length()));
+        if (text != null) {
+          resolved.put(value, text);
+        } else {
+          missing.add(value.substring(REFERENCE_PREFIX.length()));
+        }
+      }
+    }
+    QueryRunner runner = new QueryRunner(ds);
+    for (List<String> hashes : Lists.partition(new ArrayList<>(missing), BATCH_SIZE)) {
+      runner.query("select hash, text from query_texts where hash in (" + StringUtils.repeat("?", ", ", hashes.size())
+        + ")", new ResultSetHandler<Void>() {
+          @Override
+          public Void handle(ResultSet rs) throws SQLException {
+            while (rs.next()) {
+              String text = decompress(rs.getString(2));
+              texts.put(rs.getString(1), text);
+              resolved.put(REFERENCE_PREFIX + rs.getString(1), text);
+            }
+            return null;
+          }
+        }, hashes.toArray());
+    }
+    return resolved;
+  }
+
+  /**
+   * @return the text of a persisted value, given the resolved references
+   */
+  static String get(Map<String, String> resolved, String value) {
+    if (!isReference(value)) {
+      return value;
+    }
+    String text = resolved.get(value);
+    if (text == null) {
+      log.warn("Text not found for {}", value);
+    }
+    return text;
+  }
+
+  private static String compress(String text) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (OutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to compress text", e);
+    }
+    return Base64.encodeBase64String(bytes.toByteArray());
+  }
+
+  private static String decompress(String compressed) throws SQLException {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(Base64.decodeBase64(compressed)))) {
+      return new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new SQLException("Unable to decompress text", e);
+    }
+  }
+}
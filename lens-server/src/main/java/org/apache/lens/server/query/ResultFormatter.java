@@ -19,6 +19,7 @@
 package org.apache.lens.server.query;
 
 import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.ResultRow;
 import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.driver.InMemoryResultSet;
@@ -122,8 +123,21 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
           } else {
             log.info("Result formatter for {} in inmemory result", queryHandle);
             InMemoryResultSet inmemory = (InMemoryResultSet) resultSet;
-            while (inmemory.hasNext()) {
-              ((InMemoryOutputFormatter) formatter).writeRow(inmemory.next());
+            ProgressiveResultBuffer progressiveResult = createProgressiveResult(ctx, resultSet);
+            try {
+              while (inmemory.hasNext()) {
+                ResultRow row = inmemory.next();
+                ((InMemoryOutputFormatter) formatter).writeRow(row);
+                if (progressiveResult != null && !progressiveResult.publish(row)) {
+                  log.info("Progressive result of {} abandoned after {} rows", queryHandle,
+                    progressiveResult.getFetchedRows());
+                  progressiveResult = null;
+                }
+              }
+            } finally {
+              if (progressiveResult != null) {
+                progressiveResult.finish();
+              }
             }
             inmemory.setFullyAccessed(true);
           }
@@ -139,6 +153,9 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
         log.info("Result formatter has completed. Final path:{}", formatter.getFinalOutputPath());
       }
     } catch (Exception e) {
+      if (ctx.getProgressiveResult() != null) {
+        ctx.getProgressiveResult().abandon();
+      }
       MetricsService metricsService = LensServices.get().getService(MetricsService.NAME);
       metricsService.incrCounter(ResultFormatter.class, "formatting-errors");
       log.warn("Exception while formatting result for {}", queryHandle, e);
@@ -152,6 +169,29 @@ public class ResultFormatter extends AsyncEventListener<QueryExecuted> {
     }
   }
 
+  /**
+   * Creates the buffer of the rows the client can fetch while the result is being persisted, if enabled.
+   *
+   * @param ctx       the query context
+   * @param resultSet the in memory result of the driver
+   * @return the buffer, null if not enabled
+   * @throws LensException the lens exception
+   */
+  private ProgressiveResultBuffer createProgressiveResult(QueryContext ctx, LensResultSet resultSet)
+    throws LensException {
+    if (!ctx.getConf().getBoolean(LensConfConstants.PROGRESSIVE_RESULT_ENABLED,
+      LensConfConstants.DEFAULT_PROGRESSIVE_RESULT_ENABLED)) {
+      return null;
+    }
+    ProgressiveResultBuffer progressiveResult = new ProgressiveResultBuffer(resultSet.getMetadata(),
+      ctx.getConf().getInt(LensConfConstants.PROGRESSIVE_RESULT_BUFFER_ROWS,
+        LensConfConstants.DEFAULT_PROGRESSIVE_RESULT_BUFFER_ROWS),
+      ctx.getConf().getLong(LensConfConstants.PROGRESSIVE_RESULT_PUBLISH_TIMEOUT_MILLIS,
+        LensConfConstants.DEFAULT_PROGRESSIVE_RESULT_PUBLISH_TIMEOUT_MILLIS));
+    ctx.setProgressiveResult(progressiveResult);
+    return progressiveResult;
+  }
+
   /**
    * Creates the and set formatter.
    *
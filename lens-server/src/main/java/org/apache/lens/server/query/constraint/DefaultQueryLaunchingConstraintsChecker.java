@@ -24,6 +24,7 @@ import java.util.Set;
 
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.api.query.constraint.AdaptiveQueryLaunchingConstraint;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
 import org.apache.lens.server.api.retry.BackOffRetryHandler;
 
@@ -67,6 +68,23 @@ public class DefaultQueryLaunchingConstraintsChecker implements QueryLaunchingCo
     return true;
   }
 
+  @Override
+  public void queryFinished(final QueryContext finishedQuery) {
+    if (finishedQuery.getSelectedDriver() == null) {
+      return;
+    }
+    for (QueryLaunchingConstraint queryConstraint : Sets.union(this.lensQueryConstraints,
+      finishedQuery.getSelectedDriverQueryConstraints())) {
+      if (queryConstraint instanceof AdaptiveQueryLaunchingConstraint) {
+        try {
+          ((AdaptiveQueryLaunchingConstraint) queryConstraint).queryFinished(finishedQuery);
+        } catch (RuntimeException e) {
+          log.error("Error notifying constraint {} of finished query {}", queryConstraint, finishedQuery, e);
+        }
+      }
+    }
+  }
+
   @VisibleForTesting
   Set<QueryLaunchingConstraint> prepareAllConstraints(final QueryContext candidateQuery) {
 
@@ -30,4 +30,11 @@ import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollectio
 public interface QueryLaunchingConstraintsChecker {
 
   boolean canLaunch(final QueryContext candidateQuery, final EstimatedImmutableQueryCollection launchedQueries);
+
+  /**
+   * Notifies the constraints which adapt to finished queries about a launched query which has finished.
+   *
+   * @param finishedQuery the finished query
+   */
+  void queryFinished(final QueryContext finishedQuery);
 }
@@ -23,16 +23,20 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.lens.api.query.RewritePhase;
 import org.apache.lens.cube.metadata.CubeMetastoreClient;
 import org.apache.lens.cube.parse.CubeQueryContext;
 import org.apache.lens.cube.parse.CubeQueryRewriter;
 import org.apache.lens.cube.parse.HQLParser;
+import org.apache.lens.cube.parse.RewritePhaseProfiler;
 import org.apache.lens.driver.cube.RewriterPlan;
+import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.driver.DriverQueryPlan;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.metrics.MethodMetricsContext;
 import org.apache.lens.server.api.metrics.MethodMetricsFactory;
+import org.apache.lens.server.api.metrics.MetricsService;
 import org.apache.lens.server.api.query.AbstractQueryContext;
 
 import org.apache.hadoop.conf.Configuration;
@@ -284,6 +288,7 @@ public final class RewriteUtil {
 
   private static final String REWRITE_QUERY_GAUGE = RewriteUtil.class.getSimpleName() + "-rewriteQuery";
   private static final String TOHQL_GAUGE = RewriteUtil.class.getSimpleName() + "-rewriteQuery-toHQL";
+  private static final String TOHQL_PHASE = "toHQL";
 
   /**
    * Rewrite query.
@@ -392,8 +397,16 @@ public final class RewriteUtil {
           CubeQueryContext cqc = rewriter.rewrite(cqi.query);
           MethodMetricsContext toHQLGauge = MethodMetricsFactory
             .createMethodGauge(ctx.getDriverConf(driver), true, qIndex + "-" + TOHQL_GAUGE);
+          RewritePhaseProfiler profiler = cqc.getPhaseProfiler();
+          if (profiler != null) {
+            profiler.startPhase();
+          }
           // toHQL actually generates the rewritten query
           String hqlQuery = cqc.toHQL();
+          if (profiler != null) {
+            profiler.endPhase(TOHQL_PHASE);
+            updateRewritePhaseMetrics(profiler.getPhases());
+          }
           cubeQueryCtx.add(cqc);
           toHQLGauge.markSuccess();
           qIndex++;
@@ -429,6 +442,13 @@ public final class RewriteUtil {
       }
     }
 
+    private void updateRewritePhaseMetrics(List<RewritePhase> phases) {
+      MetricsService metricsService = LensServices.get().getService(MetricsService.NAME);
+      if (metricsService != null) {
+        metricsService.updateRewritePhases(phases);
+      }
+    }
+
     @Override
     public String toString() {
       return "Rewrite runnable for " + driver;
@@ -0,0 +1,179 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import java.text.ParseException;
+import java.util.Date;
+
+import org.apache.lens.api.scheduler.XFrequency;
+import org.apache.lens.api.scheduler.XFrequencyEnum;
+
+import org.joda.time.*;
+import org.quartz.CronExpression;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * The schedule of a single alarm along with the next time at which it has to fire.
+ * <p>
+ * Fire times follow the semantics of the Quartz triggers used by {@link AlarmService}: enum frequencies are
+ * calendar intervals anchored at the start time, cron expressions fire at every valid time after the start time.
+ * The end time is exclusive.
+ */
+public class AlarmSchedule {
+
+  @Getter
+  private final String jobHandle;
+  @Getter
+  private final DateTime start;
+  @Getter
+  private final DateTime end;
+  @Getter
+  private final XFrequencyEnum frequencyEnum;
+  @Getter
+  private final String cronExpression;
+  private final CronExpression cron;
+
+  /**
+   * Next nominal time at which the alarm has to fire, null if there are no more fire times.
+   */
+  @Getter
+  @Setter
+  private Long nextFireTime;
+
+  @Getter
+  @Setter
+  private boolean paused;
+
+  public AlarmSchedule(String jobHandle, DateTime start, DateTime end, XFrequency frequency) throws ParseException {
+    this(jobHandle, start, end, frequency.getEnum(), frequency.getCronExpression());
+  }
+
+  AlarmSchedule(String jobHandle, DateTime start, DateTime end, XFrequencyEnum frequencyEnum, String cronExpression)
+    throws ParseException {
+    this.jobHandle = jobHandle;
+    this.start = start;
+    this.end = end;
+    this.frequencyEnum = frequencyEnum;
+    this.cronExpression = frequencyEnum == null ? cronExpression : null;
+    this.cron = frequencyEnum == null ? new CronExpression(cronExpression) : null;
+  }
+
+  /**
+   * Creates a schedule from its stored form.
+   *
+   * @param jobHandle job handle
+   * @param start     start time
+   * @param end       end time
+   * @param frequency value of {@link #getFrequencyString()}
+   * @return the schedule
+   * @throws ParseException if the stored cron expression is not valid
+   */
+  static AlarmSchedule fromFrequencyString(String jobHandle, DateTime start, DateTime end, String frequency)
+    throws ParseException {
+    // cron expressions always have white spaces between the fields, enum names never have any.
+    if (frequency.trim().contains(" ")) {
+      return new AlarmSchedule(jobHandle, start, end, null, frequency);
+    }
+    return new AlarmSchedule(jobHandle, start, end, XFrequencyEnum.valueOf(frequency), null);
+  }
+
+  /**
+   * @return the frequency in the form used for storage: the enum name or the cron expression.
+   */
+  public String getFrequencyString() {
+    return frequencyEnum != null ? frequencyEnum.name() : cronExpression;
+  }
+
+  /**
+   * @return the first fire time of the schedule, null if it never fires.
+   */
+  public Long getFirstFireTime() {
+    if (cron != null) {
+      // quartz cron triggers look for the first fire time starting one second before the start time.
+      return getCronFireTimeAfter(start.getMillis() - 1000L);
+    }
+    return start.isBefore(end) ? start.getMillis() : null;
+  }
+
+  /**
+   * Computes the nominal fire time which follows the given one.
+   *
+   * @param fireTime a fire time in milliseconds
+   * @return next fire time, null if there are no fire times before the end time.
+   */
+  public Long getFireTimeAfter(long fireTime) {
+    if (cron != null) {
+      return getCronFireTimeAfter(fireTime);
+    }
+    DateTime after = new DateTime(fireTime);
+    if (after.isBefore(start)) {
+      return getFirstFireTime();
+    }
+    // Estimate the number of intervals elapsed since start and then move forward. The estimate never overshoots as
+    // the period calculations floor the number of complete periods.
+    int intervals;
+    switch (frequencyEnum) {
+    case DAILY:
+      intervals = Days.daysBetween(start, after).getDays();
+      break;
+    case WEEKLY:
+      intervals = Weeks.weeksBetween(start, after).getWeeks();
+      break;
+    case MONTHLY:
+      intervals = Months.monthsBetween(start, after).getMonths();
+      break;
+    case QUARTERLY:
+      intervals = Months.monthsBetween(start, after).getMonths() / 3;
+      break;
+    case YEARLY:
+      intervals = Years.yearsBetween(start, after).getYears();
+      break;
+    default:
+      throw new IllegalArgumentException("Invalid frequency enum expression: " + frequencyEnum.name());
+    }
+    DateTime next = plusIntervals(intervals);
+    while (!next.isAfter(after)) {
+      next = plusIntervals(++intervals);
+    }
+    return next.isBefore(end) ? next.getMillis() : null;
+  }
+
+  private DateTime plusIntervals(int intervals) {
+    switch (frequencyEnum) {
+    case DAILY:
+      return start.plusDays(intervals);
+    case WEEKLY:
+      return start.plusWeeks(intervals);
+    case MONTHLY:
+      return start.plusMonths(intervals);
+    case QUARTERLY:
+      return start.plusMonths(3 * intervals);
+    case YEARLY:
+      return start.plusYears(intervals);
+    default:
+      throw new IllegalArgumentException("Invalid frequency enum expression: " + frequencyEnum.name());
+    }
+  }
+
+  private Long getCronFireTimeAfter(long fireTime) {
+    Date next = cron.getNextValidTimeAfter(new Date(fireTime));
+    return next != null && next.getTime() < end.getMillis() ? next.getTime() : null;
+  }
+}
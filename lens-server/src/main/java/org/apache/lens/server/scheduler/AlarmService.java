@@ -69,12 +69,12 @@ public class AlarmService extends AbstractService implements LensService {
   /**
    * True if the service started properly and is running fine, false otherwise.
    */
-  private boolean isHealthy = true;
+  protected boolean isHealthy = true;
 
   /**
    * Contains the reason if service is not healthy.
    */
-  private String healthCause;
+  protected String healthCause;
 
   /**
    * Creates a new instance of AlarmService.
@@ -93,6 +93,15 @@ public class AlarmService extends AbstractService implements LensService {
 
   public synchronized void init(HiveConf hiveConf) {
     super.init(hiveConf);
+    initAlarmEngine(hiveConf);
+  }
+
+  /**
+   * Initializes the engine which generates the alarms. By default this is a Quartz scheduler.
+   *
+   * @param hiveConf server configuration
+   */
+  protected void initAlarmEngine(HiveConf hiveConf) {
     try {
       this.scheduler = StdSchedulerFactory.getDefaultScheduler();
     } catch (SchedulerException e) {
@@ -18,13 +18,16 @@
  */
 package org.apache.lens.server.scheduler;
 
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
-
-import javax.xml.bind.JAXBElement;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.text.ParseException;
+import java.util.*;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.lens.api.LensSessionHandle;
 import org.apache.lens.api.ToXMLString;
@@ -34,11 +37,17 @@ import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.util.UtilityMethods;
 
+import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 
+import org.joda.time.DateTime;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -55,10 +64,12 @@ public class SchedulerDAO {
       Class dbStoreClass = Class
         .forName(conf.get(LensConfConstants.SCHEDULER_STORE_CLASS, SchedulerHsqlDBStore.class.getName()));
       this.store = (SchedulerDBStore) dbStoreClass.newInstance();
-      this.store.init(UtilityMethods.getDataSourceFromConfForScheduler(conf));
+      this.store.init(UtilityMethods.getDataSourceFromConfForScheduler(conf), conf);
       this.store.createJobTable();
       this.store.createJobInstanceTable();
       this.store.createJobInstanceRunTable();
+      this.store.createAlarmTable();
+      this.store.createIndexes();
     } catch (SQLException e) {
       // If tables are not created, the DAO operations will fail at runtime.
       // The APIs will fail with Internal Server Error.
@@ -228,6 +239,24 @@ public class SchedulerDAO {
     }
   }
 
+  /**
+   * Updates the given instance runs in a single batch.
+   *
+   * @param instanceRuns : instance Run objects
+   * @return number of rows updated.
+   */
+  public int updateJobInstanceRuns(List<SchedulerJobInstanceRun> instanceRuns) {
+    if (instanceRuns.isEmpty()) {
+      return 0;
+    }
+    try {
+      return sum(store.updateJobInstanceRuns(instanceRuns));
+    } catch (SQLException e) {
+      log.error("Error while updating {} job instance runs", instanceRuns.size(), e);
+      return 0;
+    }
+  }
+
   /**
    * Gets all the instance handle id for a job.
    *
@@ -235,7 +264,6 @@ public class SchedulerDAO {
    * @return List of instance handles.
    */
   public List<SchedulerJobInstanceInfo> getJobInstances(SchedulerJobHandle id) {
-    // TODO: Add number of results to be fetched
     try {
       return store.getAllJobInstances(id.getHandleIdString());
     } catch (SQLException e) {
@@ -244,6 +272,23 @@ public class SchedulerDAO {
     }
   }
 
+  /**
+   * Gets a page of the instances of a job, latest scheduled instance first.
+   *
+   * @param id     Job handle id.
+   * @param offset number of instances to skip
+   * @param limit  maximum number of instances to return
+   * @return List of instances along with their runs.
+   */
+  public List<SchedulerJobInstanceInfo> getJobInstances(SchedulerJobHandle id, long offset, long limit) {
+    try {
+      return store.getJobInstances(id.getHandleIdString(), offset, limit);
+    } catch (SQLException e) {
+      log.error("Error while getting instances of a job with id {}", id.getHandleIdString(), e);
+      return new ArrayList<>();
+    }
+  }
+
   /**
    * Gets all jobs which match the filter requirements.
    *
@@ -293,6 +338,94 @@ public class SchedulerDAO {
     }
   }
 
+  /**
+   * Stores the schedule of an alarm along with its next fire time.
+   *
+   * @param schedule alarm schedule
+   * @return the number of records stored
+   */
+  public int storeAlarm(AlarmSchedule schedule) {
+    try {
+      return store.insertIntoAlarmTable(schedule);
+    } catch (SQLException e) {
+      log.error("Error while storing the alarm for {}", schedule.getJobHandle(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Updates the next fire time and the paused state of an alarm.
+   *
+   * @param schedule alarm schedule
+   * @return number of rows updated.
+   */
+  public int updateAlarm(AlarmSchedule schedule) {
+    try {
+      return store.updateAlarms(Collections.singletonList(schedule))[0];
+    } catch (SQLException e) {
+      log.error("Error while updating the alarm for {}", schedule.getJobHandle(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Updates the next fire time and the paused state of many alarms in a single batch.
+   *
+   * @param schedules alarm schedules
+   * @return number of rows updated.
+   */
+  public int updateAlarms(List<AlarmSchedule> schedules) {
+    if (schedules.isEmpty()) {
+      return 0;
+    }
+    try {
+      return sum(store.updateAlarms(schedules));
+    } catch (SQLException e) {
+      log.error("Error while updating {} alarms", schedules.size(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Deletes the alarms of the given job handles in a single batch.
+   *
+   * @param jobHandles job handle ids
+   * @return number of rows deleted.
+   */
+  public int deleteAlarms(List<String> jobHandles) {
+    if (jobHandles.isEmpty()) {
+      return 0;
+    }
+    try {
+      return sum(store.deleteAlarms(jobHandles));
+    } catch (SQLException e) {
+      log.error("Error while deleting {} alarms", jobHandles.size(), e);
+      return 0;
+    }
+  }
+
+  /**
+   * Gets all the stored alarms.
+   *
+   * @return list of alarm schedules
+   */
+  public List<AlarmSchedule> getAlarms() {
+    try {
+      return store.getAlarms();
+    } catch (SQLException e) {
+      log.error("Error while getting alarms ", e);
+      return new ArrayList<>();
+    }
+  }
+
+  private static int sum(int[] counts) {
+    int total = 0;
+    for (int count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
   public abstract static class SchedulerDBStore {
     protected static final String JOB_TABLE = "job_table";
     protected static final String JOB_INSTANCE_TABLE = "job_instance_table";
@@ -312,8 +445,22 @@ public class SchedulerDAO {
     protected static final String COLUMN_RESULT_PATH = "resultpath";
     protected static final String COLUMN_QUERY_HANDLE = "queryhandle";
     protected static final String COLUMN_JOB_NAME = "jobname";
+    protected static final String ALARM_TABLE = "alarm_table";
+    protected static final String COLUMN_FREQUENCY = "frequency";
+    protected static final String COLUMN_NEXT_FIRE_TIME = "nextfiretime";
+    protected static final String ALARM_ACTIVE = "ACTIVE";
+    protected static final String ALARM_PAUSED = "PAUSED";
+    protected static final String COMPRESSED_JOB_PREFIX = "deflate:";
+    private static final String UPDATE_INSTANCE_RUN_SQL =
+      "UPDATE " + JOB_INSTANCE_RUN_TABLE + " SET " + COLUMN_END_TIME + "=?, " + COLUMN_RESULT_PATH + "=?, "
+        + COLUMN_QUERY_HANDLE + "=?, " + COLUMN_STATUS + "=?" + " WHERE " + COLUMN_ID + "=? AND " + COLUMN_RUN_ID
+        + "=?";
     protected QueryRunner runner;
     protected ObjectFactory jobFactory = new ObjectFactory();
+    protected boolean compressJobs = LensConfConstants.DEFAULT_SCHEDULER_STORE_JOB_COMPRESSION_ENABLED;
+    // Parsed job definitions keyed by their stored form, so a job is unmarshalled only once per definition.
+    protected Cache<String, XJob> parsedJobs = CacheBuilder.newBuilder()
+      .maximumSize(LensConfConstants.DEFAULT_SCHEDULER_STORE_JOB_CACHE_SIZE).build();
     // Generic multiple row handler for the fetch query.
     private ResultSetHandler<List<Object[]>> multipleRowsHandler = new ResultSetHandler<List<Object[]>>() {
       @Override
@@ -341,6 +488,106 @@ public class SchedulerDAO {
       runner = new QueryRunner(ds);
     }
 
+    /**
+     * Init the store along with the encoding and caching of job definitions.
+     *
+     * @param ds
+     * @param conf
+     */
+    public void init(BasicDataSource ds, Configuration conf) {
+      init(ds);
+      compressJobs = conf.getBoolean(LensConfConstants.SCHEDULER_STORE_JOB_COMPRESSION_ENABLED,
+        LensConfConstants.DEFAULT_SCHEDULER_STORE_JOB_COMPRESSION_ENABLED);
+      parsedJobs = CacheBuilder.newBuilder().maximumSize(conf.getInt(LensConfConstants.SCHEDULER_STORE_JOB_CACHE_SIZE,
+        LensConfConstants.DEFAULT_SCHEDULER_STORE_JOB_CACHE_SIZE)).build();
+    }
+
+    /**
+     * Encodes the job definition for storage. The definition is stored either as its xml or, if compression is
+     * enabled, as the base64 encoded deflated xml prefixed with {@link #COMPRESSED_JOB_PREFIX}.
+     *
+     * @param job
+     * @return the stored form of the job.
+     */
+    protected String encodeJob(XJob job) {
+      String xml = ToXMLString.toString(jobFactory.createJob(job));
+      if (!compressJobs) {
+        return xml;
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+        out.write(xml.getBytes(StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        // Can not happen while writing to memory
+        throw new IllegalStateException("Could not compress job definition", e);
+      }
+      return COMPRESSED_JOB_PREFIX + Base64.encodeBase64String(bytes.toByteArray());
+    }
+
+    /**
+     * Decodes a stored job definition. Both xml and compressed definitions are understood, so the compression can be
+     * switched on for an existing store. The returned object is shared with other readers of the same definition and
+     * should not be modified.
+     *
+     * @param stored stored form of the job
+     * @return the job definition
+     * @throws SQLException if the stored definition can not be decoded
+     */
+    protected XJob decodeJob(String stored) throws SQLException {
+      XJob job = parsedJobs.getIfPresent(stored);
+      if (job == null) {
+        String xml = stored;
+        if (stored.startsWith(COMPRESSED_JOB_PREFIX)) {
+          byte[] compressed = Base64.decodeBase64(stored.substring(COMPRESSED_JOB_PREFIX.length()));
+          try (InputStream in = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            xml = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+          } catch (IOException e) {
+            throw new SQLException("Could not decompress job definition", e);
+          }
+        }
+        job = ToXMLString.valueOf(xml, ObjectFactory.class);
+        parsedJobs.put(stored, job);
+      }
+      return job;
+    }
+
+    /**
+     * Creates the indexes used by the lookups on job state, user, creation time, instance job and schedule time and
+     * instance run state, if they do not exist.
+     *
+     * @throws SQLException
+     */
+    public void createIndexes() throws SQLException {
+      createIndex("job_status_idx", JOB_TABLE, COLUMN_STATUS);
+      createIndex("job_user_idx", JOB_TABLE, COLUMN_USER);
+      createIndex("job_createdon_idx", JOB_TABLE, COLUMN_CREATED_ON);
+      createIndex("job_instance_job_idx", JOB_INSTANCE_TABLE, COLUMN_JOB_ID + ", " + COLUMN_SCHEDULE_TIME);
+      createIndex("job_instance_run_status_idx", JOB_INSTANCE_RUN_TABLE, COLUMN_STATUS);
+    }
+
+    protected void createIndex(String indexName, String table, String columns) throws SQLException {
+      if (!indexExists(table, indexName)) {
+        runner.update("CREATE INDEX " + indexName + " ON " + table + "(" + columns + ")");
+      }
+    }
+
+    private boolean indexExists(String table, String indexName) throws SQLException {
+      try (Connection connection = runner.getDataSource().getConnection()) {
+        DatabaseMetaData metaData = connection.getMetaData();
+        // Some databases store the unquoted identifiers in upper case
+        for (String tableName : new String[] {table, table.toUpperCase()}) {
+          try (ResultSet indexes = metaData.getIndexInfo(null, null, tableName, false, true)) {
+            while (indexes.next()) {
+              if (indexName.equalsIgnoreCase(indexes.getString("INDEX_NAME"))) {
+                return true;
+              }
+            }
+          }
+        }
+      }
+      return false;
+    }
+
     /**
      * Creates the job table
      *
@@ -362,6 +609,13 @@ public class SchedulerDAO {
      */
     public abstract void createJobInstanceRunTable() throws SQLException;
 
+    /**
+     * Creates the alarm table
+     *
+     * @throws SQLException
+     */
+    public abstract void createAlarmTable() throws SQLException;
+
     /**
      * Inserts the Job info object into job table
      *
@@ -371,8 +625,7 @@ public class SchedulerDAO {
      */
     public int insertIntoJobTable(SchedulerJobInfo jobInfo) throws SQLException {
       String insertSQL = "INSERT INTO " + JOB_TABLE + " VALUES(?,?,?,?,?,?,?)";
-      JAXBElement<XJob> xmlJob = jobFactory.createJob(jobInfo.getJob());
-      return runner.update(insertSQL, jobInfo.getId().toString(), ToXMLString.toString(xmlJob), jobInfo.getUserName(),
+      return runner.update(insertSQL, jobInfo.getId().toString(), encodeJob(jobInfo.getJob()), jobInfo.getUserName(),
         jobInfo.getJobState().name(), jobInfo.getCreatedOn(), jobInfo.getModifiedOn(), jobInfo.getJob().getName());
     }
 
@@ -414,7 +667,7 @@ public class SchedulerDAO {
       } else {
         Object[] jobInfo = result.get(0);
         SchedulerJobHandle id = SchedulerJobHandle.fromString((String) jobInfo[0]);
-        XJob xJob = ToXMLString.valueOf((String) jobInfo[1], ObjectFactory.class);
+        XJob xJob = decodeJob((String) jobInfo[1]);
         String userName = (String) jobInfo[2];
         String status = (String) jobInfo[3];
         long createdOn = (Long) jobInfo[4];
@@ -437,7 +690,7 @@ public class SchedulerDAO {
       if (result.size() == 0) {
         return null;
       } else {
-        return ToXMLString.valueOf((String) result.get(0)[0], ObjectFactory.class);
+        return decodeJob((String) result.get(0)[0]);
       }
     }
 
@@ -531,8 +784,7 @@ public class SchedulerDAO {
       String updateSQL =
         "UPDATE " + JOB_TABLE + " SET " + COLUMN_JOB + "=?, " + COLUMN_MODIFIED_ON + "=? " + " WHERE " + COLUMN_ID
           + "=?";
-      JAXBElement<XJob> xmlJob = jobFactory.createJob(job);
-      return runner.update(updateSQL, ToXMLString.toString(xmlJob), modifiedOn, id);
+      return runner.update(updateSQL, encodeJob(job), modifiedOn, id);
     }
 
     /**
@@ -589,14 +841,28 @@ public class SchedulerDAO {
      * @throws SQLException
      */
     public int updateJobInstanceRun(SchedulerJobInstanceRun instanceRun) throws SQLException {
-      String updateSQL =
-        "UPDATE " + JOB_INSTANCE_RUN_TABLE + " SET " + COLUMN_END_TIME + "=?, " + COLUMN_RESULT_PATH + "=?, "
-          + COLUMN_QUERY_HANDLE + "=?, " + COLUMN_STATUS + "=?" + " WHERE " + COLUMN_ID + "=? AND " + COLUMN_RUN_ID
-          + "=?";
+      return runner.update(UPDATE_INSTANCE_RUN_SQL, getInstanceRunUpdateParams(instanceRun));
+    }
 
-      return runner.update(updateSQL, instanceRun.getEndTime(), instanceRun.getResultPath(),
+    /**
+     * Updates the status of many job instance runs as a single batch.
+     *
+     * @param instanceRuns
+     * @return number of rows updated per run.
+     * @throws SQLException
+     */
+    public int[] updateJobInstanceRuns(List<SchedulerJobInstanceRun> instanceRuns) throws SQLException {
+      Object[][] params = new Object[instanceRuns.size()][];
+      for (int i = 0; i < params.length; i++) {
+        params[i] = getInstanceRunUpdateParams(instanceRuns.get(i));
+      }
+      return runner.batch(UPDATE_INSTANCE_RUN_SQL, params);
+    }
+
+    private Object[] getInstanceRunUpdateParams(SchedulerJobInstanceRun instanceRun) {
+      return new Object[] {instanceRun.getEndTime(), instanceRun.getResultPath(),
         instanceRun.getQueryHandle() == null ? "" : instanceRun.getQueryHandle().getHandleIdString(),
-        instanceRun.getInstanceState().name(), instanceRun.getHandle().getHandleIdString(), instanceRun.getRunId());
+        instanceRun.getInstanceState().name(), instanceRun.getHandle().getHandleIdString(), instanceRun.getRunId()};
     }
 
     /**
@@ -607,12 +873,57 @@ public class SchedulerDAO {
      * @throws SQLException
      */
     public List<SchedulerJobInstanceInfo> getAllJobInstances(String jobId) throws SQLException {
-      String fetchSQL = "SELECT * FROM " + JOB_INSTANCE_TABLE + " WHERE " + COLUMN_JOB_ID + "=?";
-      List<Object[]> result = runner.query(fetchSQL, multipleRowsHandler, jobId);
-      List<SchedulerJobInstanceInfo> resOut = new ArrayList<>();
-      for (int i = 0; i < result.size(); i++) {
-        Object[] row = result.get(i);
-        resOut.add(parseSchedulerInstance(row));
+      String fetchSQL = "SELECT * FROM " + JOB_INSTANCE_TABLE + " WHERE " + COLUMN_JOB_ID + "=? ORDER BY "
+        + COLUMN_SCHEDULE_TIME;
+      return parseSchedulerInstances(runner.query(fetchSQL, multipleRowsHandler, jobId));
+    }
+
+    /**
+     * Gets a page of the instances of a job, latest scheduled instance first.
+     *
+     * @param jobId
+     * @param offset number of instances to skip
+     * @param limit  maximum number of instances to return
+     * @return List of SchedulerJobInstanceInfo
+     * @throws SQLException
+     */
+    public List<SchedulerJobInstanceInfo> getJobInstances(String jobId, long offset, long limit)
+      throws SQLException {
+      String fetchSQL = "SELECT * FROM " + JOB_INSTANCE_TABLE + " WHERE " + COLUMN_JOB_ID + "=? ORDER BY "
+        + COLUMN_SCHEDULE_TIME + " DESC LIMIT ? OFFSET ?";
+      return parseSchedulerInstances(runner.query(fetchSQL, multipleRowsHandler, jobId, limit, offset));
+    }
+
+    /**
+     * Parses the instance rows and fetches the runs of all of them with a single query.
+     */
+    private List<SchedulerJobInstanceInfo> parseSchedulerInstances(List<Object[]> instanceRows) throws SQLException {
+      List<SchedulerJobInstanceInfo> resOut = new ArrayList<>(instanceRows.size());
+      if (instanceRows.isEmpty()) {
+        return resOut;
+      }
+      StringBuilder placeHolders = new StringBuilder();
+      Object[] ids = new Object[instanceRows.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = instanceRows.get(i)[0];
+        placeHolders.append(i == 0 ? "?" : ",?");
+      }
+      String fetchSQL = "SELECT * FROM " + JOB_INSTANCE_RUN_TABLE + " WHERE " + COLUMN_ID + " IN (" + placeHolders
+        + ") ORDER BY " + COLUMN_ID + ", " + COLUMN_RUN_ID;
+      Map<String, List<Object[]>> runsByInstance = new HashMap<>();
+      for (Object[] run : runner.query(fetchSQL, multipleRowsHandler, ids)) {
+        List<Object[]> runs = runsByInstance.get(run[0]);
+        if (runs == null) {
+          runs = new ArrayList<>();
+          runsByInstance.put((String) run[0], runs);
+        }
+        runs.add(run);
+      }
+      for (Object[] instanceInfo : instanceRows) {
+        List<Object[]> runs = runsByInstance.get(instanceInfo[0]);
+        resOut.add(new SchedulerJobInstanceInfo(SchedulerJobInstanceHandle.fromString((String) instanceInfo[0]),
+          SchedulerJobHandle.fromString((String) instanceInfo[1]), (Long) instanceInfo[2],
+          processInstanceRun(runs == null ? Collections.<Object[]>emptyList() : runs)));
       }
       return resOut;
     }
@@ -666,6 +977,81 @@ public class SchedulerDAO {
       List<Object[]> instanceRuns = runner.query(fetchSQL, multipleRowsHandler);
       return processInstanceRun(instanceRuns);
     }
+
+    /**
+     * Inserts the alarm schedule into alarm table
+     *
+     * @param schedule
+     * @return number of rows inserted.
+     * @throws SQLException
+     */
+    public int insertIntoAlarmTable(AlarmSchedule schedule) throws SQLException {
+      String insertSQL = "INSERT INTO " + ALARM_TABLE + " VALUES(?,?,?,?,?,?)";
+      return runner.update(insertSQL, schedule.getJobHandle(), schedule.getStart().getMillis(),
+        schedule.getEnd().getMillis(), schedule.getFrequencyString(), schedule.getNextFireTime(),
+        schedule.isPaused() ? ALARM_PAUSED : ALARM_ACTIVE);
+    }
+
+    /**
+     * Updates the next fire time and the status of the alarms as a single batch.
+     *
+     * @param schedules
+     * @return number of rows updated per alarm.
+     * @throws SQLException
+     */
+    public int[] updateAlarms(List<AlarmSchedule> schedules) throws SQLException {
+      String updateSQL =
+        "UPDATE " + ALARM_TABLE + " SET " + COLUMN_NEXT_FIRE_TIME + "=?, " + COLUMN_STATUS + "=?" + " WHERE "
+          + COLUMN_ID + "=?";
+      Object[][] params = new Object[schedules.size()][];
+      for (int i = 0; i < params.length; i++) {
+        AlarmSchedule schedule = schedules.get(i);
+        params[i] = new Object[] {schedule.getNextFireTime(), schedule.isPaused() ? ALARM_PAUSED : ALARM_ACTIVE,
+          schedule.getJobHandle()};
+      }
+      return runner.batch(updateSQL, params);
+    }
+
+    /**
+     * Deletes the alarms as a single batch.
+     *
+     * @param ids job handle ids
+     * @return number of rows deleted per alarm.
+     * @throws SQLException
+     */
+    public int[] deleteAlarms(List<String> ids) throws SQLException {
+      String deleteSQL = "DELETE FROM " + ALARM_TABLE + " WHERE " + COLUMN_ID + "=?";
+      Object[][] params = new Object[ids.size()][];
+      for (int i = 0; i < params.length; i++) {
+        params[i] = new Object[] {ids.get(i)};
+      }
+      return runner.batch(deleteSQL, params);
+    }
+
+    /**
+     * Gets all the alarms.
+     *
+     * @return list of alarm schedules.
+     * @throws SQLException
+     */
+    public List<AlarmSchedule> getAlarms() throws SQLException {
+      String fetchSQL = "SELECT * FROM " + ALARM_TABLE;
+      List<Object[]> result = runner.query(fetchSQL, multipleRowsHandler);
+      List<AlarmSchedule> resOut = new ArrayList<>();
+      for (Object[] row : result) {
+        String id = (String) row[0];
+        try {
+          AlarmSchedule schedule = AlarmSchedule
+            .fromFrequencyString(id, new DateTime(row[1]), new DateTime(row[2]), (String) row[3]);
+          schedule.setNextFireTime((Long) row[4]);
+          schedule.setPaused(ALARM_PAUSED.equals(row[5]));
+          resOut.add(schedule);
+        } catch (ParseException e) {
+          log.error("Ignoring the alarm for {} with invalid frequency {}", id, row[3], e);
+        }
+      }
+      return resOut;
+    }
   }
 
   /**
@@ -710,6 +1096,18 @@ public class SchedulerDAO {
           + ")" + ")";
       runner.update(createSQL);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createAlarmTable() throws SQLException {
+      String createSQL =
+        "CREATE TABLE IF NOT EXISTS " + ALARM_TABLE + "( " + COLUMN_ID + " VARCHAR(255) NOT NULL, " + COLUMN_START_TIME
+          + " BIGINT, " + COLUMN_END_TIME + " BIGINT, " + COLUMN_FREQUENCY + " VARCHAR(255), " + COLUMN_NEXT_FIRE_TIME
+          + " BIGINT, " + COLUMN_STATUS + " VARCHAR(20), " + " PRIMARY KEY ( " + COLUMN_ID + ")" + ")";
+      runner.update(createSQL);
+    }
   }
 
   /**
@@ -754,5 +1152,17 @@ public class SchedulerDAO {
           + " )" + ")";
       runner.update(createSQL);
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void createAlarmTable() throws SQLException {
+      String createSQL =
+        "CREATE TABLE IF NOT EXISTS " + ALARM_TABLE + "( " + COLUMN_ID + " VARCHAR(255) NOT NULL, " + COLUMN_START_TIME
+          + " BIGINT, " + COLUMN_END_TIME + " BIGINT, " + COLUMN_FREQUENCY + " VARCHAR(255), " + COLUMN_NEXT_FIRE_TIME
+          + " BIGINT, " + COLUMN_STATUS + " VARCHAR(20), " + " PRIMARY KEY ( " + COLUMN_ID + ")" + ")";
+      runner.update(createSQL);
+    }
   }
 }
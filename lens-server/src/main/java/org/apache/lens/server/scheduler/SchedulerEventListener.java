@@ -25,6 +25,7 @@ import org.apache.lens.api.LensConf;
 import org.apache.lens.api.LensSessionHandle;
 import org.apache.lens.api.error.InvalidStateTransitionException;
 import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
 import org.apache.lens.api.scheduler.*;
 import org.apache.lens.cube.error.LensCubeErrorCode;
 import org.apache.lens.server.LensServices;
@@ -57,9 +58,11 @@ public class SchedulerEventListener extends AsyncEventListener<SchedulerAlarmEve
   private SchedulerService schedulerService;
   private SessionService sessionService;
   private CubeMetastoreService cubeMetastoreService;
+  private SchedulerQueryDeduplicator deduplicator;
 
-  public SchedulerEventListener(SchedulerDAO schedulerDAO) {
+  public SchedulerEventListener(SchedulerDAO schedulerDAO, SchedulerQueryDeduplicator deduplicator) {
     super(CORE_POOL_SIZE);
+    this.deduplicator = deduplicator;
     this.queryService = LensServices.get().getService(QueryExecutionService.NAME);
     this.schedulerService = LensServices.get().getService(SchedulerService.NAME);
     this.sessionService = LensServices.get().getService(SessionService.NAME);
@@ -116,6 +119,7 @@ public class SchedulerEventListener extends AsyncEventListener<SchedulerAlarmEve
     SchedulerJobInstanceInfo instance = null;
     SchedulerJobInstanceRun run = null;
     LensSessionHandle sessionHandle = null;
+    SchedulerQueryDeduplicator.SharedExecution shared = null;
 
     try {
       sessionHandle = schedulerService.openSessionAsUser(user);
@@ -181,7 +185,21 @@ public class SchedulerEventListener extends AsyncEventListener<SchedulerAlarmEve
         }
       }
 
+      if (deduplicator.isEnabled()) {
+        // Reruns are explicit requests to run the query again, they never reuse a finished execution.
+        shared = deduplicator.join(SchedulerQueryDeduplicator.fingerprint(user, job.getExecution(),
+          scheduledTimeMillis), instanceHandle, event.getPreviousInstance() == null);
+        if (!shared.isLedBy(instanceHandle)) {
+          deduplicator.attach(shared, run);
+          log.info("Instance {} of job {} with run {} shares the execution of instance {}", instanceHandle,
+            jobHandle, run.getRunId(), shared.getLeader());
+          return;
+        }
+      }
       QueryHandle handle = queryService.executeAsync(sessionHandle, query, queryConf, queryName);
+      if (shared != null) {
+        deduplicator.launched(shared, handle);
+      }
       log.info("Running instance {} of job {} with run {} with query handle {}", instanceHandle, jobHandle,
         run.getRunId(), handle);
       run.setQueryHandle(handle);
@@ -194,6 +212,10 @@ public class SchedulerEventListener extends AsyncEventListener<SchedulerAlarmEve
       log.error(
         "Exception occurred while launching the job instance for " + jobHandle + " for nominal time " + scheduledTime
           .getMillis(), e);
+      if (shared != null && shared.isLedBy(instanceHandle)) {
+        // Instances waiting on this launch fail along with it.
+        deduplicator.complete(shared, QueryStatus.Status.FAILED, null);
+      }
       try {
         run.setInstanceState(run.getInstanceState().nextTransition(SchedulerJobInstanceEvent.ON_FAILURE));
         run.setEndTime(System.currentTimeMillis());
@@ -0,0 +1,365 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lens.api.error.InvalidStateTransitionException;
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.api.scheduler.*;
+import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.metrics.MetricsService;
+
+import org.apache.hadoop.conf.Configuration;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shares a single query execution between scheduled job instances which would otherwise run the same query.
+ * <p>
+ * Two instances are identical if they run the same query with the same session and query configuration, as the same
+ * user and for the same nominal time. Query rewriting is deterministic for these inputs, so identical instances
+ * always produce the same rewritten query. The first instance to launch becomes the leader and submits the query,
+ * the other instances attach to the leader's execution as followers and receive its final state and result path
+ * once it ends. Results of successful executions are additionally reused for a configurable time by identical
+ * instances which launch after the execution ended.
+ * <p>
+ * Sharing state is kept in memory, so followers of an execution which is running while the server restarts are
+ * not updated when it ends.
+ */
+@Slf4j
+public class SchedulerQueryDeduplicator {
+
+  /**
+   * Counter for the number of query executions saved by sharing them.
+   */
+  public static final String DEDUPLICATED_EXECUTIONS_COUNTER = "scheduler-deduplicated-executions";
+
+  private final SchedulerDAO schedulerDAO;
+  @Getter
+  private final boolean enabled;
+  private final Cache<String, SharedExecution> finished;
+  private final Map<String, SharedExecution> running = new HashMap<>();
+  private final Map<SchedulerJobInstanceHandle, SharedExecution> byInstance = new HashMap<>();
+  private final AtomicLong savedExecutions = new AtomicLong();
+  private MetricsService metricsService;
+
+  public SchedulerQueryDeduplicator(SchedulerDAO schedulerDAO, Configuration conf) {
+    this.schedulerDAO = schedulerDAO;
+    this.enabled = conf.getBoolean(LensConfConstants.SCHEDULER_QUERY_DEDUP_ENABLED,
+      LensConfConstants.DEFAULT_SCHEDULER_QUERY_DEDUP_ENABLED);
+    long reuseMillis = conf.getLong(LensConfConstants.SCHEDULER_QUERY_DEDUP_RESULT_REUSE_MILLIS,
+      LensConfConstants.DEFAULT_SCHEDULER_QUERY_DEDUP_RESULT_REUSE_MILLIS);
+    this.finished = reuseMillis > 0
+                    ? CacheBuilder.newBuilder().expireAfterWrite(reuseMillis, TimeUnit.MILLISECONDS)
+                      .<String, SharedExecution>build()
+                    : null;
+  }
+
+  /**
+   * @return number of query executions saved so far by sharing executions between identical instances.
+   */
+  public long getSavedExecutions() {
+    return savedExecutions.get();
+  }
+
+  /**
+   * Computes the key which identifies identical instances.
+   *
+   * @param user        user as whom the query runs
+   * @param execution   execution details of the job
+   * @param nominalTime nominal time of the instance
+   * @return the fingerprint
+   */
+  public static String fingerprint(String user, XExecution execution, long nominalTime) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    put(hasher, user);
+    put(hasher, execution.getQuery().getQuery());
+    putConf(hasher, execution.getQuery().getConf());
+    XSessionType session = execution.getSession();
+    put(hasher, session.getDb());
+    putConf(hasher, session.getConf());
+    List<String> resources = new ArrayList<>();
+    for (ResourcePath path : session.getResourcePath()) {
+      resources.add(path.getType() + ":" + path.getPath());
+    }
+    Collections.sort(resources);
+    for (String resource : resources) {
+      put(hasher, resource);
+    }
+    hasher.putLong(nominalTime);
+    return hasher.hash().toString();
+  }
+
+  private static void putConf(Hasher hasher, List<MapType> conf) {
+    // Configuration is order insensitive.
+    SortedMap<String, String> sorted = new TreeMap<>();
+    for (MapType element : conf) {
+      sorted.put(element.getKey(), element.getValue());
+    }
+    hasher.putInt(sorted.size());
+    for (Map.Entry<String, String> entry : sorted.entrySet()) {
+      put(hasher, entry.getKey());
+      put(hasher, entry.getValue());
+    }
+  }
+
+  private static void put(Hasher hasher, String value) {
+    if (value == null) {
+      hasher.putInt(-1);
+    } else {
+      hasher.putInt(value.length());
+      hasher.putString(value, Charsets.UTF_8);
+    }
+  }
+
+  /**
+   * Joins the execution for the given fingerprint. If there is no running execution for it, the instance becomes
+   * the leader of a new execution and is expected to launch the query and call {@link #launched} or
+   * {@link #complete}.
+   *
+   * @param key            fingerprint of the instance, see {@link #fingerprint}
+   * @param instance       the instance
+   * @param reuseFinished  whether a successful execution which already ended can be reused
+   * @return the shared execution, null if deduplication is disabled.
+   */
+  public synchronized SharedExecution join(String key, SchedulerJobInstanceHandle instance, boolean reuseFinished) {
+    if (!enabled) {
+      return null;
+    }
+    SharedExecution shared = running.get(key);
+    if (shared == null && reuseFinished && finished != null) {
+      shared = finished.getIfPresent(key);
+    }
+    if (shared == null) {
+      shared = new SharedExecution(key, instance);
+      running.put(key, shared);
+      byInstance.put(instance, shared);
+      return shared;
+    }
+    if (shared.status == null) {
+      shared.followers.add(instance);
+      byInstance.put(instance, shared);
+    }
+    long saved = savedExecutions.incrementAndGet();
+    MetricsService metrics = getMetrics();
+    if (metrics != null) {
+      metrics.incrCounter(SchedulerQueryDeduplicator.class, DEDUPLICATED_EXECUTIONS_COUNTER);
+    }
+    log.info("Instance {} shares the execution of instance {}, {} executions saved so far", instance,
+      shared.leader, saved);
+    return shared;
+  }
+
+  /**
+   * Records the query handle of the leader's execution, and sets it on the running runs of the followers which
+   * attached before the query got launched.
+   */
+  public void launched(SharedExecution shared, QueryHandle queryHandle) {
+    List<SchedulerJobInstanceHandle> followers;
+    synchronized (this) {
+      followers = new ArrayList<>(shared.followers);
+    }
+    // Followers attaching after this see the handle, as attach() holds the same lock.
+    synchronized (shared) {
+      shared.queryHandle = queryHandle;
+      for (SchedulerJobInstanceHandle follower : followers) {
+        SchedulerJobInstanceRun latestRun = getRunningRun(follower);
+        if (latestRun == null || latestRun.getQueryHandle() != null) {
+          continue;
+        }
+        latestRun.setQueryHandle(queryHandle);
+        if (schedulerDAO.updateJobInstanceRun(latestRun) != 1) {
+          log.error("Failed to set the query handle of instance run {} of instance {} sharing the execution of {}",
+            latestRun.getRunId(), follower, shared.leader);
+        }
+      }
+    }
+  }
+
+  /**
+   * Moves the latest run of a follower to running, or directly to the final state if the shared execution has
+   * already ended, and persists it.
+   *
+   * @param shared shared execution returned by {@link #join}
+   * @param run    latest run of the follower
+   * @throws InvalidStateTransitionException if the run can not be moved to running
+   */
+  public void attach(SharedExecution shared, SchedulerJobInstanceRun run) throws InvalidStateTransitionException {
+    // Holding the lock of the execution orders this update with the one done by complete().
+    synchronized (shared) {
+      run.setQueryHandle(shared.queryHandle);
+      run.setInstanceState(run.getInstanceState().nextTransition(SchedulerJobInstanceEvent.ON_RUN));
+      if (shared.status != null) {
+        run.setInstanceState(run.getInstanceState().nextTransition(getEvent(shared.status)));
+        run.setResultPath(shared.resultPath);
+      }
+      run.setEndTime(System.currentTimeMillis());
+      schedulerDAO.updateJobInstanceRun(run);
+    }
+  }
+
+  /**
+   * @param leader instance which launched the query
+   * @return the running execution led by the instance, null if there is none.
+   */
+  public synchronized SharedExecution getLedBy(SchedulerJobInstanceHandle leader) {
+    SharedExecution shared = byInstance.get(leader);
+    return shared != null && shared.leader.equals(leader) ? shared : null;
+  }
+
+  /**
+   * Detaches an instance which is being killed from its shared execution, so that killing it does not affect the
+   * other instances. A leader without followers is not detached and should cancel its query, but new instances
+   * can not join its execution anymore.
+   *
+   * @param instance the instance
+   * @return true if the instance got detached and its run should be marked killed without cancelling the query.
+   */
+  public synchronized boolean detach(SchedulerJobInstanceHandle instance) {
+    SharedExecution shared = byInstance.get(instance);
+    if (shared == null || shared.status != null) {
+      return false;
+    }
+    if (!shared.leader.equals(instance)) {
+      shared.followers.remove(instance);
+      byInstance.remove(instance);
+      return true;
+    }
+    if (shared.followers.isEmpty()) {
+      running.remove(shared.key, shared);
+      return false;
+    }
+    shared.leaderDetached = true;
+    return true;
+  }
+
+  /**
+   * Marks the shared execution as ended and moves the latest runs of all its followers to the final state.
+   *
+   * @param shared     the execution
+   * @param status     final status of the query
+   * @param resultPath result path of the query
+   */
+  public void complete(SharedExecution shared, QueryStatus.Status status, String resultPath) {
+    List<SchedulerJobInstanceHandle> followers;
+    synchronized (this) {
+      if (shared.status != null) {
+        return;
+      }
+      shared.status = status;
+      shared.resultPath = resultPath;
+      running.remove(shared.key, shared);
+      byInstance.remove(shared.leader);
+      byInstance.keySet().removeAll(shared.followers);
+      followers = new ArrayList<>(shared.followers);
+      if (status == QueryStatus.Status.SUCCESSFUL && finished != null) {
+        finished.put(shared.key, shared);
+      }
+    }
+    synchronized (shared) {
+      for (SchedulerJobInstanceHandle follower : followers) {
+        SchedulerJobInstanceRun latestRun = getRunningRun(follower);
+        if (latestRun == null) {
+          continue;
+        }
+        try {
+          latestRun.setInstanceState(latestRun.getInstanceState().nextTransition(getEvent(status)));
+          latestRun.setQueryHandle(shared.queryHandle);
+          latestRun.setResultPath(resultPath);
+          latestRun.setEndTime(System.currentTimeMillis());
+          if (schedulerDAO.updateJobInstanceRun(latestRun) != 1) {
+            log.error("Failed to update instance run {} of instance {} sharing the execution of {}",
+              latestRun.getRunId(), follower, shared.leader);
+          }
+        } catch (InvalidStateTransitionException e) {
+          log.error("Instance Transition Failed for " + follower, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the latest run of the follower if it is running, null otherwise. A follower still launching has not
+   * attached yet, and sees the state of the execution when it does.
+   */
+  private SchedulerJobInstanceRun getRunningRun(SchedulerJobInstanceHandle follower) {
+    SchedulerJobInstanceInfo info = schedulerDAO.getSchedulerJobInstanceInfo(follower);
+    List<SchedulerJobInstanceRun> runList = info == null ? null : info.getInstanceRunList();
+    if (runList == null || runList.isEmpty()) {
+      return null;
+    }
+    SchedulerJobInstanceRun latestRun = runList.get(runList.size() - 1);
+    return latestRun.getInstanceState() == SchedulerJobInstanceState.RUNNING ? latestRun : null;
+  }
+
+  private static SchedulerJobInstanceEvent getEvent(QueryStatus.Status status) {
+    switch (status) {
+    case SUCCESSFUL:
+      return SchedulerJobInstanceEvent.ON_SUCCESS;
+    case CANCELED:
+      return SchedulerJobInstanceEvent.ON_KILL;
+    default:
+      return SchedulerJobInstanceEvent.ON_FAILURE;
+    }
+  }
+
+  private MetricsService getMetrics() {
+    if (metricsService == null) {
+      metricsService = LensServices.get().getService(MetricsService.NAME);
+    }
+    return metricsService;
+  }
+
+  /**
+   * A query execution shared by identical instances.
+   */
+  public static final class SharedExecution {
+    private final String key;
+    @Getter
+    private final SchedulerJobInstanceHandle leader;
+    private final Set<SchedulerJobInstanceHandle> followers = new LinkedHashSet<>();
+    private QueryHandle queryHandle;
+    private volatile QueryStatus.Status status;
+    private volatile String resultPath;
+    @Getter
+    private volatile boolean leaderDetached;
+
+    private SharedExecution(String key, SchedulerJobInstanceHandle leader) {
+      this.key = key;
+      this.leader = leader;
+    }
+
+    /**
+     * @return true if the instance launches the query of this execution.
+     */
+    public boolean isLedBy(SchedulerJobInstanceHandle instance) {
+      return leader.equals(instance);
+    }
+  }
+}
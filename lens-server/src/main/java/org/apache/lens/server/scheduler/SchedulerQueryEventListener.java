@@ -34,10 +34,12 @@ public class SchedulerQueryEventListener extends AsyncEventListener<QueryEnded>
   private static final String JOB_INSTANCE_ID_KEY = "job_instance_key";
   private static final int CORE_POOL_SIZE = 10;
   private SchedulerDAO schedulerDAO;
+  private SchedulerQueryDeduplicator deduplicator;
 
-  public SchedulerQueryEventListener(SchedulerDAO schedulerDAO) {
+  public SchedulerQueryEventListener(SchedulerDAO schedulerDAO, SchedulerQueryDeduplicator deduplicator) {
     super(CORE_POOL_SIZE);
     this.schedulerDAO = schedulerDAO;
+    this.deduplicator = deduplicator;
   }
 
   @Override
@@ -55,8 +57,17 @@ public class SchedulerQueryEventListener extends AsyncEventListener<QueryEnded>
       // Nothing to do
       return;
     }
-    SchedulerJobInstanceInfo info = schedulerDAO
-      .getSchedulerJobInstanceInfo(SchedulerJobInstanceHandle.fromString(instanceHandle));
+    SchedulerJobInstanceHandle handle = SchedulerJobInstanceHandle.fromString(instanceHandle);
+    SchedulerQueryDeduplicator.SharedExecution shared = deduplicator.getLedBy(handle);
+    if (shared != null) {
+      // Instances sharing the execution get the same state and result.
+      deduplicator.complete(shared, event.getCurrentValue(), queryContext.getResultSetPath());
+      if (shared.isLeaderDetached()) {
+        // The launching instance was killed while others still needed the query, its run is already updated.
+        return;
+      }
+    }
+    SchedulerJobInstanceInfo info = schedulerDAO.getSchedulerJobInstanceInfo(handle);
     List<SchedulerJobInstanceRun> runList = info.getInstanceRunList();
     if (runList.size() == 0) {
       log.error("No instance run for {} with query {}", instanceHandle, queryContext.getQueryHandle());
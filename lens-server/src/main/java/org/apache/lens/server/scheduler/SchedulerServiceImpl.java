@@ -20,6 +20,7 @@ package org.apache.lens.server.scheduler;
 
 import static org.apache.lens.api.scheduler.SchedulerJobInstanceEvent.*;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -78,6 +79,9 @@ public class SchedulerServiceImpl extends BaseLensService implements SchedulerSe
   @VisibleForTesting
   protected SchedulerQueryEventListener schedulerQueryEventListener;
   @Getter
+  @VisibleForTesting
+  protected SchedulerQueryDeduplicator deduplicator;
+  @Getter
   private AlarmService alarmService;
   private Thread waitingInstanceThread;
   private long waitingThreadInterval = LensConfConstants.DEFAULT_SCHEDULED_INSTANCE_WAITING_THREAD_INTERVAL_MILLIS;
@@ -104,8 +108,9 @@ public class SchedulerServiceImpl extends BaseLensService implements SchedulerSe
         LensConfConstants.DEFAULT_SCHEDULED_INSTANCE_WAITING_THREAD_INTERVAL_MILLIS);
       alarmService = LensServices.get().getService(AlarmService.NAME);
       queryService = LensServices.get().getService(QueryExecutionService.NAME);
-      this.schedulerEventListener = new SchedulerEventListener(schedulerDAO);
-      this.schedulerQueryEventListener = new SchedulerQueryEventListener(schedulerDAO);
+      this.deduplicator = new SchedulerQueryDeduplicator(schedulerDAO, hiveConf);
+      this.schedulerEventListener = new SchedulerEventListener(schedulerDAO, deduplicator);
+      this.schedulerQueryEventListener = new SchedulerQueryEventListener(schedulerDAO, deduplicator);
       getEventService().addListenerForType(schedulerEventListener, SchedulerAlarmEvent.class);
       getEventService().addListenerForType(schedulerQueryEventListener, QueryEnded.class);
       this.waitingInstanceThread = new Thread(
@@ -490,7 +495,10 @@ public class SchedulerServiceImpl extends BaseLensService implements SchedulerSe
   @Override
   public List<SchedulerJobInstanceInfo> getJobInstances(SchedulerJobHandle jobHandle, Long numResults)
     throws LensException {
-    return schedulerDAO.getJobInstances(jobHandle);
+    if (numResults == null || numResults <= 0) {
+      return schedulerDAO.getJobInstances(jobHandle);
+    }
+    return schedulerDAO.getJobInstances(jobHandle, 0, numResults);
   }
 
   @Override
@@ -516,7 +524,12 @@ public class SchedulerServiceImpl extends BaseLensService implements SchedulerSe
         instanceInfo.getJobId().getHandleIdString());
     }
     QueryHandle handle = latestRun.getQueryHandle();
-    if (handle == null || handle.getHandleIdString().isEmpty()) {
+    if (deduplicator.detach(instanceHandle)) {
+      // Other instances share the query, so only this instance is marked killed.
+      log.info("Killing instance {} for job {} sharing query {} with other instances", instanceInfo.getId(),
+        instanceInfo.getJobId(), handle);
+      return updateInstanceRun(latestRun, state);
+    } else if (handle == null || handle.getHandleIdString().isEmpty()) {
       log.info("Killing instance {} for job {} ", instanceInfo.getId(), instanceInfo.getJobId());
       return updateInstanceRun(latestRun, state);
     } else {
@@ -585,20 +598,27 @@ public class SchedulerServiceImpl extends BaseLensService implements SchedulerSe
       while (!Thread.currentThread().isInterrupted()) {
         // Get all the instance runs which are waiting.
         List<SchedulerJobInstanceRun> instanceRuns = schedulerDAO.getInstanceRuns(SchedulerJobInstanceState.WAITING);
+        List<SchedulerJobInstanceRun> preparedRuns = new ArrayList<>(instanceRuns.size());
         for (SchedulerJobInstanceRun run : instanceRuns) {
-          SchedulerJobInstanceInfo instanceInfo = schedulerDAO.getSchedulerJobInstanceInfo(run.getHandle());
           try {
             run.setInstanceState(run.getInstanceState().nextTransition(ON_PREPARE));
             run.setEndTime(System.currentTimeMillis());
-            schedulerDAO.updateJobInstanceRun(run);
+            preparedRuns.add(run);
+          } catch (InvalidStateTransitionException e) {
+            log.error("Wrong state transition", e);
+          }
+        }
+        // Persist the state of all the runs together before notifying them.
+        schedulerDAO.updateJobInstanceRuns(preparedRuns);
+        for (SchedulerJobInstanceRun run : preparedRuns) {
+          SchedulerJobInstanceInfo instanceInfo = schedulerDAO.getSchedulerJobInstanceInfo(run.getHandle());
+          try {
             eventService.notifyEvent(
               new SchedulerAlarmEvent(instanceInfo.getJobId(), new DateTime(instanceInfo.getScheduleTime()),
                 SchedulerAlarmEvent.EventType.SCHEDULE, instanceInfo.getId()));
           } catch (LensException e) {
             log.error("Not able to notify schedule event for job {} and instanceId {}", instanceInfo.getJobId(),
               instanceInfo.getId());
-          } catch (InvalidStateTransitionException e) {
-            log.error("Wrong state transition", e);
           }
         }
       }
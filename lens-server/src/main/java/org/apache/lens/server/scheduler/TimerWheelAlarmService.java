@@ -0,0 +1,320 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lens.api.scheduler.SchedulerJobHandle;
+import org.apache.lens.api.scheduler.XFrequency;
+import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.events.LensEventService;
+import org.apache.lens.server.api.events.SchedulerAlarmEvent;
+import org.apache.lens.server.error.LensSchedulerErrorCode;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+
+import org.joda.time.DateTime;
+import org.quartz.JobExecutionContext;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An {@link AlarmService} which does not depend on the Quartz scheduler.
+ * <p>
+ * All the schedules are kept in a {@link TimingWheel} keyed by their next fire time, and the next fire times are
+ * persisted in the scheduler store through {@link SchedulerDAO}. A single timer thread drains the due schedules from
+ * the wheel, notifies the {@link SchedulerAlarmEvent}s and persists the new next fire times in batches of
+ * {@link LensConfConstants#ALARM_FIRE_BATCH_SIZE}.
+ * <p>
+ * On start, the stored schedules are loaded back into the wheel. Schedules whose next fire time passed while the
+ * server was down are due right away, so all the misfired nominal times get notified in bulk by the timer thread.
+ */
+@Slf4j
+public class TimerWheelAlarmService extends AlarmService {
+
+  private final ConcurrentMap<String, AlarmSchedule> schedules = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, TimingWheel.Entry<AlarmSchedule>> entries = new ConcurrentHashMap<>();
+  private SchedulerDAO schedulerDAO;
+  private TimingWheel<AlarmSchedule> timingWheel;
+  private long tickMillis;
+  private int wheelSize;
+  private int fireBatchSize;
+  private Thread timerThread;
+  private volatile boolean running;
+
+  @Override
+  protected void initAlarmEngine(HiveConf hiveConf) {
+    tickMillis = hiveConf.getLong(LensConfConstants.ALARM_TIMER_WHEEL_TICK_MILLIS,
+      LensConfConstants.DEFAULT_ALARM_TIMER_WHEEL_TICK_MILLIS);
+    wheelSize = hiveConf.getInt(LensConfConstants.ALARM_TIMER_WHEEL_SIZE,
+      LensConfConstants.DEFAULT_ALARM_TIMER_WHEEL_SIZE);
+    fireBatchSize = hiveConf.getInt(LensConfConstants.ALARM_FIRE_BATCH_SIZE,
+      LensConfConstants.DEFAULT_ALARM_FIRE_BATCH_SIZE);
+    timingWheel = new TimingWheel<>(tickMillis, wheelSize, System.currentTimeMillis());
+    try {
+      schedulerDAO = new SchedulerDAO(hiveConf);
+    } catch (LensException e) {
+      isHealthy = false;
+      healthCause = "Failed to initialize the scheduler store for AlarmService.";
+      log.error(healthCause, e);
+      throw new IllegalStateException("Could not initialize the Alarm Service", e);
+    }
+  }
+
+  @Override
+  public synchronized void start() {
+    long now = System.currentTimeMillis();
+    int misfired = 0;
+    for (AlarmSchedule schedule : schedulerDAO.getAlarms()) {
+      if (schedules.putIfAbsent(schedule.getJobHandle(), schedule) != null) {
+        // already scheduled after init
+        continue;
+      }
+      if (!schedule.isPaused() && schedule.getNextFireTime() != null) {
+        addToWheel(schedule);
+        if (schedule.getNextFireTime() <= now) {
+          misfired++;
+        }
+      }
+    }
+    log.info("Loaded {} alarms, {} of them have misfired and will be caught up", schedules.size(), misfired);
+    running = true;
+    timerThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runTimer();
+      }
+    }, "lens-alarm-timer");
+    timerThread.setDaemon(true);
+    timerThread.start();
+    log.info("Alarm service started successfully!");
+  }
+
+  @Override
+  public synchronized void stop() {
+    running = false;
+    if (timerThread != null) {
+      timerThread.interrupt();
+      try {
+        timerThread.join(tickMillis * 10);
+      } catch (InterruptedException e) {
+        log.warn("Interrupted while waiting for the alarm timer thread to stop", e);
+      }
+    }
+    log.info("Alarm Service stopped successfully.");
+  }
+
+  @Override
+  public List<JobExecutionContext> getCurrentlyExecutingJobs() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public void schedule(DateTime start, DateTime end, XFrequency frequency, String jobHandle) throws LensException {
+    AlarmSchedule schedule;
+    try {
+      schedule = new AlarmSchedule(jobHandle, start, end, frequency);
+    } catch (ParseException e) {
+      log.error("Invalid cron expression {} for jobHandle: {}", frequency.getCronExpression(), jobHandle);
+      throw new LensException(LensSchedulerErrorCode.FAILED_ALARM_SERVICE_OPERATION.getLensErrorInfo(), e, "schedule",
+        jobHandle);
+    }
+    schedule.setNextFireTime(schedule.getFirstFireTime());
+    if (schedule.getNextFireTime() == null) {
+      log.error("Schedule for jobHandle: {} will never fire", jobHandle);
+      throw new LensException(LensSchedulerErrorCode.FAILED_ALARM_SERVICE_OPERATION.getLensErrorInfo(), null,
+        "schedule", jobHandle);
+    }
+    if (schedules.putIfAbsent(jobHandle, schedule) != null) {
+      log.error("Job with jobHandle: {} is already scheduled", jobHandle);
+      throw new LensException(LensSchedulerErrorCode.FAILED_ALARM_SERVICE_OPERATION.getLensErrorInfo(), null,
+        "schedule", jobHandle);
+    }
+    if (schedulerDAO.storeAlarm(schedule) != 1) {
+      schedules.remove(jobHandle);
+      log.error("Error scheduling job with jobHandle: {}", jobHandle);
+      throw new LensException(LensSchedulerErrorCode.FAILED_ALARM_SERVICE_OPERATION.getLensErrorInfo(), null,
+        "schedule", jobHandle);
+    }
+    synchronized (schedule) {
+      addToWheel(schedule);
+    }
+  }
+
+  @Override
+  public boolean unSchedule(SchedulerJobHandle jobHandle) throws LensException {
+    String id = jobHandle.getHandleIdString();
+    AlarmSchedule schedule = schedules.remove(id);
+    if (schedule == null) {
+      return false;
+    }
+    synchronized (schedule) {
+      removeFromWheel(schedule);
+    }
+    if (schedulerDAO.deleteAlarms(Collections.singletonList(id)) != 1) {
+      log.error("Failed to remove alarm for job with jobHandle: {}", jobHandle);
+      throw new LensException(LensSchedulerErrorCode.FAILED_ALARM_SERVICE_OPERATION.getLensErrorInfo(), null,
+        "unschedule", id);
+    }
+    return true;
+  }
+
+  @Override
+  public boolean checkExists(SchedulerJobHandle handle) throws LensException {
+    return schedules.containsKey(handle.getHandleIdString());
+  }
+
+  @Override
+  public void pauseJob(SchedulerJobHandle jobHandle) throws LensException {
+    AlarmSchedule schedule = schedules.get(jobHandle.getHandleIdString());
+    if (schedule == null) {
+      return;
+    }
+    synchronized (schedule) {
+      schedule.setPaused(true);
+      removeFromWheel(schedule);
+      updateAlarm(schedule, "pause");
+    }
+  }
+
+  @Override
+  public void resumeJob(SchedulerJobHandle jobHandle) throws LensException {
+    AlarmSchedule schedule = schedules.get(jobHandle.getHandleIdString());
+    if (schedule == null) {
+      return;
+    }
+    synchronized (schedule) {
+      if (!schedule.isPaused()) {
+        return;
+      }
+      schedule.setPaused(false);
+      updateAlarm(schedule, "resume");
+      // fire times missed while the job was paused are fired right away, as done by the quartz based service.
+      addToWheel(schedule);
+    }
+  }
+
+  private void updateAlarm(AlarmSchedule schedule, String operation) throws LensException {
+    if (schedulerDAO.updateAlarm(schedule) != 1) {
+      log.error("Failed to {} alarm for job with jobHandle: {}", operation, schedule.getJobHandle());
+      throw new LensException(LensSchedulerErrorCode.FAILED_ALARM_SERVICE_OPERATION.getLensErrorInfo(), null,
+        operation, schedule.getJobHandle());
+    }
+  }
+
+  private void addToWheel(AlarmSchedule schedule) {
+    if (schedule.getNextFireTime() != null) {
+      entries.put(schedule.getJobHandle(), timingWheel.add(schedule, schedule.getNextFireTime()));
+    }
+  }
+
+  private void removeFromWheel(AlarmSchedule schedule) {
+    TimingWheel.Entry<AlarmSchedule> entry = entries.remove(schedule.getJobHandle());
+    if (entry != null) {
+      timingWheel.cancel(entry);
+    }
+  }
+
+  private void runTimer() {
+    while (running) {
+      try {
+        List<AlarmSchedule> due = timingWheel.advance(tickMillis);
+        for (int i = 0; i < due.size(); i += fireBatchSize) {
+          fire(due.subList(i, Math.min(due.size(), i + fireBatchSize)));
+        }
+      } catch (InterruptedException e) {
+        if (running) {
+          log.warn("Alarm timer thread interrupted", e);
+        }
+      } catch (RuntimeException e) {
+        log.error("Error while firing alarms", e);
+      }
+    }
+  }
+
+  /**
+   * Notifies all the nominal times of the due schedules which are not after the current time, and persists the next
+   * fire times of the batch together.
+   */
+  void fire(List<AlarmSchedule> batch) throws InterruptedException {
+    long now = System.currentTimeMillis();
+    List<SchedulerAlarmEvent> events = new ArrayList<>();
+    List<AlarmSchedule> updated = new ArrayList<>();
+    List<String> expired = new ArrayList<>();
+    for (AlarmSchedule schedule : batch) {
+      synchronized (schedule) {
+        // skip the schedules which got paused or unscheduled after they became due.
+        if (schedule.isPaused() || schedules.get(schedule.getJobHandle()) != schedule) {
+          continue;
+        }
+        entries.remove(schedule.getJobHandle());
+        SchedulerJobHandle jobHandle = SchedulerJobHandle.fromString(schedule.getJobHandle());
+        Long fireTime = schedule.getNextFireTime();
+        while (fireTime != null && fireTime <= now) {
+          DateTime nominalTime = new DateTime(fireTime);
+          events.add(new SchedulerAlarmEvent(jobHandle, nominalTime, SchedulerAlarmEvent.EventType.SCHEDULE, null));
+          fireTime = schedule.getFireTimeAfter(fireTime);
+          if (fireTime == null) {
+            events.add(new SchedulerAlarmEvent(jobHandle, nominalTime, SchedulerAlarmEvent.EventType.EXPIRE, null));
+          }
+        }
+        schedule.setNextFireTime(fireTime);
+        if (fireTime == null) {
+          schedules.remove(schedule.getJobHandle());
+          expired.add(schedule.getJobHandle());
+        } else {
+          updated.add(schedule);
+          addToWheel(schedule);
+        }
+      }
+    }
+    notifyEvents(events);
+    schedulerDAO.updateAlarms(updated);
+    schedulerDAO.deleteAlarms(expired);
+    log.debug("Fired {} alarm events for {} schedules", events.size(), batch.size());
+  }
+
+  private void notifyEvents(List<SchedulerAlarmEvent> events) throws InterruptedException {
+    if (events.isEmpty()) {
+      return;
+    }
+    LensEventService eventService = LensServices.get().getService(LensEventService.NAME);
+    for (SchedulerAlarmEvent event : events) {
+      try {
+        if (isShouldWaitForScheduleEventProcessing()) {
+          eventService.notifyEventSync(event);
+        } else {
+          eventService.notifyEvent(event);
+        }
+      } catch (LensException e) {
+        log.error("Failed to notify SchedulerAlarmEvent for jobHandle: {} and scheduleTime: {}",
+          event.getJobHandle().getHandleIdString(), event.getNominalTime().toString(), e);
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException("Interrupted while notifying alarm events");
+      }
+    }
+  }
+}
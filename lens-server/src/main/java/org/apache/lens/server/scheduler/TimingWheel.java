@@ -0,0 +1,292 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import java.util.*;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Getter;
+
+/**
+ * A hierarchical timing wheel.
+ * <p>
+ * The lowest level has <code>wheelSize</code> buckets of <code>tickMs</code> each. Entries which expire beyond the
+ * range of a level are pushed to an overflow level whose tick is the full interval of the level below it, so adding
+ * and cancelling an entry are O(1) irrespective of how far in the future it expires. Only non empty buckets are
+ * tracked in a {@link DelayQueue}, so the thread driving the wheel wakes up once per expiring bucket instead of once
+ * per tick or once per entry. Entries are never returned before their expiration, and at most one tick after it.
+ * <p>
+ * The wheel does not own a thread. The owner calls {@link #advance(long)} in a loop and receives all the entries
+ * that became due as a single batch.
+ *
+ * @param <T> type of the payload held by the entries.
+ */
+public class TimingWheel<T> {
+
+  private final int wheelSize;
+  private final DelayQueue<Bucket<T>> queue = new DelayQueue<>();
+  private final List<Entry<T>> overdue = new ArrayList<>();
+  private final Level root;
+  private int size = 0;
+
+  /**
+   * Creates a new timing wheel.
+   *
+   * @param tickMs    duration of a bucket in the lowest level, in milliseconds
+   * @param wheelSize number of buckets in each level
+   * @param startMs   current time in milliseconds
+   */
+  public TimingWheel(long tickMs, int wheelSize, long startMs) {
+    if (tickMs <= 0 || wheelSize <= 0) {
+      throw new IllegalArgumentException("tickMs and wheelSize should be positive");
+    }
+    this.wheelSize = wheelSize;
+    this.root = new Level(tickMs, startMs, 0);
+  }
+
+  /**
+   * Adds a payload which should be returned by {@link #advance(long)} once <code>expirationMs</code> is reached.
+   * Payloads whose expiration is already in the past are returned by the next call to {@link #advance(long)}.
+   *
+   * @param payload      payload
+   * @param expirationMs expiration time in milliseconds since epoch
+   * @return the entry, which can be used to cancel the payload
+   */
+  public synchronized Entry<T> add(T payload, long expirationMs) {
+    Entry<T> entry = new Entry<>(payload, expirationMs);
+    if (!root.add(entry)) {
+      overdue.add(entry);
+    }
+    size++;
+    return entry;
+  }
+
+  /**
+   * Cancels an entry that has not been returned by {@link #advance(long)} yet.
+   *
+   * @param entry entry returned by {@link #add(Object, long)}
+   * @return true if the entry was pending and got removed, false otherwise.
+   */
+  public synchronized boolean cancel(Entry<T> entry) {
+    boolean removed;
+    if (entry.bucket != null) {
+      removed = entry.bucket.entries.remove(entry);
+      entry.bucket = null;
+    } else {
+      removed = overdue.remove(entry);
+    }
+    if (removed) {
+      size--;
+    }
+    return removed;
+  }
+
+  /**
+   * @return number of pending entries in the wheel.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Waits at most <code>timeoutMs</code> for a bucket to expire and returns all the payloads that are due, ordered
+   * by their expiration time.
+   *
+   * @param timeoutMs maximum time to wait in milliseconds
+   * @return payloads which are due, empty list if none became due within the timeout.
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public List<T> advance(long timeoutMs) throws InterruptedException {
+    synchronized (this) {
+      if (!overdue.isEmpty()) {
+        return drainOverdue();
+      }
+    }
+    Bucket<T> bucket = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    synchronized (this) {
+      List<Entry<T>> flushed = new ArrayList<>();
+      while (bucket != null) {
+        root.advanceClock(bucket.expiration);
+        bucket.flush(flushed);
+        for (Entry<T> entry : flushed) {
+          // Entries of higher levels get cascaded to the lower levels, entries which are due become overdue.
+          if (!root.add(entry)) {
+            overdue.add(entry);
+          }
+        }
+        flushed.clear();
+        bucket = queue.poll();
+      }
+      return drainOverdue();
+    }
+  }
+
+  private List<T> drainOverdue() {
+    if (overdue.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Collections.sort(overdue, new Comparator<Entry<T>>() {
+      @Override
+      public int compare(Entry<T> o1, Entry<T> o2) {
+        return Long.compare(o1.expirationMs, o2.expirationMs);
+      }
+    });
+    List<T> due = new ArrayList<>(overdue.size());
+    for (Entry<T> entry : overdue) {
+      due.add(entry.payload);
+    }
+    size -= overdue.size();
+    overdue.clear();
+    return due;
+  }
+
+  /**
+   * An entry in the timing wheel.
+   *
+   * @param <T> type of the payload
+   */
+  public static final class Entry<T> {
+    @Getter
+    private final T payload;
+    @Getter
+    private final long expirationMs;
+    private Bucket<T> bucket;
+
+    private Entry(T payload, long expirationMs) {
+      this.payload = payload;
+      this.expirationMs = expirationMs;
+    }
+  }
+
+  /**
+   * A bucket holds all the entries of one slot of a level. All access is guarded by the wheel's monitor except
+   * the expiration, which is read by the delay queue.
+   */
+  private static final class Bucket<T> implements Delayed {
+    private final Set<Entry<T>> entries = new HashSet<>();
+    private final int level;
+    private volatile long expiration = -1L;
+
+    private Bucket(int level) {
+      this.level = level;
+    }
+
+    private void add(Entry<T> entry) {
+      entries.add(entry);
+      entry.bucket = this;
+    }
+
+    /**
+     * @return true if the expiration changed, i.e. the bucket has to be (re)offered to the delay queue.
+     */
+    private boolean setExpiration(long expirationMs) {
+      if (expiration == expirationMs) {
+        return false;
+      }
+      expiration = expirationMs;
+      return true;
+    }
+
+    private void flush(List<Entry<T>> out) {
+      for (Entry<T> entry : entries) {
+        entry.bucket = null;
+        out.add(entry);
+      }
+      entries.clear();
+      expiration = -1L;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(Math.max(expiration - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buckets are ordered by expiration. On a tie the lower level goes first, so that a lower level slot is always
+     * flushed before a higher level bucket cascades new entries into it.
+     */
+    @Override
+    public int compareTo(Delayed o) {
+      Bucket<?> other = (Bucket<?>) o;
+      int cmp = Long.compare(expiration, other.expiration);
+      return cmp != 0 ? cmp : Integer.compare(level, other.level);
+    }
+  }
+
+  /**
+   * One level of the hierarchical wheel.
+   */
+  private final class Level {
+    private final long tick;
+    private final long interval;
+    private final Bucket<T>[] buckets;
+    private final int level;
+    private final boolean lowest;
+    private long currentTime;
+    private Level overflow;
+
+    @SuppressWarnings("unchecked")
+    private Level(long tick, long startMs, int level) {
+      this.tick = tick;
+      this.level = level;
+      this.lowest = level == 0;
+      this.interval = tick * wheelSize;
+      this.buckets = new Bucket[wheelSize];
+      for (int i = 0; i < wheelSize; i++) {
+        buckets[i] = new Bucket<>(level);
+      }
+      this.currentTime = startMs - (startMs % tick);
+    }
+
+    /**
+     * @return false if the entry is already due, true if it got added to a bucket of this or a higher level.
+     */
+    private boolean add(Entry<T> entry) {
+      long expirationMs = entry.expirationMs;
+      if (expirationMs < currentTime + (lowest ? 0 : tick)) {
+        return false;
+      } else if (expirationMs < currentTime + interval) {
+        long virtualId = expirationMs / tick;
+        Bucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+        bucket.add(entry);
+        // Buckets of the lowest level expire at the end of their slot so that entries are never returned early,
+        // buckets of the higher levels expire at the start of their slot to cascade the entries downwards in time.
+        if (bucket.setExpiration((lowest ? virtualId + 1 : virtualId) * tick)) {
+          queue.offer(bucket);
+        }
+        return true;
+      } else {
+        if (overflow == null) {
+          overflow = new Level(interval, currentTime, level + 1);
+        }
+        return overflow.add(entry);
+      }
+    }
+
+    private void advanceClock(long timeMs) {
+      if (timeMs >= currentTime + tick) {
+        currentTime = timeMs - (timeMs % tick);
+        if (overflow != null) {
+          overflow.advanceClock(currentTime);
+        }
+      }
+    }
+  }
+}
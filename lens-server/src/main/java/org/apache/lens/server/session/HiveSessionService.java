@@ -236,7 +236,7 @@ public class HiveSessionService extends BaseLensService implements SessionServic
 
   @Override
   public boolean isOpen(LensSessionHandle sessionHandle) {
-    return SESSION_MAP.containsKey(sessionHandle.getPublicId().toString());
+    return SESSION_REGISTRY.contains(sessionHandle.getPublicId().toString());
   }
 
   /**
@@ -298,7 +298,7 @@ public class HiveSessionService extends BaseLensService implements SessionServic
         if (var.indexOf(SystemVariables.HIVECONF_PREFIX) == 0) {
           var = var.substring(SystemVariables.HIVECONF_PREFIX.length());
         }
-        getSession(sessionid).getSessionConf().set(var, entry.getValue());
+        getSession(sessionid).setSessionConf(var, entry.getValue());
         String command = "set" + " " + entry.getKey() + "= " + entry.getValue();
         closeCliServiceOp(getCliService().executeStatement(getHiveSessionHandle(sessionid), command, null));
       }
@@ -319,7 +319,7 @@ public class HiveSessionService extends BaseLensService implements SessionServic
       if (var.indexOf(SystemVariables.HIVECONF_PREFIX) == 0) {
         var = var.substring(SystemVariables.HIVECONF_PREFIX.length());
       }
-      getSession(sessionid).getSessionConf().set(var, entry.getValue());
+      getSession(sessionid).setSessionConf(var, entry.getValue());
       getSession(sessionid).getHiveConf().set(entry.getKey(), entry.getValue());
     }
     log.info("Set params on restart:" + config);
@@ -385,6 +385,8 @@ public class HiveSessionService extends BaseLensService implements SessionServic
           log.error("Error setting parameters " + session.getConfig()
             + " for session: " + session, e);
         }
+        // Index with the restored access time and state
+        SESSION_REGISTRY.scheduleExpiry(sessionHandle, session.getExpiryTime(System.currentTimeMillis()));
         log.info("Restored session " + persistInfo.getSessionHandle().getPublicId());
         notifyEvent(new SessionRestored(System.currentTimeMillis(), sessionHandle));
       } catch (LensException e) {
@@ -420,12 +422,13 @@ public class HiveSessionService extends BaseLensService implements SessionServic
   @Override
   public void writeExternal(ObjectOutput out) throws IOException {
     // Write out all the sessions
-    out.writeInt(SESSION_MAP.size());
-    for (LensSessionHandle sessionHandle : SESSION_MAP.values()) {
+    List<LensSessionHandle> sessionHandles = SESSION_REGISTRY.getHandles();
+    out.writeInt(sessionHandles.size());
+    for (LensSessionHandle sessionHandle : sessionHandles) {
       LensSessionImpl session = getSession(sessionHandle);
       session.getLensSessionPersistInfo().writeExternal(out);
     }
-    log.info("Session service pesristed " + SESSION_MAP.size() + " sessions");
+    log.info("Session service pesristed " + sessionHandles.size() + " sessions");
   }
 
   /**
@@ -452,9 +455,9 @@ public class HiveSessionService extends BaseLensService implements SessionServic
       LensSessionImpl.LensSessionPersistInfo persistInfo = new LensSessionImpl.LensSessionPersistInfo();
       persistInfo.readExternal(in);
       restorableSessions.add(persistInfo);
-      SESSION_MAP.put(persistInfo.getSessionHandle().getPublicId().toString(), persistInfo.getSessionHandle());
+      SESSION_REGISTRY.register(persistInfo.getSessionHandle());
     }
-    log.info("Session service recovered " + SESSION_MAP.size() + " sessions");
+    log.info("Session service recovered " + SESSION_REGISTRY.size() + " sessions");
   }
 
   /**
@@ -510,25 +513,30 @@ public class HiveSessionService extends BaseLensService implements SessionServic
   public class SessionExpiryRunnable implements Runnable {
 
     /**
-     * Run internal.
+     * Run internal. Only the sessions whose expiry bucket is due are checked, the ones still active are indexed
+     * again at their current expiry time.
      */
     public void runInternal() {
-      List<LensSessionHandle> sessionsToRemove = new ArrayList<>(SESSION_MAP.values());
-      Iterator<LensSessionHandle> itr = sessionsToRemove.iterator();
-      while (itr.hasNext()) {
-        LensSessionHandle sessionHandle = itr.next();
+      long now = System.currentTimeMillis();
+      List<LensSessionHandle> dueSessions = SESSION_REGISTRY.pollDue(now);
+      List<LensSessionHandle> sessionsToRemove = new ArrayList<>();
+      for (LensSessionHandle sessionHandle : dueSessions) {
         try {
           LensSessionImpl session = getSession(sessionHandle);
           if (session.isActive()) {
-            itr.remove();
+            SESSION_REGISTRY.scheduleExpiry(sessionHandle, session.getExpiryTime(now));
+          } else {
+            sessionsToRemove.add(sessionHandle);
           }
         } catch (ClientErrorException nfe) {
           log.error("Error getting session " + sessionHandle.getPublicId(), nfe);
-          itr.remove();
+          // Check again in the next run
+          SESSION_REGISTRY.scheduleExpiry(sessionHandle, now);
         }
       }
 
-      log.info("Sessions to remove : {} out of {} all sessions", sessionsToRemove.size(), SESSION_MAP.size());
+      log.info("Sessions to remove : {} out of {} due and {} all sessions", sessionsToRemove.size(),
+        dueSessions.size(), SESSION_REGISTRY.size());
       // Now close all inactive sessions
       for (LensSessionHandle sessionHandle : sessionsToRemove) {
         try {
@@ -542,6 +550,7 @@ public class HiveSessionService extends BaseLensService implements SessionServic
           // Do nothing
         } catch (LensException e) {
           log.error("Error closing session " + sessionHandle.getPublicId() + " reason " + e.getMessage(), e);
+          SESSION_REGISTRY.scheduleExpiry(sessionHandle, now);
         }
       }
     }
@@ -34,6 +34,7 @@ import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.LensConfConstants;
 import org.apache.lens.server.api.error.LensException;
 import org.apache.lens.server.api.session.SessionService;
+import org.apache.lens.server.api.util.LayeredConfiguration;
 import org.apache.lens.server.util.UtilityMethods;
 
 import org.apache.hadoop.conf.Configuration;
@@ -82,12 +83,27 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
 
   /** The conf. */
   private Configuration conf = createDefaultConf();
+
+  /**
+   * Immutable copy of conf, handed out to every query of the session. Rebuilt lazily after the conf is changed
+   * through {@link #setSessionConf(String, String)}.
+   */
+  private volatile Configuration sessionConfSnapshot;
+
+  /** Registry to notify when the session becomes due for expiry earlier than it was indexed. */
+  @Setter(AccessLevel.PACKAGE)
+  private volatile SessionRegistry sessionRegistry;
   /**
    * List of queries which are submitted in this session.
    */
   @Getter
   private final List<QueryHandle> activeQueries = new ArrayList<>();
 
+  /**
+   * Number of operations other than queries running in this session. Guarded by the active queries.
+   */
+  private int activeOperations;
+
   /**
    * Keep track of DB static resources which failed to be added to this session
    */
@@ -117,7 +133,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
     persistInfo.setSessionConf(sessionConf);
     if (sessionConf != null) {
       for (Map.Entry<String, String> entry : sessionConf.entrySet()) {
-        conf.set(entry.getKey(), entry.getValue());
+        setSessionConf(entry.getKey(), entry.getValue());
       }
     }
   }
@@ -134,15 +150,16 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
       Configuration conf = new Configuration(false);
       conf.addResource("lenssession-default.xml");
       conf.addResource("lens-site.xml");
-      sessionDefaultConfig = new Configuration(false);
+      Configuration defaultConf = new Configuration(false);
       for (Map.Entry<String, String> prop : conf) {
         if (!prop.getKey().startsWith(LensConfConstants.SERVER_PFX)) {
-          sessionDefaultConfig.set(prop.getKey(), prop.getValue());
+          defaultConf.set(prop.getKey(), prop.getValue());
         }
       }
+      sessionDefaultConfig = LayeredConfiguration.snapshot(defaultConf);
     }
     //Not exposing sessionDefaultConfig directly to insulate it form modifications
-    return new Configuration(sessionDefaultConfig);
+    return LayeredConfiguration.create(sessionDefaultConfig);
   }
 
   /** The default hive session conf. */
@@ -173,6 +190,37 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
     return conf;
   }
 
+  /**
+   * Set a property in the session conf.
+   *
+   * @param key   the key
+   * @param value the value
+   */
+  public synchronized void setSessionConf(String key, String value) {
+    conf.set(key, value);
+    sessionConfSnapshot = null;
+  }
+
+  /**
+   * Get an immutable snapshot of the session conf. The snapshot is shared till the session conf is changed, so
+   * reading the session conf for each query does not copy it.
+   *
+   * @return the session conf snapshot
+   */
+  public Configuration getSessionConfSnapshot() {
+    Configuration snapshot = sessionConfSnapshot;
+    if (snapshot == null) {
+      synchronized (this) {
+        snapshot = sessionConfSnapshot;
+        if (snapshot == null) {
+          snapshot = LayeredConfiguration.snapshot(conf);
+          sessionConfSnapshot = snapshot;
+        }
+      }
+    }
+    return snapshot;
+  }
+
   /**
    * Constructor used when restoring session.
    *
@@ -292,6 +340,20 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
     setLastAccessTime(System.currentTimeMillis());
   }
 
+  /**
+   * Get the time at which the session should next be checked for expiry. Sessions with active operations or marked
+   * for close are checked in the next expiry run.
+   *
+   * @param now current time
+   * @return the expiry time
+   */
+  public long getExpiryTime(long now) {
+    if (activeOperationsPresent() || persistInfo.markedForClose) {
+      return now;
+    }
+    return persistInfo.lastAccessTime + sessionTimeout;
+  }
+
   /**
    * Sets the config.
    *
@@ -471,7 +533,19 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
   }
 
   public void setLastAccessTime(long lastAccessTime) {
+    long previous = persistInfo.lastAccessTime;
     persistInfo.lastAccessTime = lastAccessTime;
+    // Accesses only delay the expiry and are picked up by the expiry run, an earlier access time has to be indexed
+    if (lastAccessTime < previous) {
+      updateExpiryIndex();
+    }
+  }
+
+  private void updateExpiryIndex() {
+    SessionRegistry registry = sessionRegistry;
+    if (registry != null) {
+      registry.scheduleExpiry(persistInfo.getSessionHandle(), getExpiryTime(System.currentTimeMillis()));
+    }
   }
 
   public long getLastAccessTime() {
@@ -517,6 +591,7 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
   public void markForClose() {
     log.info("Marking session {} for close. Operations on this session will be rejected", this);
     persistInfo.markedForClose = true;
+    updateExpiryIndex();
   }
 
   /**
@@ -714,9 +789,25 @@ public class LensSessionImpl extends HiveSessionImpl implements AutoCloseable {
     }
   }
 
+  /**
+   * Marks an operation other than a query as running in this session, so that the session doesn't expire until it
+   * finishes.
+   */
+  public void addActiveOperation() {
+    synchronized (this.activeQueries) {
+      activeOperations++;
+    }
+  }
+
+  public void removeActiveOperation() {
+    synchronized (this.activeQueries) {
+      activeOperations--;
+    }
+  }
+
   public boolean activeOperationsPresent() {
     synchronized (this.activeQueries) {
-      return !activeQueries.isEmpty();
+      return !activeQueries.isEmpty() || activeOperations > 0;
     }
   }
 }
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.session;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lens.api.LensSessionHandle;
+
+import org.apache.hive.service.cli.CLIService;
+import org.apache.hive.service.cli.HandleIdentifier;
+import org.apache.hive.service.cli.SessionHandle;
+
+/**
+ * Registry of open lens sessions.
+ * <p>
+ * Lookups by public id are lock free and return the hive session handle built when the session was registered, so
+ * resolving a session on every request does not allocate. The registry also keeps an index of sessions by the time
+ * bucket in which they become due for expiry. The expiry run polls only the buckets which are due instead of
+ * scanning all sessions. Sessions touched after they were indexed stay in their old bucket; the expiry run finds
+ * them active and indexes them again at their new expiry time, so accesses never update the index.
+ */
+public class SessionRegistry {
+
+  /** Default width of an expiry bucket. */
+  public static final long DEFAULT_BUCKET_MILLIS = 1000L;
+
+  private final long bucketMillis;
+
+  private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+
+  /** Expiry bucket start to the sessions due in it. Guarded by this. */
+  private final TreeMap<Long, Set<LensSessionHandle>> expiryBuckets = new TreeMap<>();
+
+  /** Session to its expiry bucket. Guarded by this. */
+  private final Map<LensSessionHandle, Long> bucketOf = new HashMap<>();
+
+  public SessionRegistry() {
+    this(DEFAULT_BUCKET_MILLIS);
+  }
+
+  public SessionRegistry(long bucketMillis) {
+    if (bucketMillis <= 0) {
+      throw new IllegalArgumentException("Bucket width should be positive: " + bucketMillis);
+    }
+    this.bucketMillis = bucketMillis;
+  }
+
+  /**
+   * Registered session.
+   */
+  private static class Entry {
+    private final LensSessionHandle lensHandle;
+    private final SessionHandle hiveHandle;
+
+    Entry(LensSessionHandle lensHandle) {
+      this.lensHandle = lensHandle;
+      this.hiveHandle = newHiveSessionHandle(lensHandle);
+    }
+  }
+
+  /**
+   * Create hive session handle for the lens session handle.
+   *
+   * @param lensHandle the lens handle
+   * @return the hive session handle
+   */
+  public static SessionHandle newHiveSessionHandle(LensSessionHandle lensHandle) {
+    return new SessionHandle(new HandleIdentifier(lensHandle.getPublicId(), lensHandle.getSecretId()),
+      CLIService.SERVER_VERSION);
+  }
+
+  /**
+   * Register a session which is not opened yet, like a session read from persisted state. It is not indexed for
+   * expiry till it is registered with its session.
+   *
+   * @param lensHandle the lens handle
+   */
+  public void register(LensSessionHandle lensHandle) {
+    sessions.put(lensHandle.getPublicId().toString(), new Entry(lensHandle));
+  }
+
+  /**
+   * Register an opened session and index it for expiry.
+   *
+   * @param lensHandle the lens handle
+   * @param session    the session
+   */
+  public void register(LensSessionHandle lensHandle, LensSessionImpl session) {
+    register(lensHandle);
+    session.setSessionRegistry(this);
+    scheduleExpiry(lensHandle, session.getExpiryTime(System.currentTimeMillis()));
+  }
+
+  /**
+   * Remove the session from the registry and from the expiry index.
+   *
+   * @param lensHandle the lens handle
+   */
+  public void remove(LensSessionHandle lensHandle) {
+    sessions.remove(lensHandle.getPublicId().toString());
+    synchronized (this) {
+      unindex(lensHandle);
+    }
+  }
+
+  public LensSessionHandle get(String publicId) {
+    Entry entry = sessions.get(publicId);
+    return entry == null ? null : entry.lensHandle;
+  }
+
+  public boolean contains(String publicId) {
+    return sessions.containsKey(publicId);
+  }
+
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * @return snapshot of handles of all registered sessions
+   */
+  public List<LensSessionHandle> getHandles() {
+    List<LensSessionHandle> handles = new ArrayList<>(sessions.size());
+    for (Entry entry : sessions.values()) {
+      handles.add(entry.lensHandle);
+    }
+    return handles;
+  }
+
+  /**
+   * Get the hive session handle for the lens session handle. The cached handle is returned only when the secret
+   * matches, so that a handle with a wrong secret still fails when looked up in the session manager.
+   *
+   * @param lensHandle the lens handle
+   * @return the hive session handle
+   */
+  public SessionHandle getHiveSessionHandle(LensSessionHandle lensHandle) {
+    Entry entry = sessions.get(lensHandle.getPublicId().toString());
+    if (entry != null && entry.lensHandle.getSecretId().equals(lensHandle.getSecretId())) {
+      return entry.hiveHandle;
+    }
+    return newHiveSessionHandle(lensHandle);
+  }
+
+  /**
+   * Index the session to be checked for expiry at the given time. Sessions removed from the registry are not indexed.
+   *
+   * @param lensHandle the lens handle
+   * @param expiryTime time at which the session should be checked
+   */
+  public synchronized void scheduleExpiry(LensSessionHandle lensHandle, long expiryTime) {
+    if (!sessions.containsKey(lensHandle.getPublicId().toString())) {
+      return;
+    }
+    long bucket = expiryTime - Math.floorMod(expiryTime, bucketMillis);
+    Long current = bucketOf.get(lensHandle);
+    if (current != null && current == bucket) {
+      return;
+    }
+    unindex(lensHandle);
+    Set<LensSessionHandle> due = expiryBuckets.get(bucket);
+    if (due == null) {
+      due = new HashSet<>();
+      expiryBuckets.put(bucket, due);
+    }
+    due.add(lensHandle);
+    bucketOf.put(lensHandle, bucket);
+  }
+
+  /**
+   * Remove and return the sessions whose expiry bucket has started by the given time. Callers should schedule the
+   * sessions which are still active again.
+   *
+   * @param now current time
+   * @return sessions due for expiry check
+   */
+  public synchronized List<LensSessionHandle> pollDue(long now) {
+    List<LensSessionHandle> due = new ArrayList<>();
+    Iterator<Map.Entry<Long, Set<LensSessionHandle>>> itr = expiryBuckets.headMap(now, true).entrySet().iterator();
+    while (itr.hasNext()) {
+      for (LensSessionHandle handle : itr.next().getValue()) {
+        bucketOf.remove(handle);
+        due.add(handle);
+      }
+      itr.remove();
+    }
+    return due;
+  }
+
+  /**
+   * @return number of sessions indexed for expiry
+   */
+  public synchronized int getIndexedCount() {
+    return bucketOf.size();
+  }
+
+  private void unindex(LensSessionHandle lensHandle) {
+    Long bucket = bucketOf.remove(lensHandle);
+    if (bucket != null) {
+      Set<LensSessionHandle> due = expiryBuckets.get(bucket);
+      due.remove(lensHandle);
+      if (due.isEmpty()) {
+        expiryBuckets.remove(bucket);
+      }
+    }
+  }
+}
@@ -2464,6 +2464,101 @@ public class TestMetastoreService extends LensJerseyTest {
   }
 
 
+  private static XStoragePartitions createStoragePartitions(String table, String storage, XPartition... partitions) {
+    XStoragePartitions storagePartitions = new XStoragePartitions();
+    storagePartitions.setTableName(table);
+    storagePartitions.setStorageName(storage);
+    storagePartitions.setTableType(XPartitionedTableType.FACT);
+    storagePartitions.setPartitions(new XPartitionList());
+    storagePartitions.getPartitions().getPartition().addAll(Arrays.asList(partitions));
+    return storagePartitions;
+  }
+
+  @Test(dataProvider = "mediaTypeData")
+  public void testPartitionRegistration(MediaType mediaType) throws Exception {
+    final String table = "testPartitionRegistration";
+    final String DB = dbPFX + "testPartitionRegistration_DB" + mediaType.getSubtype();
+    String prevDb = getCurrentDatabase(mediaType);
+    createDatabase(DB, mediaType);
+    setCurrentDatabase(DB, mediaType);
+    createStorage("S1", mediaType);
+    createStorage("S2", mediaType);
+
+    try {
+      final XCube cube = createTestCube("testCube");
+      target().path("metastore").path("cubes").queryParam("sessionid", lensSessionId).request(mediaType)
+        .post(Entity.entity(new GenericEntity<JAXBElement<XCube>>(cubeObjectFactory.createXCube(cube)) {
+        }, mediaType), APIResult.class);
+      XFactTable f = createFactTable(table);
+      f.getStorageTables().getStorageTable().add(createStorageTblElement("S1", table, "HOURLY"));
+      f.getStorageTables().getStorageTable().add(createStorageTblElement("S2", table, "HOURLY"));
+      APIResult result = target().path("metastore").path("facts").queryParam("sessionid", lensSessionId)
+        .request(mediaType)
+        .post(Entity.entity(new GenericEntity<JAXBElement<XFactTable>>(cubeObjectFactory.createXFactTable(f)) {
+        }, mediaType), APIResult.class);
+      assertSuccess(result);
+
+      Date partDate = DateUtils.truncate(new Date(), Calendar.HOUR);
+      // The partitions of S1 are given in two parts, and are registered together
+      XPartitionRegistration registration = new XPartitionRegistration();
+      registration.getStoragePartitions().add(createStoragePartitions(table, "S1", createPartition(table, partDate)));
+      registration.getStoragePartitions().add(createStoragePartitions(table, "S2", createPartition(table, partDate)));
+      registration.getStoragePartitions().add(createStoragePartitions(table, "s1",
+        createPartition(table, DateUtils.addHours(partDate, -1)), createPartition(table, DateUtils.addHours(partDate,
+          -2))));
+      registration.getStoragePartitions().add(createStoragePartitions(table, "S3", createPartition(table, partDate)));
+
+      XPartitionRegistrationStatus status = target().path("metastore/partitions/registrations")
+        .queryParam("sessionid", lensSessionId).request(mediaType)
+        .post(Entity.entity(new GenericEntity<JAXBElement<XPartitionRegistration>>(
+          cubeObjectFactory.createXPartitionRegistration(registration)) {
+        }, mediaType), new GenericType<JAXBElement<XPartitionRegistrationStatus>>() {
+        }).getValue();
+      assertNotNull(status.getHandle());
+      assertEquals(status.getStorageStatus().size(), 3);
+      // The partitions are added in the database of the session at the time of the registration
+      setCurrentDatabase(prevDb, mediaType);
+
+      long timeout = System.currentTimeMillis() + 60000;
+      while (status.getFinishTime() == null && System.currentTimeMillis() < timeout) {
+        Thread.sleep(100);
+        status = target().path("metastore/partitions/registrations").path(status.getHandle())
+          .queryParam("sessionid", lensSessionId).request(mediaType)
+          .get(new GenericType<JAXBElement<XPartitionRegistrationStatus>>() {
+          }).getValue();
+      }
+      assertNotNull(status.getFinishTime());
+      assertEquals(status.getState(), XPartitionRegistrationState.PARTIAL);
+      assertEquals(status.getProgress(), 1.0);
+      Map<String, XStoragePartitionsStatus> storageStatus = new HashMap<>();
+      for (XStoragePartitionsStatus s : status.getStorageStatus()) {
+        storageStatus.put(s.getStorageName(), s);
+      }
+      assertEquals(storageStatus.get("S1").getState(), XPartitionRegistrationState.SUCCESSFUL);
+      assertEquals(storageStatus.get("S1").getPartitions(), 3);
+      assertEquals(storageStatus.get("S1").getRegisteredPartitions(), 3);
+      assertEquals(storageStatus.get("S2").getState(), XPartitionRegistrationState.SUCCESSFUL);
+      assertEquals(storageStatus.get("S2").getRegisteredPartitions(), 1);
+      assertEquals(storageStatus.get("S3").getState(), XPartitionRegistrationState.FAILED);
+      assertEquals(storageStatus.get("S3").getRegisteredPartitions(), 0);
+      assertNotNull(storageStatus.get("S3").getErrorMessage());
+
+      setCurrentDatabase(DB, mediaType);
+      XPartitionList partitions = target().path("metastore/facts").path(table).path("storages/S1/partitions")
+        .queryParam("sessionid", lensSessionId).request(mediaType)
+        .get(new GenericType<JAXBElement<XPartitionList>>() {
+        }).getValue();
+      assertEquals(partitions.getPartition().size(), 3);
+
+      Response response = target().path("metastore/partitions/registrations").path("unknown")
+        .queryParam("sessionid", lensSessionId).request(mediaType).get();
+      assertEquals(response.getStatus(), 404);
+    } finally {
+      setCurrentDatabase(prevDb, mediaType);
+      dropDatabase(DB, mediaType);
+    }
+  }
+
   @SuppressWarnings("deprecation")
   @Test(dataProvider = "mediaTypeData")
   public void testFactStoragePartitions(MediaType mediaType) throws Exception {
@@ -3067,6 +3162,7 @@ public class TestMetastoreService extends LensJerseyTest {
       List<XFlattenedColumn> columns = flattenedColumns.getFlattenedColumn();
       assertNotNull(columns);
       assertTrue(!columns.isEmpty());
+      int columnsOfCube = columns.size();
 
       Set<String> tables = new HashSet<>();
       Set<String> colSet = new HashSet<>();
@@ -3121,6 +3217,53 @@ public class TestMetastoreService extends LensJerseyTest {
         "chain1-testdim2.dimexpr"
       ));
 
+      // Unchanged flattened views and chains are not sent again
+      Response response = flatCubeTarget.queryParam("sessionid", lensSessionId).request(mediaType).get();
+      assertEquals(response.getStatus(), 200);
+      String tag = response.getHeaderString(HttpHeaders.ETAG);
+      assertNotNull(tag);
+      response = flatCubeTarget.queryParam("sessionid", lensSessionId).request(mediaType)
+        .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+      assertEquals(response.getStatus(), 304);
+      final WebTarget chainsTarget = target().path("metastore").path("chains").path("flattestcube");
+      response = chainsTarget.queryParam("sessionid", lensSessionId).request(mediaType).get();
+      assertEquals(response.getStatus(), 200);
+      String chainsTag = response.getHeaderString(HttpHeaders.ETAG);
+      assertNotEquals(chainsTag, tag);
+      response = chainsTarget.queryParam("sessionid", lensSessionId).request(mediaType)
+        .header(HttpHeaders.IF_NONE_MATCH, chainsTag).get();
+      assertEquals(response.getStatus(), 304);
+      // Other kinds, and other media types, of the flattened view are sent, though the catalog is unchanged
+      response = chainsTarget.queryParam("sessionid", lensSessionId).request(mediaType)
+        .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+      assertEquals(response.getStatus(), 200);
+      response = flatCubeTarget.queryParam("sessionid", lensSessionId).queryParam("add_chains", false)
+        .request(mediaType).header(HttpHeaders.IF_NONE_MATCH, tag).get();
+      assertEquals(response.getStatus(), 200);
+      MediaType otherMediaType = mediaType.equals(MediaType.APPLICATION_XML_TYPE) ? MediaType.APPLICATION_JSON_TYPE
+        : MediaType.APPLICATION_XML_TYPE;
+      response = flatCubeTarget.queryParam("sessionid", lensSessionId).request(otherMediaType)
+        .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+      assertEquals(response.getStatus(), 200);
+      assertEquals(response.getMediaType().getSubtype(), otherMediaType.getSubtype());
+      assertEquals(response.getHeaderString(HttpHeaders.VARY), HttpHeaders.ACCEPT);
+
+      // Altering a dimension reachable through a chain changes the flattened view of the cube
+      final WebTarget dimTarget = target().path("metastore").path("dimensions").path("testdim2");
+      XDimension testDim2 = dimTarget.queryParam("sessionid", lensSessionId).request(mediaType)
+        .get(new GenericType<JAXBElement<XDimension>>() {}).getValue();
+      testDim2.setDescription("altered testdim2");
+      result = dimTarget.queryParam("sessionid", lensSessionId).request(mediaType)
+        .put(Entity.entity(new GenericEntity<JAXBElement<XDimension>>(cubeObjectFactory.createXDimension(testDim2)){},
+          mediaType), APIResult.class);
+      assertSuccess(result);
+      response = flatCubeTarget.queryParam("sessionid", lensSessionId).request(mediaType)
+        .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+      assertEquals(response.getStatus(), 200);
+      assertNotEquals(response.getHeaderString(HttpHeaders.ETAG), tag);
+      assertEquals(response.readEntity(new GenericType<JAXBElement<XFlattenedColumns>>() {}).getValue()
+        .getFlattenedColumn().size(), columnsOfCube);
+
     } finally {
       dropDatabase(DB, mediaType);
       setCurrentDatabase(prevDb, mediaType);
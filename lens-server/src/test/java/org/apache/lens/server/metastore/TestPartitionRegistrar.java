@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.metastore;
+
+import static org.testng.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lens.api.LensSessionHandle;
+import org.apache.lens.api.metastore.*;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+
+import org.testng.annotations.Test;
+
+/**
+ * Tests for PartitionRegistrar.
+ */
+@Test(groups = "unit-test")
+public class TestPartitionRegistrar {
+
+  /**
+   * Adds partitions by recording them, blocking the partitions of the first registration until released.
+   */
+  private static class RecordingAdder implements PartitionRegistrar.PartitionAdder {
+    private final List<String> added = Collections.synchronizedList(new ArrayList<String>());
+    private final List<LensSessionHandle> finished = Collections.synchronizedList(new ArrayList<LensSessionHandle>());
+    private final CountDownLatch blockedStarted = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final LensSessionHandle blockedSession;
+
+    RecordingAdder(LensSessionHandle blockedSession) {
+      this.blockedSession = blockedSession;
+    }
+
+    @Override
+    public int addPartitions(LensSessionHandle sessionid, CubeMetastoreClient client,
+      XStoragePartitions storagePartitions) {
+      if (sessionid.equals(blockedSession)) {
+        blockedStarted.countDown();
+        try {
+          release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      added.add(sessionid.getPublicId() + ":" + storagePartitions.getStorageName());
+      return storagePartitions.getPartitions().getPartition().size();
+    }
+
+    @Override
+    public void finished(LensSessionHandle sessionid) {
+      finished.add(sessionid);
+    }
+  }
+
+  private static LensSessionHandle createSession() {
+    return new LensSessionHandle(UUID.randomUUID(), UUID.randomUUID());
+  }
+
+  private static XPartitionRegistration createRegistration(String... storages) {
+    XPartitionRegistration registration = new XPartitionRegistration();
+    for (String storage : storages) {
+      XPartitionList partitions = new XPartitionList();
+      partitions.getPartition().add(new XPartition());
+      registration.getStoragePartitions().add(new XStoragePartitions().withTableName("fact").withStorageName(storage)
+        .withTableType(XPartitionedTableType.FACT).withPartitions(partitions));
+    }
+    return registration;
+  }
+
+  private static XPartitionRegistrationStatus waitForFinish(PartitionRegistrar registrar, String handle)
+    throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10000;
+    XPartitionRegistrationStatus status = registrar.getStatus(handle);
+    while (status.getFinishTime() == null && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+      status = registrar.getStatus(handle);
+    }
+    assertNotNull(status.getFinishTime(), "Timed out waiting for registration " + handle);
+    return status;
+  }
+
+  private static Map<String, XPartitionRegistrationState> getStorageStates(PartitionRegistrar registrar,
+    String handle) {
+    Map<String, XPartitionRegistrationState> states = new HashMap<>();
+    for (XStoragePartitionsStatus storageStatus : registrar.getStatus(handle).getStorageStatus()) {
+      states.put(storageStatus.getStorageName(), storageStatus.getState());
+    }
+    return states;
+  }
+
+  @Test
+  public void testRegistrationsOfAStorageAreOrdered() throws Exception {
+    LensSessionHandle first = createSession();
+    LensSessionHandle second = createSession();
+    RecordingAdder adder = new RecordingAdder(first);
+    PartitionRegistrar registrar = new PartitionRegistrar(adder, 4, 60000);
+    try {
+      String firstHandle = registrar.register(first, null, createRegistration("S1")).getHandle();
+      assertTrue(adder.blockedStarted.await(10, TimeUnit.SECONDS));
+      String secondHandle = registrar.register(second, null, createRegistration("S1", "S2")).getHandle();
+
+      // The other storage of the second registration isn't held up by the first registration
+      long timeout = System.currentTimeMillis() + 10000;
+      Map<String, XPartitionRegistrationState> states = getStorageStates(registrar, secondHandle);
+      while (states.get("S2") != XPartitionRegistrationState.SUCCESSFUL && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+        states = getStorageStates(registrar, secondHandle);
+      }
+      assertEquals(states.get("S2"), XPartitionRegistrationState.SUCCESSFUL);
+      // while its partitions of the storage of the first registration wait for it
+      assertEquals(states.get("S1"), XPartitionRegistrationState.QUEUED);
+      assertEquals(adder.added, Arrays.asList(second.getPublicId() + ":S2"));
+      assertTrue(adder.finished.isEmpty());
+
+      adder.release.countDown();
+      assertEquals(waitForFinish(registrar, firstHandle).getState(), XPartitionRegistrationState.SUCCESSFUL);
+      assertEquals(waitForFinish(registrar, secondHandle).getState(), XPartitionRegistrationState.SUCCESSFUL);
+      assertEquals(adder.added, Arrays.asList(second.getPublicId() + ":S2", first.getPublicId() + ":S1",
+        second.getPublicId() + ":S1"));
+      // The session of each registration is released once all its partitions are added
+      timeout = System.currentTimeMillis() + 10000;
+      while (adder.finished.size() < 2 && System.currentTimeMillis() < timeout) {
+        Thread.sleep(10);
+      }
+      assertEquals(new HashSet<>(adder.finished), new HashSet<>(Arrays.asList(first, second)));
+      assertEquals(adder.finished.size(), 2);
+    } finally {
+      adder.release.countDown();
+      registrar.stop();
+    }
+  }
+}
@@ -24,6 +24,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 import javax.ws.rs.core.Application;
 
@@ -40,7 +41,11 @@ import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.driver.MockDriver;
 import org.apache.lens.server.api.query.*;
+import org.apache.lens.server.api.query.cost.ExecutionTimeModel;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
 import org.apache.hadoop.conf.Configuration;
 
 import org.codehaus.jackson.map.ObjectMapper;
@@ -48,6 +53,7 @@ import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -94,6 +100,9 @@ public class TestLensDAO extends LensJerseyTest {
     FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
     finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
     finishedLensQuery.setPriority(Priority.NORMAL.toString());
+    finishedLensQuery.setDriverStartTime(submissionTime);
+    finishedLensQuery.setDriverEndTime(submissionTime + 2000);
+    finishedLensQuery.setNumPartitions(2);
 
     finishedLensQuery.setFailedAttempts(Lists.newArrayList(
       new FailedAttempt("driver1", 1.0, "progress full", "no error", 0L, 1L),
@@ -180,6 +189,179 @@ public class TestLensDAO extends LensJerseyTest {
       queryContext.getSelectedDriver().getFullyQualifiedName(), "daotestquery1", -1L, Long.MAX_VALUE);
     Assert.assertEquals(daoTestQueryHandles.size(), 1);
     Assert.assertEquals(daoTestQueryHandles.get(0).getHandleId().toString(), finishedHandle);
+
+    // Test find execution time samples
+    boolean sampleFound = false;
+    for (ExecutionTimeModel.Sample sample : service.lensServerDao.findExecutionTimeSamples(-1L, Long.MAX_VALUE)) {
+      if (sample.getFeatures().getDriverName().equals(mockDriver.getFullyQualifiedName())
+        && sample.getFeatures().getFacts().equals("drivertable1")) {
+        Assert.assertEquals(sample.getExecTimeMillis(), 2000);
+        Assert.assertEquals(sample.getFeatures().getPartitions(), 2);
+        sampleFound = true;
+      }
+    }
+    Assert.assertTrue(sampleFound);
     service.closeSession(session);
   }
+
+  /**
+   * Test paging through the summaries of finished queries.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testFinishedQuerySummaries() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    LensDriver mockDriver = new MockDriver();
+    long submissionTime = System.currentTimeMillis();
+    List<String> handles = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      QueryContext queryContext = service.createContext("SELECT ID FROM testTable", "history@localhost",
+        new LensConf(), new Configuration(), 0);
+      queryContext.setQueryName("daoHistoryQuery");
+      queryContext.setDriverContext(new DriverSelectorQueryContext(queryContext.getUserQuery(), new Configuration(),
+        Lists.newArrayList(mockDriver), false));
+      queryContext.getDriverContext().setSelectedDriver(mockDriver);
+      queryContext.getDriverContext().setDriverQuery(mockDriver, "SELECT aliasName1.Id FROM driverTable1 aliasName1");
+      FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
+      // Two queries per submission time, to page through queries submitted at the same time
+      finishedLensQuery.setSubmissionTime(submissionTime - i / 2);
+      finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+      finishedLensQuery.setPriority(Priority.NORMAL.toString());
+      finishedLensQuery.setFailedAttempts(Lists.newArrayList(
+        new FailedAttempt("driver1", 1.0, "progress full", "no error", 0L, 1L)));
+      service.lensServerDao.insertFinishedQuery(finishedLensQuery);
+      handles.add(finishedLensQuery.getHandle());
+      Assert.assertEquals(service.lensServerDao.getSubmissionTime(finishedLensQuery.getHandle()),
+        Long.valueOf(submissionTime - i / 2));
+    }
+    Assert.assertNull(service.lensServerDao.getSubmissionTime(UUID.randomUUID().toString()));
+
+    List<String> paged = Lists.newArrayList();
+    QueryHistoryCursor cursor = null;
+    List<FinishedLensQuery> page;
+    do {
+      page = service.lensServerDao.findFinishedQuerySummaries(null, "history@localhost", null, "daohistoryquery",
+        -1L, Long.MAX_VALUE, cursor, 2);
+      Assert.assertTrue(page.size() <= 2);
+      for (FinishedLensQuery query : page) {
+        Assert.assertTrue(cursor == null
+          || cursor.isFollowedBy(query.getSubmissionTime(), QueryHandle.fromString(query.getHandle())));
+        // Summaries do not carry the driver query or the configuration, but do carry the failed attempts
+        Assert.assertNull(query.getDriverQuery());
+        Assert.assertEquals(query.getFailedAttempts().size(), 1);
+        LensQuery summary = query.toLensQuerySummary();
+        Assert.assertEquals(summary.getQueryHandleString(), query.getHandle());
+        Assert.assertNull(summary.getDriverQuery());
+        paged.add(query.getHandle());
+        cursor = new QueryHistoryCursor(query.getSubmissionTime(), QueryHandle.fromString(query.getHandle()));
+      }
+    } while (!page.isEmpty());
+    Assert.assertEquals(paged.size(), handles.size());
+    Assert.assertEquals(Sets.newHashSet(paged), Sets.newHashSet(handles));
+  }
+
+  private static long count(QueryExecutionServiceImpl service, String sql, Object... params) throws SQLException {
+    try (Connection conn = service.lensServerDao.getConnection()) {
+      return ((Number) new QueryRunner().query(conn, sql, new ScalarHandler<Object>(), params)).longValue();
+    }
+  }
+
+  private static FinishedLensQuery createFinishedQuery(QueryExecutionServiceImpl service, String user,
+    String userQuery, long submissionTime) throws Exception {
+    LensDriver mockDriver = new MockDriver();
+    QueryContext queryContext = service.createContext(userQuery, user, new LensConf(),
+      new Configuration(), 0);
+    queryContext.setQueryName("daoArchiveQuery");
+    queryContext.setDriverContext(new DriverSelectorQueryContext(userQuery, new Configuration(),
+      Lists.newArrayList(mockDriver), false));
+    queryContext.getDriverContext().setSelectedDriver(mockDriver);
+    queryContext.getDriverContext().setDriverQuery(mockDriver, userQuery.replace("testTable", "driverTable1"));
+    FinishedLensQuery finishedLensQuery = new FinishedLensQuery(queryContext);
+    finishedLensQuery.setSubmissionTime(submissionTime);
+    finishedLensQuery.setStatus(QueryStatus.Status.SUCCESSFUL.name());
+    finishedLensQuery.setPriority(Priority.NORMAL.toString());
+    finishedLensQuery.setDriverStartTime(submissionTime);
+    finishedLensQuery.setDriverEndTime(submissionTime + 1000);
+    finishedLensQuery.setFailedAttempts(Lists.newArrayList(
+      new FailedAttempt("driver1", 0.5, "progress half", "error", 0L, 1L)));
+    return finishedLensQuery;
+  }
+
+  /**
+   * Test that repeated texts are stored once, and that archived queries are read transparently.
+   *
+   * @throws Exception the exception
+   */
+  @Test
+  public void testSharedTextsAndArchive() throws Exception {
+    QueryExecutionServiceImpl service = LensServices.get().getService(QueryExecutionService.NAME);
+    StringBuilder userQuery = new StringBuilder("SELECT ID");
+    for (int i = 0; i < 100; i++) {
+      userQuery.append(", col").append(i);
+    }
+    userQuery.append(" FROM testTable");
+    // A user of its own, since queries of earlier runs may be archived
+    String user = "archive" + System.currentTimeMillis() + "@localhost";
+    long archivedTime = 1420070400000L;
+    FinishedLensQuery archived1 = createFinishedQuery(service, user, userQuery.toString(), archivedTime);
+    FinishedLensQuery archived2 = createFinishedQuery(service, user, userQuery.toString(), archivedTime + 1000);
+    FinishedLensQuery recent = createFinishedQuery(service, user, "SELECT ID FROM testTable",
+      System.currentTimeMillis());
+
+    // The user query and the driver query are stored once for both queries
+    service.lensServerDao.insertFinishedQuery(archived1);
+    long texts = count(service, "select count(*) from query_texts");
+    service.lensServerDao.insertFinishedQuery(archived2);
+    service.lensServerDao.insertFinishedQuery(recent);
+    Assert.assertEquals(count(service, "select count(*) from query_texts"), texts);
+    // and counts the references of both queries
+    Assert.assertEquals(count(service, "select refcount from query_texts where hash=?",
+      DigestUtils.sha256Hex(userQuery.toString())), 2);
+    Assert.assertEquals(count(service, "select count(*) from finished_queries where userquery=?",
+      archived1.getUserQuery()), 0);
+    FinishedLensQuery actual = service.lensServerDao.getQuery(archived1.getHandle());
+    Assert.assertEquals(actual, archived1);
+    Assert.assertEquals(actual.getDriverQuery(), archived1.getDriverQuery());
+
+    // Queries older than the time are moved to the archive, and still found
+    Assert.assertEquals(service.lensServerDao.archiveFinishedQueries(archivedTime + 60000), 2);
+    Assert.assertEquals(count(service, "select count(*) from finished_queries where handle in (?, ?)",
+      archived1.getHandle(), archived2.getHandle()), 0);
+    Assert.assertEquals(count(service, "select count(*) from failed_attempts where handle in (?, ?)",
+      archived1.getHandle(), archived2.getHandle()), 0);
+    Assert.assertEquals(service.lensServerDao.archiveFinishedQueries(archivedTime + 60000), 0);
+    // The texts of the archived queries, which no query in the table refers to, are deleted
+    Assert.assertEquals(count(service, "select count(*) from query_texts where hash=?",
+      DigestUtils.sha256Hex(userQuery.toString())), 0);
+
+    actual = service.lensServerDao.getQuery(archived2.getHandle());
+    Assert.assertEquals(actual, archived2);
+    Assert.assertEquals(actual.getUserQuery(), userQuery.toString());
+    Assert.assertEquals(actual.getFailedAttempts(), archived2.getFailedAttempts());
+    Assert.assertEquals(service.lensServerDao.getSubmissionTime(archived2.getHandle()),
+      Long.valueOf(archivedTime + 1000));
+
+    List<QueryHandle> found = service.lensServerDao.findFinishedQueries(null, archived1.getSubmitter(), null,
+      "daoarchivequery", -1L, Long.MAX_VALUE);
+    Assert.assertTrue(found.contains(QueryHandle.fromString(archived1.getHandle())));
+    Assert.assertTrue(found.contains(QueryHandle.fromString(archived2.getHandle())));
+    Assert.assertTrue(found.contains(QueryHandle.fromString(recent.getHandle())));
+    List<FinishedLensQuery> details = service.lensServerDao.findFinishedQueryDetails(null, archived1.getSubmitter(),
+      null, "daoarchivequery", archivedTime, archivedTime);
+    Assert.assertEquals(details, Lists.newArrayList(archived1));
+    // Searches after the archived queries don't find them
+    Assert.assertEquals(service.lensServerDao.findFinishedQueries(null, archived1.getSubmitter(), null,
+      "daoarchivequery", archivedTime + 60000, Long.MAX_VALUE),
+      Lists.newArrayList(QueryHandle.fromString(recent.getHandle())));
+
+    List<FinishedLensQuery> page = service.lensServerDao.findFinishedQuerySummaries(null, archived1.getSubmitter(),
+      null, "daoarchivequery", -1L, Long.MAX_VALUE, null, 3);
+    Assert.assertEquals(page.size(), 3);
+    Assert.assertEquals(page.get(0).getHandle(), recent.getHandle());
+    Assert.assertEquals(page.get(1).getHandle(), archived2.getHandle());
+    Assert.assertEquals(page.get(2).getHandle(), archived1.getHandle());
+    Assert.assertNull(page.get(2).getDriverQuery());
+    Assert.assertEquals(page.get(2).getUserQuery(), userQuery.toString());
+  }
 }
@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.*;
+import static org.testng.Assert.*;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.DriverQueryStatus;
+import org.apache.lens.server.api.driver.LensDriver;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
+import org.apache.lens.server.api.query.DriverSelectorQueryContext;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.cost.FactPartitionBasedQueryCost;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestQueryHedger {
+
+  private static LensDriver mockDriver(String name) {
+    LensDriver driver = mock(LensDriver.class);
+    when(driver.getFullyQualifiedName()).thenReturn(name);
+    return driver;
+  }
+
+  private static QueryHedger createHedger() {
+    Configuration conf = new Configuration(false);
+    conf.setInt(LensConfConstants.QUERY_HEDGE_MIN_SAMPLES, 10);
+    return new QueryHedger(conf, null);
+  }
+
+  private static void finishQueries(QueryHedger hedger, LensDriver driver, long... executionTimes) {
+    for (long executionTime : executionTimes) {
+      QueryContext query = mock(QueryContext.class);
+      when(query.getQueryHandle()).thenReturn(new QueryHandle(UUID.randomUUID()));
+      when(query.getSelectedDriver()).thenReturn(driver);
+      when(query.getStatus()).thenReturn(new QueryStatus(1.0, null, QueryStatus.Status.SUCCESSFUL, null, true,
+        null, null, null));
+      DriverQueryStatus driverStatus = new DriverQueryStatus();
+      driverStatus.setDriverStartTime(1000L);
+      driverStatus.setDriverFinishTime(1000L + executionTime);
+      when(query.getDriverStatus()).thenReturn(driverStatus);
+      hedger.queryFinished(query);
+    }
+  }
+
+  private static long[] times(int count, long time) {
+    long[] times = new long[count];
+    Arrays.fill(times, time);
+    return times;
+  }
+
+  /**
+   * Creates a query running on the first driver since the launch time, with the hedge enabled.
+   */
+  private static QueryContext runningQuery(long launchTime, LensDriver... drivers) {
+    QueryContext query = mock(QueryContext.class);
+    when(query.getQueryHandle()).thenReturn(new QueryHandle(UUID.randomUUID()));
+    Configuration conf = new Configuration(false);
+    conf.setBoolean(LensConfConstants.QUERY_HEDGE_ENABLED, true);
+    conf.setDouble(LensConfConstants.QUERY_HEDGE_LATENCY_PERCENTILE, 0.9);
+    when(query.getConf()).thenReturn(conf);
+    when(query.getLaunchTime()).thenReturn(launchTime);
+    when(query.getSelectedDriver()).thenReturn(drivers[0]);
+    DriverQueryStatus driverStatus = new DriverQueryStatus();
+    driverStatus.setState(DriverQueryStatus.DriverQueryState.RUNNING);
+    when(query.getDriverStatus()).thenReturn(driverStatus);
+    DriverSelectorQueryContext driverContext = mock(DriverSelectorQueryContext.class);
+    when(driverContext.getDriversWithValidQueryCost()).thenReturn(Arrays.asList(drivers));
+    for (int i = 0; i < drivers.length; i++) {
+      when(driverContext.getDriverQuery(drivers[i])).thenReturn("select * from table" + i);
+      // The last driver is the cheapest after the first one
+      when(driverContext.getDriverQueryCost(drivers[i]))
+        .thenReturn(new FactPartitionBasedQueryCost(i == 0 ? 0 : 100 - i));
+    }
+    when(query.getDriverContext()).thenReturn(driverContext);
+    return query;
+  }
+
+  private static QueryContext hedgeOf(QueryContext query, LensDriver driver) {
+    QueryContext hedge = mock(QueryContext.class);
+    when(hedge.getQueryHandle()).thenReturn(query.getQueryHandle());
+    when(hedge.getSelectedDriver()).thenReturn(driver);
+    DriverQueryStatus driverStatus = new DriverQueryStatus();
+    driverStatus.setState(DriverQueryStatus.DriverQueryState.RUNNING);
+    when(hedge.getDriverStatus()).thenReturn(driverStatus);
+    when(query.createHedgeContext(driver)).thenReturn(hedge);
+    return hedge;
+  }
+
+  private static long getCount(String counter) {
+    return LensMetricsRegistry.getStaticRegistry().getCounters().get("lens.QueryHedger." + counter).getCount();
+  }
+
+  @Test
+  public void testHedgeDelay() {
+    QueryHedger hedger = createHedger();
+    LensDriver driver = mockDriver("hedge/delay");
+    finishQueries(hedger, driver, times(9, 1000));
+    assertNull(hedger.getHedgeDelay(driver, 0.9));
+    finishQueries(hedger, driver, 10000);
+    assertEquals(hedger.getHedgeDelay(driver, 0.5), Long.valueOf(1000));
+    assertEquals(hedger.getHedgeDelay(driver, 0.99), Long.valueOf(10000));
+    assertEquals(hedger.estimateRemainingTime(driver, 5000), 5000);
+    assertEquals(hedger.estimateRemainingTime(driver, 20000), 0);
+  }
+
+  @Test
+  public void testSelectHedgeDriver() {
+    LensDriver driver1 = mockDriver("hedge/select1");
+    LensDriver driver2 = mockDriver("hedge/select2");
+    LensDriver driver3 = mockDriver("hedge/select3");
+    assertEquals(QueryHedger.selectHedgeDriver(runningQuery(0, driver1, driver2, driver3)), driver3);
+    assertNull(QueryHedger.selectHedgeDriver(runningQuery(0, driver1)));
+  }
+
+  @Test
+  public void testHedgeWins() throws Exception {
+    QueryHedger hedger = createHedger();
+    LensDriver driver1 = mockDriver("hedge/wins1");
+    LensDriver driver2 = mockDriver("hedge/wins2");
+    finishQueries(hedger, driver1, times(10, 1000));
+    long now = System.currentTimeMillis();
+
+    // Not hedged before the percentile
+    QueryContext query = runningQuery(now - 500, driver1, driver2);
+    QueryContext hedge = hedgeOf(query, driver2);
+    hedger.checkQuery(query, now);
+    verify(query, never()).createHedgeContext(any(LensDriver.class));
+
+    // Hedged once after it
+    long launched = getCount("hedges-launched");
+    hedger.checkQuery(query, now + 1000);
+    verify(driver2).executeAsync(hedge);
+    assertEquals(getCount("hedges-launched"), launched + 1);
+    assertEquals(hedger.getRunningHedges(), 1);
+
+    hedger.checkQuery(query, now + 2000);
+    verify(driver2, times(1)).executeAsync(any(QueryContext.class));
+
+    // The query is cancelled on its driver and takes over the hedge when the hedge succeeds first
+    long won = getCount("hedges-won");
+    hedge.getDriverStatus().setState(DriverQueryStatus.DriverQueryState.SUCCESSFUL);
+    hedger.checkQuery(query, now + 3000);
+    verify(query).detachFromDriver();
+    verify(driver1).cancelQuery(query.getQueryHandle());
+    verify(driver1).closeQuery(query.getQueryHandle());
+    verify(query).adoptHedge(hedge);
+    verify(driver2, never()).cancelQuery(any(QueryHandle.class));
+    assertEquals(getCount("hedges-won"), won + 1);
+    assertEquals(hedger.getRunningHedges(), 0);
+  }
+
+  @Test
+  public void testQueryWins() throws Exception {
+    QueryHedger hedger = createHedger();
+    LensDriver driver1 = mockDriver("hedge/loses1");
+    LensDriver driver2 = mockDriver("hedge/loses2");
+    finishQueries(hedger, driver1, times(10, 1000));
+    long now = System.currentTimeMillis();
+
+    QueryContext query = runningQuery(now - 5000, driver1, driver2);
+    QueryContext hedge = hedgeOf(query, driver2);
+    hedger.checkQuery(query, now);
+    verify(driver2).executeAsync(hedge);
+
+    // The hedge is cancelled when the query succeeds on its driver first
+    long lost = getCount("hedges-lost");
+    query.getDriverStatus().setState(DriverQueryStatus.DriverQueryState.SUCCESSFUL);
+    hedger.checkQuery(query, now + 1000);
+    verify(driver2).cancelQuery(query.getQueryHandle());
+    verify(driver2).closeQuery(query.getQueryHandle());
+    verify(query, never()).adoptHedge(any(QueryContext.class));
+    assertEquals(getCount("hedges-lost"), lost + 1);
+    assertEquals(hedger.getRunningHedges(), 0);
+  }
+
+  @Test
+  public void testDisabledAndLimited() throws Exception {
+    Configuration conf = new Configuration(false);
+    conf.setInt(LensConfConstants.QUERY_HEDGE_MIN_SAMPLES, 1);
+    conf.setInt(LensConfConstants.QUERY_HEDGE_MAX_RUNNING, 1);
+    QueryHedger hedger = new QueryHedger(conf, null);
+    LensDriver driver1 = mockDriver("hedge/limited1");
+    LensDriver driver2 = mockDriver("hedge/limited2");
+    finishQueries(hedger, driver1, 1000);
+    long now = System.currentTimeMillis();
+
+    QueryContext disabled = runningQuery(now - 5000, driver1, driver2);
+    disabled.getConf().setBoolean(LensConfConstants.QUERY_HEDGE_ENABLED, false);
+    hedger.checkQuery(disabled, now);
+    verify(disabled, never()).createHedgeContext(any(LensDriver.class));
+
+    QueryContext query1 = runningQuery(now - 5000, driver1, driver2);
+    hedgeOf(query1, driver2);
+    QueryContext query2 = runningQuery(now - 5000, driver1, driver2);
+    hedgeOf(query2, driver2);
+    hedger.checkQuery(query1, now);
+    hedger.checkQuery(query2, now);
+    verify(query2, never()).createHedgeContext(any(LensDriver.class));
+
+    // The query is hedged once the running hedge is done
+    when(query1.getStatus()).thenReturn(new QueryStatus(1.0, null, QueryStatus.Status.CANCELED, null, false,
+      null, null, null));
+    hedger.queryFinished(query1);
+    hedger.checkQuery(query2, now);
+    verify(query2).createHedgeContext(driver2);
+  }
+}
@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.query;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.cube.metadata.CubeMetastoreClient;
+import org.apache.lens.cube.metadata.MetastoreConstants;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.driver.LensResultSetMetadata;
+import org.apache.lens.server.api.query.QueryContext;
+import org.apache.lens.server.api.query.QueryOutputFormatter;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.metadata.Table;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestQueryResultCache {
+
+  private File resultDir;
+  private Configuration conf;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    resultDir = new File("target/" + getClass().getSimpleName());
+    FileUtils.forceMkdir(resultDir);
+    conf = new Configuration();
+    conf.setBoolean(LensConfConstants.QUERY_RESULT_CACHE_ENABLED, true);
+  }
+
+  @AfterClass
+  public void cleanup() throws IOException {
+    FileUtils.deleteDirectory(resultDir);
+  }
+
+  private File createResult(String name) throws IOException {
+    File result = new File(resultDir, name);
+    FileUtils.writeStringToFile(result, "a,b\n");
+    return result;
+  }
+
+  private QueryContext finishedQuery(QueryHandle handle, File result) {
+    QueryContext ctx = mock(QueryContext.class);
+    when(ctx.getQueryHandle()).thenReturn(handle);
+    when(ctx.successful()).thenReturn(true);
+    QueryOutputFormatter formatter = mock(QueryOutputFormatter.class);
+    when(formatter.getFinalOutputPath()).thenReturn(new Path(result.getAbsolutePath()).toString());
+    when(formatter.getMetadata()).thenReturn(mock(LensResultSetMetadata.class));
+    when(formatter.getNumRows()).thenReturn(1);
+    when(formatter.getFileSize()).thenReturn(result.length());
+    when(ctx.getQueryOutputFormatter()).thenReturn(formatter);
+    return ctx;
+  }
+
+  private static QueryHandle newHandle() {
+    return new QueryHandle(UUID.randomUUID());
+  }
+
+  @Test
+  public void testHitAndInvalidation() throws Exception {
+    QueryResultCache cache = new QueryResultCache(conf);
+    QueryResultCache.Candidate candidate = new QueryResultCache.Candidate("key", "state");
+    File result = createResult("result1.csv");
+
+    QueryHandle first = newHandle();
+    assertNull(cache.lookup(first, candidate));
+    cache.finished(finishedQuery(first, result));
+    assertEquals(cache.size(), 1);
+
+    QueryResultCache.CachedResult cached = cache.lookup(newHandle(), candidate);
+    assertNotNull(cached);
+    assertEquals(cached.getSource(), first);
+    assertEquals(new Path(cached.getOutputPath()).toUri().getPath(), result.getAbsolutePath());
+    assertEquals(cache.getHits(), 1);
+    assertEquals(cache.getMisses(), 1);
+    assertEquals(cache.getHitRate(), 0.5);
+
+    // Changed partitions invalidate the entry
+    assertNull(cache.lookup(newHandle(), new QueryResultCache.Candidate("key", "changed")));
+    assertEquals(cache.size(), 0);
+
+    // Purging the result directory invalidates the entries under it
+    QueryHandle second = newHandle();
+    assertNull(cache.lookup(second, candidate));
+    cache.finished(finishedQuery(second, result));
+    assertEquals(cache.size(), 1);
+    cache.invalidate(new Path(resultDir.getAbsolutePath()));
+    assertEquals(cache.size(), 0);
+
+    // Deleted results are not served
+    QueryHandle third = newHandle();
+    assertNull(cache.lookup(third, candidate));
+    cache.finished(finishedQuery(third, result));
+    assertTrue(result.delete());
+    assertNull(cache.lookup(newHandle(), candidate));
+  }
+
+  @Test
+  public void testOnlySuccessfulTrackedQueriesAreCached() throws Exception {
+    QueryResultCache cache = new QueryResultCache(conf);
+    QueryResultCache.Candidate candidate = new QueryResultCache.Candidate("key", "state");
+    File result = createResult("result2.csv");
+
+    // Not looked up, so not tracked
+    cache.finished(finishedQuery(newHandle(), result));
+    assertEquals(cache.size(), 0);
+
+    QueryHandle failed = newHandle();
+    assertNull(cache.lookup(failed, candidate));
+    QueryContext ctx = finishedQuery(failed, result);
+    when(ctx.successful()).thenReturn(false);
+    cache.finished(ctx);
+    assertEquals(cache.size(), 0);
+  }
+
+  @Test
+  public void testPartitionState() throws Exception {
+    Table fact = new Table("default", "c1_fact");
+    Table dim = new Table("default", "c1_dim");
+    String timelineKey = MetastoreConstants.STORAGE_PFX + MetastoreConstants.PARTITION_TIMELINE_CACHE
+      + "daily.dt.latest";
+    fact.setProperty(timelineKey, "2017-01-01");
+    CubeMetastoreClient client = mock(CubeMetastoreClient.class);
+    when(client.getTable("c1_fact", false)).thenReturn(fact);
+    when(client.getTable("c1_dim", false)).thenReturn(dim);
+
+    String state = QueryResultCache.getPartitionState(Arrays.asList("c1_fact", "c1_dim"), client);
+    assertEquals(QueryResultCache.getPartitionState(Arrays.asList("c1_dim", "c1_fact"), client), state);
+
+    // Properties other than timelines do not matter
+    fact.setProperty("cube.storagetable.cost", "10");
+    assertEquals(QueryResultCache.getPartitionState(Arrays.asList("c1_fact", "c1_dim"), client), state);
+
+    fact.setProperty(timelineKey, "2017-01-02");
+    assertNotEquals(QueryResultCache.getPartitionState(Arrays.asList("c1_fact", "c1_dim"), client), state);
+
+    assertNull(QueryResultCache.getPartitionState(Arrays.asList("c1_fact", "missing"), client));
+  }
+}
@@ -20,12 +20,15 @@
 package org.apache.lens.server.query.constraint;
 
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 
 import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.server.api.driver.LensDriver;
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.collect.EstimatedImmutableQueryCollection;
+import org.apache.lens.server.api.query.constraint.AdaptiveQueryLaunchingConstraint;
 import org.apache.lens.server.api.query.constraint.QueryLaunchingConstraint;
 
 import org.testng.Assert;
@@ -114,6 +117,26 @@ public class DefaultQueryLaunchingConstraintsCheckerTest {
     Assert.assertTrue(canLaunchQuery);
   }
 
+  @Test
+  public void testQueryFinishedNotifiesAdaptiveConstraints() {
+
+    AdaptiveQueryLaunchingConstraint c1 = mock(AdaptiveQueryLaunchingConstraint.class);
+    QueryLaunchingConstraint c2 = mock(QueryLaunchingConstraint.class);
+    AdaptiveQueryLaunchingConstraint dc1 = mock(AdaptiveQueryLaunchingConstraint.class);
+
+    QueryContext mockFinishedQuery = mock(QueryContext.class);
+    when(mockFinishedQuery.getSelectedDriver()).thenReturn(mock(LensDriver.class));
+    when(mockFinishedQuery.getSelectedDriverQueryConstraints())
+      .thenReturn(ImmutableSet.<QueryLaunchingConstraint>of(dc1));
+
+    QueryLaunchingConstraintsChecker constraintsChecker
+      = new DefaultQueryLaunchingConstraintsChecker(ImmutableSet.of(c1, c2));
+    constraintsChecker.queryFinished(mockFinishedQuery);
+
+    verify(c1).queryFinished(mockFinishedQuery);
+    verify(dc1).queryFinished(mockFinishedQuery);
+  }
+
   @Test(expectedExceptions = NullPointerException.class)
   public void testConstraintsCheckerMustNotAcceptNullConstraintsSet() {
     new DefaultQueryLaunchingConstraintsChecker(null);
@@ -20,6 +20,7 @@ package org.apache.lens.server.query.retry;
 
 
 import static org.apache.lens.server.api.LensConfConstants.DRIVER_TYPES_AND_CLASSES;
+import static org.apache.lens.server.api.LensConfConstants.QUERY_LAUNCHING_CONSTRAINT_FACTORIES_KEY;
 import static org.apache.lens.server.api.LensConfConstants.QUERY_RETRY_POLICY_CLASSES;
 import static org.apache.lens.server.api.LensServerAPITestUtil.getLensConf;
 import static org.apache.lens.server.api.util.LensUtil.getHashMap;
@@ -39,12 +40,15 @@ import org.apache.lens.api.query.QueryHandle;
 import org.apache.lens.server.LensJerseyTest;
 import org.apache.lens.server.LensServices;
 import org.apache.lens.server.api.error.LensException;
+import org.apache.lens.server.api.metrics.LensMetricsRegistry;
 import org.apache.lens.server.api.query.QueryContext;
 import org.apache.lens.server.api.query.QueryExecutionService;
+import org.apache.lens.server.api.query.constraint.AdaptiveConcurrencyConstraintFactory;
 import org.apache.lens.server.api.session.SessionService;
 import org.apache.lens.server.common.RestAPITestUtil;
 import org.apache.lens.server.query.QueryExecutionServiceImpl;
 import org.apache.lens.server.query.TestQueryService;
+import org.apache.lens.server.query.constraint.TotalQueryCostCeilingConstraintFactory;
 
 import org.glassfish.jersey.test.TestProperties;
 import org.testng.annotations.AfterClass;
@@ -52,6 +56,8 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import com.codahale.metrics.Gauge;
+
 @Test(groups = "post-restart", dependsOnGroups = "restart-test")
 public class QueryRetryTest extends LensJerseyTest {
 
@@ -94,7 +100,15 @@ public class QueryRetryTest extends LensJerseyTest {
   @Override
   public Map<String, String> getServerConfOverWrites() {
     return getHashMap(DRIVER_TYPES_AND_CLASSES, "retry:org.apache.lens.server.query.retry.MockDriverForRetries",
-      QUERY_RETRY_POLICY_CLASSES, TestServerRetryPolicyDecider.class.getName());
+      QUERY_RETRY_POLICY_CLASSES, TestServerRetryPolicyDecider.class.getName(),
+      QUERY_LAUNCHING_CONSTRAINT_FACTORIES_KEY, TotalQueryCostCeilingConstraintFactory.class.getName() + ","
+        + AdaptiveConcurrencyConstraintFactory.class.getName());
+  }
+
+  private static long getAdaptiveLimitFailures(String driverName) {
+    Gauge<?> gauge = LensMetricsRegistry.getStaticRegistry().getGauges()
+      .get("lens.AdaptiveConcurrencyConstraint." + driverName + ".failures");
+    return gauge == null ? 0 : (Long) gauge.getValue();
   }
 
   @Test
@@ -146,6 +160,7 @@ public class QueryRetryTest extends LensJerseyTest {
 
   @Test
   public void testFailureAfterRetry() throws LensException, InterruptedException {
+    long failuresBefore = getAdaptiveLimitFailures("retry/double_failure");
     QueryHandle handle = getQueryService().executeAsync(session, "select 1",
       getLensConf("driver.retry/double_failure.cost", "1"),
       "random query");
@@ -160,6 +175,9 @@ public class QueryRetryTest extends LensJerseyTest {
     assertEquals(attempt1.getDriverName(), "retry/double_failure");
     assertEquals(ctx.getSelectedDriver().getFullyQualifiedName(), "retry/double_failure");
     assertTrue(ctx.getStatus().failed());
+    // Both attempts are reported to the adaptive concurrency limit as failures of the driver, the first one before
+    // the retry and the second one before the query is marked failed
+    assertEquals(getAdaptiveLimitFailures("retry/double_failure") - failuresBefore, 2);
   }
 
   @Test
@@ -0,0 +1,104 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lens.api.scheduler.XFrequency;
+import org.apache.lens.api.scheduler.XFrequencyEnum;
+
+import org.joda.time.DateTime;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for the fire time computation of AlarmSchedule.
+ */
+@Test(groups = "unit-test")
+public class AlarmScheduleTest {
+
+  private static List<DateTime> getFireTimes(AlarmSchedule schedule) {
+    List<DateTime> fireTimes = new ArrayList<>();
+    Long fireTime = schedule.getFirstFireTime();
+    while (fireTime != null) {
+      fireTimes.add(new DateTime(fireTime));
+      fireTime = schedule.getFireTimeAfter(fireTime);
+    }
+    return fireTimes;
+  }
+
+  private static XFrequency getFrequency(XFrequencyEnum frequencyEnum) {
+    XFrequency frequency = new XFrequency();
+    frequency.setEnum(frequencyEnum);
+    return frequency;
+  }
+
+  @Test
+  public void testDailyEndIsExclusive() throws ParseException {
+    DateTime start = new DateTime(2016, 3, 3, 0, 0);
+    AlarmSchedule schedule = new AlarmSchedule("job", start, start.plusDays(3), getFrequency(XFrequencyEnum.DAILY));
+    List<DateTime> fireTimes = getFireTimes(schedule);
+    assertEquals(fireTimes.size(), 3);
+    assertEquals(fireTimes.get(0), start);
+    assertEquals(fireTimes.get(2), start.plusDays(2));
+  }
+
+  @Test
+  public void testMonthlyIsAnchoredAtStart() throws ParseException {
+    DateTime start = new DateTime(2016, 1, 31, 10, 0);
+    AlarmSchedule schedule = new AlarmSchedule("job", start, start.plusMonths(3),
+      getFrequency(XFrequencyEnum.MONTHLY));
+    List<DateTime> fireTimes = getFireTimes(schedule);
+    assertEquals(fireTimes.size(), 3);
+    assertEquals(fireTimes.get(1), new DateTime(2016, 2, 29, 10, 0));
+    // the day of month does not drift after a short month
+    assertEquals(fireTimes.get(2), new DateTime(2016, 3, 31, 10, 0));
+  }
+
+  @Test
+  public void testFireTimeAfterArbitraryTime() throws ParseException {
+    DateTime start = new DateTime(2016, 1, 1, 0, 0);
+    AlarmSchedule schedule = new AlarmSchedule("job", start, start.plusYears(2),
+      getFrequency(XFrequencyEnum.QUARTERLY));
+    assertEquals(new DateTime(schedule.getFireTimeAfter(new DateTime(2016, 5, 15, 0, 0).getMillis())),
+      new DateTime(2016, 7, 1, 0, 0));
+    assertEquals(schedule.getFireTimeAfter(start.minusDays(1).getMillis()), Long.valueOf(start.getMillis()));
+    assertNull(schedule.getFireTimeAfter(new DateTime(2017, 10, 1, 0, 0).getMillis()));
+  }
+
+  @Test
+  public void testCronAndStoredForm() throws ParseException {
+    DateTime start = new DateTime(2016, 3, 3, 0, 0);
+    XFrequency frequency = new XFrequency();
+    frequency.setCronExpression("0 0 12 * * ?");
+    AlarmSchedule schedule = new AlarmSchedule("job", start, start.plusDays(2), frequency);
+    List<DateTime> fireTimes = getFireTimes(schedule);
+    assertEquals(fireTimes.size(), 2);
+    assertEquals(fireTimes.get(0), new DateTime(2016, 3, 3, 12, 0));
+
+    AlarmSchedule stored = AlarmSchedule.fromFrequencyString("job", start, start.plusDays(2),
+      schedule.getFrequencyString());
+    assertEquals(getFireTimes(stored), fireTimes);
+    AlarmSchedule daily = AlarmSchedule.fromFrequencyString("job", start, start.plusDays(2), "DAILY");
+    assertEquals(daily.getFrequencyEnum(), XFrequencyEnum.DAILY);
+  }
+}
@@ -34,6 +34,7 @@ import org.apache.lens.server.util.UtilityMethods;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.hadoop.conf.Configuration;
 
+import org.joda.time.DateTime;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -56,6 +57,7 @@ public class SchedulerDAOTest {
     // Cleanup all tables
     runner.update("DROP TABLE IF EXISTS job_table");
     runner.update("DROP TABLE IF EXISTS job_instance_table");
+    runner.update("DROP TABLE IF EXISTS alarm_table");
     this.schedulerDAO = new SchedulerDAO(conf);
   }
 
@@ -195,4 +197,76 @@ public class SchedulerDAOTest {
     Assert.assertEquals(schedulerDAO.getJobs("lens", 1L, System.currentTimeMillis(), SchedulerJobState.NEW).size(), 2);
     Assert.assertEquals(schedulerDAO.getJobs("Alice", null, null, SchedulerJobState.NEW).size(), 0);
   }
+
+  @Test(priority = 4)
+  public void testPaginatedInstancesAndBatchUpdate() {
+    List<SchedulerJobInstanceInfo> all = schedulerDAO.getJobInstances(jobHandle);
+    List<SchedulerJobInstanceInfo> firstPage = schedulerDAO.getJobInstances(jobHandle, 0, 1);
+    List<SchedulerJobInstanceInfo> secondPage = schedulerDAO.getJobInstances(jobHandle, 1, 1);
+    Assert.assertEquals(firstPage.size(), 1);
+    Assert.assertEquals(secondPage.size(), 1);
+    Assert.assertTrue(firstPage.get(0).getScheduleTime() >= secondPage.get(0).getScheduleTime());
+    Set<SchedulerJobInstanceInfo> pages = new HashSet<>(firstPage);
+    pages.addAll(secondPage);
+    Assert.assertEquals(pages, new HashSet<>(all));
+    Assert.assertTrue(schedulerDAO.getJobInstances(jobHandle, 2, 1).isEmpty());
+
+    List<SchedulerJobInstanceRun> runs = new ArrayList<>();
+    for (SchedulerJobInstanceInfo instance : all) {
+      SchedulerJobInstanceRun run = instance.getInstanceRunList().get(0);
+      run.setInstanceState(SchedulerJobInstanceState.FAILED);
+      runs.add(run);
+    }
+    Assert.assertEquals(schedulerDAO.updateJobInstanceRuns(runs), runs.size());
+    Assert.assertTrue(schedulerDAO.getInstanceRuns(SchedulerJobInstanceState.FAILED).containsAll(runs));
+    Assert.assertEquals(new HashSet<>(schedulerDAO.getJobInstances(jobHandle)), new HashSet<>(all));
+  }
+
+  @Test(priority = 3)
+  public void testReadUncompressedJob() throws Exception {
+    Configuration conf = new Configuration(LensServerConf.getHiveConf());
+    conf.setBoolean(LensConfConstants.SCHEDULER_STORE_JOB_COMPRESSION_ENABLED, false);
+    SchedulerDAO xmlDAO = new SchedulerDAO(conf);
+    XJob job = getTestJob();
+    long currentTime = System.currentTimeMillis();
+    SchedulerJobInfo info = new SchedulerJobInfo(new SchedulerJobHandle(UUID.randomUUID()), job, "xmluser",
+      SchedulerJobState.NEW, currentTime, currentTime);
+    Assert.assertEquals(xmlDAO.storeJob(info), 1);
+    // A job stored as xml can be read by a store which compresses the job definitions and vice versa.
+    Assert.assertEquals(schedulerDAO.getJob(info.getId()), job);
+    Assert.assertEquals(xmlDAO.getJob(jobHandle), schedulerDAO.getJob(jobHandle));
+    // The parsed form is cached
+    Assert.assertSame(schedulerDAO.getJob(info.getId()), schedulerDAO.getJob(info.getId()));
+  }
+
+  @Test(priority = 4)
+  public void testStoreAlarms() throws Exception {
+    XFrequency frequency = new XFrequency();
+    frequency.setEnum(XFrequencyEnum.DAILY);
+    DateTime start = new DateTime(2016, 3, 3, 0, 0);
+    AlarmSchedule first = new AlarmSchedule(UUID.randomUUID().toString(), start, start.plusDays(10), frequency);
+    first.setNextFireTime(first.getFirstFireTime());
+    AlarmSchedule second = new AlarmSchedule(UUID.randomUUID().toString(), start, start.plusDays(10),
+      getTestTrigger().getFrequency());
+    second.setNextFireTime(second.getFirstFireTime());
+    Assert.assertEquals(schedulerDAO.storeAlarm(first), 1);
+    Assert.assertEquals(schedulerDAO.storeAlarm(second), 1);
+
+    first.setNextFireTime(first.getFireTimeAfter(first.getNextFireTime()));
+    second.setPaused(true);
+    Assert.assertEquals(schedulerDAO.updateAlarms(Arrays.asList(first, second)), 2);
+
+    Map<String, AlarmSchedule> stored = new HashMap<>();
+    for (AlarmSchedule schedule : schedulerDAO.getAlarms()) {
+      stored.put(schedule.getJobHandle(), schedule);
+    }
+    Assert.assertEquals(stored.size(), 2);
+    Assert.assertEquals(stored.get(first.getJobHandle()).getNextFireTime(), first.getNextFireTime());
+    Assert.assertEquals(stored.get(first.getJobHandle()).getFrequencyEnum(), XFrequencyEnum.DAILY);
+    Assert.assertTrue(stored.get(second.getJobHandle()).isPaused());
+    Assert.assertEquals(stored.get(second.getJobHandle()).getCronExpression(), "0 0 12 * * ?");
+
+    Assert.assertEquals(schedulerDAO.deleteAlarms(Arrays.asList(first.getJobHandle(), second.getJobHandle())), 2);
+    Assert.assertTrue(schedulerDAO.getAlarms().isEmpty());
+  }
 }
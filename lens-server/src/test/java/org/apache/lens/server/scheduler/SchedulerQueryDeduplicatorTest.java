@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.lens.api.query.QueryHandle;
+import org.apache.lens.api.query.QueryStatus;
+import org.apache.lens.api.scheduler.*;
+import org.apache.lens.server.LensServerConf;
+import org.apache.lens.server.api.LensConfConstants;
+
+import org.apache.hadoop.conf.Configuration;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class SchedulerQueryDeduplicatorTest {
+
+  private SchedulerDAO schedulerDAO;
+  private SchedulerQueryDeduplicator deduplicator;
+  private SchedulerJobHandle jobHandle;
+
+  @BeforeClass
+  public void setup() throws Exception {
+    System.setProperty(LensConfConstants.CONFIG_LOCATION, "target/test-classes/");
+    Configuration conf = LensServerConf.getHiveConf();
+    schedulerDAO = new SchedulerDAO(conf);
+    deduplicator = new SchedulerQueryDeduplicator(schedulerDAO, conf);
+    jobHandle = new SchedulerJobHandle(UUID.randomUUID());
+  }
+
+  private static XExecution getExecution(String query, String... conf) {
+    XExecution execution = new XExecution();
+    XJobQuery jobQuery = new XJobQuery();
+    jobQuery.setQuery(query);
+    for (int i = 0; i < conf.length; i += 2) {
+      MapType element = new MapType();
+      element.setKey(conf[i]);
+      element.setValue(conf[i + 1]);
+      jobQuery.getConf().add(element);
+    }
+    execution.setQuery(jobQuery);
+    XSessionType session = new XSessionType();
+    session.setDb("default");
+    execution.setSession(session);
+    return execution;
+  }
+
+  private SchedulerJobInstanceRun launchingRun(long nominalTime) {
+    SchedulerJobInstanceHandle instanceHandle = new SchedulerJobInstanceHandle(UUID.randomUUID());
+    long currentTime = System.currentTimeMillis();
+    SchedulerJobInstanceInfo instance = new SchedulerJobInstanceInfo(instanceHandle, jobHandle, nominalTime,
+      new ArrayList<SchedulerJobInstanceRun>());
+    SchedulerJobInstanceRun run = new SchedulerJobInstanceRun(instanceHandle, 1, null, currentTime, currentTime,
+      "N/A", null, SchedulerJobInstanceState.LAUNCHING);
+    Assert.assertEquals(schedulerDAO.storeJobInstance(instance), 1);
+    Assert.assertEquals(schedulerDAO.storeJobInstanceRun(run), 1);
+    return run;
+  }
+
+  private SchedulerJobInstanceRun latestRun(SchedulerJobInstanceHandle instanceHandle) {
+    List<SchedulerJobInstanceRun> runs = schedulerDAO.getSchedulerJobInstanceInfo(instanceHandle)
+      .getInstanceRunList();
+    return runs.get(runs.size() - 1);
+  }
+
+  public void testFingerprint() {
+    long nominalTime = 1000000L;
+    String fingerprint = SchedulerQueryDeduplicator.fingerprint("lens",
+      getExecution("cube select a from c", "k1", "v1", "k2", "v2"), nominalTime);
+    // Conf order does not matter
+    Assert.assertEquals(SchedulerQueryDeduplicator.fingerprint("lens",
+      getExecution("cube select a from c", "k2", "v2", "k1", "v1"), nominalTime), fingerprint);
+    Assert.assertNotEquals(SchedulerQueryDeduplicator.fingerprint("lens",
+      getExecution("cube select a from c", "k1", "v1", "k2", "v2"), nominalTime + 1), fingerprint);
+    Assert.assertNotEquals(SchedulerQueryDeduplicator.fingerprint("other",
+      getExecution("cube select a from c", "k1", "v1", "k2", "v2"), nominalTime), fingerprint);
+    Assert.assertNotEquals(SchedulerQueryDeduplicator.fingerprint("lens",
+      getExecution("cube select a from c", "k1", "v1", "k2", "v3"), nominalTime), fingerprint);
+    Assert.assertNotEquals(SchedulerQueryDeduplicator.fingerprint("lens",
+      getExecution("cube select b from c", "k1", "v1", "k2", "v2"), nominalTime), fingerprint);
+  }
+
+  public void testSharedExecution() throws Exception {
+    long nominalTime = System.currentTimeMillis();
+    String key = SchedulerQueryDeduplicator.fingerprint("lens", getExecution("cube select a from c"), nominalTime);
+    long savedBefore = deduplicator.getSavedExecutions();
+
+    SchedulerJobInstanceRun leaderRun = launchingRun(nominalTime);
+    SchedulerQueryDeduplicator.SharedExecution shared = deduplicator.join(key, leaderRun.getHandle(), true);
+    Assert.assertTrue(shared.isLedBy(leaderRun.getHandle()));
+    QueryHandle queryHandle = new QueryHandle(UUID.randomUUID());
+    deduplicator.launched(shared, queryHandle);
+
+    SchedulerJobInstanceRun followerRun = launchingRun(nominalTime);
+    Assert.assertSame(deduplicator.join(key, followerRun.getHandle(), true), shared);
+    deduplicator.attach(shared, followerRun);
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getInstanceState(), SchedulerJobInstanceState.RUNNING);
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getQueryHandle(), queryHandle);
+
+    // Only the leader routes the query end event.
+    Assert.assertNull(deduplicator.getLedBy(followerRun.getHandle()));
+    Assert.assertSame(deduplicator.getLedBy(leaderRun.getHandle()), shared);
+    deduplicator.complete(shared, QueryStatus.Status.SUCCESSFUL, "/tmp/shared/result");
+    SchedulerJobInstanceRun run = latestRun(followerRun.getHandle());
+    Assert.assertEquals(run.getInstanceState(), SchedulerJobInstanceState.SUCCEEDED);
+    Assert.assertEquals(run.getResultPath(), "/tmp/shared/result");
+
+    // An identical instance launching later reuses the result, a rerun launches the query again.
+    SchedulerJobInstanceRun lateRun = launchingRun(nominalTime);
+    Assert.assertSame(deduplicator.join(key, lateRun.getHandle(), true), shared);
+    deduplicator.attach(shared, lateRun);
+    run = latestRun(lateRun.getHandle());
+    Assert.assertEquals(run.getInstanceState(), SchedulerJobInstanceState.SUCCEEDED);
+    Assert.assertEquals(run.getResultPath(), "/tmp/shared/result");
+    SchedulerJobInstanceRun rerun = launchingRun(nominalTime);
+    Assert.assertTrue(deduplicator.join(key, rerun.getHandle(), false).isLedBy(rerun.getHandle()));
+
+    Assert.assertEquals(deduplicator.getSavedExecutions() - savedBefore, 2);
+  }
+
+  public void testFollowerAttachedBeforeLaunch() throws Exception {
+    long nominalTime = System.currentTimeMillis() + 3;
+    String key = SchedulerQueryDeduplicator.fingerprint("lens", getExecution("cube select a from c"), nominalTime);
+    SchedulerJobInstanceRun leaderRun = launchingRun(nominalTime);
+    SchedulerQueryDeduplicator.SharedExecution shared = deduplicator.join(key, leaderRun.getHandle(), true);
+    // The follower attaches while the leader is still submitting its query.
+    SchedulerJobInstanceRun followerRun = launchingRun(nominalTime);
+    deduplicator.attach(deduplicator.join(key, followerRun.getHandle(), true), followerRun);
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getInstanceState(), SchedulerJobInstanceState.RUNNING);
+    Assert.assertNull(latestRun(followerRun.getHandle()).getQueryHandle());
+
+    QueryHandle queryHandle = new QueryHandle(UUID.randomUUID());
+    deduplicator.launched(shared, queryHandle);
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getQueryHandle(), queryHandle);
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getInstanceState(), SchedulerJobInstanceState.RUNNING);
+
+    deduplicator.complete(shared, QueryStatus.Status.SUCCESSFUL, "/tmp/shared/result");
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getQueryHandle(), queryHandle);
+  }
+
+  public void testFailedLaunch() throws Exception {
+    long nominalTime = System.currentTimeMillis() + 1;
+    String key = SchedulerQueryDeduplicator.fingerprint("lens", getExecution("cube select a from c"), nominalTime);
+    SchedulerJobInstanceRun leaderRun = launchingRun(nominalTime);
+    SchedulerQueryDeduplicator.SharedExecution shared = deduplicator.join(key, leaderRun.getHandle(), true);
+    SchedulerJobInstanceRun followerRun = launchingRun(nominalTime);
+    deduplicator.attach(deduplicator.join(key, followerRun.getHandle(), true), followerRun);
+
+    deduplicator.complete(shared, QueryStatus.Status.FAILED, null);
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getInstanceState(), SchedulerJobInstanceState.FAILED);
+    // Failed executions are not reused.
+    SchedulerJobInstanceRun next = launchingRun(nominalTime);
+    Assert.assertTrue(deduplicator.join(key, next.getHandle(), true).isLedBy(next.getHandle()));
+  }
+
+  public void testDetach() throws Exception {
+    long nominalTime = System.currentTimeMillis() + 2;
+    String key = SchedulerQueryDeduplicator.fingerprint("lens", getExecution("cube select a from c"), nominalTime);
+    SchedulerJobInstanceRun leaderRun = launchingRun(nominalTime);
+    SchedulerQueryDeduplicator.SharedExecution shared = deduplicator.join(key, leaderRun.getHandle(), true);
+    SchedulerJobInstanceRun followerRun = launchingRun(nominalTime);
+    deduplicator.attach(deduplicator.join(key, followerRun.getHandle(), true), followerRun);
+    SchedulerJobInstanceRun otherRun = launchingRun(nominalTime);
+    deduplicator.attach(deduplicator.join(key, otherRun.getHandle(), true), otherRun);
+
+    // Killing a follower or a leader with followers does not cancel the shared query.
+    Assert.assertTrue(deduplicator.detach(followerRun.getHandle()));
+    Assert.assertTrue(deduplicator.detach(leaderRun.getHandle()));
+    Assert.assertTrue(shared.isLeaderDetached());
+
+    deduplicator.complete(shared, QueryStatus.Status.SUCCESSFUL, "/tmp/shared/result");
+    Assert.assertEquals(latestRun(otherRun.getHandle()).getInstanceState(), SchedulerJobInstanceState.SUCCEEDED);
+    // The detached follower is not updated by the shared execution.
+    Assert.assertEquals(latestRun(followerRun.getHandle()).getInstanceState(), SchedulerJobInstanceState.RUNNING);
+
+    // A leader without followers cancels its query and stops accepting followers.
+    long otherTime = nominalTime + 1;
+    String otherKey = SchedulerQueryDeduplicator.fingerprint("lens", getExecution("cube select a from c"),
+      otherTime);
+    SchedulerJobInstanceRun single = launchingRun(otherTime);
+    deduplicator.join(otherKey, single.getHandle(), true);
+    Assert.assertFalse(deduplicator.detach(single.getHandle()));
+    SchedulerJobInstanceRun next = launchingRun(otherTime);
+    Assert.assertTrue(deduplicator.join(otherKey, next.getHandle(), true).isLedBy(next.getHandle()));
+  }
+}
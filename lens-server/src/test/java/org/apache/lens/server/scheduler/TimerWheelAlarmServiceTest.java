@@ -0,0 +1,223 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import static org.testng.Assert.*;
+
+import java.util.*;
+
+import org.apache.lens.api.scheduler.SchedulerJobHandle;
+import org.apache.lens.api.scheduler.XFrequency;
+import org.apache.lens.api.scheduler.XFrequencyEnum;
+import org.apache.lens.server.LensServerConf;
+import org.apache.lens.server.LensServices;
+import org.apache.lens.server.api.LensConfConstants;
+import org.apache.lens.server.api.events.LensEventListener;
+import org.apache.lens.server.api.events.LensEventService;
+import org.apache.lens.server.api.events.SchedulerAlarmEvent;
+
+import org.apache.hadoop.hive.conf.HiveConf;
+
+import org.joda.time.DateTime;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for TimerWheelAlarmService.
+ */
+@Test(groups = "unit-test")
+public class TimerWheelAlarmServiceTest {
+
+  private final List<SchedulerAlarmEvent> events = Collections.synchronizedList(new ArrayList<SchedulerAlarmEvent>());
+  private HiveConf conf;
+  private SchedulerDAO schedulerDAO;
+  private TimerWheelAlarmService alarmService;
+
+  @BeforeClass
+  public void setUp() throws Exception {
+    System.setProperty(LensConfConstants.CONFIG_LOCATION, "target/test-classes/");
+    LensServices.get().init(LensServerConf.getHiveConf());
+    LensServices.get().start();
+    LensEventService eventService = LensServices.get().getService(LensEventService.NAME);
+    assertNotNull(eventService);
+    eventService.addListenerForType(new LensEventListener<SchedulerAlarmEvent>() {
+      @Override
+      public void onEvent(SchedulerAlarmEvent event) {
+        events.add(event);
+      }
+    }, SchedulerAlarmEvent.class);
+    conf = new HiveConf(LensServerConf.getHiveConf());
+    conf.setLong(LensConfConstants.ALARM_TIMER_WHEEL_TICK_MILLIS, 100);
+    conf.setInt(LensConfConstants.ALARM_TIMER_WHEEL_SIZE, 64);
+    schedulerDAO = new SchedulerDAO(conf);
+  }
+
+  @AfterMethod
+  public void stopAlarmService() {
+    if (alarmService != null) {
+      alarmService.stop();
+      alarmService = null;
+    }
+  }
+
+  private void startAlarmService() {
+    alarmService = new TimerWheelAlarmService();
+    alarmService.init(conf);
+    alarmService.start();
+  }
+
+  private List<SchedulerAlarmEvent> getEvents(SchedulerJobHandle jobHandle, SchedulerAlarmEvent.EventType type) {
+    List<SchedulerAlarmEvent> found = new ArrayList<>();
+    synchronized (events) {
+      for (SchedulerAlarmEvent event : events) {
+        if (event.getJobHandle().equals(jobHandle) && event.getType() == type) {
+          found.add(event);
+        }
+      }
+    }
+    return found;
+  }
+
+  private Set<DateTime> getNominalTimes(List<SchedulerAlarmEvent> found) {
+    Set<DateTime> nominalTimes = new HashSet<>();
+    for (SchedulerAlarmEvent event : found) {
+      nominalTimes.add(event.getNominalTime());
+    }
+    return nominalTimes;
+  }
+
+  private AlarmSchedule getStoredAlarm(SchedulerJobHandle jobHandle) {
+    for (AlarmSchedule schedule : schedulerDAO.getAlarms()) {
+      if (schedule.getJobHandle().equals(jobHandle.getHandleIdString())) {
+        return schedule;
+      }
+    }
+    return null;
+  }
+
+  private void waitForEvents(SchedulerJobHandle jobHandle, SchedulerAlarmEvent.EventType type, int count)
+    throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10000;
+    while (getEvents(jobHandle, type).size() < count && System.currentTimeMillis() < timeout) {
+      Thread.sleep(100);
+    }
+    assertTrue(getEvents(jobHandle, type).size() >= count, "Timed out waiting for " + count + " events");
+  }
+
+  @Test
+  public void testScheduleFirePauseResumeUnschedule() throws Exception {
+    startAlarmService();
+    SchedulerJobHandle jobHandle = new SchedulerJobHandle(UUID.randomUUID());
+    XFrequency frequency = new XFrequency();
+    // every second
+    frequency.setCronExpression("* * * * * ?");
+    DateTime start = new DateTime();
+    alarmService.schedule(start, start.plusHours(1), frequency, jobHandle.getHandleIdString());
+    assertTrue(alarmService.checkExists(jobHandle));
+    assertNotNull(getStoredAlarm(jobHandle));
+
+    waitForEvents(jobHandle, SchedulerAlarmEvent.EventType.SCHEDULE, 2);
+    // The next fire time is persisted after every fire
+    assertTrue(getStoredAlarm(jobHandle).getNextFireTime() > start.getMillis());
+
+    alarmService.pauseJob(jobHandle);
+    assertTrue(getStoredAlarm(jobHandle).isPaused());
+    // let the events notified before the pause reach the listener
+    Thread.sleep(500);
+    int firedBeforePause = getEvents(jobHandle, SchedulerAlarmEvent.EventType.SCHEDULE).size();
+    Thread.sleep(2500);
+    assertEquals(getEvents(jobHandle, SchedulerAlarmEvent.EventType.SCHEDULE).size(), firedBeforePause);
+
+    alarmService.resumeJob(jobHandle);
+    assertFalse(getStoredAlarm(jobHandle).isPaused());
+    // the fire times missed while paused are caught up right away
+    waitForEvents(jobHandle, SchedulerAlarmEvent.EventType.SCHEDULE, firedBeforePause + 2);
+
+    assertTrue(alarmService.unSchedule(jobHandle));
+    assertFalse(alarmService.checkExists(jobHandle));
+    assertNull(getStoredAlarm(jobHandle));
+    assertFalse(alarmService.unSchedule(jobHandle));
+    Thread.sleep(500);
+    List<SchedulerAlarmEvent> fired = getEvents(jobHandle, SchedulerAlarmEvent.EventType.SCHEDULE);
+    Thread.sleep(1500);
+    assertEquals(getEvents(jobHandle, SchedulerAlarmEvent.EventType.SCHEDULE).size(), fired.size());
+    // every nominal time is fired once
+    assertEquals(getNominalTimes(fired).size(), fired.size());
+    assertTrue(getEvents(jobHandle, SchedulerAlarmEvent.EventType.EXPIRE).isEmpty());
+  }
+
+  @Test
+  public void testRestartCatchUp() throws Exception {
+    XFrequency frequency = new XFrequency();
+    frequency.setEnum(XFrequencyEnum.DAILY);
+    DateTime start = new DateTime().withTimeAtStartOfDay().minusDays(3);
+
+    // Alarms left by a server which went down three days ago, before firing any of them.
+    SchedulerJobHandle misfired = new SchedulerJobHandle(UUID.randomUUID());
+    AlarmSchedule misfiredSchedule = new AlarmSchedule(misfired.getHandleIdString(), start, start.plusDays(10),
+      frequency);
+    misfiredSchedule.setNextFireTime(misfiredSchedule.getFirstFireTime());
+    assertEquals(schedulerDAO.storeAlarm(misfiredSchedule), 1);
+
+    SchedulerJobHandle expired = new SchedulerJobHandle(UUID.randomUUID());
+    AlarmSchedule expiredSchedule = new AlarmSchedule(expired.getHandleIdString(), start, start.plusDays(2),
+      frequency);
+    expiredSchedule.setNextFireTime(expiredSchedule.getFirstFireTime());
+    assertEquals(schedulerDAO.storeAlarm(expiredSchedule), 1);
+
+    SchedulerJobHandle paused = new SchedulerJobHandle(UUID.randomUUID());
+    AlarmSchedule pausedSchedule = new AlarmSchedule(paused.getHandleIdString(), start, start.plusDays(10),
+      frequency);
+    pausedSchedule.setNextFireTime(pausedSchedule.getFirstFireTime());
+    pausedSchedule.setPaused(true);
+    assertEquals(schedulerDAO.storeAlarm(pausedSchedule), 1);
+
+    startAlarmService();
+    assertTrue(alarmService.checkExists(misfired));
+    assertTrue(alarmService.checkExists(paused));
+
+    // start, start + 1, start + 2 and today are misfired
+    waitForEvents(misfired, SchedulerAlarmEvent.EventType.SCHEDULE, 4);
+    waitForEvents(expired, SchedulerAlarmEvent.EventType.EXPIRE, 1);
+    // wait for more timer ticks, to see that the caught up times are not fired again
+    Thread.sleep(1000);
+
+    List<SchedulerAlarmEvent> fired = getEvents(misfired, SchedulerAlarmEvent.EventType.SCHEDULE);
+    assertEquals(fired.size(), 4);
+    assertEquals(getNominalTimes(fired),
+      new HashSet<>(Arrays.asList(start, start.plusDays(1), start.plusDays(2), start.plusDays(3))));
+    assertTrue(getEvents(misfired, SchedulerAlarmEvent.EventType.EXPIRE).isEmpty());
+    assertEquals(getStoredAlarm(misfired).getNextFireTime().longValue(), start.plusDays(4).getMillis());
+
+    fired = getEvents(expired, SchedulerAlarmEvent.EventType.SCHEDULE);
+    assertEquals(fired.size(), 2);
+    assertEquals(getNominalTimes(fired), new HashSet<>(Arrays.asList(start, start.plusDays(1))));
+    assertEquals(getEvents(expired, SchedulerAlarmEvent.EventType.EXPIRE).size(), 1);
+    assertNull(getStoredAlarm(expired));
+    assertFalse(alarmService.checkExists(expired));
+
+    assertTrue(getEvents(paused, SchedulerAlarmEvent.EventType.SCHEDULE).isEmpty());
+    assertTrue(getStoredAlarm(paused).isPaused());
+    assertEquals(getStoredAlarm(paused).getNextFireTime().longValue(), start.getMillis());
+
+    assertTrue(alarmService.unSchedule(misfired));
+    assertTrue(alarmService.unSchedule(paused));
+  }
+}
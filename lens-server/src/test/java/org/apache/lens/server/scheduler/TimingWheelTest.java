@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.lens.server.scheduler;
+
+import static org.testng.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.annotations.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tests for TimingWheel.
+ */
+@Slf4j
+@Test(groups = "unit-test")
+public class TimingWheelTest {
+
+  @Test
+  public void testOrderingAcrossLevels() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    // wheel size 8 with 1 ms tick makes the 1000 ms entry go through two overflow levels.
+    TimingWheel<String> wheel = new TimingWheel<>(1, 8, start);
+    wheel.add("c", start + 1000);
+    wheel.add("a", start + 100);
+    wheel.add("b", start + 300);
+    wheel.add("overdue", start - 5000);
+    assertEquals(wheel.size(), 4);
+
+    List<String> fired = new ArrayList<>();
+    while (fired.size() < 4) {
+      for (String payload : wheel.advance(100)) {
+        fired.add(payload);
+        long now = System.currentTimeMillis();
+        switch (payload) {
+        case "a":
+          assertTrue(now >= start + 100);
+          break;
+        case "b":
+          assertTrue(now >= start + 300);
+          break;
+        case "c":
+          assertTrue(now >= start + 1000);
+          break;
+        default:
+          break;
+        }
+      }
+    }
+    assertEquals(fired.get(0), "overdue");
+    assertEquals(fired.subList(1, 4), Arrays.asList("a", "b", "c"));
+    assertEquals(wheel.size(), 0);
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    TimingWheel<String> wheel = new TimingWheel<>(10, 16, start);
+    TimingWheel.Entry<String> cancelled = wheel.add("cancelled", start + 50);
+    TimingWheel.Entry<String> overdue = wheel.add("overdue", start - 50);
+    wheel.add("kept", start + 60);
+    assertTrue(wheel.cancel(cancelled));
+    assertTrue(wheel.cancel(overdue));
+    assertFalse(wheel.cancel(cancelled));
+
+    List<String> fired = new ArrayList<>();
+    long deadline = System.currentTimeMillis() + 1000;
+    while (System.currentTimeMillis() < deadline && fired.isEmpty()) {
+      fired.addAll(wheel.advance(50));
+    }
+    assertEquals(fired, Collections.singletonList("kept"));
+    assertEquals(wheel.size(), 0);
+  }
+
+  /**
+   * Schedules 100k alarms spread over two seconds and checks that all of them fire, none before its expiration, and
+   * reports the time taken to schedule them and the worst firing delay.
+   */
+  @Test
+  public void testHundredThousandEntries() throws InterruptedException {
+    final int count = 100000;
+    long start = System.currentTimeMillis();
+    TimingWheel<Long> wheel = new TimingWheel<>(10, 512, start);
+    Random random = new Random(count);
+    long addStart = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      long expiration = start + 500 + random.nextInt(2000);
+      wheel.add(expiration, expiration);
+    }
+    long addMillis = (System.nanoTime() - addStart) / 1000000;
+    assertEquals(wheel.size(), count);
+
+    int fired = 0;
+    long maxDelay = 0;
+    long deadline = start + 10000;
+    while (fired < count && System.currentTimeMillis() < deadline) {
+      List<Long> due = wheel.advance(100);
+      long now = System.currentTimeMillis();
+      for (long expiration : due) {
+        assertTrue(expiration <= now, "Fired before expiration");
+        maxDelay = Math.max(maxDelay, now - expiration);
+      }
+      fired += due.size();
+    }
+    log.info("Scheduled {} entries in {} ms, worst firing delay {} ms", count, addMillis, maxDelay);
+    assertEquals(fired, count);
+    assertEquals(wheel.size(), 0);
+  }
+}
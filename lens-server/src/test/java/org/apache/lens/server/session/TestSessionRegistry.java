@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.lens.server.session;
+
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+import org.apache.lens.api.LensSessionHandle;
+
+import org.apache.hive.service.cli.SessionHandle;
+
+import org.testng.annotations.Test;
+
+@Test(groups = "unit-test")
+public class TestSessionRegistry {
+
+  private static LensSessionHandle newHandle() {
+    return new LensSessionHandle(UUID.randomUUID(), UUID.randomUUID());
+  }
+
+  public void testLookup() {
+    SessionRegistry registry = new SessionRegistry();
+    LensSessionHandle handle = newHandle();
+    assertFalse(registry.contains(handle.getPublicId().toString()));
+    registry.register(handle);
+    assertTrue(registry.contains(handle.getPublicId().toString()));
+    assertEquals(registry.get(handle.getPublicId().toString()), handle);
+    assertEquals(registry.size(), 1);
+    assertEquals(registry.getHandles(), Collections.singletonList(handle));
+
+    // The hive handle is built once per session
+    SessionHandle hiveHandle = registry.getHiveSessionHandle(handle);
+    assertSame(registry.getHiveSessionHandle(new LensSessionHandle(handle.getPublicId(), handle.getSecretId())),
+      hiveHandle);
+    assertEquals(hiveHandle, SessionRegistry.newHiveSessionHandle(handle));
+    // A handle with a different secret does not get the registered one
+    LensSessionHandle wrongSecret = new LensSessionHandle(handle.getPublicId(), UUID.randomUUID());
+    assertNotEquals(registry.getHiveSessionHandle(wrongSecret), hiveHandle);
+
+    registry.remove(handle);
+    assertNull(registry.get(handle.getPublicId().toString()));
+    assertEquals(registry.size(), 0);
+  }
+
+  public void testExpiryBuckets() {
+    SessionRegistry registry = new SessionRegistry(100);
+    LensSessionHandle first = newHandle();
+    LensSessionHandle second = newHandle();
+    LensSessionHandle third = newHandle();
+    for (LensSessionHandle handle : Arrays.asList(first, second, third)) {
+      registry.register(handle);
+    }
+    registry.scheduleExpiry(first, 1010);
+    registry.scheduleExpiry(second, 1090);
+    registry.scheduleExpiry(third, 5000);
+    assertEquals(registry.getIndexedCount(), 3);
+
+    // Nothing is due before the bucket starts
+    assertTrue(registry.pollDue(999).isEmpty());
+    assertEquals(new HashSet<>(registry.pollDue(1000)), new HashSet<>(Arrays.asList(first, second)));
+    assertTrue(registry.pollDue(1000).isEmpty());
+    assertEquals(registry.getIndexedCount(), 1);
+
+    // Rescheduling moves the session to the new bucket only
+    registry.scheduleExpiry(third, 2000);
+    assertEquals(registry.pollDue(4999), Collections.singletonList(third));
+    assertTrue(registry.pollDue(10000).isEmpty());
+
+    // Removed and unregistered sessions are not indexed
+    registry.scheduleExpiry(first, 3000);
+    registry.remove(first);
+    registry.scheduleExpiry(first, 3000);
+    registry.scheduleExpiry(newHandle(), 3000);
+    assertEquals(registry.getIndexedCount(), 0);
+    assertTrue(registry.pollDue(10000).isEmpty());
+  }
+
+  public void testRegisterSession() {
+    SessionRegistry registry = new SessionRegistry(100);
+    LensSessionHandle handle = newHandle();
+    LensSessionImpl session = mock(LensSessionImpl.class);
+    when(session.getExpiryTime(anyLong())).thenReturn(2000L);
+    registry.register(handle, session);
+    assertEquals(registry.getIndexedCount(), 1);
+    assertTrue(registry.pollDue(1999).isEmpty());
+    assertEquals(registry.pollDue(2000), Collections.singletonList(handle));
+  }
+}